@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import com.plg.service.SimulationTimeService;
+import com.plg.service.util.GestorObstaculosTemporales;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 @RestController
@@ -31,6 +32,8 @@ public class ObstaculoController {
     private ObstaculoService obstaculoService;
     @Autowired
     private SimulationTimeService simulationTimeService;
+    @Autowired
+    private GestorObstaculosTemporales gestorObstaculosTemporales;
     /**
      * Cargar bloqueos desde archivo para un período específico
      */
@@ -63,6 +66,7 @@ public class ObstaculoController {
             
             // Procesar archivo
             obstaculoService.procesarArchivoBloqueos(file, periodo);
+            gestorObstaculosTemporales.reprogramarCambiosDeBloqueos();
             
             // Respuesta exitosa
             Map<String, Object> response = new HashMap<>();
@@ -157,6 +161,7 @@ public class ObstaculoController {
             logger.info("🔄 Recargando bloqueos activos en el gestor...");
             
             obstaculoService.actualizarGestorConBloqueosActivos();
+            gestorObstaculosTemporales.reprogramarCambiosDeBloqueos();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -109,7 +109,7 @@ public class Obstaculo {
      * @return true si el obstáculo está activo en ese momento
      */
     public boolean estaActivoEn(LocalDateTime momento) {
-        long timestamp = momento.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long timestamp = momento.atZone(java.time.ZoneId.systemDefault()).toEpochSecond();
         return estaActivoEn(timestamp);
     }
 }
\ No newline at end of file
@@ -24,6 +24,8 @@ public class ResultadoAEstrella {
     private int distanciaGrid;           // Distancia en unidades de grid
     private double distanciaKm;          // Distancia en kilómetros
     private int numeroMovimientos;       // Cantidad de pasos en la ruta
+    private long instanteLlegada;        // Epoch en segundos (solo búsqueda con horario)
+    private long segundosEspera;         // Espera por bloqueos (solo búsqueda con horario)
     
     // Métricas de rendimiento del algoritmo
     private long tiempoCalculoMs;        // Tiempo de cálculo en millisegundos
@@ -53,7 +55,7 @@ public class ResultadoAEstrella {
     private String trazaEjecucion;
     
     public ResultadoAEstrella() {
-        this.rutaEncontrada = new ArrayList<>();
+        this.rutaEncontrada = RutaCompacta.VACIA;
         this.nodosExploradosDetalle = new ArrayList<>();
         this.calculoExitoso = false;
         this.rutaExiste = false;
@@ -75,7 +77,7 @@ public class ResultadoAEstrella {
      */
     public static ResultadoAEstrella exitoso(Punto origen, Punto destino, List<Punto> ruta) {
         ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
-        resultado.setRutaEncontrada(new ArrayList<>(ruta));
+        resultado.setRutaEncontrada(RutaCompacta.de(ruta));
         resultado.setRutaExiste(true);
         resultado.setCalculoExitoso(true);
         resultado.calcularMetricasRuta();
@@ -112,7 +114,7 @@ public class ResultadoAEstrella {
      * Establece la ruta encontrada y calcula métricas automáticamente
      */
     public void establecerRutaEncontrada(List<Punto> ruta) {
-        this.rutaEncontrada = new ArrayList<>(ruta);
+        this.rutaEncontrada = RutaCompacta.de(ruta);
         this.rutaExiste = !ruta.isEmpty();
         calcularMetricasRuta();
     }
@@ -249,7 +251,7 @@ public class ResultadoAEstrella {
     public ResultadoAEstrella clonar() {
         ResultadoAEstrella copia = new ResultadoAEstrella(origen, destino);
         
-        copia.setRutaEncontrada(new ArrayList<>(rutaEncontrada));
+        copia.setRutaEncontrada(RutaCompacta.de(rutaEncontrada));
         copia.setRutaExiste(rutaExiste);
         copia.setCalculoExitoso(calculoExitoso);
         copia.setDistanciaGrid(distanciaGrid);
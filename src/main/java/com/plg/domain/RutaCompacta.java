@@ -0,0 +1,418 @@
+package com.plg.domain;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Ruta inmutable codificada por tramos: el punto inicial y, por cada tramo recto,
+ * su dirección y longitud. En un grid Manhattan una ruta de cientos de celdas son
+ * pocos tramos, así que ocupa unos pocos int en lugar de un Punto por celda.
+ * Se comporta como una List&lt;Punto&gt; de solo lectura: los puntos se generan al
+ * recorrerla y nunca se comparten, por lo que puede entregarse sin copiar.
+ * Los pasos no adyacentes (rutas directas de fallback) se guardan como saltos y
+ * las esperas en una celda como repeticiones del punto
+ */
+public final class RutaCompacta extends AbstractList<Punto> implements RandomAccess {
+
+    public static final RutaCompacta VACIA = new RutaCompacta(new int[0]);
+
+    // Tipos de tramo: direcciones en el orden del motor A* (arriba, abajo, izquierda, derecha)
+    private static final int ARRIBA = 0;
+    private static final int ABAJO = 1;
+    private static final int IZQUIERDA = 2;
+    private static final int DERECHA = 3;
+    private static final int REPETIR = 4;
+    private static final int SALTO = 5;
+    private static final int BITS_TIPO = 3;
+    private static final int MASCARA_TIPO = (1 << BITS_TIPO) - 1;
+    private static final int[] DX = {0, 0, -1, 1, 0};
+    private static final int[] DY = {1, -1, 0, 0, 0};
+
+    // [x0, y0, tramo...]; cada tramo es (longitud << 3 | tipo), y un SALTO va seguido del punto destino
+    private final int[] codificacion;
+    private final int tamano;
+
+    // Índices derivados para acceso aleatorio: por tramo, posición en la codificación,
+    // punto de partida y último índice de punto que cubre (búsqueda binaria en get)
+    private final int[] posicionTramo;
+    private final int[] inicioX;
+    private final int[] inicioY;
+    private final int[] ultimoIndice;
+
+    private RutaCompacta(int[] codificacion) {
+        this.codificacion = codificacion;
+        if (codificacion.length == 0) {
+            this.tamano = 0;
+            this.posicionTramo = this.inicioX = this.inicioY = this.ultimoIndice = new int[0];
+            return;
+        }
+        int tramos = 0;
+        for (int i = 2; i < codificacion.length; i += tipo(codificacion[i]) == SALTO ? 3 : 1) {
+            tramos++;
+        }
+        this.posicionTramo = new int[tramos];
+        this.inicioX = new int[tramos];
+        this.inicioY = new int[tramos];
+        this.ultimoIndice = new int[tramos];
+        int x = codificacion[0];
+        int y = codificacion[1];
+        int indice = 0;
+        int tramo = 0;
+        for (int i = 2; i < codificacion.length; i += tipo(codificacion[i]) == SALTO ? 3 : 1) {
+            int codigo = codificacion[i];
+            int longitud = longitud(codigo);
+            if (longitud <= 0 || (tipo(codigo) == SALTO && (longitud != 1 || i + 2 >= codificacion.length))) {
+                throw new IllegalArgumentException("Tramo de ruta inválido en la posición " + i);
+            }
+            posicionTramo[tramo] = i;
+            inicioX[tramo] = x;
+            inicioY[tramo] = y;
+            if (tipo(codigo) == SALTO) {
+                x = codificacion[i + 1];
+                y = codificacion[i + 2];
+            } else if (tipo(codigo) <= REPETIR) {
+                x += DX[tipo(codigo)] * longitud;
+                y += DY[tipo(codigo)] * longitud;
+            } else {
+                throw new IllegalArgumentException("Tipo de tramo desconocido en la posición " + i);
+            }
+            indice += longitud;
+            ultimoIndice[tramo] = indice;
+            tramo++;
+        }
+        this.tamano = indice + 1;
+    }
+
+    /**
+     * Codifica una lista de puntos; si ya es una RutaCompacta se devuelve tal cual
+     */
+    public static RutaCompacta de(List<Punto> puntos) {
+        if (puntos instanceof RutaCompacta) {
+            return (RutaCompacta) puntos;
+        }
+        if (puntos == null || puntos.isEmpty()) {
+            return VACIA;
+        }
+
+        Iterator<Punto> it = puntos.iterator();
+        Punto primero = it.next();
+        Codificador codificador = new Codificador(primero.getX(), primero.getY());
+
+        int x = primero.getX();
+        int y = primero.getY();
+        int tipoActual = -1;
+        int longitudActual = 0;
+        while (it.hasNext()) {
+            Punto punto = it.next();
+            int tipo = tipoPaso(punto.getX() - x, punto.getY() - y);
+            if (tipo == tipoActual && tipo != SALTO) {
+                longitudActual++;
+            } else {
+                if (tipoActual >= 0) {
+                    codificador.tramo(tipoActual, longitudActual);
+                }
+                if (tipo == SALTO) {
+                    codificador.salto(punto.getX(), punto.getY());
+                    tipoActual = -1;
+                    longitudActual = 0;
+                } else {
+                    tipoActual = tipo;
+                    longitudActual = 1;
+                }
+            }
+            x = punto.getX();
+            y = punto.getY();
+        }
+        if (tipoActual >= 0) {
+            codificador.tramo(tipoActual, longitudActual);
+        }
+        return codificador.construir();
+    }
+
+    /**
+     * Reconstruye una ruta a partir de {@link #getCodificacion()}
+     */
+    public static RutaCompacta desdeCodificacion(int[] codificacion) {
+        if (codificacion == null || codificacion.length == 0) {
+            return VACIA;
+        }
+        if (codificacion.length < 2) {
+            throw new IllegalArgumentException("Codificación de ruta sin punto inicial");
+        }
+        return new RutaCompacta(codificacion.clone());
+    }
+
+    /**
+     * Forma serializable: [x0, y0, tramo...], con tramo = longitud &lt;&lt; 3 | tipo
+     * (0 arriba, 1 abajo, 2 izquierda, 3 derecha, 4 espera, 5 salto seguido de x, y)
+     */
+    public int[] getCodificacion() {
+        return codificacion.clone();
+    }
+
+    /**
+     * Cantidad de tramos rectos (cambios de dirección + 1 en una ruta sin saltos)
+     */
+    public int getCantidadTramos() {
+        return posicionTramo.length;
+    }
+
+    /**
+     * Misma ruta recorrida en sentido contrario; en O(tramos), sin generar los puntos
+     */
+    public RutaCompacta invertida() {
+        if (tamano <= 1) {
+            return this;
+        }
+        int ultimo = posicionTramo.length - 1;
+        Codificador codificador = new Codificador(finX(ultimo), finY(ultimo));
+        for (int tramo = ultimo; tramo >= 0; tramo--) {
+            int codigo = codificacion[posicionTramo[tramo]];
+            if (tipo(codigo) == SALTO) {
+                codificador.salto(inicioX[tramo], inicioY[tramo]);
+            } else {
+                // Arriba/abajo e izquierda/derecha son pares consecutivos; la espera no cambia
+                int tipo = tipo(codigo) < REPETIR ? tipo(codigo) ^ 1 : tipo(codigo);
+                codificador.tramo(tipo, longitud(codigo));
+            }
+        }
+        return codificador.construir();
+    }
+
+    /**
+     * Tramo de la ruta entre los índices {@code desde} (incluido) y {@code hasta} (excluido),
+     * como subList pero codificado y en O(tramos)
+     */
+    public RutaCompacta subRuta(int desde, int hasta) {
+        if (desde < 0 || hasta > tamano || desde > hasta) {
+            throw new IndexOutOfBoundsException("Rango [" + desde + ", " + hasta + ") fuera de la ruta de " + tamano + " puntos");
+        }
+        if (desde == hasta) {
+            return VACIA;
+        }
+        if (desde == 0 && hasta == tamano) {
+            return this;
+        }
+        Punto inicio = get(desde);
+        Codificador codificador = new Codificador(inicio.getX(), inicio.getY());
+        int ultimoPedido = hasta - 1;
+        for (int tramo = 0; tramo < posicionTramo.length; tramo++) {
+            int primeroDelTramo = tramo == 0 ? 0 : ultimoIndice[tramo - 1];
+            if (primeroDelTramo >= ultimoPedido) {
+                break;
+            }
+            int cubiertos = Math.min(ultimoIndice[tramo], ultimoPedido) - Math.max(primeroDelTramo, desde);
+            if (cubiertos <= 0) {
+                continue;
+            }
+            int posicion = posicionTramo[tramo];
+            if (tipo(codificacion[posicion]) == SALTO) {
+                codificador.salto(codificacion[posicion + 1], codificacion[posicion + 2]);
+            } else {
+                codificador.tramo(tipo(codificacion[posicion]), cubiertos);
+            }
+        }
+        return codificador.construir();
+    }
+
+    /**
+     * Índice de la primera aparición de la celda en la ruta, o -1; en O(tramos)
+     */
+    public int indiceDe(int x, int y) {
+        if (tamano == 0) {
+            return -1;
+        }
+        if (codificacion[0] == x && codificacion[1] == y) {
+            return 0;
+        }
+        for (int tramo = 0; tramo < posicionTramo.length; tramo++) {
+            int posicion = posicionTramo[tramo];
+            int tipo = tipo(codificacion[posicion]);
+            if (tipo == SALTO) {
+                if (codificacion[posicion + 1] == x && codificacion[posicion + 2] == y) {
+                    return ultimoIndice[tramo];
+                }
+                continue;
+            }
+            if (tipo == REPETIR) {
+                continue;
+            }
+            int pasos;
+            if (DX[tipo] != 0) {
+                pasos = y == inicioY[tramo] ? (x - inicioX[tramo]) * DX[tipo] : 0;
+            } else {
+                pasos = x == inicioX[tramo] ? (y - inicioY[tramo]) * DY[tipo] : 0;
+            }
+            if (pasos >= 1 && pasos <= longitud(codificacion[posicion])) {
+                return (tramo == 0 ? 0 : ultimoIndice[tramo - 1]) + pasos;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(Object objeto) {
+        if (!(objeto instanceof Punto)) {
+            return -1;
+        }
+        Punto punto = (Punto) objeto;
+        return indiceDe(punto.getX(), punto.getY());
+    }
+
+    @Override
+    public boolean contains(Object objeto) {
+        return indexOf(objeto) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public Punto get(int indice) {
+        if (indice < 0 || indice >= tamano) {
+            throw new IndexOutOfBoundsException("Índice " + indice + " fuera de la ruta de " + tamano + " puntos");
+        }
+        if (indice == 0) {
+            return new Punto(codificacion[0], codificacion[1]);
+        }
+        int tramo = Arrays.binarySearch(ultimoIndice, indice);
+        if (tramo < 0) {
+            tramo = -tramo - 1;
+        }
+        int codigo = codificacion[posicionTramo[tramo]];
+        if (tipo(codigo) == SALTO) {
+            return new Punto(codificacion[posicionTramo[tramo] + 1], codificacion[posicionTramo[tramo] + 2]);
+        }
+        int avance = indice - (tramo == 0 ? 0 : ultimoIndice[tramo - 1]);
+        return new Punto(inicioX[tramo] + DX[tipo(codigo)] * avance, inicioY[tramo] + DY[tipo(codigo)] * avance);
+    }
+
+    /**
+     * Recorrido secuencial en O(1) por punto, sin búsquedas por tramo
+     */
+    @Override
+    public Iterator<Punto> iterator() {
+        return new Iterator<>() {
+            private int indice = 0;
+            private int posicion = 2;
+            private int restante = 0;
+            private int tipo;
+            private int x = tamano > 0 ? codificacion[0] : 0;
+            private int y = tamano > 0 ? codificacion[1] : 0;
+
+            @Override
+            public boolean hasNext() {
+                return indice < tamano;
+            }
+
+            @Override
+            public Punto next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (indice++ == 0) {
+                    return new Punto(x, y);
+                }
+                if (restante == 0) {
+                    int codigo = codificacion[posicion];
+                    tipo = tipo(codigo);
+                    restante = longitud(codigo);
+                    if (tipo == SALTO) {
+                        x = codificacion[posicion + 1];
+                        y = codificacion[posicion + 2];
+                        posicion += 3;
+                        restante = 0;
+                        return new Punto(x, y);
+                    }
+                    posicion++;
+                }
+                x += DX[tipo];
+                y += DY[tipo];
+                restante--;
+                return new Punto(x, y);
+            }
+        };
+    }
+
+    private int finX(int tramo) {
+        int codigo = codificacion[posicionTramo[tramo]];
+        return tipo(codigo) == SALTO
+            ? codificacion[posicionTramo[tramo] + 1]
+            : inicioX[tramo] + DX[tipo(codigo)] * longitud(codigo);
+    }
+
+    private int finY(int tramo) {
+        int codigo = codificacion[posicionTramo[tramo]];
+        return tipo(codigo) == SALTO
+            ? codificacion[posicionTramo[tramo] + 2]
+            : inicioY[tramo] + DY[tipo(codigo)] * longitud(codigo);
+    }
+
+    private static int tipoPaso(int dx, int dy) {
+        if (dx == 0 && dy == 0) {
+            return REPETIR;
+        }
+        if (dx == 0 && dy == 1) {
+            return ARRIBA;
+        }
+        if (dx == 0 && dy == -1) {
+            return ABAJO;
+        }
+        if (dx == -1 && dy == 0) {
+            return IZQUIERDA;
+        }
+        if (dx == 1 && dy == 0) {
+            return DERECHA;
+        }
+        return SALTO;
+    }
+
+    private static int tipo(int codigo) {
+        return codigo & MASCARA_TIPO;
+    }
+
+    private static int longitud(int codigo) {
+        return codigo >>> BITS_TIPO;
+    }
+
+    /**
+     * Acumula la codificación [x0, y0, tramo...] de una ruta en construcción
+     */
+    private static final class Codificador {
+        private int[] datos = new int[8];
+        private int tamano;
+
+        private Codificador(int x, int y) {
+            datos[tamano++] = x;
+            datos[tamano++] = y;
+        }
+
+        private void tramo(int tipo, int longitud) {
+            asegurarCapacidad(1);
+            datos[tamano++] = (longitud << BITS_TIPO) | tipo;
+        }
+
+        private void salto(int x, int y) {
+            asegurarCapacidad(3);
+            datos[tamano++] = (1 << BITS_TIPO) | SALTO;
+            datos[tamano++] = x;
+            datos[tamano++] = y;
+        }
+
+        private RutaCompacta construir() {
+            return new RutaCompacta(Arrays.copyOf(datos, tamano));
+        }
+
+        private void asegurarCapacidad(int adicionales) {
+            if (tamano + adicionales > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(tamano + adicionales, datos.length * 2));
+            }
+        }
+    }
+}
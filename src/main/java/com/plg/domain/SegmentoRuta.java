@@ -1,9 +1,17 @@
 package com.plg.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import com.plg.domain.enumeration.EstadoSegmento;
 import com.plg.domain.enumeration.TipoSegmento;
@@ -13,6 +21,7 @@ import com.plg.domain.enumeration.TipoSegmento;
  * Incluye pathfinding, métricas de consumo y metadatos de ejecución
  */
 @Data
+@EqualsAndHashCode(doNotUseGetters = true)  // Comparar o hashear no materializa rutas diferidas
 public class SegmentoRuta {
     
     private Punto origen;
@@ -24,7 +33,15 @@ public class SegmentoRuta {
     private Almacen almacen;        // Si es movimiento hacia almacén
     
     // Pathfinding y navegación
-    private List<Punto> rutaDetallada;  // Secuencia de puntos A* 
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile List<Punto> rutaDetallada;  // Secuencia de puntos A* 
+    
+    // Ruta diferida: solo extremos y distancia, el camino se calcula al pedirlo
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private transient volatile Supplier<List<Punto>> proveedorRutaDetallada;
     private double distanciaKm;
     private int distanciaGrid;          // Distancia en unidades de grid
     
@@ -48,7 +65,7 @@ public class SegmentoRuta {
     private String observaciones;
     
     public SegmentoRuta() {
-        this.rutaDetallada = new ArrayList<>();
+        this.rutaDetallada = RutaCompacta.VACIA;
         this.estado = EstadoSegmento.PENDIENTE;
         this.velocidadPromedio = 50.0; // km/h por defecto
     }
@@ -103,11 +120,75 @@ public class SegmentoRuta {
      * Establece la ruta detallada calculada por A* y actualiza métricas
      */
     public void establecerRutaDetallada(List<Punto> rutaCalculada) {
-        this.rutaDetallada = new ArrayList<>(rutaCalculada);
+        this.rutaDetallada = RutaCompacta.de(rutaCalculada);
         this.distanciaGrid = calcularDistanciaGrid();
         actualizarMetricas();
     }
     
+    /**
+     * Registra solo la distancia del segmento (oráculo o A*) y difiere el camino:
+     * el proveedor se ejecuta la primera vez que se pide la ruta detallada. Si devuelve
+     * null (sin ruta) el segmento queda sin camino y requiere validación especial
+     */
+    public void establecerRutaDiferida(int distanciaGrid, Supplier<List<Punto>> proveedorRuta) {
+        this.rutaDetallada = RutaCompacta.VACIA;
+        this.proveedorRutaDetallada = proveedorRuta;
+        this.distanciaGrid = distanciaGrid;
+        actualizarMetricas();
+    }
+    
+    /**
+     * Ruta detallada del segmento; si estaba diferida se calcula ahora, una sola vez, y
+     * la distancia y métricas pasan a ser las del camino obtenido
+     */
+    @JsonIgnore
+    public List<Punto> getRutaDetallada() {
+        if (proveedorRutaDetallada != null) {
+            synchronized (this) {
+                Supplier<List<Punto>> proveedor = proveedorRutaDetallada;
+                if (proveedor != null) {
+                    List<Punto> calculada = proveedor.get();
+                    if (calculada != null && !calculada.isEmpty()) {
+                        rutaDetallada = RutaCompacta.de(calculada);
+                        distanciaGrid = calcularDistanciaGrid();
+                        actualizarMetricas();
+                    } else {
+                        rutaDetallada = RutaCompacta.VACIA;
+                        requiereValidacionEspecial = true;
+                        observaciones = "Sin ruta en el mapa con el que se planificó el segmento";
+                    }
+                    proveedorRutaDetallada = null;
+                }
+            }
+        }
+        return rutaDetallada;
+    }
+    
+    /**
+     * Reemplaza la ruta detallada sin recalcular métricas y descarta una ruta diferida
+     */
+    public void setRutaDetallada(List<Punto> rutaDetallada) {
+        this.proveedorRutaDetallada = null;
+        this.rutaDetallada = RutaCompacta.de(rutaDetallada);
+    }
+    
+    /**
+     * True si el camino aún no se calculó (planificación con rutas diferidas)
+     */
+    @JsonIgnore
+    public boolean isRutaDetalladaPendiente() {
+        return proveedorRutaDetallada != null;
+    }
+    
+    /**
+     * Vista para serialización: la ruta si ya está calculada, sin forzar las diferidas
+     */
+    @JsonProperty("rutaDetallada")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Punto> getRutaDetalladaSiCalculada() {
+        return isRutaDetalladaPendiente() ? null : rutaDetallada;
+    }
+    
     /**
      * Calcula la distancia en unidades de grid (Manhattan distance)
      */
@@ -175,6 +256,7 @@ public class SegmentoRuta {
      * Obtiene el punto intermedio del segmento (útil para averías)
      */
     public Punto obtenerPuntoIntermedio(double porcentaje) {
+        List<Punto> rutaDetallada = getRutaDetallada();
         if (rutaDetallada.isEmpty()) {
             // Interpolación simple entre origen y destino
             int x = origen.getX() + (int)((destino.getX() - origen.getX()) * porcentaje);
@@ -235,7 +317,8 @@ public class SegmentoRuta {
         copia.setTipoSegmento(tipoSegmento);
         copia.setEntrega(entrega);
         copia.setAlmacen(almacen);
-        copia.setRutaDetallada(new ArrayList<>(rutaDetallada));
+        copia.setRutaDetallada(rutaDetallada);
+        copia.proveedorRutaDetallada = proveedorRutaDetallada;
         copia.setDistanciaKm(distanciaKm);
         copia.setDistanciaGrid(distanciaGrid);
         copia.setTiempoEstimadoHoras(tiempoEstimadoHoras);
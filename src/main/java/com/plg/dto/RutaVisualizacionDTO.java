@@ -119,6 +119,7 @@ public class RutaVisualizacionDTO {
         // Visualización
         private String color;
         private List<int[]> rutaDetallada; // Secuencia completa de puntos A*
+        private int[] rutaCompacta;        // Misma ruta por tramos: [x0, y0, longitud << 3 | dirección, ...]
         
         public SegmentoVisualizacionDTO() {
             this.rutaDetallada = new ArrayList<>();
@@ -167,6 +168,9 @@ public class RutaVisualizacionDTO {
         public List<int[]> getRutaDetallada() { return rutaDetallada; }
         public void setRutaDetallada(List<int[]> rutaDetallada) { this.rutaDetallada = rutaDetallada; }
         
+        public int[] getRutaCompacta() { return rutaCompacta; }
+        public void setRutaCompacta(int[] rutaCompacta) { this.rutaCompacta = rutaCompacta; }
+        
         /**
          * Métodos de utilidad para el frontend
          */
@@ -2,6 +2,7 @@ package com.plg.service;
 
 import com.plg.domain.Punto;
 import com.plg.domain.ResultadoAEstrella;
+import com.plg.service.util.TokenCancelacion;
 
 import lombok.Data;
 
@@ -17,15 +18,65 @@ public interface AEstrellaService {
     ResultadoAEstrella calcularRuta(Punto origen, Punto destino);
 
     ResultadoAEstrella calcularRuta(Punto origen, Punto destino, ConfiguracionAEstrella configuracion);
+
+    /**
+     * Ruta dentro de un ciclo de planificación: la búsqueda termina como TIMEOUT en cuanto
+     * el token se cancela o vence su plazo, aunque la tarea se ejecute en otro thread
+     */
+    ResultadoAEstrella calcularRuta(Punto origen, Punto destino, TokenCancelacion cancelacion);
+
+    /**
+     * Ruta que respeta los bloqueos temporizados según el instante de llegada a cada celda
+     * @param instanteSalida segundos epoch de salida desde el origen
+     * @param velocidadKmph velocidad del camión (0 o negativa = velocidad por defecto)
+     */
+    ResultadoAEstrella calcularRutaConHorario(Punto origen, Punto destino, long instanteSalida, double velocidadKmph);
+
+    ResultadoAEstrella calcularRutaConHorario(Punto origen, Punto destino, long instanteSalida,
+                                              double velocidadKmph, TokenCancelacion cancelacion);
+
+    /**
+     * Replanificación incremental (D* Lite) para un camión en ruta: la sesión conserva el
+     * estado de búsqueda y, al publicarse cambios de obstáculos, solo repara los nodos afectados
+     */
+    ResultadoAEstrella iniciarRutaIncremental(String idSesion, Punto origen, Punto destino);
+
+    ResultadoAEstrella replanificarRutaIncremental(String idSesion, Punto posicionActual);
+
+    void finalizarRutaIncremental(String idSesion);
     
+    /**
+     * Los pares con el mismo origen se resuelven con una sola búsqueda multi-destino;
+     * los resultados conservan el orden de los pares
+     */
     List<ResultadoAEstrella> calcularRutasParalelo(List<ParOrigenDestino> pares);
     
+    /**
+     * Rutas desde un origen común a varios destinos con una sola búsqueda multi-destino:
+     * cada ruta se reconstruye del mismo árbol de búsqueda. Un resultado por destino, en orden
+     */
+    List<ResultadoAEstrella> calcularRutasDesde(Punto origen, List<Punto> destinos);
+
+    /**
+     * Igual que {@link #calcularRutasDesde}, para pre-cálculos especulativos: las rutas no
+     * se registran como demanda en el historial de rutas frecuentes
+     */
+    List<ResultadoAEstrella> precalcularRutasDesde(Punto origen, List<Punto> destinos);
+
     CompletableFuture<ResultadoAEstrella> calcularRutaAsincrona(Punto origen, Punto destino);
 
     boolean existeRuta(Punto origen, Punto destino);
 
     int calcularDistanciaEstimada(Punto origen, Punto destino);
 
+    /**
+     * Distancias reales (en unidades de grid) desde un origen a varios destinos en una
+     * sola pasada, sin construir rutas. -1 para destinos inválidos o inalcanzables
+     */
+    int[] calcularDistanciasDesde(Punto origen, List<Punto> destinos);
+
+    int[] calcularDistanciasDesde(Punto origen, List<Punto> destinos, TokenCancelacion cancelacion);
+
     void precalcularRutasFrecuentes(List<Punto> puntosImportantes);
 
     void optimizarConfiguracion();
@@ -62,6 +113,25 @@ public interface AEstrellaService {
         }
     }
 
+    /**
+     * Implementación del bucle de búsqueda usada por el servicio
+     */
+    enum MotorBusqueda {
+        CLASICO,    // Objetos Punto/NodoAEstrella con HashMap (implementación original)
+        GRID,       // Celdas indexadas con arreglos primitivos reutilizados por thread
+        JPS,        // Jump Point Search 4-conectado sobre el grid indexado
+        JPS_PLUS,   // JPS con distancias de salto precalculadas por snapshot de obstáculos
+        HPA         // A* jerárquico por clusters (HPA*) para grids grandes; ruta casi óptima
+    }
+
+    /**
+     * Lista abierta del bucle clásico sobre objetos
+     */
+    enum TipoFrontera {
+        MONTICULO,  // PriorityQueue ordenada por f, O(log n) por operación
+        CUBETAS     // Cola por cubetas de f entero (Dial), O(1) por operación
+    }
+
     @Data
     class ConfiguracionAEstrella {
         private long timeoutMs = 5000;           // Timeout máximo por cálculo
@@ -70,11 +140,15 @@ public interface AEstrellaService {
         private boolean modoDebug = false;       // Activar debugging detallado
         private double factorHeuristica = 1.0;  // Factor de peso de la heurística
         private boolean permitirDiagonales = false; // Solo Manhattan por defecto
-        private boolean usarBusquedaBidireccional = false;
+        private boolean usarBusquedaBidireccional = false; // A* bidireccional sobre el grid indexado
         private int numeroThreads = 4;              // Número de threads del pool
         private boolean habilitarParalelizacion = true;  // Habilitar/deshabilitar paralelización
         private String prefijosNombreThread = "AEstrella-Worker";  // Prefijo para nombres de threads
         private long timeoutShutdownMs = 5000;     // Timeout para shutdown graceful
+        private MotorBusqueda motorBusqueda = MotorBusqueda.GRID; // Implementación del bucle A*
+        private boolean usarLandmarks = true;      // Heurística ALT por snapshot en los motores de grid
+        private int tamanoClusterHpa = 50;         // Lado de cluster HPA*, igual a las regiones de invalidación
+        private TipoFrontera tipoFrontera = TipoFrontera.CUBETAS; // Lista abierta del motor CLASICO
         public void setNumeroThreads(int numeroThreads) { 
             this.numeroThreads = Math.max(1, Math.min(numeroThreads, 16)); // Límite 1-16 threads
         }
@@ -85,6 +159,7 @@ public interface AEstrellaService {
             config.setMaxNodosExplorados(5000);
             config.setFactorHeuristica(1.2);
             config.setNumeroThreads(2); // ✅ NUEVO - Menos threads para cálculos rápidos
+            config.setMotorBusqueda(MotorBusqueda.JPS_PLUS);
             return config;
         }
 
@@ -111,6 +186,7 @@ public interface AEstrellaService {
         private long calculosExitosos = 0;
         private long calculosFallidos = 0;
         private long calculosDesdeCache = 0;
+        private long calculosCompartidos = 0;      // Resueltos esperando un cálculo idéntico en curso
         private double tiempoPromedioMs = 0.0;
         private double nodosPromedioExplorados = 0.0;
         private double tasaHitCache = 0.0;
@@ -2,6 +2,7 @@ package com.plg.service;
 
 import com.plg.domain.Obstaculo;
 import com.plg.repository.ObstaculoRepository;
+import com.plg.service.util.CacheRutas;
 import com.plg.service.util.GestorObstaculos;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +33,9 @@ public class ObstaculoService {
     @Autowired
     private GestorObstaculos gestorObstaculos;
     
+    @Autowired
+    private CacheRutas cacheRutas;
+    
     // Patrón mejorado para parsear el formato
     private static final Pattern PATRON_BLOQUEO = Pattern.compile(
         "(\\d{2})d(\\d{2})h(\\d{2})m-(\\d{2})d(\\d{2})h(\\d{2})m:(.+)"
@@ -214,22 +218,29 @@ public class ObstaculoService {
     }
 
     public void actualizarGestorConBloqueosActivos() {
+        actualizarGestorConBloqueosActivosEn(System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Recarga en el gestor los bloqueos activos en el instante dado (segundos epoch),
+     * publicando un solo snapshot
+     */
+    public void actualizarGestorConBloqueosActivosEn(long ahora) {
         logger.info("🔄 Actualizando gestor con bloqueos activos...");
         
         try {
-            long ahora = System.currentTimeMillis() / 1000;
             List<Obstaculo> todosLosBloqueos = obstaculoRepository.findByTipo("BLOQUEO_TEMPORAL");
             
-            // Limpiar obstáculos temporales del gestor
-            gestorObstaculos.limpiarObstaculos();
+            List<Obstaculo> activos = todosLosBloqueos.stream()
+                    .filter(bloqueo -> bloqueo.estaActivoEn(ahora))
+                    .toList();
             
-            int bloqueosActivos = 0;
-            for (Obstaculo bloqueo : todosLosBloqueos) {
-                if (bloqueo.estaActivoEn(ahora)) {
-                    agregarBloqueoAlGestor(bloqueo);
-                    bloqueosActivos++;
-                }
-            }
+            // Limpiar y recargar en un solo snapshot del gestor
+            gestorObstaculos.ejecutarEnLote(() -> {
+                gestorObstaculos.limpiarObstaculos();
+                activos.forEach(this::agregarBloqueoAlGestor);
+            });
+            int bloqueosActivos = activos.size();
             
             logger.info("✅ Gestor actualizado con {} bloqueos activos de {} totales", 
                        bloqueosActivos, todosLosBloqueos.size());
@@ -245,12 +256,22 @@ public class ObstaculoService {
             if (bloqueo.getPuntosPoligono() != null && !bloqueo.getPuntosPoligono().isEmpty()) {
                 List<int[]> puntos = parsearCoordenadas(bloqueo.getPuntosPoligono());
                 
-                // Agregar cada punto como obstáculo
+                // El bloqueo cubre los tramos entre vértices, no solo los vértices
+                List<com.plg.domain.Punto> vertices = new ArrayList<>(puntos.size());
                 for (int[] punto : puntos) {
-                    gestorObstaculos.agregarObstaculoPuntual(new com.plg.domain.Punto(punto[0], punto[1]));
+                    vertices.add(new com.plg.domain.Punto(punto[0], punto[1]));
+                }
+                if (vertices.size() > 1) {
+                    gestorObstaculos.agregarPoligonoAbierto(vertices);
+                } else {
+                    gestorObstaculos.agregarObstaculos(vertices);
                 }
                 
-                logger.debug("Agregado bloqueo con {} puntos al gestor", puntos.size());
+                // Solo se descartan las rutas en cache que cruzan alguna celda de esos tramos
+                int invalidadas = cacheRutas.invalidarRutasPorPolilinea(vertices);
+                
+                logger.debug("Agregado bloqueo con {} puntos al gestor ({} rutas invalidadas)", 
+                           puntos.size(), invalidadas);
             }
         } catch (Exception e) {
             logger.error("Error agregando bloqueo {} al gestor: {}", bloqueo.getId(), e.getMessage());
@@ -23,6 +23,7 @@ import com.plg.domain.Cliente;
 import com.plg.domain.Pedido;
 import com.plg.repository.PedidoRepository;
 import com.plg.repository.PedidoSpecifications;
+import com.plg.service.util.PrefetcherRutasPedidos;
 import org.slf4j.Logger;
 import lombok.Data;
 
@@ -38,6 +39,9 @@ public class PedidoService {
     @Autowired
     private SimulationTimeService simulationTimeService;
 
+    @Autowired
+    private PrefetcherRutasPedidos prefetcherRutas;
+
     private static final Logger logger = LoggerFactory.getLogger(PedidoService.class);
     
     public void procesarArchivoPedidos(MultipartFile file, YearMonth periodo) throws IOException {
@@ -83,6 +87,8 @@ public class PedidoService {
         }
 
         pedidoRepository.saveAll(pedidos);
+        // Rutas probables de los pedidos nuevos, en segundo plano y a medida que son visibles
+        prefetcherRutas.registrarPedidos(pedidos);
     }
 
     public List<Pedido> obtenerTodos() {
@@ -351,6 +357,7 @@ public class PedidoService {
                 pedido.setCliente(cliente);
             }
             Pedido pedidoGuardado = pedidoRepository.save(pedido);
+            prefetcherRutas.registrarPedido(pedidoGuardado);
             logger.debug("✅ Pedido guardado: ID {} - {} m³ - Prioridad: {}", 
                         pedidoGuardado.getId(), 
                         pedidoGuardado.getVolumenM3(), 
@@ -5,7 +5,9 @@ import com.plg.domain.enumeration.EstadoCamion;
 import com.plg.dto.PlanificacionGeneralRequest;
 import com.plg.dto.PlanificacionGeneralResponse;
 import com.plg.repository.*;
+import com.plg.service.util.BloqueosTemporizados;
 import com.plg.service.util.GestorObstaculosTemporales;
+import com.plg.service.util.SeguimientoRutasCamiones;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +48,9 @@ public class PlanificacionGeneralService {
     @Autowired
     private GestorObstaculosTemporales gestorObstaculosTemporales;
     
+    @Autowired
+    private SeguimientoRutasCamiones seguimientoRutas;
+    
     // Repositorios
     @Autowired
     private PedidoRepository pedidoRepository;
@@ -96,6 +101,9 @@ public class PlanificacionGeneralService {
             Map<Camion, RutaOptimizada> rutas = ejecutarPlanificacionRutas(
                 asignaciones, recursos.getAlmacenes());
             
+            // Los camiones salen con su ruta: cada uno abre su sesión de replanificación
+            seguimientoRutas.despacharRutas(rutas, tiempoSimulacion);
+            
             // ===== 5. COMPILAR RESULTADOS =====
             logger.info("5️⃣ Compilando resultados finales");
             compilarResultados(response, recursos, asignaciones, rutas);
@@ -225,8 +233,13 @@ public class PlanificacionGeneralService {
         
         logger.info("   🚧 Configurando {} bloqueos vigentes", bloqueosVigentes.size());
         
-        // Aquí el GestorObstaculosTemporales ya maneja la lógica
-        // No necesitamos hacer más configuración manual
+        // Vigentes y futuros quedan en el índice temporal: las rutas los respetan
+        // según el instante en que el camión pasa por cada celda
+        BloqueosTemporizados bloqueos = gestorObstaculosTemporales
+            .compilarBloqueosTemporizados(tiempoSimulacion);
+        
+        logger.info("   🚧 {} bloqueos con horario ({} celdas-intervalo) aplicados a la búsqueda de rutas",
+            bloqueos.getTotalBloqueos(), bloqueos.getTotalIntervalos());
     }
     
     /**
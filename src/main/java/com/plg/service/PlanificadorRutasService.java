@@ -75,6 +75,8 @@ public interface PlanificadorRutasService {
         private boolean usarOptimizacionLocal = true;
         private boolean forzarRetornoAlmacen = true;
         private double margenCombustibleSeguridad = 0.15; // 15% de margen
+        // Segmentos solo con extremos y distancia; el camino A* se calcula al pedirlo
+        private boolean diferirRutasDetalladas = false;
 
         // Configuraciones predefinidas
         public static ConfiguracionPlanificadorRutas rapida() {
@@ -83,6 +85,7 @@ public interface PlanificadorRutasService {
             config.configuracionAEstrella = AEstrellaService.ConfiguracionAEstrella.rapida();
             config.timeoutCalculoMs = 10000;
             config.numeroThreads = 2;
+            config.diferirRutasDetalladas = true;
             return config;
         }
 
@@ -168,6 +171,8 @@ public interface PlanificadorRutasService {
         // Estadísticas A*
         private long totalCalculosAEstrella = 0;
         private double tiempoPromedioAEstrellaMs = 0.0;
+        private long busquedasFilaDistancias = 0;    // Filas de matriz con una búsqueda multi-destino
+        private long distanciasDesdeOraculo = 0;     // Segmentos medidos sin búsqueda (tabla o campo)
 
         // Estadísticas de paralelización
         private long calculosParalelos = 0;
@@ -179,7 +184,6 @@ public interface PlanificadorRutasService {
         private double indiceOptimizacionPromedio = 0.0;
 
         // Estado del sistema
-        private int rutasEnCache = 0;
         private int threadPoolSize = 0;
         private long memoriaTotalUtilizadaKb = 0;
 
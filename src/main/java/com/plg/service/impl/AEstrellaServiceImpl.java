@@ -4,8 +4,13 @@ import com.plg.domain.Punto;
 import com.plg.domain.ResultadoAEstrella;
 import com.plg.domain.enumeration.TipoError;
 import com.plg.service.AEstrellaService;
+import com.plg.service.util.ColaCubetas;
+import com.plg.service.util.DistanciaOracle;
 import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import com.plg.service.util.ReplanificadorDStarLite;
 import com.plg.service.util.ObjectPoolService;
+import com.plg.service.util.TokenCancelacion;
 
 import jakarta.annotation.PreDestroy;
 import lombok.Data;
@@ -20,6 +25,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.concurrent.ThreadFactory;
@@ -46,6 +52,12 @@ public class AEstrellaServiceImpl implements AEstrellaService {
     private CacheRutas cacheRutas;
     @Autowired
     private CacheRutasWarmup cacheWarmup;
+    @Autowired
+    private MotorAEstrellaGrid motorGrid;
+    @Autowired
+    private DistanciaOracle distanciaOracle;
+    @Autowired
+    private ReplanificadorDStarLite replanificador;
     // Configuración
     private ConfiguracionAEstrella configuracion;
     
@@ -61,6 +73,10 @@ public class AEstrellaServiceImpl implements AEstrellaService {
     private final AtomicLong tiempoTotalMs = new AtomicLong(0);
     private final AtomicLong nodesTotalExplorados = new AtomicLong(0);
     private final AtomicLong calculosParalelos = new AtomicLong(0);
+    private final AtomicLong calculosCompartidos = new AtomicLong(0);
+    
+    // Single-flight: cálculos en curso por par origen-destino, compartidos por los llamadores concurrentes
+    private final Map<ClaveCalculo, CalculoEnCurso> calculosEnCurso = new ConcurrentHashMap<>();
     // Pool de objetos para reducir GC pressure
     private final Queue<NodoAEstrella> nodoPool = new ArrayDeque<>();
     // Pool para objetos Punto 
@@ -117,11 +133,27 @@ public class AEstrellaServiceImpl implements AEstrellaService {
     
     @Override
     public ResultadoAEstrella calcularRuta(Punto origen, Punto destino, ConfiguracionAEstrella config) {
+        return calcularRuta(origen, destino, config, TokenCancelacion.NINGUNO);
+    }
+    
+    @Override
+    public ResultadoAEstrella calcularRuta(Punto origen, Punto destino, TokenCancelacion cancelacion) {
+        return calcularRuta(origen, destino, configuracion, cancelacion);
+    }
+    
+    private ResultadoAEstrella calcularRuta(Punto origen, Punto destino, ConfiguracionAEstrella config,
+                                            TokenCancelacion cancelacion) {
         totalCalculos.incrementAndGet();
         long tiempoInicio = System.currentTimeMillis();
         cacheWarmup.registrarRutaSolicitada(origen, destino);
         logger.debug("Calculando ruta A*: {} -> {}", origen, destino);
         
+        // Tareas encoladas de un ciclo ya vencido no llegan a buscar
+        if (cancelacion.estaCancelado()) {
+            calculosFallidos.incrementAndGet();
+            return resultadoCancelado(origen, destino);
+        }
+        
         // Validaciones previas
         ResultadoAEstrella validacion = validarEntrada(origen, destino);
         if (validacion != null) {
@@ -139,8 +171,41 @@ public class AEstrellaServiceImpl implements AEstrellaService {
             }
         }
         
+        // Con la configuración por defecto (la de los planificadores) se comparten los cálculos en curso;
+        // otras configuraciones pueden dar resultados distintos para el mismo par
+        if (config != configuracion) {
+            return calcularSinCache(origen, destino, config, tiempoInicio, cancelacion);
+        }
+        
+        ClaveCalculo clave = new ClaveCalculo(origen, destino);
+        CalculoEnCurso propio = new CalculoEnCurso(cancelacion);
+        CalculoEnCurso enCurso = calculosEnCurso.putIfAbsent(clave, propio);
+        if (enCurso != null) {
+            ResultadoAEstrella compartido = esperarCalculoEnCurso(enCurso, origen, destino, cancelacion);
+            if (compartido != null) {
+                return compartido;
+            }
+            // El cálculo compartido se canceló con su ciclo, pero el de este llamador sigue vigente
+            return calcularSinCache(origen, destino, config, tiempoInicio, cancelacion);
+        }
+        
+        try {
+            ResultadoAEstrella resultado = calcularSinCache(origen, destino, config, tiempoInicio, cancelacion);
+            propio.resultado.complete(resultado);
+            return resultado;
+        } catch (RuntimeException e) {
+            propio.resultado.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Resuelto el cálculo, los llamadores siguientes vuelven a consultar la cache
+            calculosEnCurso.remove(clave, propio);
+        }
+    }
+    
+    private ResultadoAEstrella calcularSinCache(Punto origen, Punto destino, ConfiguracionAEstrella config,
+                                                long tiempoInicio, TokenCancelacion cancelacion) {
         // Ejecutar algoritmo A*
-        ResultadoAEstrella resultado = ejecutarAEstrella(origen, destino, config, tiempoInicio);
+        ResultadoAEstrella resultado = ejecutarAEstrella(origen, destino, config, tiempoInicio, cancelacion);
         
         // Actualizar estadísticas
         if (resultado.isCalculoExitoso()) {
@@ -162,32 +227,151 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         return resultado;
     }
     
+    /**
+     * Espera el cálculo de otro llamador hasta el plazo propio. Devuelve null si ese cálculo
+     * falló o se canceló con su ciclo mientras el token de este llamador sigue vigente
+     */
+    private ResultadoAEstrella esperarCalculoEnCurso(CalculoEnCurso enCurso, Punto origen, Punto destino,
+                                                     TokenCancelacion cancelacion) {
+        ResultadoAEstrella original;
+        try {
+            original = enCurso.resultado.get(cancelacion.tiempoRestanteMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            calculosFallidos.incrementAndGet();
+            return resultadoCancelado(origen, destino);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+        if (!original.isCalculoExitoso() && enCurso.cancelacion.estaCancelado() && !cancelacion.estaCancelado()) {
+            return null;
+        }
+        
+        calculosCompartidos.incrementAndGet();
+        if (original.isCalculoExitoso()) {
+            calculosExitosos.incrementAndGet();
+        } else {
+            calculosFallidos.incrementAndGet();
+        }
+        logger.debug("Ruta A* compartida con un cálculo en curso: {} -> {}", origen, destino);
+        return original.clonar();
+    }
+    
+    @Override
+    public ResultadoAEstrella calcularRutaConHorario(Punto origen, Punto destino,
+                                                     long instanteSalida, double velocidadKmph) {
+        return calcularRutaConHorario(origen, destino, instanteSalida, velocidadKmph, TokenCancelacion.NINGUNO);
+    }
+    
+    @Override
+    public ResultadoAEstrella calcularRutaConHorario(Punto origen, Punto destino, long instanteSalida,
+                                                     double velocidadKmph, TokenCancelacion cancelacion) {
+        int segundosPorCelda = MotorAEstrellaGrid.segundosPorCelda(velocidadKmph);
+        
+        // Sin bloqueos temporizados el horario no cambia la ruta: se reutiliza la ruta estática (y su cache)
+        if (gestorObstaculos.obtenerBloqueosTemporizados().estaVacio()) {
+            ResultadoAEstrella resultado = calcularRuta(origen, destino, cancelacion);
+            if (resultado.isRutaExiste()) {
+                resultado.setInstanteLlegada(instanteSalida + (long) resultado.getDistanciaGrid() * segundosPorCelda);
+            }
+            return resultado;
+        }
+        
+        totalCalculos.incrementAndGet();
+        long tiempoInicio = System.currentTimeMillis();
+        
+        if (cancelacion.estaCancelado()) {
+            calculosFallidos.incrementAndGet();
+            return resultadoCancelado(origen, destino);
+        }
+        
+        ResultadoAEstrella validacion = validarEntrada(origen, destino);
+        if (validacion != null) {
+            calculosFallidos.incrementAndGet();
+            validacion.setInstanteLlegada(instanteSalida);
+            return validacion;
+        }
+        
+        return registrarResultado(motorGrid.buscarConHorario(
+            origen, destino, instanteSalida, velocidadKmph, configuracion, tiempoInicio, cancelacion));
+    }
+    
+    @Override
+    public ResultadoAEstrella iniciarRutaIncremental(String idSesion, Punto origen, Punto destino) {
+        totalCalculos.incrementAndGet();
+        ResultadoAEstrella validacion = validarEntrada(origen, destino);
+        if (validacion != null) {
+            calculosFallidos.incrementAndGet();
+            return validacion;
+        }
+        return registrarResultado(replanificador.iniciar(idSesion, origen, destino, configuracion));
+    }
+    
+    @Override
+    public ResultadoAEstrella replanificarRutaIncremental(String idSesion, Punto posicionActual) {
+        totalCalculos.incrementAndGet();
+        if (!gestorObstaculos.isMapaInicializado()) {
+            calculosFallidos.incrementAndGet();
+            return ResultadoAEstrella.fallido(posicionActual, posicionActual, TipoError.MAPA_NO_DISPONIBLE, 
+                "Mapa de obstáculos no inicializado");
+        }
+        return registrarResultado(replanificador.replanificar(idSesion, posicionActual, configuracion));
+    }
+    
+    @Override
+    public void finalizarRutaIncremental(String idSesion) {
+        replanificador.finalizar(idSesion);
+    }
+    
+    private ResultadoAEstrella registrarResultado(ResultadoAEstrella resultado) {
+        if (resultado.isCalculoExitoso()) {
+            calculosExitosos.incrementAndGet();
+            tiempoTotalMs.addAndGet(resultado.getTiempoCalculoMs());
+            nodesTotalExplorados.addAndGet(resultado.getNodosExplorados());
+        } else {
+            calculosFallidos.incrementAndGet();
+        }
+        return resultado;
+    }
+    
     @Override
     public List<ResultadoAEstrella> calcularRutasParalelo(List<ParOrigenDestino> pares) {
         logger.info("Calculando {} rutas en paralelo", pares.size());
         
+        // Pares con origen común (almacén -> clientes): una búsqueda multi-destino por grupo
+        List<List<Integer>> grupos = agruparPorOrigen(pares);
+        
         // Verificar si paralelización está habilitada - FALLBACK
-        if (!configuracion.isHabilitarParalelizacion() || pares.size() == 1) {
+        if (!configuracion.isHabilitarParalelizacion() || grupos.size() == 1) {
             logger.debug("Paralelización deshabilitada o pocos elementos, ejecutando secuencial");
-            return pares.stream()
-                .map(par -> calcularRuta(par.getOrigen(), par.getDestino()))
-                .toList();
+            return calcularGruposSecuencial(pares, grupos);
         }
         
         calculosParalelos.addAndGet(pares.size());
         
+        // Timeout global configurable (por defecto 30 segundos)
+        long timeoutGlobal = configuracion.getTimeoutMs() * pares.size() / 4; // 25% del tiempo total
+        timeoutGlobal = Math.max(timeoutGlobal, 10000); // Mínimo 10 segundos
+        
+        // future.cancel(true) no detiene las tareas de supplyAsync: el token sí detiene las búsquedas
+        TokenCancelacion lote = TokenCancelacion.conPlazo(timeoutGlobal);
+        
         // C) SINCRONIZACIÓN Y AGREGACIÓN - CompletableFuture.allOf()
-        List<CompletableFuture<ResultadoAEstrella>> futures = pares.stream()
-            .map(par -> CompletableFuture.supplyAsync(() -> {
+        List<CompletableFuture<List<ResultadoAEstrella>>> futures = grupos.stream()
+            .map(grupo -> CompletableFuture.supplyAsync(() -> {
                 try {
-                    return calcularRuta(par.getOrigen(), par.getDestino());
+                    return calcularGrupo(pares, grupo, lote);
                 } catch (Exception e) {
-                    logger.error("Error en cálculo A* paralelo: {} -> {} - {}", 
-                        par.getOrigen(), par.getDestino(), e.getMessage());
-                    return ResultadoAEstrella.fallido(
-                        par.getOrigen(), par.getDestino(), 
-                        TipoError.ERROR_INTERNO, 
-                        "Error en task paralelo: " + e.getMessage());
+                    logger.error("Error en cálculo A* paralelo desde {} - {}", 
+                        pares.get(grupo.get(0)).getOrigen(), e.getMessage());
+                    return grupo.stream()
+                        .map(i -> ResultadoAEstrella.fallido(
+                            pares.get(i).getOrigen(), pares.get(i).getDestino(), 
+                            TipoError.ERROR_INTERNO, 
+                            "Error en task paralelo: " + e.getMessage()))
+                        .toList();
                 }
             }, executorService))
             .collect(Collectors.toList());
@@ -198,29 +382,28 @@ public class AEstrellaServiceImpl implements AEstrellaService {
             CompletableFuture<Void> todosFutures = CompletableFuture.allOf(
                 futures.toArray(new CompletableFuture[0]));
             
-            // Timeout global configurable (por defecto 30 segundos)
-            long timeoutGlobal = configuracion.getTimeoutMs() * pares.size() / 4; // 25% del tiempo total
-            timeoutGlobal = Math.max(timeoutGlobal, 10000); // Mínimo 10 segundos
-            
             todosFutures.get(timeoutGlobal, TimeUnit.MILLISECONDS);
             
             // Result collection - Todos completados exitosamente
-            List<ResultadoAEstrella> resultados = futures.stream()
-                .map(CompletableFuture::join) // Safe join ya que sabemos que están completos
-                .collect(Collectors.toList());
+            ResultadoAEstrella[] resultados = new ResultadoAEstrella[pares.size()];
+            for (int g = 0; g < grupos.size(); g++) {
+                ubicarResultados(resultados, grupos.get(g), futures.get(g).join());
+            }
             
-            logger.info("Cálculo paralelo completado: {}/{} exitosos", 
-                resultados.stream().mapToInt(r -> r.isCalculoExitoso() ? 1 : 0).sum(),
-                resultados.size());
+            logger.info("Cálculo paralelo completado: {}/{} exitosos en {} búsquedas", 
+                Arrays.stream(resultados).mapToInt(r -> r.isCalculoExitoso() ? 1 : 0).sum(),
+                resultados.length, grupos.size());
             
-            return resultados;
+            return Arrays.asList(resultados);
             
         } catch (TimeoutException e) {
             // Error aggregation - Timeout global
             logger.warn("Timeout global en cálculo paralelo ({}ms), recolectando resultados parciales", 
-                configuracion.getTimeoutMs() * pares.size() / 4);
+                timeoutGlobal);
             
-            return recolectarResultadosParciales(futures, pares);
+            // Las búsquedas en curso terminan en su próxima verificación y liberan los threads
+            lote.cancelar();
+            return recolectarResultadosParciales(futures, grupos, pares);
             
         } catch (ExecutionException | InterruptedException e) {
             // Error aggregation - Error en algún cálculo
@@ -228,47 +411,213 @@ public class AEstrellaServiceImpl implements AEstrellaService {
             
             // Fallback - Si paralelización falla completamente, ejecutar secuencialmente
             logger.info("Fallback: ejecutando {} cálculos secuencialmente", pares.size());
-            return pares.stream()
-                .map(par -> calcularRuta(par.getOrigen(), par.getDestino()))
-                .collect(Collectors.toList());
+            return calcularGruposSecuencial(pares, grupos);
+        }
+    }
+    
+    /**
+     * Índices de los pares agrupados por origen, en orden de primera aparición
+     */
+    private List<List<Integer>> agruparPorOrigen(List<ParOrigenDestino> pares) {
+        Map<Punto, List<Integer>> grupos = new LinkedHashMap<>();
+        for (int i = 0; i < pares.size(); i++) {
+            grupos.computeIfAbsent(pares.get(i).getOrigen(), origen -> new ArrayList<>()).add(i);
+        }
+        return new ArrayList<>(grupos.values());
+    }
+    
+    private List<ResultadoAEstrella> calcularGrupo(List<ParOrigenDestino> pares, List<Integer> grupo,
+                                                   TokenCancelacion cancelacion) {
+        ParOrigenDestino primero = pares.get(grupo.get(0));
+        if (grupo.size() == 1) {
+            return List.of(calcularRuta(primero.getOrigen(), primero.getDestino(), cancelacion));
+        }
+        List<Punto> destinos = grupo.stream().map(i -> pares.get(i).getDestino()).toList();
+        return calcularRutasDesde(primero.getOrigen(), destinos, cancelacion, true);
+    }
+    
+    private List<ResultadoAEstrella> calcularGruposSecuencial(List<ParOrigenDestino> pares,
+                                                              List<List<Integer>> grupos) {
+        ResultadoAEstrella[] resultados = new ResultadoAEstrella[pares.size()];
+        for (List<Integer> grupo : grupos) {
+            ubicarResultados(resultados, grupo, calcularGrupo(pares, grupo, TokenCancelacion.NINGUNO));
         }
+        return Arrays.asList(resultados);
     }
+    
+    private static void ubicarResultados(ResultadoAEstrella[] resultados, List<Integer> grupo,
+                                         List<ResultadoAEstrella> resultadosGrupo) {
+        for (int k = 0; k < grupo.size(); k++) {
+            resultados[grupo.get(k)] = resultadosGrupo.get(k);
+        }
+    }
+    
     /**
      * Result collection parcial cuando hay timeout
      */
     private List<ResultadoAEstrella> recolectarResultadosParciales(
-            List<CompletableFuture<ResultadoAEstrella>> futures, 
+            List<CompletableFuture<List<ResultadoAEstrella>>> futures, 
+            List<List<Integer>> grupos,
             List<ParOrigenDestino> pares) {
         
-        List<ResultadoAEstrella> resultados = new ArrayList<>();
+        ResultadoAEstrella[] resultados = new ResultadoAEstrella[pares.size()];
         
-        for (int i = 0; i < futures.size(); i++) {
-            CompletableFuture<ResultadoAEstrella> future = futures.get(i);
-            ParOrigenDestino par = pares.get(i);
+        for (int g = 0; g < futures.size(); g++) {
+            CompletableFuture<List<ResultadoAEstrella>> future = futures.get(g);
+            List<Integer> grupo = grupos.get(g);
             
             try {
                 // Timeout individual de 100ms para recolección rápida
-                ResultadoAEstrella resultado = future.get(100, TimeUnit.MILLISECONDS);
-                resultados.add(resultado);
+                ubicarResultados(resultados, grupo, future.get(100, TimeUnit.MILLISECONDS));
                 
             } catch (TimeoutException | ExecutionException | InterruptedException e) {
                 // Cancelar future pendiente
                 future.cancel(true);
                 
                 // Crear resultado de timeout
-                ResultadoAEstrella resultadoTimeout = ResultadoAEstrella.fallido(
-                    par.getOrigen(), par.getDestino(), 
-                    TipoError.TIMEOUT, "Timeout en recolección parcial");
-                resultados.add(resultadoTimeout);
+                for (int i : grupo) {
+                    ParOrigenDestino par = pares.get(i);
+                    resultados[i] = ResultadoAEstrella.fallido(
+                        par.getOrigen(), par.getDestino(), 
+                        TipoError.TIMEOUT, "Timeout en recolección parcial");
+                }
             }
         }
         
         logger.info("Recolección parcial completada: {}/{} resultados obtenidos", 
-            resultados.stream().mapToInt(r -> r.isCalculoExitoso() ? 1 : 0).sum(),
-            resultados.size());
+            Arrays.stream(resultados).mapToInt(r -> r.isCalculoExitoso() ? 1 : 0).sum(),
+            resultados.length);
+        
+        return Arrays.asList(resultados);
+    }
+    
+    @Override
+    public List<ResultadoAEstrella> calcularRutasDesde(Punto origen, List<Punto> destinos) {
+        return calcularRutasDesde(origen, destinos, TokenCancelacion.NINGUNO, true);
+    }
+    
+    @Override
+    public List<ResultadoAEstrella> precalcularRutasDesde(Punto origen, List<Punto> destinos) {
+        return calcularRutasDesde(origen, destinos, TokenCancelacion.NINGUNO, false);
+    }
+    
+    /**
+     * Resuelve primero lo trivial, inválido o presente en cache. Los destinos restantes se
+     * registran en {@code calculosEnCurso} como cualquier cálculo individual: los que ya
+     * calcula otro llamador se esperan, y el resto comparte una sola búsqueda multi-destino
+     * (o un A* normal si queda uno solo). La búsqueda multi-destino es una BFS sobre el grid
+     * indexado, independiente de {@code motorBusqueda}: da rutas de longitud mínima, como
+     * los motores exactos, aunque el motor configurado sea HPA. Los pre-cálculos
+     * especulativos pasan {@code registrarDemanda = false} para no inflar el historial
+     */
+    private List<ResultadoAEstrella> calcularRutasDesde(Punto origen, List<Punto> destinos,
+                                                        TokenCancelacion cancelacion, boolean registrarDemanda) {
+        long tiempoInicio = System.currentTimeMillis();
+        totalCalculos.addAndGet(destinos.size());
+        ResultadoAEstrella[] resultados = new ResultadoAEstrella[destinos.size()];
+        List<Integer> pendientes = new ArrayList<>();
+        
+        for (int i = 0; i < destinos.size(); i++) {
+            Punto destino = destinos.get(i);
+            if (registrarDemanda) {
+                cacheWarmup.registrarRutaSolicitada(origen, destino);
+            }
+            if (cancelacion.estaCancelado()) {
+                calculosFallidos.incrementAndGet();
+                resultados[i] = resultadoCancelado(origen, destino);
+                continue;
+            }
+            ResultadoAEstrella validacion = validarEntrada(origen, destino);
+            if (validacion != null) {
+                calculosFallidos.incrementAndGet();
+                resultados[i] = validacion;
+                continue;
+            }
+            if (configuracion.isUsarCache()) {
+                Optional<List<Punto>> rutaCache = cacheRutas.obtenerRuta(origen, destino);
+                if (rutaCache.isPresent()) {
+                    calculosDesdeCache.incrementAndGet();
+                    calculosExitosos.incrementAndGet();
+                    resultados[i] = ResultadoAEstrella.desdeCache(origen, destino, rutaCache.get());
+                    continue;
+                }
+            }
+            pendientes.add(i);
+        }
+        
+        // Single-flight: se calculan solo los destinos que nadie está calculando ya
+        List<Integer> propios = new ArrayList<>();
+        List<CalculoEnCurso> calculosPropios = new ArrayList<>();
+        Map<Integer, CalculoEnCurso> ajenos = new LinkedHashMap<>();
+        for (int i : pendientes) {
+            CalculoEnCurso propio = new CalculoEnCurso(cancelacion);
+            CalculoEnCurso enCurso = calculosEnCurso.putIfAbsent(new ClaveCalculo(origen, destinos.get(i)), propio);
+            if (enCurso != null) {
+                ajenos.put(i, enCurso);
+            } else {
+                propios.add(i);
+                calculosPropios.add(propio);
+            }
+        }
+        
+        try {
+            calcularLote(origen, destinos, propios, resultados, tiempoInicio, cancelacion);
+            for (int k = 0; k < propios.size(); k++) {
+                calculosPropios.get(k).resultado.complete(resultados[propios.get(k)]);
+            }
+        } catch (RuntimeException e) {
+            calculosPropios.forEach(propio -> propio.resultado.completeExceptionally(e));
+            throw e;
+        } finally {
+            for (int k = 0; k < propios.size(); k++) {
+                calculosEnCurso.remove(new ClaveCalculo(origen, destinos.get(propios.get(k))), calculosPropios.get(k));
+            }
+        }
         
-        return resultados;
-    }        
+        for (Map.Entry<Integer, CalculoEnCurso> ajeno : ajenos.entrySet()) {
+            Punto destino = destinos.get(ajeno.getKey());
+            ResultadoAEstrella compartido = esperarCalculoEnCurso(ajeno.getValue(), origen, destino, cancelacion);
+            resultados[ajeno.getKey()] = compartido != null
+                ? compartido
+                : calcularSinCache(origen, destino, configuracion, tiempoInicio, cancelacion);
+        }
+        
+        return Arrays.asList(resultados);
+    }
+    
+    /**
+     * Calcula los destinos indicados con una búsqueda multi-destino (o A* si es uno solo)
+     * y deja cada resultado en su posición
+     */
+    private void calcularLote(Punto origen, List<Punto> destinos, List<Integer> pendientes,
+                              ResultadoAEstrella[] resultados, long tiempoInicio, TokenCancelacion cancelacion) {
+        if (pendientes.size() == 1) {
+            int i = pendientes.get(0);
+            resultados[i] = calcularSinCache(origen, destinos.get(i), configuracion, tiempoInicio, cancelacion);
+        } else if (!pendientes.isEmpty()) {
+            List<Punto> destinosPendientes = pendientes.stream().map(destinos::get).toList();
+            List<ResultadoAEstrella> calculados = motorGrid.buscarDesdeOrigen(
+                origen, destinosPendientes, configuracion, tiempoInicio, cancelacion);
+            
+            // Una sola búsqueda: tiempo y nodos se contabilizan una vez para todo el grupo
+            tiempoTotalMs.addAndGet(System.currentTimeMillis() - tiempoInicio);
+            nodesTotalExplorados.addAndGet(calculados.stream().mapToInt(ResultadoAEstrella::getNodosExplorados).max().orElse(0));
+            for (int k = 0; k < pendientes.size(); k++) {
+                ResultadoAEstrella resultado = calculados.get(k);
+                if (resultado.isCalculoExitoso()) {
+                    calculosExitosos.incrementAndGet();
+                    if (configuracion.isUsarCache() && resultado.isRutaOptima()) {
+                        cacheRutas.almacenarRuta(origen, resultado.getDestino(), resultado.getRutaEncontrada());
+                    }
+                } else {
+                    calculosFallidos.incrementAndGet();
+                }
+                resultados[pendientes.get(k)] = resultado;
+            }
+            logger.debug("Rutas desde {}: {} destinos resueltos con una búsqueda", origen, pendientes.size());
+        }
+    }
+    
     @Override
     public CompletableFuture<ResultadoAEstrella> calcularRutaAsincrona(Punto origen, Punto destino) {
         return CompletableFuture.supplyAsync(() -> calcularRuta(origen, destino), executorService);
@@ -303,10 +652,38 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         return origen.distanciaManhattanHasta(destino);
     }
     
+    @Override
+    public int[] calcularDistanciasDesde(Punto origen, List<Punto> destinos) {
+        return calcularDistanciasDesde(origen, destinos, TokenCancelacion.NINGUNO);
+    }
+    
+    @Override
+    public int[] calcularDistanciasDesde(Punto origen, List<Punto> destinos, TokenCancelacion cancelacion) {
+        int[] distancias = new int[destinos.size()];
+        if (!gestorObstaculos.isMapaInicializado()) {
+            Arrays.fill(distancias, -1);
+            return distancias;
+        }
+        
+        // Con oráculo disponible cada distancia es una consulta O(1)
+        if (distanciaOracle.estaDisponible()) {
+            for (int i = 0; i < distancias.length; i++) {
+                distancias[i] = Math.max(-1, distanciaOracle.distancia(origen, destinos.get(i)));
+            }
+            return distancias;
+        }
+        
+        long limiteTiempo = System.currentTimeMillis() + configuracion.getTimeoutMs();
+        return motorGrid.calcularDistanciasDesde(origen, destinos, limiteTiempo, cancelacion);
+    }
+    
     @Override
     public void precalcularRutasFrecuentes(List<Punto> puntosImportantes) {
         logger.info("Pre-calculando rutas frecuentes entre {} puntos", puntosImportantes.size());
         
+        // Los puntos frecuentes (almacenes) son buenos landmarks para la heurística ALT
+        motorGrid.configurarLandmarks(puntosImportantes);
+        
         List<ParOrigenDestino> paresPrecalculo = new ArrayList<>();
         
         // Generar todos los pares de puntos importantes
@@ -354,6 +731,7 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         stats.setCalculosExitosos(calculosExitosos.get());
         stats.setCalculosFallidos(calculosFallidos.get());
         stats.setCalculosDesdeCache(calculosDesdeCache.get());
+        stats.setCalculosCompartidos(calculosCompartidos.get());
         
         if (total > 0) {
             stats.setTiempoPromedioMs((double) tiempoTotalMs.get() / (total - calculosDesdeCache.get()));
@@ -412,6 +790,7 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         calculosExitosos.set(0);
         calculosFallidos.set(0);
         calculosDesdeCache.set(0);
+        calculosCompartidos.set(0);
         tiempoTotalMs.set(0);
         nodesTotalExplorados.set(0);
         
@@ -422,6 +801,11 @@ public class AEstrellaServiceImpl implements AEstrellaService {
     
     // Métodos privados - Implementación del algoritmo A*
     
+    private ResultadoAEstrella resultadoCancelado(Punto origen, Punto destino) {
+        return ResultadoAEstrella.fallido(origen, destino, TipoError.TIMEOUT,
+            "Cálculo cancelado: el ciclo de planificación venció o fue cancelado");
+    }
+    
     private ResultadoAEstrella validarEntrada(Punto origen, Punto destino) {
         if (origen == null || destino == null) {
             return ResultadoAEstrella.fallido(origen, destino, TipoError.CONFIGURACION_INVALIDA, 
@@ -452,8 +836,8 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         return null; // Validación pasada
     }
     
-    private ResultadoAEstrella ejecutarAEstrella(Punto origen, Punto destino, 
-                                               ConfiguracionAEstrella config, long tiempoInicio) {
+    private ResultadoAEstrella ejecutarAEstrella(Punto origen, Punto destino, ConfiguracionAEstrella config,
+                                               long tiempoInicio, TokenCancelacion cancelacion) {
         
         // � Log del inicio de cálculo
         logger.info("🗺️ INICIANDO A* desde ({},{}) hacia ({},{})", 
@@ -461,7 +845,11 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         
         // Si está habilitada la búsqueda bidireccional, usar ese algoritmo
         if (config.isUsarBusquedaBidireccional()) {
-            return ejecutarAEstrellaBidireccional(origen, destino, config, tiempoInicio);
+            return motorGrid.buscarBidireccional(origen, destino, config, tiempoInicio, cancelacion);
+        }
+        
+        if (config.getMotorBusqueda() != MotorBusqueda.CLASICO) {
+            return motorGrid.buscar(origen, destino, config, tiempoInicio, cancelacion);
         }
         
         ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
@@ -470,10 +858,7 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         int distanciaEstimada = origen.distanciaManhattanHasta(destino);
         int capacidadEstimada = Math.min(distanciaEstimada * 3, config.getMaxNodosExplorados());
     
-        PriorityQueue<NodoAEstrella> frontera = new PriorityQueue<>(
-            Math.max(16, capacidadEstimada / 10), 
-            Comparator.comparingDouble(NodoAEstrella::getF)
-        );
+        Queue<NodoAEstrella> frontera = crearFrontera(config, Math.max(16, capacidadEstimada / 10));
         Set<Punto> visitados = new HashSet<>(capacidadEstimada);
         Map<Punto, Integer> costosG = new HashMap<>(capacidadEstimada);
         Map<Punto, Punto> padres = new HashMap<>(capacidadEstimada);
@@ -486,6 +871,7 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         int nodosExplorados = 0;
         boolean timeoutAlcanzado = false;
         boolean limiteProfundidadAlcanzado = false;
+        long limiteTiempo = tiempoInicio + config.getTimeoutMs();
         
         // 🔥 Log de inicialización
         logger.info("⚡ INICIALIZACIÓN A*: Distancia estimada: {} unidades, Capacidad frontera: {}", 
@@ -494,8 +880,8 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         // Bucle principal del algoritmo A*
         while (!frontera.isEmpty() && !timeoutAlcanzado && !limiteProfundidadAlcanzado) {
             
-            // Verificar timeout
-            if (System.currentTimeMillis() - tiempoInicio > config.getTimeoutMs()) {
+            // Verificar timeout (propio o del ciclo de planificación)
+            if (cancelacion.debeDetenerse(limiteTiempo)) {
                 timeoutAlcanzado = true;
                 break;
             }
@@ -511,8 +897,8 @@ public class AEstrellaServiceImpl implements AEstrellaService {
             Punto puntoActual = actual.getPunto();
             liberarNodo(actual);
             
-            // Si ya fue visitado, continuar
-            if (visitados.contains(puntoActual)) {
+            // Entrada obsoleta (decrease-key perezoso): ya se insertó una con menor g
+            if (actual.getG() != costosG.get(puntoActual)) {
                 continue;
             }
             
@@ -548,7 +934,7 @@ public class AEstrellaServiceImpl implements AEstrellaService {
                 return resultado;
             }
             
-            // Explorar vecinos con Jump Point Search para líneas rectas
+            // Explorar vecinos Manhattan (JPS disponible en los motores JPS/JPS_PLUS)
             List<Punto> vecinosOptimizados = obtenerVecinosSimples(puntoActual);
             
             // 🔥 Log de vecinos encontrados
@@ -691,50 +1077,6 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         return "ESTÁTICO";
     }
 
-    private ResultadoAEstrella ejecutarAEstrellaBidireccional(Punto origen, Punto destino, 
-                                                            ConfiguracionAEstrella config, long tiempoInicio) {
-        
-        // Inicializar búsquedas desde ambos extremos
-        Map<Punto, Integer> costosDesdeOrigen = new HashMap<>();
-        Map<Punto, Integer> costosDesdeDestino = new HashMap<>();
-        Map<Punto, Punto> padresOrigen = new HashMap<>();
-        Map<Punto, Punto> padresDestino = new HashMap<>();
-        
-        PriorityQueue<NodoAEstrella> fronteraOrigen = new PriorityQueue<>(Comparator.comparingDouble(NodoAEstrella::getF));
-        PriorityQueue<NodoAEstrella> fronteraDestino = new PriorityQueue<>(Comparator.comparingDouble(NodoAEstrella::getF));
-        
-        Set<Punto> visitadosOrigen = new HashSet<>();
-        Set<Punto> visitadosDestino = new HashSet<>();
-        
-        // Inicializar nodos de partida
-        fronteraOrigen.add(new NodoAEstrella(origen, 0, calcularH(origen, destino, config)));
-        fronteraDestino.add(new NodoAEstrella(destino, 0, calcularH(destino, origen, config)));
-        
-        costosDesdeOrigen.put(origen, 0);
-        costosDesdeDestino.put(destino, 0);
-        
-        Punto puntoEncontrado = null;
-        
-        while (!fronteraOrigen.isEmpty() && !fronteraDestino.isEmpty() && puntoEncontrado == null) {
-            // Alternar entre búsquedas
-            if (fronteraOrigen.size() <= fronteraDestino.size()) {
-                puntoEncontrado = expandirFrontera(fronteraOrigen, visitadosOrigen, costosDesdeOrigen, 
-                                                padresOrigen, visitadosDestino, destino, config, true);
-            } else {
-                puntoEncontrado = expandirFrontera(fronteraDestino, visitadosDestino, costosDesdeDestino, 
-                                                padresDestino, visitadosOrigen, origen, config, false);
-            }
-        }
-        
-        if (puntoEncontrado != null) {
-            // Reconstruir ruta combinando ambas búsquedas
-            List<Punto> rutaCompleta = reconstruirRutaBidireccional(padresOrigen, padresDestino, puntoEncontrado);
-            return ResultadoAEstrella.exitoso(origen, destino, rutaCompleta);
-        }
-        
-        return ResultadoAEstrella.fallido(origen, destino, TipoError.RUTA_NO_EXISTE, "Sin ruta bidireccional");
-    }
-
     private int calcularH(Punto actual, Punto destino, ConfiguracionAEstrella config) {
         // Heurística Manhattan distance con factor de peso
         int distanciaManhattan = actual.distanciaManhattanHasta(destino);
@@ -755,6 +1097,16 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         Collections.reverse(ruta);
         return ruta;
     }
+    /**
+     * Lista abierta según la configuración: cubetas por f entero o montículo binario
+     */
+    private Queue<NodoAEstrella> crearFrontera(ConfiguracionAEstrella config, int capacidadInicial) {
+        if (config.getTipoFrontera() == TipoFrontera.CUBETAS) {
+            return new ColaCubetas<>(NodoAEstrella::getFEntero);
+        }
+        return new PriorityQueue<>(capacidadInicial, Comparator.comparingDouble(NodoAEstrella::getF));
+    }
+
     private NodoAEstrella obtenerNodo(Punto punto, int g, int h) {
         NodoAEstrella nodo = nodoPool.poll();
         if (nodo == null) {
@@ -775,79 +1127,39 @@ public class AEstrellaServiceImpl implements AEstrellaService {
         return desde.distanciaManhattanHasta(hasta);
     }
 
-    private Punto expandirFrontera(PriorityQueue<NodoAEstrella> frontera, Set<Punto> visitados,
-                                  Map<Punto, Integer> costos, Map<Punto, Punto> padres,
-                                  Set<Punto> visitadosOpuestos, Punto objetivo,
-                                  ConfiguracionAEstrella config, boolean esDesdeOrigen) {
-        
-        if (frontera.isEmpty()) {
-            return null;
+    // Clave de un cálculo en curso (par origen-destino) para compartir su resultado
+    private static final class ClaveCalculo {
+        private final Punto origen;
+        private final Punto destino;
+        
+        ClaveCalculo(Punto origen, Punto destino) {
+            this.origen = origen;
+            this.destino = destino;
         }
         
-        NodoAEstrella actual = frontera.poll();
-        Punto puntoActual = actual.getPunto();
-        
-        // Si ya fue visitado, ignorar
-        if (visitados.contains(puntoActual)) {
-            return null;
-        }
-        
-        // Añadir a visitados
-        visitados.add(puntoActual);
-        
-        // Si este punto ya fue visitado desde la dirección opuesta, tenemos un camino
-        if (visitadosOpuestos.contains(puntoActual)) {
-            return puntoActual; // Punto de encuentro
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof ClaveCalculo)) return false;
+            ClaveCalculo otra = (ClaveCalculo) obj;
+            return origen.equals(otra.origen) && destino.equals(otra.destino);
         }
         
-        // Expandir vecinos
-        for (Punto vecino : gestorObstaculos.obtenerPuntosAdyacentesValidos(puntoActual)) {
-            if (visitados.contains(vecino)) {
-                objectPoolService.liberarPunto(vecino); // Liberar punto no usado
-                continue;
-            }
-            
-            int nuevoG = costos.get(puntoActual) + 1;
-            
-            if (!costos.containsKey(vecino) || nuevoG < costos.get(vecino)) {
-                costos.put(vecino, nuevoG);
-                padres.put(vecino, puntoActual);
-                
-                int h = calcularH(vecino, objetivo, config);
-                frontera.add(new NodoAEstrella(vecino, nuevoG, h));
-            }
+        @Override
+        public int hashCode() {
+            return 31 * origen.hashCode() + destino.hashCode();
         }
-        
-        return null;
     }
     
-    private List<Punto> reconstruirRutaBidireccional(Map<Punto, Punto> padresOrigen, 
-                                                   Map<Punto, Punto> padresDestino, 
-                                                   Punto puntoEncuentro) {
-        // Reconstruir camino desde origen hasta punto de encuentro
-        List<Punto> rutaDesdeOrigen = new ArrayList<>();
-        Punto actual = puntoEncuentro;
-        
-        while (actual != null) {
-            rutaDesdeOrigen.add(actual.clonar());
-            actual = padresOrigen.get(actual);
-        }
-        Collections.reverse(rutaDesdeOrigen); // Ordenar desde origen hacia punto de encuentro
+    private static final class CalculoEnCurso {
+        private final CompletableFuture<ResultadoAEstrella> resultado = new CompletableFuture<>();
+        private final TokenCancelacion cancelacion;
         
-        // Reconstruir camino desde punto de encuentro hasta destino
-        List<Punto> rutaHaciaDestino = new ArrayList<>();
-        actual = padresDestino.get(puntoEncuentro); // Comenzar desde el siguiente al punto de encuentro
-        
-        while (actual != null) {
-            rutaHaciaDestino.add(actual.clonar());
-            actual = padresDestino.get(actual);
+        CalculoEnCurso(TokenCancelacion cancelacion) {
+            this.cancelacion = cancelacion;
         }
-        
-        // Combinar ambas rutas
-        rutaDesdeOrigen.addAll(rutaHaciaDestino);
-        return rutaDesdeOrigen;
     }
-
+    
     @Data
     // Clase auxiliar para nodos del algoritmo A*
     private static class NodoAEstrella {
@@ -872,6 +1184,10 @@ public class AEstrellaServiceImpl implements AEstrellaService {
             return g + h;  // Costo total estimado
         }
         
+        public int getFEntero() {
+            return g + h;
+        }
+        
         public Punto getPunto() { return punto; }
         public int getG() { return g; }
         public int getH() { return h; }
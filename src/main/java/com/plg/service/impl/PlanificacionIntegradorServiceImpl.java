@@ -3,6 +3,8 @@ package com.plg.service.impl;
 import com.plg.service.PlanificacionIntegradorService;
 import com.plg.domain.*;
 import com.plg.dto.RutaVisualizacionDTO;
+import com.plg.service.util.SeguimientoRutasCamiones;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -10,6 +12,9 @@ import java.util.*;
 @Service
 public class PlanificacionIntegradorServiceImpl implements PlanificacionIntegradorService {
 
+    @Autowired
+    private SeguimientoRutasCamiones seguimientoRutas;
+
     @Override
     public Map<Camion, RutaOptimizada> ejecutarPlanificacionCompleta() {
         return new HashMap<>();
@@ -54,12 +59,46 @@ public class PlanificacionIntegradorServiceImpl implements PlanificacionIntegrad
         return new ArrayList<>();
     }
 
+    /**
+     * Las obstrucciones de tráfico replanifican el segmento en curso del camión desde la
+     * posición del evento, reparando la sesión incremental abierta al iniciar el segmento;
+     * las averías que inmovilizan al camión cierran su sesión y dejan el segmento fallido
+     */
     @Override
     public ResultadoReplanificacion replanificarPorEventos(
             Map<Camion, RutaOptimizada> rutasActuales,
             List<EventoAveria> eventosAverias,
             DatosActualizacion nuevosDatos) {
-        return new ResultadoReplanificacion();
+        ResultadoReplanificacion resultado = new ResultadoReplanificacion();
+        resultado.setRutasReplanificadas(new HashMap<>());
+        resultado.setCamionesAfectados(new ArrayList<>());
+        resultado.setPedidosReasignados(new ArrayList<>());
+        resultado.setReplanificacionExitosa(true);
+        List<String> razones = new ArrayList<>();
+
+        for (EventoAveria evento : eventosAverias) {
+            Camion camion = evento.getCamionAfectado();
+            RutaOptimizada ruta = rutasActuales.get(camion);
+            resultado.getCamionesAfectados().add(camion);
+            razones.add(camion.getCodigo() + ": " + evento.getTipoAveria().getDescripcion());
+
+            if (evento.getTipoAveria() != TipoAveria.TRAFICO) {
+                seguimientoRutas.abandonar(camion, evento.getTipoAveria().getDescripcion());
+                continue;
+            }
+            if (!seguimientoRutas.tieneSegmentoEnCurso(camion)) {
+                continue; // Sin segmento en ejecución no hay camino que reparar
+            }
+            ResultadoAEstrella replanificada = seguimientoRutas.replanificar(camion, evento.getPosicionActual());
+            if (replanificada != null && !replanificada.isRutaExiste()) {
+                resultado.setReplanificacionExitosa(false);
+            }
+            if (ruta != null) {
+                resultado.getRutasReplanificadas().put(camion, ruta);
+            }
+        }
+        resultado.setRazonReplanificacion(String.join("; ", razones));
+        return resultado;
     }
 
     @Override
@@ -5,7 +5,13 @@ import com.plg.domain.enumeration.EstadoSegmento;
 import com.plg.domain.enumeration.TipoSegmento;
 import com.plg.service.AEstrellaService;
 import com.plg.service.PlanificadorRutasService;
+import com.plg.service.util.BloqueosTemporizados;
+import com.plg.service.util.CamposDistanciaAlmacenes;
+import com.plg.service.util.DistanciaOracle;
 import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import com.plg.service.util.SnapshotObstaculos;
+import com.plg.service.util.TokenCancelacion;
 
 import jakarta.annotation.PreDestroy;
 import lombok.Data;
@@ -14,12 +20,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Implementación del planificador de rutas usando ACO (Ant Colony Optimization) + A*
@@ -42,6 +52,15 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
     @Autowired
     private GestorObstaculos gestorObstaculos;
     
+    @Autowired
+    private DistanciaOracle distanciaOracle;
+    
+    @Autowired
+    private CamposDistanciaAlmacenes camposDistanciaAlmacenes;
+    
+    @Autowired
+    private MotorAEstrellaGrid motorGrid;
+    
     // Configuración
     private ConfiguracionPlanificadorRutas configuracion;
     
@@ -49,9 +68,6 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
     private ThreadPoolExecutor executorService;
     private final AtomicInteger threadCounter = new AtomicInteger(0);
     
-    // Cache de distancias calculadas
-    private final Map<String, Double> cacheDistancias = new ConcurrentHashMap<>();
-    
     // Estadísticas thread-safe
     private final AtomicLong totalCalculos = new AtomicLong(0);
     private final AtomicLong calculosExitosos = new AtomicLong(0);
@@ -60,6 +76,8 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
     private final AtomicLong totalOptimizacionesACO = new AtomicLong(0);
     private final AtomicLong tiempoTotalACOMs = new AtomicLong(0);
     private final AtomicLong totalCalculosAEstrella = new AtomicLong(0);
+    private final AtomicLong busquedasFilaDistancias = new AtomicLong(0);
+    private final AtomicLong distanciasDesdeOraculo = new AtomicLong(0);
     private final AtomicLong tiempoTotalAEstrellaMs = new AtomicLong(0);
     private final AtomicLong calculosParalelos = new AtomicLong(0);
 
@@ -162,6 +180,13 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
         
         logger.info("Planificando {} rutas en paralelo", asignaciones.size());
         
+        long timeoutTotal = configuracion.getTimeoutCalculoMs() * asignaciones.size() / 2;
+        timeoutTotal = Math.max(timeoutTotal, 30000); // Mínimo 30 segundos
+        
+        // future.cancel(true) no detiene las tareas de supplyAsync: el token del ciclo
+        // llega hasta cada búsqueda A* y la detiene en su próxima verificación
+        TokenCancelacion ciclo = TokenCancelacion.conPlazo(timeoutTotal);
+        
         // Crear futures para cada camión
         List<CompletableFuture<Map.Entry<Camion, RutaOptimizada>>> futures = 
             asignaciones.entrySet().stream()
@@ -169,7 +194,7 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
                     try {
                         Camion camion = entry.getKey();
                         AsignacionCamion asignacion = entry.getValue();
-                        RutaOptimizada ruta = planificarRutaCamion(camion, asignacion, almacenes);
+                        RutaOptimizada ruta = planificarRutaCamion(camion, asignacion, almacenes, ciclo);
                         
                         if (ruta != null && ruta.isRutaViable()) {
                             calculosExitosos.incrementAndGet();
@@ -189,9 +214,6 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
         // Esperar resultados con timeout
         Map<Camion, RutaOptimizada> resultados = new HashMap<>();
         try {
-            long timeoutTotal = configuracion.getTimeoutCalculoMs() * asignaciones.size() / 2;
-            timeoutTotal = Math.max(timeoutTotal, 30000); // Mínimo 30 segundos
-            
             CompletableFuture<Void> todosFutures = CompletableFuture.allOf(
                 futures.toArray(new CompletableFuture[0]));
             
@@ -205,6 +227,7 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
                 
         } catch (TimeoutException e) {
             logger.warn("Timeout en planificación paralela, recolectando resultados parciales");
+            ciclo.cancelar();
             resultados.putAll(recolectarResultadosParciales(futures));
         } catch (Exception e) {
             logger.error("Error en planificación paralela: {}", e.getMessage());
@@ -240,6 +263,18 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
             Camion camion, 
             AsignacionCamion asignacion, 
             List<Almacen> almacenes) {
+        return planificarRutaCamion(camion, asignacion, almacenes, TokenCancelacion.NINGUNO);
+    }
+
+    /**
+     * Con un token de ciclo cancelado o vencido, las búsquedas pendientes terminan como
+     * TIMEOUT y el camión se descarta sin completar su ruta
+     */
+    private RutaOptimizada planificarRutaCamion(
+            Camion camion, 
+            AsignacionCamion asignacion, 
+            List<Almacen> almacenes,
+            TokenCancelacion ciclo) {
         
         long tiempoInicio = System.currentTimeMillis();
         
@@ -262,12 +297,17 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
                 asignacion.getEntregas().size());
             // 3. Optimizar orden de entregas usando ACO
             List<Entrega> entregasOptimizadas = optimizarOrdenEntregas(
-                asignacion.getEntregas(), puntoInicio);
+                asignacion.getEntregas(), puntoInicio, configuracion.getConfiguracionACO(), ciclo);
             // 🔥 LOG SECUENCIA DE ENTREGAS PLANIFICADA
             logSecuenciaEntregasPlanificada(camion, puntoInicio, entregasOptimizadas, almacenDestino);
             // 4. Calcular ruta completa
             RutaOptimizada ruta = calcularRutaCompleta(
-                camion, puntoInicio, entregasOptimizadas, almacenDestino);
+                camion, puntoInicio, entregasOptimizadas, almacenDestino, ciclo);
+            if (ciclo.estaCancelado()) {
+                logger.warn("Ciclo de planificación cancelado: se descarta la ruta del camión {}", 
+                    camion.getCodigo());
+                return null;
+            }
             // 🔥 LOG RUTA COMPLETA CALCULADA
             logRutaCompletaCalculada(camion, ruta);
             // 5. Validar factibilidad
@@ -319,6 +359,14 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
             List<Entrega> entregas, 
             Punto puntoInicio,
             ConfiguracionACO configuracionACO) {
+        return optimizarOrdenEntregas(entregas, puntoInicio, configuracionACO, TokenCancelacion.NINGUNO);
+    }
+
+    private List<Entrega> optimizarOrdenEntregas(
+            List<Entrega> entregas, 
+            Punto puntoInicio,
+            ConfiguracionACO configuracionACO,
+            TokenCancelacion ciclo) {
         
         long tiempoInicio = System.currentTimeMillis();
         totalOptimizacionesACO.incrementAndGet();
@@ -341,7 +389,7 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
 
         try {
             // Ejecutar algoritmo ACO
-            List<Entrega> entregasOptimizadas = ejecutarACO(entregas, puntoInicio, configuracionACO);
+            List<Entrega> entregasOptimizadas = ejecutarACO(entregas, puntoInicio, configuracionACO, ciclo);
             
             long tiempoACO = System.currentTimeMillis() - tiempoInicio;
             tiempoTotalACOMs.addAndGet(tiempoACO);
@@ -365,12 +413,13 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
     private List<Entrega> ejecutarACO(
             List<Entrega> entregas, 
             Punto puntoInicio, 
-            ConfiguracionACO config) {
+            ConfiguracionACO config,
+            TokenCancelacion ciclo) {
         
         int n = entregas.size();
         
         // Crear matriz de distancias
-        double[][] distancias = calcularMatrizDistancias(entregas, puntoInicio);
+        double[][] distancias = calcularMatrizDistancias(entregas, puntoInicio, ciclo);
         
         // Inicializar matriz de feromonas
         double[][] feromonas = inicializarMatrizFeromonas(n + 1, config.getFeromonaInicial());
@@ -417,7 +466,8 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
         return mejorSolucion != null ? mejorSolucion : entregas;
     }
 
-    private double[][] calcularMatrizDistancias(List<Entrega> entregas, Punto puntoInicio) {
+    private double[][] calcularMatrizDistancias(List<Entrega> entregas, Punto puntoInicio,
+                                                TokenCancelacion ciclo) {
         int n = entregas.size();
         double[][] distancias = new double[n + 1][n + 1];
         
@@ -433,40 +483,30 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
             ));
         }
         
-        // Calcular distancias entre todos los pares de puntos
-        for (int i = 0; i <= n; i++) {
+        // Una búsqueda multi-destino por fila (n+1 búsquedas en lugar de n²), filas en paralelo
+        long inicio = System.currentTimeMillis();
+        IntStream.rangeClosed(0, n).parallel().forEach(i -> {
+            int[] fila = aEstrellaService.calcularDistanciasDesde(puntos.get(i), puntos, ciclo);
             for (int j = 0; j <= n; j++) {
                 if (i == j) {
                     distancias[i][j] = 0.0;
+                } else if (fila[j] >= 0) {
+                    distancias[i][j] = fila[j];
                 } else {
-                    distancias[i][j] = calcularDistanciaEntrePuntos(puntos.get(i), puntos.get(j));
+                    // Fallback: distancia Manhattan
+                    distancias[i][j] = puntos.get(i).distanciaManhattanHasta(puntos.get(j));
                 }
             }
-        }
+        });
+        totalCalculosAEstrella.addAndGet(n + 1);
+        busquedasFilaDistancias.addAndGet(n + 1);
+        tiempoTotalAEstrellaMs.addAndGet(System.currentTimeMillis() - inicio);
         
         return distancias;
     }
 
-    private double calcularDistanciaEntrePuntos(Punto p1, Punto p2) {
-        String clave = String.format("%d,%d-%d,%d", p1.getX(), p1.getY(), p2.getX(), p2.getY());
-        
-        return cacheDistancias.computeIfAbsent(clave, k -> {
-            totalCalculosAEstrella.incrementAndGet();
-            long inicio = System.currentTimeMillis();
-            
-            // Usar A* para calcular distancia real considerando obstáculos
-            ResultadoAEstrella resultado = aEstrellaService.calcularRuta(p1, p2);
-            
-            long tiempo = System.currentTimeMillis() - inicio;
-            tiempoTotalAEstrellaMs.addAndGet(tiempo);
-            
-            if (resultado.isRutaExiste()) {
-                return (double) resultado.getDistanciaGrid();
-            } else {
-                // Fallback: distancia Manhattan
-                return (double) p1.distanciaManhattanHasta(p2);
-            }
-        });
+    private static LocalDateTime aFechaHora(long segundosEpoch) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(segundosEpoch), ZoneId.systemDefault());
     }
 
     private double[][] inicializarMatrizFeromonas(int tamaño, double valorInicial) {
@@ -630,8 +670,22 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
     public List<SegmentoRuta> calcularSegmentosRuta(
             List<Punto> secuenciaPuntos, 
             List<Entrega> entregas) {
+        return calcularSegmentosRuta(secuenciaPuntos, entregas, null, 0.0, TokenCancelacion.NINGUNO);
+    }
+    
+    /**
+     * Con {@code instanteSalida} (segundos epoch) cada segmento se busca con horario,
+     * saliendo en el instante de llegada del segmento anterior
+     */
+    private List<SegmentoRuta> calcularSegmentosRuta(
+            List<Punto> secuenciaPuntos, 
+            List<Entrega> entregas,
+            Long instanteSalida,
+            double velocidadKmph,
+            TokenCancelacion ciclo) {
         
         List<SegmentoRuta> segmentos = new ArrayList<>();
+        long instante = instanteSalida != null ? instanteSalida : 0L;
         logger.debug("🗺️ Calculando {} segmentos de ruta con A*", secuenciaPuntos.size() - 1);        
         for (int i = 0; i < secuenciaPuntos.size() - 1; i++) {
             Punto origen = secuenciaPuntos.get(i);
@@ -654,11 +708,39 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
             segmento.setEntrega(entrega);
             segmento.setOrdenEnRuta(i);
             
+            // Sin horario y con distancia conocida, el camino se difiere hasta que alguien lo pida
+            if (instanteSalida == null && configuracion.isDiferirRutasDetalladas()) {
+                SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+                int distancia = distanciaSinRuta(origen, destino, tipo);
+                if (distancia >= 0) {
+                    segmento.establecerRutaDiferida(distancia, proveedorRutaDetallada(mapa, origen, destino, tipo));
+                    segmentos.add(segmento);
+                    continue;
+                }
+            }
+            
+            // El retorno sin horario se lee del campo de distancia del almacén
+            if (tipo == TipoSegmento.RETORNO_ALMACEN && instanteSalida == null) {
+                List<Punto> rutaRetorno = camposDistanciaAlmacenes.rutaHastaAlmacen(origen, destino);
+                if (rutaRetorno != null) {
+                    segmento.establecerRutaDetallada(rutaRetorno);
+                    segmentos.add(segmento);
+                    continue;
+                }
+            }
+            
             // Calcular pathfinding A*
-            ResultadoAEstrella resultado = aEstrellaService.calcularRuta(origen, destino);
+            ResultadoAEstrella resultado = instanteSalida != null
+                ? aEstrellaService.calcularRutaConHorario(origen, destino, instante, velocidadKmph, ciclo)
+                : aEstrellaService.calcularRuta(origen, destino, ciclo);
             
             if (resultado.isRutaExiste()) {
                 segmento.establecerRutaDetallada(resultado.getRutaEncontrada());
+                if (instanteSalida != null) {
+                    segmento.setFechaHoraInicioPlaneada(aFechaHora(instante));
+                    segmento.setFechaHoraFinPlaneada(aFechaHora(resultado.getInstanteLlegada()));
+                    instante = resultado.getInstanteLlegada();
+                }
                 logger.debug("    ✅ A* exitoso: {} pasos, {:.1f}km", 
                 resultado.getRutaEncontrada().size(), resultado.getDistanciaKm());
             } else {
@@ -674,12 +756,63 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
         return segmentos;
     }
 
+    /**
+     * Distancia de un segmento sin reconstruir el camino: tabla de distancias o campo del
+     * almacén en los retornos. Negativa si ninguno la conoce y hace falta el A* completo
+     */
+    private int distanciaSinRuta(Punto origen, Punto destino, TipoSegmento tipo) {
+        int distancia = distanciaOracle.distancia(origen, destino);
+        if (distancia < 0 && tipo == TipoSegmento.RETORNO_ALMACEN) {
+            distancia = camposDistanciaAlmacenes.distancia(origen, destino);
+        }
+        if (distancia >= 0) {
+            distanciasDesdeOraculo.incrementAndGet();
+        }
+        return distancia;
+    }
+    
+    /**
+     * Cálculo diferido del camino de un segmento sobre el snapshot con el que se planificó,
+     * aunque el mapa haya cambiado después. Devuelve null si en ese mapa no hay ruta; el
+     * segmento queda entonces sin camino y marcado para validación, sin una línea recta
+     * que se haga pasar por ruta planificada
+     */
+    private Supplier<List<Punto>> proveedorRutaDetallada(SnapshotObstaculos mapa, Punto origen,
+                                                         Punto destino, TipoSegmento tipo) {
+        AEstrellaService.ConfiguracionAEstrella configAEstrella = configuracion.getConfiguracionAEstrella();
+        return () -> {
+            if (tipo == TipoSegmento.RETORNO_ALMACEN) {
+                List<Punto> rutaRetorno = camposDistanciaAlmacenes.rutaHastaAlmacen(mapa, origen, destino);
+                if (rutaRetorno != null) {
+                    return rutaRetorno;
+                }
+            }
+            ResultadoAEstrella resultado = motorGrid.buscar(mapa, origen, destino, configAEstrella,
+                System.currentTimeMillis(), TokenCancelacion.NINGUNO);
+            if (!resultado.isRutaExiste()) {
+                logger.warn("Ruta diferida {} -> {} sin camino en el mapa planificado (v{}): {}",
+                    origen, destino, mapa.getVersion(), resultado.getMensajeError());
+                return null;
+            }
+            return resultado.getRutaEncontrada();
+        };
+    }
+
     @Override
     public RutaOptimizada calcularRutaCompleta(
             Camion camion,
             Punto puntoActual,
             List<Entrega> entregas,
             Almacen almacenDestino) {
+        return calcularRutaCompleta(camion, puntoActual, entregas, almacenDestino, TokenCancelacion.NINGUNO);
+    }
+
+    private RutaOptimizada calcularRutaCompleta(
+            Camion camion,
+            Punto puntoActual,
+            List<Entrega> entregas,
+            Almacen almacenDestino,
+            TokenCancelacion ciclo) {
         
         // Crear ruta base
         RutaOptimizada ruta = new RutaOptimizada(camion, 
@@ -704,8 +837,19 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
         }
         // 🔥 LOG SECUENCIA DE PUNTOS PLANIFICADA
         logSecuenciaPuntosCompleta(camion, secuenciaPuntos, entregas);
-        // Calcular segmentos con A*
-        List<SegmentoRuta> segmentos = calcularSegmentosRuta(secuenciaPuntos, entregas);
+        // Calcular segmentos con A*; con bloqueos temporizados se respeta el horario de paso
+        BloqueosTemporizados bloqueos = gestorObstaculos.obtenerBloqueosTemporizados();
+        List<SegmentoRuta> segmentos;
+        if (bloqueos.estaVacio()) {
+            segmentos = calcularSegmentosRuta(secuenciaPuntos, entregas, null, 0.0, ciclo);
+        } else {
+            if (ruta.getFechaHoraInicio() == null) {
+                ruta.setFechaHoraInicio(aFechaHora(bloqueos.getInstanteReferencia()));
+            }
+            long instanteSalida = ruta.getFechaHoraInicio().atZone(ZoneId.systemDefault()).toEpochSecond();
+            double velocidad = camion != null && camion.getVelocidadKmph() != null ? camion.getVelocidadKmph() : 0.0;
+            segmentos = calcularSegmentosRuta(secuenciaPuntos, entregas, instanteSalida, velocidad, ciclo);
+        }
         
         // Agregar segmentos a la ruta
         for (SegmentoRuta segmento : segmentos) {
@@ -851,14 +995,25 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
     @Override
     public Almacen encontrarAlmacenMasCercano(Punto punto, List<Almacen> almacenes) {
         return almacenes.stream()
-            .min((a1, a2) -> {
-                int dist1 = punto.distanciaManhattanHasta(new Punto(a1.getX(), a1.getY()));
-                int dist2 = punto.distanciaManhattanHasta(new Punto(a2.getX(), a2.getY()));
-                return Integer.compare(dist1, dist2);
-            })
+            .min(Comparator.comparingInt(almacen -> distanciaHastaAlmacen(punto, almacen)))
             .orElse(almacenes.get(0));
     }
 
+    /**
+     * Distancia real al almacén según su campo de distancia; Manhattan si no está disponible
+     */
+    private int distanciaHastaAlmacen(Punto punto, Almacen almacen) {
+        Punto posicionAlmacen = new Punto(almacen.getX(), almacen.getY());
+        int distancia = camposDistanciaAlmacenes.distancia(punto, posicionAlmacen);
+        if (distancia == CamposDistanciaAlmacenes.INALCANZABLE) {
+            return Integer.MAX_VALUE;
+        }
+        if (distancia == CamposDistanciaAlmacenes.NO_DISPONIBLE) {
+            return punto.distanciaManhattanHasta(posicionAlmacen);
+        }
+        return distancia;
+    }
+
     private Punto obtenerPuntoInicioCamion(Camion camion, List<Almacen> almacenes) {
         // Si el camión tiene posición específica, usarla
         if (camion.getUbicacionX() != 0 || camion.getUbicacionY() != 0) {
@@ -882,6 +1037,7 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
             .map(a -> new Punto(a.getX(), a.getY()))
             .collect(Collectors.toList());
         
+        camposDistanciaAlmacenes.registrarAlmacenes(puntosAlmacenes);
         aEstrellaService.precalcularRutasFrecuentes(puntosAlmacenes);
     }
 
@@ -912,9 +1068,10 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
         if (totalAEstrella > 0) {
             stats.setTiempoPromedioAEstrellaMs((double) tiempoTotalAEstrellaMs.get() / totalAEstrella);
         }
+        stats.setBusquedasFilaDistancias(busquedasFilaDistancias.get());
+        stats.setDistanciasDesdeOraculo(distanciasDesdeOraculo.get());
         
         // Estado del sistema
-        stats.setRutasEnCache(cacheDistancias.size());
         if (executorService != null) {
             stats.setThreadPoolSize(executorService.getPoolSize());
         }
@@ -953,8 +1110,8 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
         totalCalculosAEstrella.set(0);
         tiempoTotalAEstrellaMs.set(0);
         calculosParalelos.set(0);
-        
-        cacheDistancias.clear();
+        busquedasFilaDistancias.set(0);
+        distanciasDesdeOraculo.set(0);
         
         logger.info("PlanificadorRutas reiniciado");
     }
@@ -1197,7 +1354,8 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
                 segmento.getDistanciaKm());
             
             // Si tiene ruta detallada A*, mostrar algunos puntos clave
-            if (segmento.getRutaDetallada() != null && segmento.getRutaDetallada().size() > 2) {
+            if (!segmento.isRutaDetalladaPendiente() && segmento.getRutaDetallada() != null 
+                    && segmento.getRutaDetallada().size() > 2) {
                 List<Punto> rutaDetallada = segmento.getRutaDetallada();
                 logger.debug("      🛣️ A* ({} pasos): {} ... {}", 
                     rutaDetallada.size(),
@@ -1239,7 +1397,14 @@ public class PlanificadorRutasServiceImpl implements PlanificadorRutasService {
                     segmento.getEntrega().getVolumenEntregadoM3());
             }
             
-            // 🔥 MOSTRAR CADA PASO DEL SEGMENTO
+            // 🔥 MOSTRAR CADA PASO DEL SEGMENTO (las rutas diferidas no se calculan para el log)
+            if (segmento.isRutaDetalladaPendiente()) {
+                logger.info("    ⏳ Ruta detallada diferida ({} unidades de grid)", segmento.getDistanciaGrid());
+                pasoGlobal += segmento.getDistanciaGrid() + 1;
+                logger.info("    📏 Distancia segmento: {:.1f}km", segmento.getDistanciaKm());
+                logger.info("");
+                continue;
+            }
             List<Punto> rutaDetallada = segmento.getRutaDetallada();
             if (rutaDetallada != null && rutaDetallada.size() > 1) {
                 
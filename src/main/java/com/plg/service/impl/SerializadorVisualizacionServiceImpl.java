@@ -106,6 +106,8 @@ public class SerializadorVisualizacionServiceImpl implements SerializadorVisuali
             if (configuracionVisualizacion.isIncluirRutasDetalladas() && segmento.getRutaDetallada() != null) {
                 List<int[]> rutaDetallada = optimizarRutaDetallada(segmento.getRutaDetallada());
                 segmentoDTO.setRutaDetallada(rutaDetallada);
+                // Codificación por tramos: ruta completa sin pérdida en unos pocos enteros
+                segmentoDTO.setRutaCompacta(RutaCompacta.de(segmento.getRutaDetallada()).getCodificacion());
             }
             
             // Información específica según tipo
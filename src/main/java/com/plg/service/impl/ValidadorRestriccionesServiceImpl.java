@@ -4,6 +4,7 @@ import com.plg.domain.*;
 import com.plg.service.ValidadorRestriccionesService;
 import com.plg.service.AEstrellaService;
 import com.plg.service.util.CalculadoraCombustible;
+import com.plg.service.util.DistanciaOracle;
 import com.plg.service.util.GestorObstaculos;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +34,9 @@ public class ValidadorRestriccionesServiceImpl implements ValidadorRestricciones
     @Autowired
     private AEstrellaService aEstrellaService;
     
+    @Autowired
+    private DistanciaOracle distanciaOracle;
+    
     // Configuración del validador
     private ConfiguracionRestricciones configuracion;
     
@@ -246,9 +250,12 @@ public class ValidadorRestriccionesServiceImpl implements ValidadorRestricciones
             Entrega entrega = entregas.get(i);
             SegmentoRuta segmento = SegmentoRuta.crearSegmentoEntrega(posicionActual, entrega, i + 1);
             
-            // Simular distancia (Manhattan por simplicidad)
+            // Distancia real del oráculo; Manhattan si no está disponible o no hay ruta
             Punto destino = new Punto(entrega.getPedido().getUbicacionX(), entrega.getPedido().getUbicacionY());
-            int distanciaGrid = posicionActual.distanciaManhattanHasta(destino);
+            int distanciaGrid = distanciaOracle.distancia(posicionActual, destino);
+            if (distanciaGrid < 0) {
+                distanciaGrid = posicionActual.distanciaManhattanHasta(destino);
+            }
             segmento.setDistanciaKm(distanciaGrid * 0.5); // Factor de conversión
             
             rutaTemporal.agregarSegmento(segmento);
@@ -0,0 +1,281 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+import com.plg.domain.RutaCompacta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Archivo binario versionado con las rutas de la cache y las frecuencias de solicitud.
+ * Se abre mapeado en memoria: abrir solo valida la cabecera y cada consulta hace una
+ * búsqueda binaria sobre el índice ordenado y decodifica únicamente la ruta pedida, así
+ * que tras un reinicio la cache responde de inmediato sin deserializar todo el archivo.
+ * Las rutas solo valen para el mapa de la cabecera (límites del grid y huella de obstáculos)
+ *
+ * Formato (big-endian):
+ *   cabecera   mágico, versión, minX, minY, maxX, maxY (int), huella, fecha (long),
+ *              rutas, frecuencias, enteros de datos, reservado (int)
+ *   frecuencias origenX, origenY, destinoX, destinoY, frecuencia (int)
+ *   índice     origenX, origenY, destinoX, destinoY, desplazamiento, longitud (int),
+ *              ordenado por (origenX, origenY, destinoX, destinoY)
+ *   datos      codificación de cada ruta ({@link RutaCompacta#getCodificacion()})
+ */
+public final class ArchivoCacheRutas {
+
+    private static final int MAGICO = 0x504C4752; // "PLGR"
+    private static final int VERSION_FORMATO = 1;
+    private static final int BYTES_CABECERA = 56;
+    private static final int ENTEROS_FRECUENCIA = 5;
+    private static final int ENTEROS_INDICE = 6;
+
+    private final Path ruta;
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+    private final long huella;
+    private final long fecha;
+    private final int cantidadRutas;
+    private final int cantidadFrecuencias;
+    // Vistas de solo lectura sobre el mapeo; los accesos absolutos son seguros entre threads
+    private final IntBuffer frecuencias;
+    private final IntBuffer indice;
+    private final IntBuffer datos;
+
+    private ArchivoCacheRutas(Path ruta, MappedByteBuffer mapeo) throws IOException {
+        this.ruta = ruta;
+        if (mapeo.capacity() < BYTES_CABECERA || mapeo.getInt(0) != MAGICO) {
+            throw new IOException("No es un archivo de cache de rutas: " + ruta);
+        }
+        int version = mapeo.getInt(4);
+        if (version != VERSION_FORMATO) {
+            throw new IOException("Versión de formato no soportada: " + version);
+        }
+        this.minX = mapeo.getInt(8);
+        this.minY = mapeo.getInt(12);
+        this.maxX = mapeo.getInt(16);
+        this.maxY = mapeo.getInt(20);
+        this.huella = mapeo.getLong(24);
+        this.fecha = mapeo.getLong(32);
+        this.cantidadRutas = mapeo.getInt(40);
+        this.cantidadFrecuencias = mapeo.getInt(44);
+        int enterosDatos = mapeo.getInt(48);
+
+        long enterosEsperados = (long) cantidadFrecuencias * ENTEROS_FRECUENCIA
+            + (long) cantidadRutas * ENTEROS_INDICE + enterosDatos;
+        if (cantidadRutas < 0 || cantidadFrecuencias < 0 || enterosDatos < 0
+                || BYTES_CABECERA + enterosEsperados * Integer.BYTES != mapeo.capacity()) {
+            throw new IOException("Archivo de cache de rutas truncado o corrupto: " + ruta);
+        }
+
+        int inicioFrecuencias = BYTES_CABECERA;
+        int inicioIndice = inicioFrecuencias + cantidadFrecuencias * ENTEROS_FRECUENCIA * Integer.BYTES;
+        int inicioDatos = inicioIndice + cantidadRutas * ENTEROS_INDICE * Integer.BYTES;
+        this.frecuencias = mapeo.slice(inicioFrecuencias, inicioIndice - inicioFrecuencias).asIntBuffer();
+        this.indice = mapeo.slice(inicioIndice, inicioDatos - inicioIndice).asIntBuffer();
+        this.datos = mapeo.slice(inicioDatos, mapeo.capacity() - inicioDatos).asIntBuffer();
+    }
+
+    /**
+     * Mapea el archivo y valida su cabecera, sin leer las rutas
+     * @throws IOException si no existe, no es de este formato o está truncado
+     */
+    public static ArchivoCacheRutas abrir(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Archivo de cache de rutas demasiado grande: " + ruta);
+            }
+            // El mapeo sigue vigente después de cerrar el canal
+            return new ArchivoCacheRutas(ruta, canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    /**
+     * Indica si las rutas del archivo valen para ese mapa: mismos límites y misma huella
+     */
+    public boolean correspondeA(SnapshotObstaculos mapa) {
+        return mapa.getMinX() == minX && mapa.getMinY() == minY
+            && mapa.getMaxX() == maxX && mapa.getMaxY() == maxY
+            && mapa.getHuella() == huella;
+    }
+
+    /**
+     * Ruta persistida para el par, decodificada bajo demanda, o null si no está
+     */
+    public RutaCompacta buscar(Punto origen, Punto destino) {
+        int bajo = 0;
+        int alto = cantidadRutas - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int comparacion = compararClave(medio, origen, destino);
+            if (comparacion < 0) {
+                bajo = medio + 1;
+            } else if (comparacion > 0) {
+                alto = medio - 1;
+            } else {
+                return decodificar(medio);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recorre las frecuencias de solicitud persistidas
+     */
+    public void paraCadaFrecuencia(VisitanteFrecuencia visitante) {
+        for (int i = 0; i < cantidadFrecuencias; i++) {
+            int base = i * ENTEROS_FRECUENCIA;
+            visitante.visitar(
+                new Punto(frecuencias.get(base), frecuencias.get(base + 1)),
+                new Punto(frecuencias.get(base + 2), frecuencias.get(base + 3)),
+                frecuencias.get(base + 4));
+        }
+    }
+
+    public Path getRuta() { return ruta; }
+    public long getHuella() { return huella; }
+    public long getFecha() { return fecha; }
+    public int getCantidadRutas() { return cantidadRutas; }
+    public int getCantidadFrecuencias() { return cantidadFrecuencias; }
+
+    private int compararClave(int posicion, Punto origen, Punto destino) {
+        int base = posicion * ENTEROS_INDICE;
+        int comparacion = Integer.compare(indice.get(base), origen.getX());
+        if (comparacion == 0) comparacion = Integer.compare(indice.get(base + 1), origen.getY());
+        if (comparacion == 0) comparacion = Integer.compare(indice.get(base + 2), destino.getX());
+        if (comparacion == 0) comparacion = Integer.compare(indice.get(base + 3), destino.getY());
+        return comparacion;
+    }
+
+    private RutaCompacta decodificar(int posicion) {
+        int base = posicion * ENTEROS_INDICE;
+        int desplazamiento = indice.get(base + 4);
+        int longitud = indice.get(base + 5);
+        if (desplazamiento < 0 || longitud < 2 || desplazamiento > datos.limit() - longitud) {
+            return null;
+        }
+        int[] codificacion = new int[longitud];
+        datos.get(desplazamiento, codificacion);
+        return RutaCompacta.desdeCodificacion(codificacion);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ArchivoCacheRutas[%s: %d rutas, %d frecuencias, huella %016x]",
+            ruta, cantidadRutas, cantidadFrecuencias, huella);
+    }
+
+    @FunctionalInterface
+    public interface VisitanteFrecuencia {
+        void visitar(Punto origen, Punto destino, int frecuencia);
+    }
+
+    /**
+     * Construye el archivo para un mapa. Solo acepta rutas libres en ese mapa, de modo
+     * que todo lo escrito es válido para la huella de la cabecera
+     */
+    public static final class Escritor {
+        private final SnapshotObstaculos mapa;
+        private final List<int[]> claves = new ArrayList<>();
+        private final List<int[]> codificaciones = new ArrayList<>();
+        private final List<int[]> frecuencias = new ArrayList<>();
+        private long enterosDatos;
+
+        public Escritor(SnapshotObstaculos mapa) {
+            this.mapa = mapa;
+        }
+
+        /**
+         * Agrega la ruta si no cruza obstáculos del mapa; devuelve si se agregó
+         */
+        public boolean agregarRuta(Punto origen, Punto destino, List<Punto> ruta) {
+            if (ruta == null || ruta.isEmpty()) {
+                return false;
+            }
+            for (Punto punto : ruta) {
+                if (!mapa.esValido(punto.getX(), punto.getY())) {
+                    return false;
+                }
+            }
+            int[] codificacion = RutaCompacta.de(ruta).getCodificacion();
+            claves.add(new int[] {origen.getX(), origen.getY(), destino.getX(), destino.getY(), codificaciones.size()});
+            codificaciones.add(codificacion);
+            enterosDatos += codificacion.length;
+            return true;
+        }
+
+        public void agregarFrecuencia(Punto origen, Punto destino, int frecuencia) {
+            frecuencias.add(new int[] {origen.getX(), origen.getY(), destino.getX(), destino.getY(), frecuencia});
+        }
+
+        public int getCantidadRutas() {
+            return codificaciones.size();
+        }
+
+        /**
+         * Escribe en un archivo temporal y lo mueve sobre el destino, así un lector nunca
+         * ve un archivo a medio escribir y un mapeo previo conserva su contenido
+         */
+        public void escribir(Path destino) throws IOException {
+            long bytes = BYTES_CABECERA + Integer.BYTES * ((long) frecuencias.size() * ENTEROS_FRECUENCIA
+                + (long) claves.size() * ENTEROS_INDICE + enterosDatos);
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("Cache de rutas demasiado grande para un archivo: " + bytes + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) bytes);
+
+            buffer.putInt(MAGICO).putInt(VERSION_FORMATO)
+                .putInt(mapa.getMinX()).putInt(mapa.getMinY()).putInt(mapa.getMaxX()).putInt(mapa.getMaxY())
+                .putLong(mapa.getHuella()).putLong(System.currentTimeMillis())
+                .putInt(claves.size()).putInt(frecuencias.size()).putInt((int) enterosDatos).putInt(0);
+            buffer.position(BYTES_CABECERA);
+
+            for (int[] frecuencia : frecuencias) {
+                for (int valor : frecuencia) {
+                    buffer.putInt(valor);
+                }
+            }
+
+            List<int[]> ordenadas = new ArrayList<>(claves);
+            ordenadas.sort((a, b) -> Arrays.compare(a, 0, 4, b, 0, 4));
+            int desplazamiento = 0;
+            for (int[] clave : ordenadas) {
+                int longitud = codificaciones.get(clave[4]).length;
+                buffer.putInt(clave[0]).putInt(clave[1]).putInt(clave[2]).putInt(clave[3])
+                    .putInt(desplazamiento).putInt(longitud);
+                desplazamiento += longitud;
+            }
+            for (int[] clave : ordenadas) {
+                for (int valor : codificaciones.get(clave[4])) {
+                    buffer.putInt(valor);
+                }
+            }
+            buffer.flip();
+
+            Path absoluto = destino.toAbsolutePath();
+            Path temporal = Files.createTempFile(absoluto.getParent(), absoluto.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                    while (buffer.hasRemaining()) {
+                        canal.write(buffer);
+                    }
+                    canal.force(false);
+                }
+                Files.move(temporal, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporal);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.plg.service.util;
+
+import com.plg.domain.Obstaculo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Índice temporal de bloqueos por celda, compilado sobre la geometría de un snapshot
+ * Cada celda guarda sus intervalos [inicio, fin) en segundos epoch, ordenados y fusionados,
+ * en arreglos planos (formato CSR): los intervalos de la celda c ocupan
+ * [desplazamientos[c], desplazamientos[c + 1]). Inmutable una vez compilado
+ */
+public final class BloqueosTemporizados {
+
+    private static final Logger logger = LoggerFactory.getLogger(BloqueosTemporizados.class);
+
+    private static final BloqueosTemporizados VACIO =
+        new BloqueosTemporizados(0, 0, 0, 0, new int[1], new long[0], new long[0], 0, 0);
+
+    private final int minX;
+    private final int minY;
+    private final int ancho;
+    private final int alto;
+    private final int[] desplazamientos;
+    private final long[] inicios;
+    private final long[] fines;
+    private final long instanteReferencia;
+    private final int totalBloqueos;
+
+    private BloqueosTemporizados(int minX, int minY, int ancho, int alto, int[] desplazamientos,
+                                 long[] inicios, long[] fines, long instanteReferencia, int totalBloqueos) {
+        this.minX = minX;
+        this.minY = minY;
+        this.ancho = ancho;
+        this.alto = alto;
+        this.desplazamientos = desplazamientos;
+        this.inicios = inicios;
+        this.fines = fines;
+        this.instanteReferencia = instanteReferencia;
+        this.totalBloqueos = totalBloqueos;
+    }
+
+    public static BloqueosTemporizados vacio() {
+        return VACIO;
+    }
+
+    /**
+     * Rasteriza los bloqueos con ventana temporal sobre la geometría del mapa.
+     * Obstáculos sin timestamps (permanentes) se ignoran: pertenecen al snapshot
+     */
+    public static BloqueosTemporizados compilar(SnapshotObstaculos mapa, Collection<Obstaculo> bloqueos,
+                                                long instanteReferencia) {
+        AcumuladorIntervalos acumulador = new AcumuladorIntervalos(mapa);
+        int totalBloqueos = 0;
+
+        for (Obstaculo bloqueo : bloqueos) {
+            if (bloqueo.getTimestampInicio() == null || bloqueo.getTimestampFin() == null
+                    || bloqueo.getTimestampFin() <= bloqueo.getTimestampInicio()) {
+                continue;
+            }
+            int[] vertices = verticesDe(bloqueo);
+            if (vertices.length < 2) {
+                continue;
+            }
+            acumulador.intervalo(bloqueo.getTimestampInicio(), bloqueo.getTimestampFin());
+            if (vertices.length == 2) {
+                acumulador.marcar(vertices[0], vertices[1]);
+            }
+            for (int i = 0; i + 3 < vertices.length; i += 2) {
+                GestorObstaculos.recorrerSegmento(vertices[i], vertices[i + 1], vertices[i + 2], vertices[i + 3],
+                    acumulador::marcar);
+            }
+            totalBloqueos++;
+        }
+
+        return acumulador.construir(instanteReferencia, totalBloqueos);
+    }
+
+    /**
+     * Indica si la geometría del índice coincide con la del snapshot (mismos índices de celda)
+     */
+    public boolean esCompatibleCon(SnapshotObstaculos mapa) {
+        return totalBloqueos == 0 || (mapa.getMinX() == minX && mapa.getMinY() == minY
+            && mapa.getAncho() == ancho && mapa.getAlto() == alto);
+    }
+
+    public boolean estaVacio() {
+        return inicios.length == 0;
+    }
+
+    public boolean tieneBloqueos(int celda) {
+        return celda + 1 < desplazamientos.length && desplazamientos[celda] != desplazamientos[celda + 1];
+    }
+
+    /**
+     * Indica si la celda está bloqueada en el instante dado
+     */
+    public boolean estaBloqueada(int celda, long instante) {
+        return intervaloEn(celda, instante) >= 0;
+    }
+
+    /**
+     * Primer instante libre de la celda a partir de {@code instante}
+     * (el mismo instante si no está bloqueada)
+     */
+    public long liberacionDesde(int celda, long instante) {
+        int intervalo = intervaloEn(celda, instante);
+        return intervalo >= 0 ? fines[intervalo] : instante;
+    }
+
+    /**
+     * Indica si algún bloqueo de la celda intersecta el rango [desde, hasta]
+     */
+    public boolean hayBloqueoEntre(int celda, long desde, long hasta) {
+        if (!tieneBloqueos(celda)) {
+            return false;
+        }
+        int fin = desplazamientos[celda + 1];
+        for (int i = desplazamientos[celda]; i < fin && inicios[i] <= hasta; i++) {
+            if (fines[i] > desde) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Índice del intervalo que contiene el instante, o -1; búsqueda binaria por inicio
+     */
+    private int intervaloEn(int celda, long instante) {
+        if (!tieneBloqueos(celda)) {
+            return -1;
+        }
+        int bajo = desplazamientos[celda];
+        int alto = desplazamientos[celda + 1] - 1;
+        int candidato = -1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (inicios[medio] <= instante) {
+                candidato = medio;
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return candidato >= 0 && instante < fines[candidato] ? candidato : -1;
+    }
+
+    public long getInstanteReferencia() {
+        return instanteReferencia;
+    }
+
+    public int getTotalBloqueos() {
+        return totalBloqueos;
+    }
+
+    public int getTotalIntervalos() {
+        return inicios.length;
+    }
+
+    /**
+     * Vértices (x1,y1,x2,y2,...) del obstáculo según su tipo
+     */
+    private static int[] verticesDe(Obstaculo obstaculo) {
+        if (obstaculo.getPuntosPoligono() != null && !obstaculo.getPuntosPoligono().isBlank()) {
+            String[] coords = obstaculo.getPuntosPoligono().split(",");
+            if (coords.length % 2 != 0) {
+                logger.warn("Bloqueo {} con número impar de coordenadas: {}", obstaculo.getId(), obstaculo.getPuntosPoligono());
+                return new int[0];
+            }
+            try {
+                int[] vertices = new int[coords.length];
+                for (int i = 0; i < coords.length; i++) {
+                    vertices[i] = Integer.parseInt(coords[i].trim());
+                }
+                return vertices;
+            } catch (NumberFormatException e) {
+                logger.warn("Bloqueo {} con coordenadas inválidas: {}", obstaculo.getId(), obstaculo.getPuntosPoligono());
+                return new int[0];
+            }
+        }
+        if (obstaculo.getCoordenadaX() == null || obstaculo.getCoordenadaY() == null) {
+            return new int[0];
+        }
+        if (obstaculo.getCoordenadaX2() != null && obstaculo.getCoordenadaY2() != null) {
+            return new int[] {obstaculo.getCoordenadaX(), obstaculo.getCoordenadaY(),
+                obstaculo.getCoordenadaX2(), obstaculo.getCoordenadaY2()};
+        }
+        return new int[] {obstaculo.getCoordenadaX(), obstaculo.getCoordenadaY()};
+    }
+
+    /**
+     * Acumula pares (celda, intervalo) durante la rasterización y los compacta en CSR
+     */
+    private static final class AcumuladorIntervalos {
+        private final SnapshotObstaculos mapa;
+        private int[] celdas = new int[256];
+        private long[] inicios = new long[256];
+        private long[] fines = new long[256];
+        private int tamano;
+        private long inicioActual;
+        private long finActual;
+
+        private AcumuladorIntervalos(SnapshotObstaculos mapa) {
+            this.mapa = mapa;
+        }
+
+        private void intervalo(long inicio, long fin) {
+            this.inicioActual = inicio;
+            this.finActual = fin;
+        }
+
+        private void marcar(int x, int y) {
+            if (!mapa.estaEnLimites(x, y)) {
+                return;
+            }
+            if (tamano == celdas.length) {
+                int capacidad = tamano * 2;
+                celdas = Arrays.copyOf(celdas, capacidad);
+                inicios = Arrays.copyOf(inicios, capacidad);
+                fines = Arrays.copyOf(fines, capacidad);
+            }
+            celdas[tamano] = mapa.indice(x, y);
+            inicios[tamano] = inicioActual;
+            fines[tamano] = finActual;
+            tamano++;
+        }
+
+        private BloqueosTemporizados construir(long instanteReferencia, int totalBloqueos) {
+            int totalCeldas = mapa.getCeldas();
+            int[] desplazamientos = new int[totalCeldas + 1];
+            for (int i = 0; i < tamano; i++) {
+                desplazamientos[celdas[i] + 1]++;
+            }
+            for (int c = 0; c < totalCeldas; c++) {
+                desplazamientos[c + 1] += desplazamientos[c];
+            }
+
+            // Distribución por celda (counting sort)
+            long[] iniciosCsr = new long[tamano];
+            long[] finesCsr = new long[tamano];
+            int[] siguiente = Arrays.copyOf(desplazamientos, totalCeldas);
+            for (int i = 0; i < tamano; i++) {
+                int posicion = siguiente[celdas[i]]++;
+                iniciosCsr[posicion] = inicios[i];
+                finesCsr[posicion] = fines[i];
+            }
+
+            // Ordenar y fusionar intervalos solapados dentro de cada celda
+            int escritura = 0;
+            int[] compactados = new int[totalCeldas + 1];
+            for (int c = 0; c < totalCeldas; c++) {
+                int desde = desplazamientos[c];
+                int hasta = desplazamientos[c + 1];
+                compactados[c] = escritura;
+                if (hasta - desde > 1) {
+                    ordenarPorInicio(iniciosCsr, finesCsr, desde, hasta);
+                }
+                for (int i = desde; i < hasta; i++) {
+                    if (escritura > compactados[c] && iniciosCsr[i] <= finesCsr[escritura - 1]) {
+                        finesCsr[escritura - 1] = Math.max(finesCsr[escritura - 1], finesCsr[i]);
+                    } else {
+                        iniciosCsr[escritura] = iniciosCsr[i];
+                        finesCsr[escritura] = finesCsr[i];
+                        escritura++;
+                    }
+                }
+            }
+            compactados[totalCeldas] = escritura;
+
+            return new BloqueosTemporizados(mapa.getMinX(), mapa.getMinY(), mapa.getAncho(), mapa.getAlto(),
+                compactados, Arrays.copyOf(iniciosCsr, escritura), Arrays.copyOf(finesCsr, escritura),
+                instanteReferencia, totalBloqueos);
+        }
+
+        /**
+         * Inserción sobre el tramo de una celda (pocos intervalos por celda)
+         */
+        private static void ordenarPorInicio(long[] inicios, long[] fines, int desde, int hasta) {
+            for (int i = desde + 1; i < hasta; i++) {
+                long inicio = inicios[i];
+                long fin = fines[i];
+                int j = i - 1;
+                while (j >= desde && inicios[j] > inicio) {
+                    inicios[j + 1] = inicios[j];
+                    fines[j + 1] = fines[j];
+                    j--;
+                }
+                inicios[j + 1] = inicio;
+                fines[j + 1] = fin;
+            }
+        }
+    }
+}
@@ -13,7 +13,9 @@ import java.util.stream.Collectors;
 
 /**
  * Sistema de invalidación inteligente para cache de rutas
- * Maneja detección automática de rutas afectadas y refresh en background
+ * Maneja detección automática de rutas afectadas y refresh en background.
+ * Las rutas afectadas se obtienen del índice celda → rutas de {@link CacheRutas}:
+ * solo se visitan las rutas que pasan por las celdas cambiadas, no toda la cache
  */
 @Component
 public class CacheInvalidacionInteligente {
@@ -41,10 +43,6 @@ public class CacheInvalidacionInteligente {
     private final BlockingQueue<RutaParaRefrescar> colaRefresh = 
         new LinkedBlockingQueue<>(1000);
     
-    // Mapa de rutas por región para invalidación por área
-    private final Map<RegionGrid, Set<ClaveRuta>> rutasPorRegion = 
-        new ConcurrentHashMap<>();
-    
     // Configuración
     private ConfiguracionInvalidacion configuracion = new ConfiguracionInvalidacion();
     
@@ -62,12 +60,6 @@ public class CacheInvalidacionInteligente {
             refreshExecutor.submit(this::workerRefreshBackground);
         }
         
-        // Programar análisis periódico de regiones
-        refreshExecutor.scheduleAtFixedRate(
-            this::analizarYOptimizarRegiones, 
-            5, 30, TimeUnit.MINUTES
-        );
-        
         logger.info("Sistema de invalidación inteligente iniciado");
     }
     
@@ -81,27 +73,10 @@ public class CacheInvalidacionInteligente {
         
         Set<ClaveRuta> rutasAfectadas = new HashSet<>();
         
-        // 1. Detectar por punto específico (método actual)
-        for (Punto obstaculo : obstaculosNuevos) {
-            rutasAfectadas.addAll(detectarRutasPorPunto(obstaculo));
-        }
-        
-        for (Punto obstaculo : obstaculosEliminados) {
-            rutasAfectadas.addAll(detectarRutasPorPunto(obstaculo));
-        }
-        
-        // 2. Detectar por área/región afectada
-        Set<RegionGrid> regionesAfectadas = calcularRegionesAfectadas(
-            obstaculosNuevos, obstaculosEliminados);
-        
-        for (RegionGrid region : regionesAfectadas) {
-            Set<ClaveRuta> rutasEnRegion = rutasPorRegion.get(region);
-            if (rutasEnRegion != null) {
-                rutasAfectadas.addAll(rutasEnRegion);
-            }
-        }
+        // 1. Rutas que pasan exactamente por una celda ahora bloqueada
+        agregarRutasQueCruzan(obstaculosNuevos, rutasAfectadas);
         
-        // 3. Detectar rutas con paths alternativos potenciales
+        // 2. Rutas que pasan cerca de un obstáculo eliminado: podrían acortarse por ahí
         if (!obstaculosEliminados.isEmpty()) {
             rutasAfectadas.addAll(detectarRutasConAlternativasPotenciales(obstaculosEliminados));
         }
@@ -118,21 +93,8 @@ public class CacheInvalidacionInteligente {
         
         Set<ClaveRuta> rutasAfectadas = new HashSet<>();
         
-        // Calcular área de invalidación
-        int minX = centro.getX() - radio;
-        int maxX = centro.getX() + radio;
-        int minY = centro.getY() - radio;
-        int maxY = centro.getY() + radio;
-        
-        // Encontrar todas las rutas que pasan por el área
-        for (Map.Entry<RegionGrid, Set<ClaveRuta>> entry : rutasPorRegion.entrySet()) {
-            RegionGrid region = entry.getKey();
-            
-            // Si la región intersecta con el área de invalidación
-            if (region.intersectaCon(minX, minY, maxX, maxY)) {
-                rutasAfectadas.addAll(entry.getValue());
-            }
-        }
+        // Rutas que pasan por alguna celda del área
+        agregarRutasQueCruzan(celdasAlrededor(centro, radio), rutasAfectadas);
         
         // Invalidar rutas encontradas
         invalidarYProgramarRefresh(rutasAfectadas, "Invalidación por área");
@@ -147,27 +109,19 @@ public class CacheInvalidacionInteligente {
     }
     
     /**
-     * Invalidación inteligente cuando se eliminan obstáculos
+     * Invalidación cuando se agrega un bloqueo con forma de polígono abierto: se recorren
+     * las mismas celdas que bloquea {@link GestorObstaculos#agregarPoligonoAbierto}
      */
-    public void invalidarPorObstaculosEliminados(List<Punto> obstaculosEliminados) {
-        Set<ClaveRuta> rutasAfectadas = detectarRutasAfectadas(List.of(), obstaculosEliminados);
-        invalidarYProgramarRefresh(rutasAfectadas, "Obstáculos eliminados");
+    public void invalidarPorNuevoBloqueo(List<Punto> vertices) {
+        invalidarPorNuevosObstaculos(GestorObstaculos.celdasDePolilinea(vertices));
     }
     
     /**
-     * Registra una ruta en el sistema de tracking por región
+     * Invalidación inteligente cuando se eliminan obstáculos
      */
-    public void registrarRutaEnRegiones(ClaveRuta claveRuta, List<Punto> ruta) {
-        if (ruta == null || ruta.isEmpty()) return;
-        
-        Set<RegionGrid> regiones = calcularRegionesDeRuta(ruta);
-        
-        for (RegionGrid region : regiones) {
-            rutasPorRegion.computeIfAbsent(region, k -> ConcurrentHashMap.newKeySet())
-                          .add(claveRuta);
-        }
-        
-        logger.debug("Ruta {} registrada en {} regiones", claveRuta, regiones.size());
+    public void invalidarPorObstaculosEliminados(List<Punto> obstaculosEliminados) {
+        Set<ClaveRuta> rutasAfectadas = detectarRutasAfectadas(List.of(), obstaculosEliminados);
+        invalidarYProgramarRefresh(rutasAfectadas, "Obstáculos eliminados");
     }
     
     /**
@@ -190,10 +144,8 @@ public class CacheInvalidacionInteligente {
     public EstadisticasInvalidacion obtenerEstadisticas() {
         EstadisticasInvalidacion stats = new EstadisticasInvalidacion();
         
-        stats.setRegionesTotales(rutasPorRegion.size());
-        stats.setRutasTrackeadas(rutasPorRegion.values().stream()
-            .mapToInt(Set::size)
-            .sum());
+        stats.setCeldasIndexadas(cacheRutas.getCeldasIndexadas());
+        stats.setRutasTrackeadas(cacheRutas.obtenerEstadisticas().getTamanoActual());
         stats.setColaRefreshPendientes(colaRefresh.size());
         stats.setRefreshActivo(refreshActivo);
         
@@ -231,66 +183,32 @@ public class CacheInvalidacionInteligente {
     
     // Métodos privados auxiliares
     
-    private Set<ClaveRuta> detectarRutasPorPunto(Punto punto) {
-        Set<ClaveRuta> rutasAfectadas = new HashSet<>();
-        
-        // Buscar en regiones cercanas al punto
-        RegionGrid regionCentral = new RegionGrid(punto.getX(), punto.getY(), configuracion.getTamanoRegion());
-        
-        for (int dx = -1; dx <= 1; dx++) {
-            for (int dy = -1; dy <= 1; dy++) {
-                RegionGrid regionVecina = new RegionGrid(
-                    regionCentral.getX() + dx, 
-                    regionCentral.getY() + dy, 
-                    configuracion.getTamanoRegion()
-                );
-                
-                Set<ClaveRuta> rutasEnRegion = rutasPorRegion.get(regionVecina);
-                if (rutasEnRegion != null) {
-                    rutasAfectadas.addAll(rutasEnRegion);
-                }
-            }
-        }
-        
-        return rutasAfectadas;
-    }
-    
-    private Set<RegionGrid> calcularRegionesAfectadas(List<Punto> obstaculosNuevos, 
-                                                     List<Punto> obstaculosEliminados) {
-        Set<RegionGrid> regiones = new HashSet<>();
-        
-        for (Punto punto : obstaculosNuevos) {
-            regiones.add(new RegionGrid(punto.getX(), punto.getY(), configuracion.getTamanoRegion()));
-        }
-        
-        for (Punto punto : obstaculosEliminados) {
-            regiones.add(new RegionGrid(punto.getX(), punto.getY(), configuracion.getTamanoRegion()));
-        }
-        
-        return regiones;
+    private void agregarRutasQueCruzan(Collection<Punto> celdas, Set<ClaveRuta> rutasAfectadas) {
+        cacheRutas.paraCadaRutaQueCruza(celdas,
+            (origen, destino) -> rutasAfectadas.add(new ClaveRuta(origen, destino)));
     }
     
     private Set<ClaveRuta> detectarRutasConAlternativasPotenciales(List<Punto> obstaculosEliminados) {
         Set<ClaveRuta> rutasCandidatas = new HashSet<>();
         
         // Buscar rutas que podrían beneficiarse de los obstáculos eliminados
+        Set<Punto> celdasCercanas = new HashSet<>();
         for (Punto obstaculo : obstaculosEliminados) {
-            Set<ClaveRuta> rutasCercanas = detectarRutasPorPunto(obstaculo);
-            rutasCandidatas.addAll(rutasCercanas);
+            celdasCercanas.addAll(celdasAlrededor(obstaculo, configuracion.getRadioAlternativas()));
         }
+        agregarRutasQueCruzan(celdasCercanas, rutasCandidatas);
         
         return rutasCandidatas;
     }
     
-    private Set<RegionGrid> calcularRegionesDeRuta(List<Punto> ruta) {
-        Set<RegionGrid> regiones = new HashSet<>();
-        
-        for (Punto punto : ruta) {
-            RegionGrid region = new RegionGrid(punto.getX(), punto.getY(), configuracion.getTamanoRegion());
-            regiones.add(region);
+    private List<Punto> celdasAlrededor(Punto centro, int radio) {
+        List<Punto> celdas = new ArrayList<>((2 * radio + 1) * (2 * radio + 1));
+        for (int x = centro.getX() - radio; x <= centro.getX() + radio; x++) {
+            for (int y = centro.getY() - radio; y <= centro.getY() + radio; y++) {
+                celdas.add(new Punto(x, y));
+            }
         }
-        
-        return regiones;
+        return celdas;
     }
     
     private void invalidarYProgramarRefresh(Set<ClaveRuta> rutasAfectadas, String razon) {
@@ -300,7 +218,7 @@ public class CacheInvalidacionInteligente {
         
         for (ClaveRuta claveRuta : rutasAfectadas) {
             // Invalidar del cache
-            cacheRutas.invalidarRutasPorPunto(claveRuta.getOrigen());
+            cacheRutas.invalidarRuta(claveRuta.getOrigen(), claveRuta.getDestino());
             
             // Programar refresh en background
             if (configuracion.isRefreshAutomaticoHabilitado()) {
@@ -343,13 +261,10 @@ public class CacheInvalidacionInteligente {
             var resultado = aEstrellaService.calcularRuta(clave.getOrigen(), clave.getDestino());
             
             if (resultado.isCalculoExitoso()) {
-                // Almacenar en cache la nueva ruta
+                // Almacenar en cache la nueva ruta (la cache la indexa por celdas)
                 cacheRutas.almacenarRuta(clave.getOrigen(), clave.getDestino(), 
                                         resultado.getRutaEncontrada());
                 
-                // Re-registrar en regiones
-                registrarRutaEnRegiones(clave, resultado.getRutaEncontrada());
-                
                 logger.debug("Ruta refrescada exitosamente: {}", clave);
             } else {
                 logger.warn("Fallo al refrescar ruta {}: {}", clave, resultado.getMensajeError());
@@ -360,20 +275,6 @@ public class CacheInvalidacionInteligente {
         }
     }
     
-    private void analizarYOptimizarRegiones() {
-        logger.debug("Iniciando análisis y optimización de regiones");
-        
-        // Limpiar regiones vacías
-        rutasPorRegion.entrySet().removeIf(entry -> entry.getValue().isEmpty());
-        
-        // Estadísticas
-        int regionesLimpiadas = 0;
-        int rutasTotales = rutasPorRegion.values().stream().mapToInt(Set::size).sum();
-        
-        logger.debug("Optimización de regiones completada: {} regiones, {} rutas trackeadas", 
-            rutasPorRegion.size(), rutasTotales);
-    }
-    
     // Clases auxiliares
     
     /**
@@ -410,52 +311,6 @@ public class CacheInvalidacionInteligente {
         }
     }
     
-    /**
-     * Representa una región del grid para invalidación por área
-     */
-    private static class RegionGrid {
-        private final int x;
-        private final int y;
-        private final int tamano;
-        
-        public RegionGrid(int puntoX, int puntoY, int tamanoRegion) {
-            this.x = puntoX / tamanoRegion;
-            this.y = puntoY / tamanoRegion;
-            this.tamano = tamanoRegion;
-        }
-        
-        public int getX() { return x; }
-        public int getY() { return y; }
-        
-        public boolean intersectaCon(int minX, int minY, int maxX, int maxY) {
-            int regionMinX = x * tamano;
-            int regionMaxX = (x + 1) * tamano - 1;
-            int regionMinY = y * tamano;
-            int regionMaxY = (y + 1) * tamano - 1;
-            
-            return !(regionMaxX < minX || regionMinX > maxX || 
-                    regionMaxY < minY || regionMinY > maxY);
-        }
-        
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) return true;
-            if (obj == null || getClass() != obj.getClass()) return false;
-            RegionGrid that = (RegionGrid) obj;
-            return x == that.x && y == that.y && tamano == that.tamano;
-        }
-        
-        @Override
-        public int hashCode() {
-            return Objects.hash(x, y, tamano);
-        }
-        
-        @Override
-        public String toString() {
-            return String.format("Region[%d,%d]", x, y);
-        }
-    }
-    
     /**
      * Ruta pendiente de refresh en background
      */
@@ -491,14 +346,14 @@ public class CacheInvalidacionInteligente {
      * Configuración del sistema de invalidación
      */
     public static class ConfiguracionInvalidacion {
-        private int tamanoRegion = 50; // Tamaño de región en unidades de grid
+        private int radioAlternativas = 3; // Celdas alrededor de un obstáculo eliminado
         private boolean refreshAutomaticoHabilitado = true;
         private int maxRutasRefreshConcurrentes = 10;
         private long timeoutRefreshMs = 5000;
         
         // Getters y setters
-        public int getTamanoRegion() { return tamanoRegion; }
-        public void setTamanoRegion(int tamanoRegion) { this.tamanoRegion = tamanoRegion; }
+        public int getRadioAlternativas() { return radioAlternativas; }
+        public void setRadioAlternativas(int radioAlternativas) { this.radioAlternativas = radioAlternativas; }
         
         public boolean isRefreshAutomaticoHabilitado() { return refreshAutomaticoHabilitado; }
         public void setRefreshAutomaticoHabilitado(boolean refreshAutomaticoHabilitado) { 
@@ -520,14 +375,14 @@ public class CacheInvalidacionInteligente {
      * Estadísticas del sistema de invalidación
      */
     public static class EstadisticasInvalidacion {
-        private int regionesTotales;
+        private int celdasIndexadas;
         private int rutasTrackeadas;
         private int colaRefreshPendientes;
         private boolean refreshActivo;
         
         // Getters y setters
-        public int getRegionesTotales() { return regionesTotales; }
-        public void setRegionesTotales(int regionesTotales) { this.regionesTotales = regionesTotales; }
+        public int getCeldasIndexadas() { return celdasIndexadas; }
+        public void setCeldasIndexadas(int celdasIndexadas) { this.celdasIndexadas = celdasIndexadas; }
         
         public int getRutasTrackeadas() { return rutasTrackeadas; }
         public void setRutasTrackeadas(int rutasTrackeadas) { this.rutasTrackeadas = rutasTrackeadas; }
@@ -542,8 +397,8 @@ public class CacheInvalidacionInteligente {
         
         @Override
         public String toString() {
-            return String.format("Invalidación: %d regiones, %d rutas, %d pendientes refresh", 
-                regionesTotales, rutasTrackeadas, colaRefreshPendientes);
+            return String.format("Invalidación: %d celdas, %d rutas, %d pendientes refresh", 
+                celdasIndexadas, rutasTrackeadas, colaRefreshPendientes);
         }
     }
 }
\ No newline at end of file
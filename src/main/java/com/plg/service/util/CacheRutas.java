@@ -1,17 +1,32 @@
 package com.plg.service.util;
 
 import com.plg.domain.Punto;
+import com.plg.domain.RutaCompacta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
 /**
  * Cache inteligente para almacenamiento de rutas pre-calculadas
- * Optimiza rendimiento evitando recálculos de A* para rutas frecuentes
+ * Optimiza rendimiento evitando recálculos de A* para rutas frecuentes.
+ * Admisión y expulsión W-TinyLFU ({@link CacheWTinyLfu}): aciertos e inserciones en O(1)
+ * y sin serializar las lecturas de la planificación paralela.
+ * El grid no es dirigido y todo tramo de una ruta óptima es óptimo, así que una consulta
+ * también se resuelve con la ruta inversa o con un tramo de otra ruta almacenada.
+ * Un índice invertido celda → rutas, mantenido al insertar y al expulsar, permite invalidar
+ * solo las rutas que cruzan un bloqueo, con costo proporcional a las rutas afectadas.
+ * Cada entrada guarda la versión del mapa de obstáculos en que se validó; al consultarla
+ * se revisan solo las celdas cambiadas desde esa versión, sin vaciar la cache por cambios.
+ * Tras un reinicio los fallos se consultan en el archivo persistido ({@link ArchivoCacheRutas})
+ * mientras coincida con el mapa vigente, y sus rutas se promueven a memoria al usarse.
+ * Opcionalmente las entradas expulsadas bajan a un nivel frío fuera del heap
+ * ({@link NivelRutasFueraDeHeap}) y vuelven al heap cuando se consultan otra vez
  */
 @Component
 public class CacheRutas {
@@ -22,15 +37,29 @@ public class CacheRutas {
     private static final int CAPACIDAD_MAXIMA_DEFAULT = 5000;
     private static final int LIMITE_HITS_WARM_UP = 10;
     private static final long TIEMPO_VIDA_MS = 3600000; // 1 hora
+    private static final int MAX_CANDIDATOS_SUBRUTA = 8;
+    // Mismo criterio que ResultadoAEstrella.rutaOptima para lo que se admite en la cache
+    private static final double FACTOR_OPTIMALIDAD_MINIMO = 0.95;
+    // Entrada sin versión: no hay gestor de obstáculos contra el cual validarla
+    private static final long SIN_VERSION = -1;
     
-    // Almacenamiento thread-safe
-    private final Map<ClaveRuta, EntradaCache> cache;
-    private final Map<ClaveRuta, Integer> contadorAccesos;
-    private final Queue<ClaveRuta> colaLRU;
+    @Autowired(required = false)
+    private GestorObstaculos gestorObstaculos;
+    
+    // Almacenamiento thread-safe con política de expulsión W-TinyLFU
+    private final CacheWTinyLfu<ClaveRuta, EntradaCache> cache;
+    // Celdas → rutas almacenadas, para tramos de otras rutas e invalidación por celdas
+    private final IndiceEspacialRutas<ClaveRuta> indiceCeldas = new IndiceEspacialRutas<>();
+    
+    // Rutas persistidas por una ejecución anterior, leídas bajo demanda del archivo mapeado
+    private volatile ArchivoCacheRutas archivoPersistido;
+    // Nivel frío fuera del heap para las entradas expulsadas; null si está deshabilitado
+    private volatile NivelRutasFueraDeHeap nivelFueraDeHeap;
     
     // Configuración
     private int capacidadMaxima;
     private boolean cacheHabilitado;
+    private volatile boolean subrutasHabilitadas = true;
     
     // Métricas
     private final AtomicLong totalConsultas = new AtomicLong(0);
@@ -38,13 +67,18 @@ public class CacheRutas {
     private final AtomicLong totalMisses = new AtomicLong(0);
     private final AtomicLong totalInserciones = new AtomicLong(0);
     private final AtomicLong totalEvictions = new AtomicLong(0);
+    private final AtomicLong totalHitsInversos = new AtomicLong(0);
+    private final AtomicLong totalHitsSubruta = new AtomicLong(0);
+    private final AtomicLong totalRevalidaciones = new AtomicLong(0);
+    private final AtomicLong totalInvalidacionesPerezosas = new AtomicLong(0);
+    private final AtomicLong totalHitsPersistidos = new AtomicLong(0);
+    private final AtomicLong totalHitsFueraDeHeap = new AtomicLong(0);
+    private final AtomicLong totalDegradaciones = new AtomicLong(0);
     
     public CacheRutas() {
         this.capacidadMaxima = CAPACIDAD_MAXIMA_DEFAULT;
         this.cacheHabilitado = true;
-        this.cache = new ConcurrentHashMap<>();
-        this.contadorAccesos = new ConcurrentHashMap<>();
-        this.colaLRU = new LinkedList<>();
+        this.cache = new CacheWTinyLfu<>(capacidadMaxima, this::registrarExpulsion);
     }
     
     /**
@@ -58,62 +92,110 @@ public class CacheRutas {
         ClaveRuta clave = new ClaveRuta(origen, destino);
         totalConsultas.incrementAndGet();
         
-        EntradaCache entrada = cache.get(clave);
+        EntradaCache entrada = cache.obtener(clave);
         
-        if (entrada != null && !entrada.estaExpirada()) {
+        if (entrada != null && esVigente(entrada)) {
             // Cache hit
             totalHits.incrementAndGet();
             entrada.actualizarUltimoAcceso();
-            contadorAccesos.merge(clave, 1, Integer::sum);
-            actualizarLRU(clave);
             
             logger.debug("Cache HIT: {} -> {} (distancia: {})", 
                 origen, destino, entrada.getRuta().size());
             
-            return Optional.of(new ArrayList<>(entrada.getRuta()));
-        } else {
-            // Cache miss
-            totalMisses.incrementAndGet();
-            
-            if (entrada != null) {
-                // Entrada expirada, remover
-                cache.remove(clave);
-                contadorAccesos.remove(clave);
-                colaLRU.remove(clave);
-            }
-            
-            logger.debug("Cache MISS: {} -> {}", origen, destino);
-            return Optional.empty();
+            // La ruta es inmutable: se entrega la misma instancia sin copiar
+            return Optional.of(entrada.getRuta());
+        }
+        
+        if (entrada != null) {
+            // Entrada expirada o cruzada por un obstáculo nuevo, remover
+            eliminarEntrada(clave);
+        }
+        
+        // Entrada degradada al nivel fuera del heap: vuelve al heap
+        RutaCompacta alternativa = promoverDesdeFueraDeHeap(origen, destino);
+        if (alternativa != null) {
+            totalHits.incrementAndGet();
+            totalHitsFueraDeHeap.incrementAndGet();
+            logger.debug("Cache HIT fuera de heap: {} -> {}", origen, destino);
+            return Optional.of(alternativa);
+        }
+        
+        // Ruta almacenada en sentido contrario
+        alternativa = buscarRutaInversa(origen, destino);
+        if (alternativa != null) {
+            totalHits.incrementAndGet();
+            totalHitsInversos.incrementAndGet();
+            logger.debug("Cache HIT inverso: {} -> {}", origen, destino);
+            return Optional.of(alternativa);
         }
+        
+        // Tramo de otra ruta que pasa por ambos extremos
+        alternativa = subrutasHabilitadas ? buscarSubruta(origen, destino) : null;
+        if (alternativa != null) {
+            totalHits.incrementAndGet();
+            totalHitsSubruta.incrementAndGet();
+            logger.debug("Cache HIT subruta: {} -> {}", origen, destino);
+            return Optional.of(alternativa);
+        }
+        
+        // Ruta persistida por una ejecución anterior sobre el mismo mapa
+        alternativa = buscarEnArchivoPersistido(origen, destino);
+        if (alternativa != null) {
+            totalHits.incrementAndGet();
+            totalHitsPersistidos.incrementAndGet();
+            logger.debug("Cache HIT persistido: {} -> {}", origen, destino);
+            return Optional.of(alternativa);
+        }
+        
+        // Cache miss
+        totalMisses.incrementAndGet();
+        logger.debug("Cache MISS: {} -> {}", origen, destino);
+        return Optional.empty();
     }
     
     /**
-     * Almacena una ruta en el cache
+     * Almacena una ruta en el cache; devuelve false si no se admitió (cache deshabilitado,
+     * ruta vacía o que cruza obstáculos vigentes)
      */
-    public void almacenarRuta(Punto origen, Punto destino, List<Punto> ruta) {
+    public boolean almacenarRuta(Punto origen, Punto destino, List<Punto> ruta) {
         if (!cacheHabilitado || ruta == null || ruta.isEmpty()) {
-            return;
+            return false;
         }
         
         ClaveRuta clave = new ClaveRuta(origen, destino);
-        
-        // Verificar espacio disponible
-        if (cache.size() >= capacidadMaxima) {
-            evictarRutaMenosUsada();
+        RutaCompacta rutaCompacta = RutaCompacta.de(ruta);
+        
+        // La ruta pudo calcularse sobre un mapa anterior: se valida contra el vigente
+        // y se etiqueta con su versión para revalidarla después solo con los cambios
+        long version = SIN_VERSION;
+        if (gestorObstaculos != null && gestorObstaculos.isMapaInicializado()) {
+            SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+            if (!estaLibre(rutaCompacta, mapa)) {
+                logger.debug("Cache SKIP: {} -> {} cruza obstáculos vigentes", origen, destino);
+                return false;
+            }
+            version = mapa.getVersion();
         }
         
         // Crear entrada de cache
-        EntradaCache entrada = new EntradaCache(new ArrayList<>(ruta));
+        EntradaCache entrada = new EntradaCache(rutaCompacta, version);
+        
+        // Se indexa antes de almacenar: si la política la rechaza, la expulsión la des-indexa
+        indiceCeldas.registrar(clave, entrada.getRuta());
         
-        // Almacenar
-        cache.put(clave, entrada);
-        contadorAccesos.put(clave, 1);
-        colaLRU.offer(clave);
+        // Almacenar; si la cache está llena la política decide qué entrada sale
+        EntradaCache anterior = cache.poner(clave, entrada);
+        if (anterior != null) {
+            // Se retiran las celdas de la ruta reemplazada y se restauran las compartidas
+            indiceCeldas.retirar(clave, anterior.getRuta());
+            indiceCeldas.registrar(clave, entrada.getRuta());
+        }
         
         totalInserciones.incrementAndGet();
         
         logger.debug("Cache STORE: {} -> {} (distancia: {})", 
             origen, destino, ruta.size());
+        return true;
     }
     
     /**
@@ -143,12 +225,16 @@ public class CacheRutas {
     }
     
     /**
-     * Invalida todo el cache (útil cuando cambian obstáculos)
+     * Invalida todo el cache. Un cambio de obstáculos no lo requiere: cada entrada
+     * se revalida contra las celdas cambiadas al consultarla
      */
     public void invalidarCache() {
-        cache.clear();
-        contadorAccesos.clear();
-        colaLRU.clear();
+        cache.limpiar();
+        indiceCeldas.limpiar();
+        NivelRutasFueraDeHeap nivel = nivelFueraDeHeap;
+        if (nivel != null) {
+            nivel.limpiar();
+        }
         
         logger.info("Cache invalidado completamente");
     }
@@ -157,21 +243,97 @@ public class CacheRutas {
      * Invalida rutas que pasan por un punto específico
      */
     public void invalidarRutasPorPunto(Punto punto) {
-        Set<ClaveRuta> clavesAEliminar = new HashSet<>();
+        int invalidadas = invalidarRutasQueCruzan(List.of(punto));
         
-        for (Map.Entry<ClaveRuta, EntradaCache> entry : cache.entrySet()) {
-            if (entry.getValue().getRuta().contains(punto)) {
-                clavesAEliminar.add(entry.getKey());
-            }
+        logger.info("Invalidadas {} rutas que pasan por punto {}", invalidadas, punto);
+    }
+    
+    /**
+     * Invalida las rutas que pasan por alguna de las celdas; solo visita las rutas del
+     * índice de esas celdas, sin recorrer el resto de la cache
+     */
+    public int invalidarRutasQueCruzan(Collection<Punto> celdas) {
+        Set<ClaveRuta> afectadas = rutasQueCruzan(celdas);
+        for (ClaveRuta clave : afectadas) {
+            eliminarEntrada(clave);
+        }
+        
+        if (!afectadas.isEmpty()) {
+            logger.debug("Invalidadas {} rutas que cruzan {} celdas", afectadas.size(), celdas.size());
+        }
+        return afectadas.size();
+    }
+    
+    /**
+     * Invalida las rutas que cruzan un bloqueo con forma de polígono abierto
+     */
+    public int invalidarRutasPorPolilinea(List<Punto> vertices) {
+        return invalidarRutasQueCruzan(GestorObstaculos.celdasDePolilinea(vertices));
+    }
+    
+    /**
+     * Invalida la ruta almacenada para un par concreto
+     */
+    public boolean invalidarRuta(Punto origen, Punto destino) {
+        return eliminarEntrada(new ClaveRuta(origen, destino));
+    }
+    
+    /**
+     * Entrega origen y destino de cada ruta almacenada que pasa por alguna de las celdas
+     */
+    public void paraCadaRutaQueCruza(Collection<Punto> celdas, BiConsumer<Punto, Punto> accion) {
+        for (ClaveRuta clave : rutasQueCruzan(celdas)) {
+            accion.accept(clave.getOrigen(), clave.getDestino());
         }
+    }
+    
+    /**
+     * Cantidad de celdas con al menos una ruta almacenada
+     */
+    public int getCeldasIndexadas() {
+        return indiceCeldas.getCeldasIndexadas();
+    }
+    
+    /**
+     * Conecta (o con null desconecta) el archivo persistido que respalda los fallos
+     */
+    public void conectarArchivoPersistido(ArchivoCacheRutas archivo) {
+        this.archivoPersistido = archivo;
         
-        for (ClaveRuta clave : clavesAEliminar) {
-            cache.remove(clave);
-            contadorAccesos.remove(clave);
-            colaLRU.remove(clave);
+        logger.info("Archivo de cache persistido {}", archivo != null ? "conectado: " + archivo : "desconectado");
+    }
+    
+    /**
+     * Recorre las rutas almacenadas que siguen vigentes, sin registrar accesos
+     */
+    public void paraCadaRuta(VisitanteRuta visitante) {
+        cache.paraCada((clave, entrada) -> {
+            if (esVigente(entrada)) {
+                visitante.visitar(clave.getOrigen(), clave.getDestino(), entrada.getRuta());
+            }
+        });
+        
+        // Las del nivel frío no tienen versión: se revisan completas contra el mapa vigente
+        NivelRutasFueraDeHeap nivel = nivelFueraDeHeap;
+        if (nivel != null) {
+            SnapshotObstaculos mapa = gestorObstaculos != null ? gestorObstaculos.obtenerSnapshot() : null;
+            nivel.paraCada((origen, destino, ruta) -> {
+                if (mapa == null || estaLibre(ruta, mapa)) {
+                    visitante.visitar(origen, destino, ruta);
+                }
+            });
         }
+    }
+    
+    /**
+     * Habilita el nivel fuera del heap con ese tope de memoria directa, o lo deshabilita
+     * con un tope no positivo (las rutas que contenía se descartan)
+     */
+    public void habilitarNivelFueraDeHeap(long bytesMaximos) {
+        this.nivelFueraDeHeap = bytesMaximos > 0 ? new NivelRutasFueraDeHeap(bytesMaximos) : null;
         
-        logger.info("Invalidadas {} rutas que pasan por punto {}", clavesAEliminar.size(), punto);
+        logger.info("Nivel fuera de heap {}", bytesMaximos > 0 
+            ? "habilitado: " + bytesMaximos / (1024 * 1024) + " MB" : "deshabilitado");
     }
     
     /**
@@ -189,10 +351,23 @@ public class CacheRutas {
         stats.setTotalMisses(misses);
         stats.setTotalInserciones(totalInserciones.get());
         stats.setTotalEvictions(totalEvictions.get());
+        stats.setTotalHitsInversos(totalHitsInversos.get());
+        stats.setTotalHitsSubruta(totalHitsSubruta.get());
+        stats.setTotalRevalidaciones(totalRevalidaciones.get());
+        stats.setTotalInvalidacionesPerezosas(totalInvalidacionesPerezosas.get());
+        stats.setTotalHitsPersistidos(totalHitsPersistidos.get());
+        stats.setTotalHitsFueraDeHeap(totalHitsFueraDeHeap.get());
+        stats.setTotalDegradaciones(totalDegradaciones.get());
+        NivelRutasFueraDeHeap nivel = nivelFueraDeHeap;
+        if (nivel != null) {
+            stats.setTamanoFueraDeHeap(nivel.getTamano());
+            stats.setBytesFueraDeHeap(nivel.getBytesVigentes());
+        }
         
-        stats.setTamanoActual(cache.size());
+        int tamano = cache.tamano();
+        stats.setTamanoActual(tamano);
         stats.setCapacidadMaxima(capacidadMaxima);
-        stats.setPorcentajeUso((double) cache.size() / capacidadMaxima * 100.0);
+        stats.setPorcentajeUso((double) tamano / capacidadMaxima * 100.0);
         
         if (consultas > 0) {
             stats.setTasaHit((double) hits / consultas * 100.0);
@@ -200,11 +375,18 @@ public class CacheRutas {
         }
         
         // Calcular entrada más popular
-        String rutaMasPopular = contadorAccesos.entrySet().stream()
-            .max(Map.Entry.comparingByValue())
-            .map(entry -> entry.getKey().toString() + " (" + entry.getValue() + " accesos)")
-            .orElse("N/A");
-        stats.setRutaMasPopular(rutaMasPopular);
+        ClaveRuta[] masPopular = new ClaveRuta[1];
+        long[] maximoAccesos = {0};
+        cache.paraCada((clave, entrada) -> {
+            long accesos = entrada.getAccesos();
+            if (accesos > maximoAccesos[0]) {
+                maximoAccesos[0] = accesos;
+                masPopular[0] = clave;
+            }
+        });
+        stats.setRutaMasPopular(masPopular[0] != null
+            ? masPopular[0] + " (" + maximoAccesos[0] + " accesos)"
+            : "N/A");
         
         return stats;
     }
@@ -215,17 +397,17 @@ public class CacheRutas {
     public void optimizarCache() {
         logger.info("Iniciando optimización de cache");
         
-        int tamanoInicial = cache.size();
+        int tamanoInicial = cache.tamano();
         
         // Eliminar entradas expiradas
         eliminarEntradasExpiradas();
         
         // Si aún está por encima del 80% de capacidad, eliminar las menos usadas
-        if (cache.size() > capacidadMaxima * 0.8) {
+        if (cache.tamano() > capacidadMaxima * 0.8) {
             eliminarEntradasMenosUsadas();
         }
         
-        int tamanoFinal = cache.size();
+        int tamanoFinal = cache.tamano();
         logger.info("Optimización completada: {} -> {} entradas", tamanoInicial, tamanoFinal);
     }
     
@@ -236,9 +418,7 @@ public class CacheRutas {
         this.capacidadMaxima = Math.max(100, nuevaCapacidad); // Mínimo 100
         
         // Reducir cache si excede nueva capacidad
-        while (cache.size() > capacidadMaxima) {
-            evictarRutaMenosUsada();
-        }
+        cache.configurarCapacidad(capacidadMaxima);
         
         logger.info("Capacidad del cache configurada a: {}", capacidadMaxima);
     }
@@ -256,40 +436,207 @@ public class CacheRutas {
         logger.info("Cache {}", habilitado ? "habilitado" : "deshabilitado");
     }
     
+    /**
+     * Habilita o deshabilita las respuestas con tramos de otras rutas; el índice de celdas
+     * se mantiene igual porque también lo usa la invalidación
+     */
+    public void habilitarSubrutas(boolean habilitadas) {
+        this.subrutasHabilitadas = habilitadas;
+        
+        logger.info("Subrutas del cache {}", habilitadas ? "habilitadas" : "deshabilitadas");
+    }
+    
     // Métodos privados
     
-    private void evictarRutaMenosUsada() {
-        if (cache.isEmpty()) return;
+    private RutaCompacta buscarRutaInversa(Punto origen, Punto destino) {
+        ClaveRuta claveInversa = new ClaveRuta(destino, origen);
+        EntradaCache entrada = cache.obtener(claveInversa);
+        if (entrada == null) {
+            RutaCompacta degradada = promoverDesdeFueraDeHeap(destino, origen);
+            return degradada != null ? degradada.invertida() : null;
+        }
+        if (!esVigente(entrada)) {
+            eliminarEntrada(claveInversa);
+            return null;
+        }
+        entrada.actualizarUltimoAcceso();
+        return entrada.getRuta().invertida();
+    }
+    
+    /**
+     * Busca una ruta almacenada que pase por origen y destino y devuelve el tramo entre
+     * ambos, invertido si los recorre en el otro sentido. Solo se revisan unas pocas
+     * candidatas, tomadas de la celda con menos rutas
+     */
+    private RutaCompacta buscarSubruta(Punto origen, Punto destino) {
+        if (origen.equals(destino)) {
+            return null;
+        }
+        Set<ClaveRuta> porOrigen = indiceCeldas.rutasEnCelda(origen.getX(), origen.getY());
+        Set<ClaveRuta> porDestino = indiceCeldas.rutasEnCelda(destino.getX(), destino.getY());
+        if (porOrigen.isEmpty() || porDestino.isEmpty()) {
+            return null;
+        }
+        Set<ClaveRuta> menor = porOrigen.size() <= porDestino.size() ? porOrigen : porDestino;
+        Set<ClaveRuta> mayor = menor == porOrigen ? porDestino : porOrigen;
+        
+        int revisadas = 0;
+        for (ClaveRuta clave : menor) {
+            if (revisadas >= MAX_CANDIDATOS_SUBRUTA) {
+                break;
+            }
+            if (!mayor.contains(clave)) {
+                continue;
+            }
+            revisadas++;
+            EntradaCache entrada = cache.obtener(clave);
+            if (entrada == null || !esVigente(entrada)) {
+                continue;
+            }
+            // El índice es una pista: se confirma contra la ruta vigente de la entrada
+            RutaCompacta ruta = entrada.getRuta();
+            int i = ruta.indiceDe(origen.getX(), origen.getY());
+            int j = ruta.indiceDe(destino.getX(), destino.getY());
+            if (i < 0 || j < 0 || !esTramoOptimo(origen, destino, Math.abs(j - i))) {
+                continue;
+            }
+            entrada.actualizarUltimoAcceso();
+            return i < j ? ruta.subRuta(i, j + 1) : ruta.subRuta(j, i + 1).invertida();
+        }
+        return null;
+    }
+    
+    /**
+     * Retira la ruta del nivel fuera del heap y la devuelve al heap si no expiró y sigue
+     * libre en el mapa vigente (almacenarRuta la revisa completa y la etiqueta de nuevo)
+     */
+    private RutaCompacta promoverDesdeFueraDeHeap(Punto origen, Punto destino) {
+        NivelRutasFueraDeHeap nivel = nivelFueraDeHeap;
+        if (nivel == null) {
+            return null;
+        }
+        NivelRutasFueraDeHeap.Registro registro = nivel.tomar(origen, destino);
+        if (registro == null || System.currentTimeMillis() - registro.getFecha() > TIEMPO_VIDA_MS) {
+            return null;
+        }
+        return almacenarRuta(origen, destino, registro.getRuta()) ? registro.getRuta() : null;
+    }
+    
+    /**
+     * Busca el par (o su inverso) en el archivo persistido si este corresponde al mapa
+     * vigente; la ruta encontrada se almacena en memoria para las siguientes consultas
+     */
+    private RutaCompacta buscarEnArchivoPersistido(Punto origen, Punto destino) {
+        ArchivoCacheRutas archivo = archivoPersistido;
+        if (archivo == null || gestorObstaculos == null
+                || !archivo.correspondeA(gestorObstaculos.obtenerSnapshot())) {
+            return null;
+        }
+        RutaCompacta ruta = archivo.buscar(origen, destino);
+        if (ruta == null) {
+            RutaCompacta inversa = archivo.buscar(destino, origen);
+            ruta = inversa != null ? inversa.invertida() : null;
+        }
+        if (ruta != null) {
+            almacenarRuta(origen, destino, ruta);
+        }
+        return ruta;
+    }
+    
+    /**
+     * Entrada no expirada y sin obstáculos nuevos en su ruta. Si el mapa cambió desde la
+     * versión de la entrada se prueban solo las celdas cambiadas en cada versión intermedia;
+     * si el historial ya no alcanza, la ruta se revisa completa contra el snapshot vigente
+     */
+    private boolean esVigente(EntradaCache entrada) {
+        if (entrada.estaExpirada()) {
+            return false;
+        }
+        long version = entrada.getVersionObstaculos();
+        if (version == SIN_VERSION || gestorObstaculos == null) {
+            return true;
+        }
+        SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+        if (mapa.getVersion() == version) {
+            return true;
+        }
         
-        // Encontrar entrada menos usada usando LRU + contador de accesos
-        ClaveRuta claveAEliminar = contadorAccesos.entrySet().stream()
-            .min(Map.Entry.comparingByValue())
-            .map(Map.Entry::getKey)
-            .orElse(colaLRU.poll());
+        totalRevalidaciones.incrementAndGet();
+        List<CambiosObstaculos> cambios = gestorObstaculos.cambiosDesde(version);
+        boolean libre;
+        long validadaHasta;
+        if (cambios == null) {
+            libre = estaLibre(entrada.getRuta(), mapa);
+            validadaHasta = mapa.getVersion();
+        } else {
+            libre = cambios.stream().noneMatch(cambio -> cambio.afectaA(entrada.getRuta()));
+            validadaHasta = cambios.isEmpty() ? version : cambios.get(cambios.size() - 1).getVersion();
+        }
         
-        if (claveAEliminar != null) {
-            cache.remove(claveAEliminar);
-            contadorAccesos.remove(claveAEliminar);
-            colaLRU.remove(claveAEliminar);
-            totalEvictions.incrementAndGet();
-            
-            logger.debug("Evicted ruta: {}", claveAEliminar);
+        if (!libre) {
+            totalInvalidacionesPerezosas.incrementAndGet();
+            return false;
+        }
+        entrada.setVersionObstaculos(validadaHasta);
+        return true;
+    }
+    
+    private static boolean estaLibre(List<Punto> ruta, SnapshotObstaculos mapa) {
+        for (Punto punto : ruta) {
+            if (!mapa.esValido(punto.getX(), punto.getY())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean esTramoOptimo(Punto origen, Punto destino, int pasos) {
+        return origen.distanciaManhattanHasta(destino) >= FACTOR_OPTIMALIDAD_MINIMO * pasos;
+    }
+    
+    private Set<ClaveRuta> rutasQueCruzan(Collection<Punto> celdas) {
+        Set<ClaveRuta> claves = new HashSet<>();
+        for (Punto celda : celdas) {
+            claves.addAll(indiceCeldas.rutasEnCelda(celda.getX(), celda.getY()));
+        }
+        return claves;
+    }
+    
+    private boolean eliminarEntrada(ClaveRuta clave) {
+        NivelRutasFueraDeHeap nivel = nivelFueraDeHeap;
+        boolean degradada = nivel != null && nivel.eliminar(clave.getOrigen(), clave.getDestino());
+        EntradaCache entrada = cache.eliminar(clave);
+        if (entrada == null) {
+            return degradada;
         }
+        indiceCeldas.retirar(clave, entrada.getRuta());
+        return true;
+    }
+    
+    private void registrarExpulsion(ClaveRuta clave, EntradaCache entrada) {
+        totalEvictions.incrementAndGet();
+        indiceCeldas.retirar(clave, entrada.getRuta());
+        
+        // Entrada fría: baja fuera del heap en lugar de perderse
+        NivelRutasFueraDeHeap nivel = nivelFueraDeHeap;
+        if (nivel != null && !entrada.estaExpirada()
+                && nivel.guardar(clave.getOrigen(), clave.getDestino(), entrada.getRuta(), entrada.getUltimoAcceso())) {
+            totalDegradaciones.incrementAndGet();
+        }
+        logger.debug("Evicted ruta: {}", clave);
     }
     
     private void eliminarEntradasExpiradas() {
         Set<ClaveRuta> clavesExpiradas = new HashSet<>();
         
-        for (Map.Entry<ClaveRuta, EntradaCache> entry : cache.entrySet()) {
-            if (entry.getValue().estaExpirada()) {
-                clavesExpiradas.add(entry.getKey());
+        cache.paraCada((clave, entrada) -> {
+            if (entrada.estaExpirada()) {
+                clavesExpiradas.add(clave);
             }
-        }
+        });
         
         for (ClaveRuta clave : clavesExpiradas) {
-            cache.remove(clave);
-            contadorAccesos.remove(clave);
-            colaLRU.remove(clave);
+            eliminarEntrada(clave);
         }
         
         if (!clavesExpiradas.isEmpty()) {
@@ -298,27 +645,11 @@ public class CacheRutas {
     }
     
     private void eliminarEntradasMenosUsadas() {
-        // Eliminar 20% de las entradas menos usadas
-        int cantidadAEliminar = (int) (cache.size() * 0.2);
+        // Eliminar 20% de las entradas, en el orden de expulsión de la política
+        int cantidadAEliminar = (int) (cache.tamano() * 0.2);
+        int eliminadas = cache.expulsar(cantidadAEliminar);
         
-        List<ClaveRuta> menosUsadas = contadorAccesos.entrySet().stream()
-            .sorted(Map.Entry.comparingByValue())
-            .limit(cantidadAEliminar)
-            .map(Map.Entry::getKey)
-            .toList();
-        
-        for (ClaveRuta clave : menosUsadas) {
-            cache.remove(clave);
-            contadorAccesos.remove(clave);
-            colaLRU.remove(clave);
-        }
-        
-        logger.debug("Eliminadas {} entradas menos usadas", menosUsadas.size());
-    }
-    
-    private void actualizarLRU(ClaveRuta clave) {
-        colaLRU.remove(clave);
-        colaLRU.offer(clave);
+        logger.debug("Eliminadas {} entradas menos usadas", eliminadas);
     }
     
     private void marcarParaPrecalculo(Punto origen, Punto destino) {
@@ -328,6 +659,11 @@ public class CacheRutas {
     
     // Clases auxiliares
     
+    @FunctionalInterface
+    public interface VisitanteRuta {
+        void visitar(Punto origen, Punto destino, RutaCompacta ruta);
+    }
+    
     private static class ClaveRuta {
         private final Punto origen;
         private final Punto destino;
@@ -339,6 +675,14 @@ public class CacheRutas {
             this.hashCode = Objects.hash(origen.getX(), origen.getY(), destino.getX(), destino.getY());
         }
         
+        public Punto getOrigen() {
+            return origen;
+        }
+        
+        public Punto getDestino() {
+            return destino;
+        }
+        
         @Override
         public boolean equals(Object obj) {
             if (this == obj) return true;
@@ -360,17 +704,22 @@ public class CacheRutas {
     }
     
     private static class EntradaCache {
-        private final List<Punto> ruta;
+        private final RutaCompacta ruta;
         private final long tiempoCreacion;
-        private long ultimoAcceso;
+        private volatile long ultimoAcceso;
+        private final LongAdder accesos = new LongAdder();
+        // Versión del mapa de obstáculos hasta la que se validó la ruta
+        private volatile long versionObstaculos;
         
-        public EntradaCache(List<Punto> ruta) {
+        public EntradaCache(RutaCompacta ruta, long versionObstaculos) {
             this.ruta = ruta;
+            this.versionObstaculos = versionObstaculos;
             this.tiempoCreacion = System.currentTimeMillis();
             this.ultimoAcceso = tiempoCreacion;
+            this.accesos.increment();
         }
         
-        public List<Punto> getRuta() {
+        public RutaCompacta getRuta() {
             return ruta;
         }
         
@@ -380,6 +729,23 @@ public class CacheRutas {
         
         public void actualizarUltimoAcceso() {
             this.ultimoAcceso = System.currentTimeMillis();
+            this.accesos.increment();
+        }
+        
+        public long getAccesos() {
+            return accesos.sum();
+        }
+        
+        public long getUltimoAcceso() {
+            return ultimoAcceso;
+        }
+        
+        public long getVersionObstaculos() {
+            return versionObstaculos;
+        }
+        
+        public void setVersionObstaculos(long versionObstaculos) {
+            this.versionObstaculos = versionObstaculos;
         }
     }
     
@@ -389,6 +755,15 @@ public class CacheRutas {
         private long totalMisses;
         private long totalInserciones;
         private long totalEvictions;
+        private long totalHitsInversos;
+        private long totalHitsSubruta;
+        private long totalRevalidaciones;
+        private long totalInvalidacionesPerezosas;
+        private long totalHitsPersistidos;
+        private long totalHitsFueraDeHeap;
+        private long totalDegradaciones;
+        private int tamanoFueraDeHeap;
+        private long bytesFueraDeHeap;
         private int tamanoActual;
         private int capacidadMaxima;
         private double porcentajeUso;
@@ -412,6 +787,35 @@ public class CacheRutas {
         public long getTotalEvictions() { return totalEvictions; }
         public void setTotalEvictions(long totalEvictions) { this.totalEvictions = totalEvictions; }
         
+        public long getTotalHitsInversos() { return totalHitsInversos; }
+        public void setTotalHitsInversos(long totalHitsInversos) { this.totalHitsInversos = totalHitsInversos; }
+        
+        public long getTotalHitsSubruta() { return totalHitsSubruta; }
+        public void setTotalHitsSubruta(long totalHitsSubruta) { this.totalHitsSubruta = totalHitsSubruta; }
+        
+        public long getTotalRevalidaciones() { return totalRevalidaciones; }
+        public void setTotalRevalidaciones(long totalRevalidaciones) { this.totalRevalidaciones = totalRevalidaciones; }
+        
+        public long getTotalInvalidacionesPerezosas() { return totalInvalidacionesPerezosas; }
+        public void setTotalInvalidacionesPerezosas(long totalInvalidacionesPerezosas) { 
+            this.totalInvalidacionesPerezosas = totalInvalidacionesPerezosas; 
+        }
+        
+        public long getTotalHitsPersistidos() { return totalHitsPersistidos; }
+        public void setTotalHitsPersistidos(long totalHitsPersistidos) { this.totalHitsPersistidos = totalHitsPersistidos; }
+        
+        public long getTotalHitsFueraDeHeap() { return totalHitsFueraDeHeap; }
+        public void setTotalHitsFueraDeHeap(long totalHitsFueraDeHeap) { this.totalHitsFueraDeHeap = totalHitsFueraDeHeap; }
+        
+        public long getTotalDegradaciones() { return totalDegradaciones; }
+        public void setTotalDegradaciones(long totalDegradaciones) { this.totalDegradaciones = totalDegradaciones; }
+        
+        public int getTamanoFueraDeHeap() { return tamanoFueraDeHeap; }
+        public void setTamanoFueraDeHeap(int tamanoFueraDeHeap) { this.tamanoFueraDeHeap = tamanoFueraDeHeap; }
+        
+        public long getBytesFueraDeHeap() { return bytesFueraDeHeap; }
+        public void setBytesFueraDeHeap(long bytesFueraDeHeap) { this.bytesFueraDeHeap = bytesFueraDeHeap; }
+        
         public int getTamanoActual() { return tamanoActual; }
         public void setTamanoActual(int tamanoActual) { this.tamanoActual = tamanoActual; }
         
@@ -9,12 +9,13 @@ import org.springframework.stereotype.Component;
 
 import java.util.*;
 import java.util.concurrent.*;
-import java.io.*;
 import java.nio.file.*;
 
 /**
  * Servicio especializado para estrategias de warm-up del cache
- * Implementa background loading, persistence y análisis de patrones
+ * Implementa background loading, persistence y análisis de patrones.
+ * Las rutas y frecuencias se persisten en un archivo binario versionado
+ * ({@link ArchivoCacheRutas}) que al reiniciar se mapea y se consulta bajo demanda
  */
 @Component
 public class CacheRutasWarmup {
@@ -27,16 +28,21 @@ public class CacheRutasWarmup {
     @Autowired
     private CacheRutas cacheRutas;
     
+    @Autowired
+    private GestorObstaculos gestorObstaculos;
+    
     // Background executor para pre-cálculos
     private final ScheduledExecutorService backgroundExecutor = 
         Executors.newScheduledThreadPool(2);
     
-    // Historial de rutas solicitadas
-    private final Map<String, Integer> historialRutas = new ConcurrentHashMap<>();
-    
     // Configuración
-    private static final String CACHE_PERSISTENCE_FILE = "cache_rutas.dat";
+    private static final String CACHE_PERSISTENCE_FILE = "cache_rutas.bin";
     private static final int TOP_RUTAS_FRECUENTES = 100;
+    private static final int ANCHO_SKETCH_FRECUENCIAS = 4096;
+    
+    // Historial de rutas solicitadas: memoria constante, solo conserva el top-K
+    private final ContadorRutasFrecuentes historialRutas =
+        new ContadorRutasFrecuentes(TOP_RUTAS_FRECUENTES, ANCHO_SKETCH_FRECUENCIAS);
     
     /**
      * Inicia warm-up completo del cache
@@ -82,6 +88,8 @@ public class CacheRutasWarmup {
             try {
                 List<ParRutaFrecuente> rutasFrecuentes = obtenerRutasMasFrecuentes();
                 precalcularRutasFrecuentesBackground(rutasFrecuentes);
+                // Envejecer las cuentas para que el top-K siga la demanda reciente
+                historialRutas.envejecer();
             } catch (Exception e) {
                 logger.error("Error en background loading: {}", e.getMessage(), e);
             }
@@ -89,63 +97,66 @@ public class CacheRutasWarmup {
     }
     
     /**
-     * Registra una ruta solicitada para análisis de frecuencia
+     * Registra una ruta solicitada para análisis de frecuencia. Se llama en cada cálculo
+     * de ruta, así que no reserva memoria
      */
     public void registrarRutaSolicitada(Punto origen, Punto destino) {
-        String clave = generarClaveRuta(origen, destino);
-        historialRutas.merge(clave, 1, Integer::sum);
+        historialRutas.registrar(origen, destino);
     }
     
     /**
-     * Obtiene las rutas más frecuentemente solicitadas
+     * Obtiene las rutas más frecuentemente solicitadas, de mayor a menor frecuencia
      */
     private List<ParRutaFrecuente> obtenerRutasMasFrecuentes() {
-        return historialRutas.entrySet().stream()
-            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-            .limit(TOP_RUTAS_FRECUENTES)
-            .map(entry -> parsearClaveRuta(entry.getKey(), entry.getValue()))
-            .filter(Objects::nonNull)
-            .toList();
+        List<ParRutaFrecuente> rutasFrecuentes = new ArrayList<>();
+        historialRutas.paraCadaFrecuente(TOP_RUTAS_FRECUENTES, (origen, destino, frecuencia) ->
+            rutasFrecuentes.add(new ParRutaFrecuente(origen, destino, frecuencia)));
+        return rutasFrecuentes;
     }
     
     /**
-     * Pre-calcula rutas frecuentes en background
+     * Pre-calcula rutas frecuentes en background, una búsqueda multi-destino por origen
      */
     private void precalcularRutasFrecuentesBackground(List<ParRutaFrecuente> rutasFrecuentes) {
         logger.debug("Iniciando pre-cálculo background de {} rutas frecuentes", rutasFrecuentes.size());
         
+        // Solo calcular las que no están en cache, agrupadas por origen
+        Map<Punto, List<Punto>> destinosPorOrigen = new LinkedHashMap<>();
         for (ParRutaFrecuente par : rutasFrecuentes) {
-            // Solo calcular si no está en cache
             if (cacheRutas.obtenerRuta(par.getOrigen(), par.getDestino()).isEmpty()) {
-                try {
-                    aEstrellaService.calcularRuta(par.getOrigen(), par.getDestino());
-                    Thread.sleep(50); // Pequeña pausa para no saturar
-                } catch (Exception e) {
-                    logger.warn("Error pre-calculando ruta {}: {}", par, e.getMessage());
-                }
+                destinosPorOrigen.computeIfAbsent(par.getOrigen(), origen -> new ArrayList<>()).add(par.getDestino());
+            }
+        }
+        
+        for (Map.Entry<Punto, List<Punto>> grupo : destinosPorOrigen.entrySet()) {
+            try {
+                aEstrellaService.precalcularRutasDesde(grupo.getKey(), grupo.getValue());
+                Thread.sleep(50); // Pequeña pausa para no saturar
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warn("Error pre-calculando rutas desde {}: {}", grupo.getKey(), e.getMessage());
             }
         }
     }
     
     /**
-     * Guarda el cache en disco para persistencia
+     * Guarda el cache en disco para persistencia: las rutas vigentes, etiquetadas con
+     * la huella del mapa actual, y el historial de rutas solicitadas
      */
     public void guardarCacheEnDisco() {
         try {
-            CacheRutas.EstadisticasCache stats = cacheRutas.obtenerEstadisticas();
+            ArchivoCacheRutas.Escritor escritor = new ArchivoCacheRutas.Escritor(gestorObstaculos.obtenerSnapshot());
+            cacheRutas.paraCadaRuta(escritor::agregarRuta);
             
-            Map<String, Object> datosCache = new HashMap<>();
-            datosCache.put("timestamp", System.currentTimeMillis());
-            datosCache.put("estadisticas", stats);
-            datosCache.put("historialRutas", new HashMap<>(historialRutas));
+            historialRutas.paraCadaFrecuente(TOP_RUTAS_FRECUENTES, escritor::agregarFrecuencia);
             
-            // Serializar a disco
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    Files.newOutputStream(Paths.get(CACHE_PERSISTENCE_FILE)))) {
-                oos.writeObject(datosCache);
-            }
+            // Escribir a disco
+            escritor.escribir(Paths.get(CACHE_PERSISTENCE_FILE));
             
-            logger.info("Cache guardado en disco: {} entradas", stats.getTamanoActual());
+            logger.info("Cache guardado en disco: {} rutas, {} rutas en historial", 
+                escritor.getCantidadRutas(), historialRutas.getTamano());
             
         } catch (Exception e) {
             logger.error("Error guardando cache en disco: {}", e.getMessage(), e);
@@ -153,42 +164,34 @@ public class CacheRutasWarmup {
     }
     
     /**
-     * Carga el cache desde disco
+     * Carga el cache desde disco: mapea el archivo y solo lee la cabecera y el historial;
+     * las rutas quedan en el archivo y la cache las consulta a medida que se piden
      */
-    @SuppressWarnings("unchecked")
     private void cargarCacheDesdeDiscoDisk() {
         try {
-            Path cacheFile = Paths.get(CACHE_PERSISTENCE_FILE);
-            if (!Files.exists(cacheFile)) {
+            Path archivo = Paths.get(CACHE_PERSISTENCE_FILE);
+            if (!Files.exists(archivo)) {
                 logger.info("No existe archivo de cache persistido");
                 return;
             }
             
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    Files.newInputStream(cacheFile))) {
-                
-                Map<String, Object> datosCache = (Map<String, Object>) ois.readObject();
-                
+            ArchivoCacheRutas persistido = ArchivoCacheRutas.abrir(archivo);
+            
+            long tiempoTranscurrido = System.currentTimeMillis() - persistido.getFecha();
+            
+            // Solo usar historial si es reciente (menos de 24 horas)
+            if (tiempoTranscurrido < TimeUnit.HOURS.toMillis(24)) {
                 // Restaurar historial de rutas
-                Map<String, Integer> historialCargado = 
-                    (Map<String, Integer>) datosCache.get("historialRutas");
-                if (historialCargado != null) {
-                    historialRutas.putAll(historialCargado);
-                }
-                
-                long timestamp = (Long) datosCache.get("timestamp");
-                long tiempoTranscurrido = System.currentTimeMillis() - timestamp;
-                
-                // Solo usar cache si es reciente (menos de 24 horas)
-                if (tiempoTranscurrido < TimeUnit.HOURS.toMillis(24)) {
-                    logger.info("Cache cargado desde disco: {} rutas en historial", 
-                        historialRutas.size());
-                } else {
-                    logger.info("Cache en disco obsoleto, iniciando limpio");
-                    historialRutas.clear();
-                }
+                persistido.paraCadaFrecuencia(historialRutas::registrar);
+                logger.info("Cache cargado desde disco: {} rutas en historial", 
+                    historialRutas.getTamano());
+            } else {
+                logger.info("Historial en disco obsoleto, iniciando limpio");
             }
             
+            // Las rutas valen mientras el mapa coincida con la huella del archivo
+            cacheRutas.conectarArchivoPersistido(persistido);
+            
         } catch (Exception e) {
             logger.error("Error cargando cache desde disco: {}", e.getMessage(), e);
         }
@@ -228,29 +231,6 @@ public class CacheRutasWarmup {
         }
     }
     
-    // Métodos auxiliares
-    
-    private String generarClaveRuta(Punto origen, Punto destino) {
-        return String.format("%d,%d->%d,%d", 
-            origen.getX(), origen.getY(), destino.getX(), destino.getY());
-    }
-    
-    private ParRutaFrecuente parsearClaveRuta(String clave, int frecuencia) {
-        try {
-            String[] partes = clave.split("->");
-            String[] origenStr = partes[0].split(",");
-            String[] destinoStr = partes[1].split(",");
-            
-            Punto origen = new Punto(Integer.parseInt(origenStr[0]), Integer.parseInt(origenStr[1]));
-            Punto destino = new Punto(Integer.parseInt(destinoStr[0]), Integer.parseInt(destinoStr[1]));
-            
-            return new ParRutaFrecuente(origen, destino, frecuencia);
-        } catch (Exception e) {
-            logger.warn("Error parseando clave de ruta: {}", clave);
-            return null;
-        }
-    }
-    
     /**
      * Clase auxiliar para rutas frecuentes
      */
@@ -0,0 +1,374 @@
+package com.plg.service.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Cache acotado con política W-TinyLFU: una ventana LRU pequeña (1%) recibe las entradas
+ * nuevas y la región principal es un LRU segmentado (probatoria 20% / protegida 80%).
+ * Cuando la cache está llena, la entrada que sale de la ventana solo desplaza a la víctima
+ * de la probatoria si el sketch de frecuencias la estima más popular.
+ *
+ * Las lecturas no toman candado: consultan el ConcurrentHashMap y anotan el acceso en un
+ * buffer con pérdida que se drena en lote con tryLock. Inserciones, borrados y el drenado
+ * ajustan listas doblemente enlazadas intrusivas bajo un único candado, todo en O(1)
+ */
+public class CacheWTinyLfu<K, V> {
+
+    private static final double PROPORCION_VENTANA = 0.01;
+    private static final double PROPORCION_PROTEGIDA = 0.8;
+    private static final int UMBRAL_DRENADO = 64;
+    private static final int MAXIMO_BUFFER_LECTURAS = 1024;
+
+    private static final byte VENTANA = 0;
+    private static final byte PROBATORIA = 1;
+    private static final byte PROTEGIDA = 2;
+    private static final byte RETIRADO = 3;
+
+    private final ConcurrentHashMap<K, Nodo<K, V>> mapa = new ConcurrentHashMap<>();
+    private final Queue<Nodo<K, V>> bufferLecturas = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger lecturasPendientes = new AtomicInteger();
+    private final ReentrantLock candado = new ReentrantLock();
+    private final BiConsumer<K, V> alExpulsar;
+
+    // Estado de la política, protegido por candado
+    private final ListaLru<K, V> ventana = new ListaLru<>();
+    private final ListaLru<K, V> probatoria = new ListaLru<>();
+    private final ListaLru<K, V> protegida = new ListaLru<>();
+    private final SketchFrecuencia sketch;
+    private int capacidad;
+    private int capacidadVentana;
+    private int capacidadProtegida;
+
+    /**
+     * @param alExpulsar se invoca fuera del candado por cada entrada expulsada por capacidad
+     */
+    public CacheWTinyLfu(int capacidad, BiConsumer<K, V> alExpulsar) {
+        this.alExpulsar = alExpulsar;
+        this.sketch = new SketchFrecuencia(capacidad);
+        asignarCapacidades(capacidad);
+    }
+
+    /**
+     * Valor asociado a la clave o null; registra el acceso para la política sin bloquear
+     */
+    public V obtener(K clave) {
+        Nodo<K, V> nodo = mapa.get(clave);
+        if (nodo == null) {
+            return null;
+        }
+        registrarLectura(nodo);
+        return nodo.valor;
+    }
+
+    /**
+     * Inserta o reemplaza el valor; si la cache excede su capacidad expulsa según W-TinyLFU.
+     * Devuelve el valor reemplazado, o null si la clave era nueva
+     */
+    public V poner(K clave, V valor) {
+        List<Nodo<K, V>> expulsados = new ArrayList<>();
+        candado.lock();
+        try {
+            drenarLecturas();
+            Nodo<K, V> existente = mapa.get(clave);
+            if (existente != null) {
+                V anterior = existente.valor;
+                existente.valor = valor;
+                alAcceder(existente);
+                return anterior;
+            }
+            Nodo<K, V> nodo = new Nodo<>(clave, valor);
+            mapa.put(clave, nodo);
+            sketch.incrementar(clave.hashCode());
+            ventana.agregarPrimero(nodo, VENTANA);
+            equilibrar(expulsados);
+        } finally {
+            candado.unlock();
+        }
+        notificarExpulsados(expulsados);
+        return null;
+    }
+
+    /**
+     * Elimina la entrada (sin contarla como expulsión) y devuelve su valor, o null
+     */
+    public V eliminar(K clave) {
+        candado.lock();
+        try {
+            Nodo<K, V> nodo = mapa.remove(clave);
+            if (nodo == null) {
+                return null;
+            }
+            desenlazar(nodo);
+            return nodo.valor;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    /**
+     * Expulsa hasta {@code cantidad} entradas en el orden de la política: probatoria,
+     * ventana y por último protegida, cada una desde su extremo menos reciente
+     */
+    public int expulsar(int cantidad) {
+        List<Nodo<K, V>> expulsados = new ArrayList<>();
+        candado.lock();
+        try {
+            drenarLecturas();
+            for (int i = 0; i < cantidad; i++) {
+                Nodo<K, V> victima = siguienteVictima();
+                if (victima == null) {
+                    break;
+                }
+                retirar(victima, expulsados);
+            }
+        } finally {
+            candado.unlock();
+        }
+        notificarExpulsados(expulsados);
+        return expulsados.size();
+    }
+
+    public void configurarCapacidad(int nuevaCapacidad) {
+        List<Nodo<K, V>> expulsados = new ArrayList<>();
+        candado.lock();
+        try {
+            asignarCapacidades(nuevaCapacidad);
+            sketch.redimensionar(nuevaCapacidad);
+            while (protegida.tamano > capacidadProtegida) {
+                probatoria.agregarPrimero(protegida.quitarUltimo(), PROBATORIA);
+            }
+            equilibrar(expulsados);
+        } finally {
+            candado.unlock();
+        }
+        notificarExpulsados(expulsados);
+    }
+
+    public void limpiar() {
+        candado.lock();
+        try {
+            for (Nodo<K, V> nodo : mapa.values()) {
+                nodo.region = RETIRADO;
+            }
+            mapa.clear();
+            ventana.limpiar();
+            probatoria.limpiar();
+            protegida.limpiar();
+            bufferLecturas.clear();
+            lecturasPendientes.set(0);
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    public int tamano() {
+        return mapa.size();
+    }
+
+    /**
+     * Recorre las entradas vigentes sin registrar accesos (vista débilmente consistente)
+     */
+    public void paraCada(BiConsumer<K, V> accion) {
+        for (Nodo<K, V> nodo : mapa.values()) {
+            accion.accept(nodo.clave, nodo.valor);
+        }
+    }
+
+    // Métodos privados
+
+    private void asignarCapacidades(int nuevaCapacidad) {
+        this.capacidad = Math.max(1, nuevaCapacidad);
+        this.capacidadVentana = Math.max(1, (int) (capacidad * PROPORCION_VENTANA));
+        this.capacidadProtegida = (int) ((capacidad - capacidadVentana) * PROPORCION_PROTEGIDA);
+    }
+
+    private void registrarLectura(Nodo<K, V> nodo) {
+        if (lecturasPendientes.incrementAndGet() <= MAXIMO_BUFFER_LECTURAS) {
+            bufferLecturas.offer(nodo);
+        } else {
+            // Buffer lleno: se descarta el acceso, la política tolera pérdidas
+            lecturasPendientes.decrementAndGet();
+        }
+        if (lecturasPendientes.get() >= UMBRAL_DRENADO && candado.tryLock()) {
+            try {
+                drenarLecturas();
+            } finally {
+                candado.unlock();
+            }
+        }
+    }
+
+    private void drenarLecturas() {
+        Nodo<K, V> nodo;
+        while ((nodo = bufferLecturas.poll()) != null) {
+            lecturasPendientes.decrementAndGet();
+            alAcceder(nodo);
+        }
+    }
+
+    private void alAcceder(Nodo<K, V> nodo) {
+        if (nodo.region == RETIRADO) {
+            return;
+        }
+        sketch.incrementar(nodo.clave.hashCode());
+        switch (nodo.region) {
+            case VENTANA -> ventana.moverAlFrente(nodo);
+            case PROBATORIA -> {
+                // Segundo acceso en la región principal: promoción a protegida
+                probatoria.quitar(nodo);
+                protegida.agregarPrimero(nodo, PROTEGIDA);
+                if (protegida.tamano > capacidadProtegida) {
+                    probatoria.agregarPrimero(protegida.quitarUltimo(), PROBATORIA);
+                }
+            }
+            case PROTEGIDA -> protegida.moverAlFrente(nodo);
+            default -> { }
+        }
+    }
+
+    private void equilibrar(List<Nodo<K, V>> expulsados) {
+        while (ventana.tamano > capacidadVentana) {
+            Nodo<K, V> candidato = ventana.quitarUltimo();
+            probatoria.agregarPrimero(candidato, PROBATORIA);
+            if (mapa.size() > capacidad) {
+                admitirOExpulsar(candidato, expulsados);
+            }
+        }
+        while (mapa.size() > capacidad) {
+            Nodo<K, V> victima = siguienteVictima();
+            if (victima == null) {
+                break;
+            }
+            retirar(victima, expulsados);
+        }
+    }
+
+    /**
+     * Duelo TinyLFU: el candidato recién salido de la ventana entra a la región principal
+     * solo si es más frecuente que la víctima; en otro caso se expulsa él mismo
+     */
+    private void admitirOExpulsar(Nodo<K, V> candidato, List<Nodo<K, V>> expulsados) {
+        Nodo<K, V> victima = probatoria.ultimo();
+        if (victima == candidato) {
+            victima = protegida.ultimo();
+        }
+        if (victima == null
+                || sketch.frecuencia(candidato.clave.hashCode()) <= sketch.frecuencia(victima.clave.hashCode())) {
+            retirar(candidato, expulsados);
+        } else {
+            retirar(victima, expulsados);
+        }
+    }
+
+    private Nodo<K, V> siguienteVictima() {
+        Nodo<K, V> victima = probatoria.ultimo();
+        if (victima == null) {
+            victima = ventana.ultimo();
+        }
+        if (victima == null) {
+            victima = protegida.ultimo();
+        }
+        return victima;
+    }
+
+    private void retirar(Nodo<K, V> nodo, List<Nodo<K, V>> expulsados) {
+        mapa.remove(nodo.clave, nodo);
+        desenlazar(nodo);
+        expulsados.add(nodo);
+    }
+
+    private void desenlazar(Nodo<K, V> nodo) {
+        switch (nodo.region) {
+            case VENTANA -> ventana.quitar(nodo);
+            case PROBATORIA -> probatoria.quitar(nodo);
+            case PROTEGIDA -> protegida.quitar(nodo);
+            default -> { }
+        }
+        nodo.region = RETIRADO;
+    }
+
+    private void notificarExpulsados(List<Nodo<K, V>> expulsados) {
+        if (alExpulsar == null) {
+            return;
+        }
+        for (Nodo<K, V> nodo : expulsados) {
+            alExpulsar.accept(nodo.clave, nodo.valor);
+        }
+    }
+
+    // Clases auxiliares
+
+    private static final class Nodo<K, V> {
+        private final K clave;
+        private volatile V valor;
+        private volatile byte region;
+        private Nodo<K, V> anterior;
+        private Nodo<K, V> siguiente;
+
+        private Nodo(K clave, V valor) {
+            this.clave = clave;
+            this.valor = valor;
+        }
+    }
+
+    /**
+     * Lista LRU intrusiva con centinela: primero = más reciente, último = víctima
+     */
+    private static final class ListaLru<K, V> {
+        private final Nodo<K, V> centinela = new Nodo<>(null, null);
+        private int tamano;
+
+        private ListaLru() {
+            centinela.anterior = centinela;
+            centinela.siguiente = centinela;
+        }
+
+        private void agregarPrimero(Nodo<K, V> nodo, byte region) {
+            nodo.region = region;
+            nodo.anterior = centinela;
+            nodo.siguiente = centinela.siguiente;
+            centinela.siguiente.anterior = nodo;
+            centinela.siguiente = nodo;
+            tamano++;
+        }
+
+        private void quitar(Nodo<K, V> nodo) {
+            nodo.anterior.siguiente = nodo.siguiente;
+            nodo.siguiente.anterior = nodo.anterior;
+            nodo.anterior = null;
+            nodo.siguiente = null;
+            tamano--;
+        }
+
+        private void moverAlFrente(Nodo<K, V> nodo) {
+            byte region = nodo.region;
+            quitar(nodo);
+            agregarPrimero(nodo, region);
+        }
+
+        private Nodo<K, V> ultimo() {
+            return centinela.anterior == centinela ? null : centinela.anterior;
+        }
+
+        private Nodo<K, V> quitarUltimo() {
+            Nodo<K, V> nodo = ultimo();
+            if (nodo != null) {
+                quitar(nodo);
+            }
+            return nodo;
+        }
+
+        private void limpiar() {
+            centinela.anterior = centinela;
+            centinela.siguiente = centinela;
+            tamano = 0;
+        }
+    }
+}
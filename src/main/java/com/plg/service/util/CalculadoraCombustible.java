@@ -5,6 +5,7 @@ import com.plg.domain.enumeration.TipoSegmento;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
@@ -36,6 +37,9 @@ public class CalculadoraCombustible {
     private static final double PESO_CARGA_MAXIMA_TC = 5.0;
     private static final double PESO_CARGA_MAXIMA_TD = 2.5;
     
+    @Autowired
+    private CamposDistanciaAlmacenes camposDistanciaAlmacenes;
+    
     /**
      * Valida si una ruta completa es factible con el combustible disponible
      */
@@ -178,7 +182,11 @@ public class CalculadoraCombustible {
                                        Camion camion, double volumenCargaM3, 
                                        double combustibleDisponible) {
         
-        int distanciaGrid = origen.distanciaManhattanHasta(destino);
+        return puedeRecorrer(origen.distanciaManhattanHasta(destino), camion, volumenCargaM3, combustibleDisponible);
+    }
+    
+    private boolean puedeRecorrer(int distanciaGrid, Camion camion, double volumenCargaM3,
+                                  double combustibleDisponible) {
         double distanciaKm = distanciaGrid * FACTOR_CONVERSION_KM;
         
         double pesoTotal = calcularPesoInicialCamion(camion,
@@ -234,22 +242,23 @@ public class CalculadoraCombustible {
     private double evaluarAlmacenRetorno(Punto posicionActual, Almacen almacen, 
                                     Camion camion, double combustibleDisponible) {
         
-        Punto posicionAlmacen = new Punto(almacen.getX(), almacen.getY());
+        int distanciaGrid = distanciaRetornoGrid(posicionActual, almacen);
         
         // 1. CRITERIO DE VIABILIDAD (ELIMINA OPCIONES NO ALCANZABLES)
-        if (!puedeAlcanzarDestino(posicionActual, posicionAlmacen, camion, 0.0, combustibleDisponible)) {
+        if (distanciaGrid == Integer.MAX_VALUE
+                || !puedeRecorrer(distanciaGrid, camion, 0.0, combustibleDisponible)) {
             return Double.MIN_VALUE; // No alcanzable = score mínimo
         }
         
         // 2. CRITERIO DE DISTANCIA (30% del score)
-        double distancia = posicionActual.distanciaManhattanHasta(posicionAlmacen);
+        double distancia = distanciaGrid;
         double scoreDistancia = 1.0 / (distancia + 1); // Inverso de la distancia
         
         // 3. CRITERIO DE CAPACIDAD DEL ALMACÉN (25% del score)
         double scoreCapacidad = Math.min(almacen.getCapacidad() / 1000.0, 1.0); // Normalizado a [0,1]
         
         // 4. CRITERIO DE COMBUSTIBLE RESTANTE DESPUÉS DEL RETORNO (20% del score)
-        double consumoEstimado = calcularConsumoEstimadoRetorno(posicionActual, posicionAlmacen, camion);
+        double consumoEstimado = calcularConsumoEstimadoRetorno(distanciaGrid, camion);
         double combustibleRestante = combustibleDisponible - consumoEstimado;
         double scoreCombustible = Math.max(0, combustibleRestante / CAPACIDAD_TANQUE_GALONES);
         
@@ -269,14 +278,31 @@ public class CalculadoraCombustible {
         return scoreTotal;
     }
 
+    /**
+     * Distancia real hasta el almacén según su campo de distancia (MAX_VALUE si no hay ruta);
+     * Manhattan cuando el campo no está disponible
+     */
+    private int distanciaRetornoGrid(Punto posicionActual, Almacen almacen) {
+        Punto posicionAlmacen = new Punto(almacen.getX(), almacen.getY());
+        if (camposDistanciaAlmacenes != null) {
+            int distancia = camposDistanciaAlmacenes.distancia(posicionActual, posicionAlmacen);
+            if (distancia == CamposDistanciaAlmacenes.INALCANZABLE) {
+                return Integer.MAX_VALUE;
+            }
+            if (distancia != CamposDistanciaAlmacenes.NO_DISPONIBLE) {
+                return distancia;
+            }
+        }
+        return posicionActual.distanciaManhattanHasta(posicionAlmacen);
+    }
+
     /**
      * Calcula consumo estimado para llegar al almacén de retorno
      */
-    private double calcularConsumoEstimadoRetorno(Punto origen, Punto destino, Camion camion) {
+    private double calcularConsumoEstimadoRetorno(int distanciaGrid, Camion camion) {
         // Peso solo con tara del camión (sin carga)
         double pesoTara = obtenerPesoTara(camion);
         
-        int distanciaGrid = origen.distanciaManhattanHasta(destino);
         double distanciaKm = distanciaGrid * FACTOR_CONVERSION_KM;
         
         // Fórmula: Distancia[Km] × Peso[Ton] ÷ 180
@@ -324,8 +350,9 @@ public class CalculadoraCombustible {
                 AlmacenOpcionRetorno opcion = new AlmacenOpcionRetorno();
                 opcion.setAlmacen(almacen);
                 opcion.setScore(score);
-                opcion.setDistanciaKm(posicionActual.distanciaManhattanHasta(new Punto(almacen.getX(), almacen.getY())) * FACTOR_CONVERSION_KM);
-                opcion.setCombustibleRestanteEstimado(combustibleDisponible - calcularConsumoEstimadoRetorno(posicionActual, new Punto(almacen.getX(), almacen.getY()), camion));
+                int distanciaGrid = distanciaRetornoGrid(posicionActual, almacen);
+                opcion.setDistanciaKm(distanciaGrid * FACTOR_CONVERSION_KM);
+                opcion.setCombustibleRestanteEstimado(combustibleDisponible - calcularConsumoEstimadoRetorno(distanciaGrid, camion));
                 opciones.add(opcion);
             }
         }
@@ -517,8 +544,8 @@ public class CalculadoraCombustible {
             resultado.setAlmacenSeleccionado(almacenOptimal);
             resultado.setTipoResultado(TipoResultadoSeleccion.EXITO_NORMAL);
             resultado.setCombustibleRestanteEstimado(
-                combustibleDisponible - calcularConsumoEstimadoRetorno(posicionActual, 
-                    new Punto(almacenOptimal.getX(), almacenOptimal.getY()), camion)
+                combustibleDisponible - calcularConsumoEstimadoRetorno(
+                    distanciaRetornoGrid(posicionActual, almacenOptimal), camion)
             );
             
             // Verificar si hay alertas tempranas
@@ -587,11 +614,12 @@ public class CalculadoraCombustible {
         double menorDistancia = Double.MAX_VALUE;
         
         for (Almacen almacen : almacenesDisponibles) {
-            Punto posicionAlmacen = new Punto(almacen.getX(), almacen.getY());
+            int distanciaGrid = distanciaRetornoGrid(posicionActual, almacen);
             
             // Solo considerar si es alcanzable
-            if (puedeAlcanzarDestino(posicionActual, posicionAlmacen, camion, 0.0, combustibleDisponible)) {
-                double distancia = posicionActual.distanciaManhattanHasta(posicionAlmacen);
+            if (distanciaGrid != Integer.MAX_VALUE
+                    && puedeRecorrer(distanciaGrid, camion, 0.0, combustibleDisponible)) {
+                double distancia = distanciaGrid;
                 
                 if (distancia < menorDistancia) {
                     menorDistancia = distancia;
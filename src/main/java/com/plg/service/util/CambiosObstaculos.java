@@ -0,0 +1,97 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+import com.plg.domain.RutaCompacta;
+
+import java.util.List;
+
+/**
+ * Celdas cuyo estado cambió al publicar una versión del mapa de ocupación respecto de la
+ * anterior (XOR de ambos snapshots), como bitset con la indexación de {@link SnapshotObstaculos}.
+ * Cuando son pocas también se listan, para probarlas contra una ruta compacta sin recorrerla.
+ * Permite revalidar una ruta calculada en una versión previa mirando solo lo que cambió
+ */
+public final class CambiosObstaculos {
+
+    private static final int MAXIMO_CELDAS_LISTADAS = 64;
+
+    private final long versionAnterior;
+    private final long version;
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+    private final int ancho;
+    private final long[] cambiadas;
+    private final int[] celdas;
+
+    private CambiosObstaculos(SnapshotObstaculos anterior, SnapshotObstaculos nuevo, long[] cambiadas, int total) {
+        this.versionAnterior = anterior.getVersion();
+        this.version = nuevo.getVersion();
+        this.minX = nuevo.getMinX();
+        this.minY = nuevo.getMinY();
+        this.maxX = nuevo.getMaxX();
+        this.maxY = nuevo.getMaxY();
+        this.ancho = nuevo.getAncho();
+        this.cambiadas = cambiadas;
+        this.celdas = total <= MAXIMO_CELDAS_LISTADAS ? listar(cambiadas, total) : null;
+    }
+
+    /**
+     * Cambios entre dos snapshots consecutivos de la misma geometría
+     * @throws IllegalArgumentException si las geometrías no coinciden
+     */
+    static CambiosObstaculos entre(SnapshotObstaculos anterior, SnapshotObstaculos nuevo) {
+        long[] cambiadas = new long[SnapshotObstaculos.palabrasPara(
+            nuevo.getMinX(), nuevo.getMinY(), nuevo.getMaxX(), nuevo.getMaxY())];
+        int total = anterior.paraCadaCeldaDistinta(nuevo, celda -> cambiadas[celda >>> 6] |= 1L << celda);
+        if (total < 0) {
+            throw new IllegalArgumentException("Los snapshots no comparten geometría");
+        }
+        return new CambiosObstaculos(anterior, nuevo, cambiadas, total);
+    }
+
+    /**
+     * Indica si alguna celda cambiada está en la ruta. Con pocas celdas listadas y una ruta
+     * compacta se prueba cada celda contra los tramos; si no, se recorre la ruta sobre el bitset
+     */
+    public boolean afectaA(List<Punto> ruta) {
+        if (celdas != null && ruta instanceof RutaCompacta compacta
+                && (long) celdas.length * compacta.getCantidadTramos() < compacta.size()) {
+            for (int celda : celdas) {
+                if (compacta.indiceDe(celda % ancho + minX, celda / ancho + minY) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (Punto punto : ruta) {
+            int x = punto.getX();
+            int y = punto.getY();
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                continue;
+            }
+            int celda = (y - minY) * ancho + (x - minX);
+            if ((cambiadas[celda >>> 6] & (1L << celda)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getVersionAnterior() { return versionAnterior; }
+    public long getVersion() { return version; }
+
+    private static int[] listar(long[] bits, int total) {
+        int[] resultado = new int[total];
+        int n = 0;
+        for (int i = 0; i < bits.length; i++) {
+            long palabra = bits[i];
+            while (palabra != 0) {
+                resultado[n++] = (i << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+            }
+        }
+        return resultado;
+    }
+}
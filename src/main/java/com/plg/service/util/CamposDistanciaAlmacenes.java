@@ -0,0 +1,253 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Campos de distancia hacia cada almacén para el snapshot de obstáculos vigente
+ * Por almacén se guarda una BFS inversa (distancia de cada celda al almacén) y el
+ * siguiente paso hacia él, de modo que elegir el almacén más cercano y extraer la
+ * ruta de retorno son consultas a tabla. Los campos se reconstruyen al cambiar la
+ * versión del snapshot: los almacenes registrados de inmediato, el resto a demanda
+ */
+@Component
+public class CamposDistanciaAlmacenes {
+
+    private static final Logger logger = LoggerFactory.getLogger(CamposDistanciaAlmacenes.class);
+
+    public static final int INALCANZABLE = -1;   // Existe campo pero no hay ruta
+    public static final int NO_DISPONIBLE = -2;  // Mapa no inicializado, punto fuera o límite de campos
+
+    private static final int MAX_CAMPOS_POR_DEFECTO = 32;
+
+    // Mismo orden que el motor: ARRIBA, ABAJO, IZQUIERDA, DERECHA (opuesta = d ^ 1)
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {1, -1, 0, 0};
+    private static final byte SIN_PASO = -1;
+
+    private final GestorObstaculos gestorObstaculos;
+    private final List<Punto> almacenesRegistrados = new CopyOnWriteArrayList<>();
+
+    private volatile CamposSnapshot vigente;
+    private volatile int maxCampos = MAX_CAMPOS_POR_DEFECTO;
+
+    @Autowired
+    public CamposDistanciaAlmacenes(GestorObstaculos gestorObstaculos) {
+        this.gestorObstaculos = gestorObstaculos;
+    }
+
+    /**
+     * Registra los almacenes cuyos campos se mantienen siempre construidos
+     */
+    public void registrarAlmacenes(List<Punto> almacenes) {
+        almacenesRegistrados.clear();
+        for (Punto almacen : almacenes) {
+            if (!almacenesRegistrados.contains(almacen)) {
+                almacenesRegistrados.add(almacen);
+            }
+        }
+        CamposSnapshot campos = obtenerCampos();
+        if (campos != null) {
+            almacenesRegistrados.parallelStream().forEach(almacen -> obtenerCampo(campos, almacen));
+            logger.info("Campos de distancia listos para {} almacenes (snapshot v{})",
+                almacenesRegistrados.size(), campos.mapa.getVersion());
+        }
+    }
+
+    /**
+     * Distancia en unidades de grid desde el punto hasta el almacén,
+     * {@link #INALCANZABLE} o {@link #NO_DISPONIBLE}
+     */
+    public int distancia(Punto desde, Punto almacen) {
+        CamposSnapshot campos = obtenerCampos();
+        if (campos == null || !campos.mapa.estaEnLimites(desde.getX(), desde.getY())) {
+            return NO_DISPONIBLE;
+        }
+        CampoDistancia campo = obtenerCampo(campos, almacen);
+        if (campo == null) {
+            return NO_DISPONIBLE;
+        }
+        return campo.distancias[campos.mapa.indice(desde.getX(), desde.getY())];
+    }
+
+    /**
+     * Ruta mínima desde el punto hasta el almacén siguiendo el campo de siguiente paso,
+     * o null si no hay ruta o el campo no está disponible
+     */
+    public List<Punto> rutaHastaAlmacen(Punto desde, Punto almacen) {
+        return rutaHastaAlmacen(null, desde, almacen);
+    }
+
+    /**
+     * Igual que {@link #rutaHastaAlmacen(Punto, Punto)}, pero solo si los campos vigentes
+     * corresponden a la versión de {@code mapa}; null si el mapa cambió desde entonces
+     */
+    public List<Punto> rutaHastaAlmacen(SnapshotObstaculos mapa, Punto desde, Punto almacen) {
+        CamposSnapshot campos = obtenerCampos();
+        if (campos == null || !campos.mapa.estaEnLimites(desde.getX(), desde.getY())
+                || (mapa != null && campos.mapa.getVersion() != mapa.getVersion())) {
+            return null;
+        }
+        CampoDistancia campo = obtenerCampo(campos, almacen);
+        if (campo == null) {
+            return null;
+        }
+        SnapshotObstaculos mapaCampos = campos.mapa;
+        int celda = mapaCampos.indice(desde.getX(), desde.getY());
+        int pasos = campo.distancias[celda];
+        if (pasos < 0) {
+            return null;
+        }
+
+        List<Punto> ruta = new ArrayList<>(pasos + 1);
+        int x = desde.getX();
+        int y = desde.getY();
+        ruta.add(new Punto(x, y));
+        for (int i = 0; i < pasos; i++) {
+            int direccion = campo.siguientePaso[celda];
+            x += DX[direccion];
+            y += DY[direccion];
+            celda = mapaCampos.indice(x, y);
+            ruta.add(new Punto(x, y));
+        }
+        return ruta;
+    }
+
+    /**
+     * Límite de campos por snapshot (cada uno ocupa 5 bytes por celda)
+     */
+    public void configurarMaxCampos(int maxCampos) {
+        this.maxCampos = Math.max(1, maxCampos);
+        logger.info("Límite de campos de distancia a almacenes: {}", this.maxCampos);
+    }
+
+    public int getCamposConstruidos() {
+        CamposSnapshot actual = vigente;
+        return actual != null ? actual.campos.size() : 0;
+    }
+
+    public long getVersionConstruida() {
+        CamposSnapshot actual = vigente;
+        return actual != null ? actual.mapa.getVersion() : -1;
+    }
+
+    /**
+     * Campos del snapshot vigente; al cambiar la versión se descartan y se
+     * reconstruyen los de los almacenes registrados
+     */
+    private CamposSnapshot obtenerCampos() {
+        if (!gestorObstaculos.isMapaInicializado()) {
+            return null;
+        }
+        SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+        CamposSnapshot actual = vigente;
+        if (actual != null && actual.mapa.getVersion() == mapa.getVersion()) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = vigente;
+            if (actual == null || actual.mapa.getVersion() != mapa.getVersion()) {
+                long inicio = System.currentTimeMillis();
+                CamposSnapshot nuevo = new CamposSnapshot(mapa);
+                almacenesRegistrados.parallelStream().forEach(almacen -> obtenerCampo(nuevo, almacen));
+                vigente = nuevo;
+                actual = nuevo;
+                if (!almacenesRegistrados.isEmpty()) {
+                    logger.debug("Campos de distancia reconstruidos: {} almacenes, snapshot v{}, {}ms",
+                        almacenesRegistrados.size(), mapa.getVersion(), System.currentTimeMillis() - inicio);
+                }
+            }
+            return actual;
+        }
+    }
+
+    private CampoDistancia obtenerCampo(CamposSnapshot campos, Punto almacen) {
+        SnapshotObstaculos mapa = campos.mapa;
+        if (!mapa.estaEnLimites(almacen.getX(), almacen.getY())) {
+            return null;
+        }
+        int celda = mapa.indice(almacen.getX(), almacen.getY());
+        CampoDistancia campo = campos.campos.get(celda);
+        if (campo != null) {
+            return campo;
+        }
+        if (campos.campos.size() >= maxCampos && !almacenesRegistrados.contains(almacen)) {
+            return null;
+        }
+        return campos.campos.computeIfAbsent(celda, c -> construir(mapa, c));
+    }
+
+    /**
+     * BFS 4-conectada desde el almacén; como el grid no es dirigido, la distancia
+     * desde el almacén es la distancia hacia él y el paso de vuelta es el opuesto
+     */
+    private static CampoDistancia construir(SnapshotObstaculos mapa, int origen) {
+        int celdas = mapa.getCeldas();
+        int ancho = mapa.getAncho();
+        int alto = mapa.getAlto();
+        int[] distancias = new int[celdas];
+        byte[] siguientePaso = new byte[celdas];
+        Arrays.fill(distancias, INALCANZABLE);
+        Arrays.fill(siguientePaso, SIN_PASO);
+        if (!mapa.esCeldaLibre(origen)) {
+            return new CampoDistancia(distancias, siguientePaso);
+        }
+
+        int[] cola = new int[celdas];
+        int cabeza = 0;
+        int fin = 0;
+        cola[fin++] = origen;
+        distancias[origen] = 0;
+
+        while (cabeza < fin) {
+            int celda = cola[cabeza++];
+            int siguiente = distancias[celda] + 1;
+            int col = celda % ancho;
+            int fila = celda / ancho;
+            for (int d = 0; d < 4; d++) {
+                int nx = col + DX[d];
+                int ny = fila + DY[d];
+                if (nx < 0 || ny < 0 || nx >= ancho || ny >= alto) {
+                    continue;
+                }
+                int vecino = celda + DY[d] * ancho + DX[d];
+                if (distancias[vecino] == INALCANZABLE && mapa.esCeldaLibre(vecino)) {
+                    distancias[vecino] = siguiente;
+                    siguientePaso[vecino] = (byte) (d ^ 1);
+                    cola[fin++] = vecino;
+                }
+            }
+        }
+        return new CampoDistancia(distancias, siguientePaso);
+    }
+
+    private static final class CamposSnapshot {
+        private final SnapshotObstaculos mapa;
+        private final Map<Integer, CampoDistancia> campos = new ConcurrentHashMap<>();
+
+        private CamposSnapshot(SnapshotObstaculos mapa) {
+            this.mapa = mapa;
+        }
+    }
+
+    private static final class CampoDistancia {
+        private final int[] distancias;
+        private final byte[] siguientePaso;
+
+        private CampoDistancia(int[] distancias, byte[] siguientePaso) {
+            this.distancias = distancias;
+            this.siguientePaso = siguientePaso;
+        }
+    }
+}
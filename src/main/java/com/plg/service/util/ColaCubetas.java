@@ -0,0 +1,126 @@
+package com.plg.service.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cola de prioridad por cubetas (algoritmo de Dial) para claves enteras pequeñas
+ * Inserción O(1) y extracción O(1) amortizada: el cursor del mínimo solo avanza
+ * mientras las claves sean monótonas, como f = g + h con Manhattan sobre el grid.
+ * Una clave menor que el cursor lo retrocede, de modo que el orden sigue siendo
+ * correcto con heurísticas ponderadas. Dentro de una cubeta se extrae el último
+ * insertado (LIFO), que a igual f favorece al nodo con mayor g y menor h.
+ * Admite decrease-key perezoso: se inserta otra entrada y la obsoleta se descarta al extraerla
+ */
+public class ColaCubetas<T> extends AbstractQueue<T> {
+
+    private final ToIntFunction<? super T> clave;
+    private final List<List<T>> cubetas = new ArrayList<>();
+    private int minimo;
+    private int maximo = -1;
+    private int tamano;
+
+    public ColaCubetas(ToIntFunction<? super T> clave) {
+        this.clave = clave;
+    }
+
+    @Override
+    public boolean offer(T elemento) {
+        int indice = Math.max(0, clave.applyAsInt(elemento));
+        while (cubetas.size() <= indice) {
+            cubetas.add(new ArrayList<>());
+        }
+        cubetas.get(indice).add(elemento);
+        if (tamano == 0 || indice < minimo) {
+            minimo = indice;
+        }
+        maximo = Math.max(maximo, indice);
+        tamano++;
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        if (tamano == 0) {
+            return null;
+        }
+        List<T> cubeta = avanzarAlMinimo();
+        tamano--;
+        return cubeta.remove(cubeta.size() - 1);
+    }
+
+    @Override
+    public T peek() {
+        if (tamano == 0) {
+            return null;
+        }
+        List<T> cubeta = avanzarAlMinimo();
+        return cubeta.get(cubeta.size() - 1);
+    }
+
+    private List<T> avanzarAlMinimo() {
+        List<T> cubeta = cubetas.get(minimo);
+        while (cubeta.isEmpty()) {
+            cubeta = cubetas.get(++minimo);
+        }
+        return cubeta;
+    }
+
+    /**
+     * Clave mínima presente, o -1 si la cola está vacía
+     */
+    public int claveMinima() {
+        if (tamano == 0) {
+            return -1;
+        }
+        avanzarAlMinimo();
+        return minimo;
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i <= maximo; i++) {
+            cubetas.get(i).clear();
+        }
+        minimo = 0;
+        maximo = -1;
+        tamano = 0;
+    }
+
+    /**
+     * Recorre los elementos en orden de clave (sin garantía de orden dentro de una cubeta)
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int cubeta = tamano == 0 ? maximo + 1 : minimo;
+            private int posicion = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (cubeta <= maximo && posicion >= cubetas.get(cubeta).size()) {
+                    cubeta++;
+                    posicion = 0;
+                }
+                return cubeta <= maximo;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cubetas.get(cubeta).get(posicion++);
+            }
+        };
+    }
+}
@@ -0,0 +1,307 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rutas más solicitadas con memoria constante: un Count-Min Sketch (4 filas de contadores
+ * enteros) estima cuántas veces se pidió cada par y un min-heap de tamaño K conserva los
+ * pares con mayor estimación. El par se empaqueta en un long (16 bits por coordenada), así
+ * que registrar no reserva memoria: incrementos atómicos en el sketch y, solo si el par
+ * supera al menor del top-K, una actualización del heap con tryLock (si otro thread lo
+ * tiene se omite; el sketch conserva la cuenta y el par vuelve a ofrecerse en la siguiente
+ * solicitud). Un índice clave → posición en el heap (direccionamiento abierto) hace que
+ * actualizar un par que ya está en el top-K cueste O(log K) y no un recorrido del heap.
+ * Los pares con coordenadas fuera del rango de short no se registran
+ */
+public final class ContadorRutasFrecuentes {
+
+    private static final int FILAS = 4;
+    private static final long[] SEMILLAS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    // Sketch: FILAS * ancho contadores, thread-safe sin candado
+    private final AtomicIntegerArray contadores;
+    private final int mascaraAncho;
+    private final int desplazamientoFila;
+
+    // Top-K: min-heap sobre conteos (raíz = el menos frecuente), protegido por candado
+    private final ReentrantLock candado = new ReentrantLock();
+    private final long[] claves;
+    private final int[] conteos;
+    private final int[] ranuras; // Posición en el heap → ranura del índice
+    private volatile int tamano;
+
+    // Índice del top-K: tabla lineal con al menos el doble de ranuras que K (-1 = libre)
+    private final long[] tablaClaves;
+    private final int[] tablaPosiciones;
+    private final int mascaraTabla;
+    // Conteo mínimo para entrar al top-K cuando está lleno; 0 mientras tenga lugar
+    private volatile int umbral;
+
+    public ContadorRutasFrecuentes(int k, int anchoSketch) {
+        int ancho = Integer.highestOneBit(Math.max(64, anchoSketch - 1) << 1);
+        this.mascaraAncho = ancho - 1;
+        this.desplazamientoFila = Integer.numberOfTrailingZeros(ancho);
+        this.contadores = new AtomicIntegerArray(FILAS * ancho);
+        this.claves = new long[Math.max(1, k)];
+        this.conteos = new int[claves.length];
+        this.ranuras = new int[claves.length];
+        int ranurasTabla = Integer.highestOneBit(claves.length * 2 - 1) << 1;
+        this.mascaraTabla = ranurasTabla - 1;
+        this.tablaClaves = new long[ranurasTabla];
+        this.tablaPosiciones = new int[ranurasTabla];
+        Arrays.fill(tablaPosiciones, -1);
+    }
+
+    /**
+     * Registra una solicitud del par
+     */
+    public void registrar(Punto origen, Punto destino) {
+        registrar(origen, destino, 1);
+    }
+
+    /**
+     * Registra {@code veces} solicitudes del par (p. ej. al restaurar un historial)
+     */
+    public void registrar(Punto origen, Punto destino, int veces) {
+        if (veces <= 0 || !empaquetable(origen) || !empaquetable(destino)) {
+            return;
+        }
+        long clave = empaquetar(origen, destino);
+        int estimacion = Integer.MAX_VALUE;
+        for (int fila = 0; fila < FILAS; fila++) {
+            estimacion = Math.min(estimacion, contadores.addAndGet(indice(clave, fila), veces));
+        }
+        if (estimacion > umbral || tamano < claves.length) {
+            ofrecer(clave, estimacion);
+        }
+    }
+
+    /**
+     * Frecuencia estimada del par (nunca menor que la real salvo por el envejecimiento)
+     */
+    public int estimar(Punto origen, Punto destino) {
+        if (!empaquetable(origen) || !empaquetable(destino)) {
+            return 0;
+        }
+        long clave = empaquetar(origen, destino);
+        int estimacion = Integer.MAX_VALUE;
+        for (int fila = 0; fila < FILAS; fila++) {
+            estimacion = Math.min(estimacion, contadores.get(indice(clave, fila)));
+        }
+        return estimacion;
+    }
+
+    /**
+     * Recorre el top-K de mayor a menor frecuencia, hasta {@code limite} pares
+     */
+    public void paraCadaFrecuente(int limite, ArchivoCacheRutas.VisitanteFrecuencia visitante) {
+        long[] copiaClaves;
+        int[] copiaConteos;
+        candado.lock();
+        try {
+            copiaClaves = Arrays.copyOf(claves, tamano);
+            copiaConteos = Arrays.copyOf(conteos, tamano);
+        } finally {
+            candado.unlock();
+        }
+
+        Integer[] orden = new Integer[copiaClaves.length];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> Integer.compare(copiaConteos[b], copiaConteos[a]));
+        for (int i = 0; i < Math.min(limite, orden.length); i++) {
+            long clave = copiaClaves[orden[i]];
+            visitante.visitar(
+                new Punto((short) (clave >>> 48), (short) (clave >>> 32)),
+                new Punto((short) (clave >>> 16), (short) clave),
+                copiaConteos[orden[i]]);
+        }
+    }
+
+    /**
+     * Divide a la mitad todas las cuentas para que el top-K siga la demanda reciente.
+     * Los incrementos concurrentes con el envejecimiento pueden perderse, lo que el
+     * estimador tolera
+     */
+    public void envejecer() {
+        for (int i = 0; i < contadores.length(); i++) {
+            contadores.set(i, contadores.get(i) >>> 1);
+        }
+        candado.lock();
+        try {
+            for (int i = 0; i < tamano; i++) {
+                conteos[i] >>>= 1;
+            }
+            actualizarUmbral();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    public void limpiar() {
+        for (int i = 0; i < contadores.length(); i++) {
+            contadores.set(i, 0);
+        }
+        candado.lock();
+        try {
+            tamano = 0;
+            Arrays.fill(tablaPosiciones, -1);
+            actualizarUmbral();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    // Métodos privados
+
+    private void ofrecer(long clave, int estimacion) {
+        if (!candado.tryLock()) {
+            return;
+        }
+        try {
+            int ranura = buscarRanura(clave);
+            if (ranura >= 0) {
+                int i = tablaPosiciones[ranura];
+                if (estimacion > conteos[i]) {
+                    conteos[i] = estimacion;
+                    bajar(i);
+                }
+            } else if (tamano < claves.length) {
+                int i = tamano;
+                claves[i] = clave;
+                conteos[i] = estimacion;
+                indexar(clave, i);
+                tamano = i + 1;
+                subir(i);
+            } else if (estimacion > conteos[0]) {
+                // Desplaza al menos frecuente del top-K
+                desindexar(ranuras[0]);
+                claves[0] = clave;
+                conteos[0] = estimacion;
+                indexar(clave, 0);
+                bajar(0);
+            }
+            actualizarUmbral();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private void actualizarUmbral() {
+        umbral = tamano < claves.length ? 0 : conteos[0];
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (conteos[padre] <= conteos[i]) {
+                return;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int menor = i;
+            int izquierdo = 2 * i + 1;
+            int derecho = izquierdo + 1;
+            if (izquierdo < tamano && conteos[izquierdo] < conteos[menor]) {
+                menor = izquierdo;
+            }
+            if (derecho < tamano && conteos[derecho] < conteos[menor]) {
+                menor = derecho;
+            }
+            if (menor == i) {
+                return;
+            }
+            intercambiar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        long clave = claves[a];
+        claves[a] = claves[b];
+        claves[b] = clave;
+        int conteo = conteos[a];
+        conteos[a] = conteos[b];
+        conteos[b] = conteo;
+        int ranura = ranuras[a];
+        ranuras[a] = ranuras[b];
+        ranuras[b] = ranura;
+        tablaPosiciones[ranuras[a]] = a;
+        tablaPosiciones[ranuras[b]] = b;
+    }
+
+    private int buscarRanura(long clave) {
+        for (int i = ranuraInicial(clave); tablaPosiciones[i] >= 0; i = (i + 1) & mascaraTabla) {
+            if (tablaClaves[i] == clave) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void indexar(long clave, int posicion) {
+        int i = ranuraInicial(clave);
+        while (tablaPosiciones[i] >= 0) {
+            i = (i + 1) & mascaraTabla;
+        }
+        tablaClaves[i] = clave;
+        tablaPosiciones[i] = posicion;
+        ranuras[posicion] = i;
+    }
+
+    /**
+     * Libera la ranura corriendo hacia atrás las claves de la misma secuencia de sondeo,
+     * para que las búsquedas no se corten en el hueco
+     */
+    private void desindexar(int ranura) {
+        tablaPosiciones[ranura] = -1;
+        int hueco = ranura;
+        for (int i = (ranura + 1) & mascaraTabla; tablaPosiciones[i] >= 0; i = (i + 1) & mascaraTabla) {
+            int inicial = ranuraInicial(tablaClaves[i]);
+            // La clave puede ocupar el hueco si su ranura inicial no está en (hueco, i]
+            if (((i - inicial) & mascaraTabla) >= ((i - hueco) & mascaraTabla)) {
+                tablaClaves[hueco] = tablaClaves[i];
+                tablaPosiciones[hueco] = tablaPosiciones[i];
+                ranuras[tablaPosiciones[hueco]] = hueco;
+                tablaPosiciones[i] = -1;
+                hueco = i;
+            }
+        }
+    }
+
+    private int ranuraInicial(long clave) {
+        long h = clave * 0x9e3779b97f4a7c15L;
+        return (int) (h >>> 32) & mascaraTabla;
+    }
+
+    private int indice(long clave, int fila) {
+        long h = (clave + SEMILLAS[fila]) * SEMILLAS[fila];
+        h ^= h >>> 29;
+        return (fila << desplazamientoFila) | ((int) (h ^ (h >>> 32)) & mascaraAncho);
+    }
+
+    private static boolean empaquetable(Punto punto) {
+        return punto.getX() == (short) punto.getX() && punto.getY() == (short) punto.getY();
+    }
+
+    private static long empaquetar(Punto origen, Punto destino) {
+        return ((long) (origen.getX() & 0xffff) << 48) | ((long) (origen.getY() & 0xffff) << 32)
+            | ((long) (destino.getX() & 0xffff) << 16) | (destino.getY() & 0xffff);
+    }
+}
@@ -0,0 +1,279 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Oráculo de distancias reales (con obstáculos) entre todo par de celdas del grid
+ * Tabla plana de {@code short} con una BFS por celda, consultada en O(1). La tabla de
+ * cada snapshot de obstáculos se construye en un thread de fondo; mientras no está lista
+ * las consultas se responden con una BFS de la fila del origen (cacheada por thread),
+ * sin bloquear a quien consulta. Solo aplica a grids cuya tabla entra en el presupuesto
+ * de memoria (70x50 = 3.500 celdas ≈ 24 MB); en grids mayores responde {@link #NO_DISPONIBLE}
+ */
+@Component
+public class DistanciaOracle {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanciaOracle.class);
+
+    public static final int INALCANZABLE = -1;   // Existe tabla pero no hay ruta
+    public static final int NO_DISPONIBLE = -2;  // Mapa no inicializado, grid muy grande o celda fuera
+
+    private static final int LIMITE_CELDAS_POR_DEFECTO = 4096;
+    private static final long PRESUPUESTO_BYTES_POR_DEFECTO = 64L << 20;
+    private static final long SIN_CONSTRUCCION = -1;
+
+    private final GestorObstaculos gestorObstaculos;
+
+    private volatile TablaDistancias tabla;
+    private volatile long presupuestoBytes = PRESUPUESTO_BYTES_POR_DEFECTO;
+    private volatile int limiteCeldas = LIMITE_CELDAS_POR_DEFECTO;
+
+    // Versión de snapshot cuya tabla se está construyendo en el thread de fondo
+    private final AtomicLong versionEnConstruccion = new AtomicLong(SIN_CONSTRUCCION);
+    private final ExecutorService constructor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "DistanciaOracle-Constructor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final ThreadLocal<int[]> colasBfs = ThreadLocal.withInitial(() -> new int[0]);
+    // Última fila calculada por BFS mientras la tabla no está lista, por thread
+    private final ThreadLocal<FilaDistancias> filasProvisorias = new ThreadLocal<>();
+
+    @Autowired
+    public DistanciaOracle(GestorObstaculos gestorObstaculos) {
+        this.gestorObstaculos = gestorObstaculos;
+    }
+
+    /**
+     * Distancia en unidades de grid entre dos puntos, {@link #INALCANZABLE} o {@link #NO_DISPONIBLE}
+     */
+    public int distancia(Punto origen, Punto destino) {
+        return distancia(origen.getX(), origen.getY(), destino.getX(), destino.getY());
+    }
+
+    public int distancia(int x1, int y1, int x2, int y2) {
+        if (!estaDisponible()) {
+            return NO_DISPONIBLE;
+        }
+        SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+        if (!mapa.estaEnLimites(x1, y1) || !mapa.estaEnLimites(x2, y2)) {
+            return NO_DISPONIBLE;
+        }
+        int origen = mapa.indice(x1, y1);
+        int destino = mapa.indice(x2, y2);
+
+        TablaDistancias vigente = tabla;
+        if (vigente != null && vigente.mapa.getVersion() == mapa.getVersion()) {
+            return vigente.distancias[origen * mapa.getCeldas() + destino];
+        }
+        programarConstruccion(mapa);
+        return filaProvisoria(mapa, origen).distancias[destino];
+    }
+
+    /**
+     * Indica si el oráculo puede responder para el mapa vigente (aunque su tabla aún
+     * se esté construyendo)
+     */
+    public boolean estaDisponible() {
+        return gestorObstaculos.isMapaInicializado()
+            && gestorObstaculos.obtenerSnapshot().getCeldas() <= limiteCeldas;
+    }
+
+    /**
+     * Límite de celdas a partir del cual no se construye la tabla (memoria = 2 * celdas² bytes),
+     * acotado por el presupuesto de bytes
+     */
+    public void configurarLimiteCeldas(int limiteCeldas) {
+        this.limiteCeldas = Math.max(0, Math.min(limiteCeldas, celdasMaximasPorPresupuesto()));
+        logger.info("Límite de celdas del oráculo de distancias: {}", this.limiteCeldas);
+    }
+
+    /**
+     * Memoria máxima de la tabla; reduce el límite de celdas si ya no entra
+     */
+    public void configurarPresupuestoBytes(long presupuestoBytes) {
+        this.presupuestoBytes = Math.max(0, presupuestoBytes);
+        this.limiteCeldas = Math.min(limiteCeldas, celdasMaximasPorPresupuesto());
+        logger.info("Presupuesto del oráculo de distancias: {} bytes ({} celdas máx.)",
+            this.presupuestoBytes, this.limiteCeldas);
+    }
+
+    /**
+     * Espera a que la tabla del snapshot vigente esté construida; false si vence el plazo
+     */
+    public boolean esperarTablaVigente(long timeoutMs) throws InterruptedException {
+        long limite = System.currentTimeMillis() + timeoutMs;
+        while (estaDisponible()) {
+            SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+            TablaDistancias vigente = tabla;
+            if (vigente != null && vigente.mapa.getVersion() == mapa.getVersion()) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= limite) {
+                return false;
+            }
+            programarConstruccion(mapa);
+            Thread.sleep(5);
+        }
+        return false;
+    }
+
+    public long getVersionConstruida() {
+        TablaDistancias vigente = tabla;
+        return vigente != null ? vigente.mapa.getVersion() : -1;
+    }
+
+    public long getTiempoUltimaConstruccionMs() {
+        TablaDistancias vigente = tabla;
+        return vigente != null ? vigente.tiempoConstruccionMs : 0;
+    }
+
+    @PreDestroy
+    public void detener() {
+        constructor.shutdownNow();
+    }
+
+    private int celdasMaximasPorPresupuesto() {
+        // 2 bytes por par de celdas y short como distancia máxima representable
+        return (int) Math.min(Short.MAX_VALUE, (long) Math.sqrt(presupuestoBytes / (double) Short.BYTES));
+    }
+
+    /**
+     * Encola la construcción de la tabla del snapshot si no hay una en curso para él.
+     * La tabla anterior se libera al empezar, así nunca conviven dos en memoria
+     */
+    private void programarConstruccion(SnapshotObstaculos mapa) {
+        long version = mapa.getVersion();
+        long enCurso = versionEnConstruccion.get();
+        if (enCurso == version || !versionEnConstruccion.compareAndSet(enCurso, version)) {
+            return;
+        }
+        try {
+            constructor.execute(() -> {
+                try {
+                    if (gestorObstaculos.obtenerSnapshot().getVersion() != version) {
+                        return; // Ya hay un snapshot más nuevo; lo programará la próxima consulta
+                    }
+                    tabla = null;
+                    tabla = construir(mapa);
+                } catch (Throwable e) {
+                    logger.error("Error construyendo el oráculo de distancias: {}", e.getMessage(), e);
+                } finally {
+                    versionEnConstruccion.compareAndSet(version, SIN_CONSTRUCCION);
+                }
+            });
+        } catch (RuntimeException e) {
+            versionEnConstruccion.compareAndSet(version, SIN_CONSTRUCCION);
+        }
+    }
+
+    private FilaDistancias filaProvisoria(SnapshotObstaculos mapa, int origen) {
+        FilaDistancias fila = filasProvisorias.get();
+        if (fila != null && fila.mapa == mapa && fila.origen == origen) {
+            return fila;
+        }
+        short[] distancias = new short[mapa.getCeldas()];
+        bfsDesde(mapa, origen, distancias, 0);
+        fila = new FilaDistancias(mapa, origen, distancias);
+        filasProvisorias.set(fila);
+        return fila;
+    }
+
+    private TablaDistancias construir(SnapshotObstaculos mapa) {
+        long inicio = System.currentTimeMillis();
+        int celdas = mapa.getCeldas();
+        short[] distancias = new short[celdas * celdas];
+
+        for (int origen = 0; origen < celdas; origen++) {
+            bfsDesde(mapa, origen, distancias, origen * celdas);
+        }
+
+        long tiempo = System.currentTimeMillis() - inicio;
+        logger.info("Oráculo de distancias construido: {} celdas, snapshot v{}, {}ms",
+            celdas, mapa.getVersion(), tiempo);
+        return new TablaDistancias(mapa, distancias, tiempo);
+    }
+
+    /**
+     * BFS 4-conectada desde una celda, escribiendo su fila de la tabla
+     */
+    private void bfsDesde(SnapshotObstaculos mapa, int origen, short[] distancias, int base) {
+        int celdas = mapa.getCeldas();
+        Arrays.fill(distancias, base, base + celdas, (short) INALCANZABLE);
+        if (!mapa.esCeldaLibre(origen)) {
+            return;
+        }
+
+        int[] cola = colasBfs.get();
+        if (cola.length < celdas) {
+            cola = new int[celdas];
+            colasBfs.set(cola);
+        }
+
+        int ancho = mapa.getAncho();
+        int alto = mapa.getAlto();
+        int cabeza = 0;
+        int colaFin = 0;
+        cola[colaFin++] = origen;
+        distancias[base + origen] = 0;
+
+        while (cabeza < colaFin) {
+            int celda = cola[cabeza++];
+            short siguiente = (short) (distancias[base + celda] + 1);
+            int col = celda % ancho;
+            int fila = celda / ancho;
+
+            if (fila + 1 < alto) colaFin = visitar(mapa, celda + ancho, siguiente, distancias, base, cola, colaFin);
+            if (fila > 0) colaFin = visitar(mapa, celda - ancho, siguiente, distancias, base, cola, colaFin);
+            if (col > 0) colaFin = visitar(mapa, celda - 1, siguiente, distancias, base, cola, colaFin);
+            if (col + 1 < ancho) colaFin = visitar(mapa, celda + 1, siguiente, distancias, base, cola, colaFin);
+        }
+    }
+
+    private static int visitar(SnapshotObstaculos mapa, int vecino, short distancia,
+                               short[] distancias, int base, int[] cola, int colaFin) {
+        if (distancias[base + vecino] == INALCANZABLE && mapa.esCeldaLibre(vecino)) {
+            distancias[base + vecino] = distancia;
+            cola[colaFin++] = vecino;
+        }
+        return colaFin;
+    }
+
+    private static final class FilaDistancias {
+        private final SnapshotObstaculos mapa;
+        private final int origen;
+        private final short[] distancias;
+
+        private FilaDistancias(SnapshotObstaculos mapa, int origen, short[] distancias) {
+            this.mapa = mapa;
+            this.origen = origen;
+            this.distancias = distancias;
+        }
+    }
+
+    private static final class TablaDistancias {
+        private final SnapshotObstaculos mapa;
+        private final short[] distancias;
+        private final long tiempoConstruccionMs;
+
+        private TablaDistancias(SnapshotObstaculos mapa, short[] distancias, long tiempoConstruccionMs) {
+            this.mapa = mapa;
+            this.distancias = distancias;
+            this.tiempoConstruccionMs = tiempoConstruccionMs;
+        }
+    }
+}
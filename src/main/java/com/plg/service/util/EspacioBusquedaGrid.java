@@ -0,0 +1,91 @@
+package com.plg.service.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Espacio de trabajo reutilizable para búsquedas sobre el grid indexado
+ * Una instancia por thread: costos, padres y cerrados en arreglos primitivos,
+ * invalidados por generación en lugar de limpiarse en cada búsqueda
+ */
+public class EspacioBusquedaGrid {
+
+    private int[] costoG = new int[0];
+    private int[] padre = new int[0];
+    private int[] marca = new int[0];
+    private final BitSet cerrados = new BitSet();
+    private final BitSet objetivos = new BitSet();
+    private int[] cola = new int[0];
+    private final MonticuloEnteros frontera = new MonticuloEnteros(1024);
+    private int generacion = 0;
+
+    /**
+     * Prepara el espacio para una nueva búsqueda sobre un grid de {@code celdas} posiciones
+     */
+    public void preparar(int celdas) {
+        if (costoG.length < celdas) {
+            costoG = new int[celdas];
+            padre = new int[celdas];
+            marca = new int[celdas];
+            generacion = 0;
+        }
+        if (++generacion == Integer.MAX_VALUE) {
+            Arrays.fill(marca, 0);
+            generacion = 1;
+        }
+        cerrados.clear();
+        objetivos.clear();
+        frontera.limpiar();
+    }
+
+    /**
+     * Costo g de la celda en la búsqueda actual, o {@link Integer#MAX_VALUE} si no fue alcanzada
+     */
+    public int costoG(int celda) {
+        return marca[celda] == generacion ? costoG[celda] : Integer.MAX_VALUE;
+    }
+
+    public void actualizar(int celda, int g, int celdaPadre) {
+        costoG[celda] = g;
+        padre[celda] = celdaPadre;
+        marca[celda] = generacion;
+    }
+
+    public int padre(int celda) {
+        return padre[celda];
+    }
+
+    public boolean estaCerrado(int celda) {
+        return cerrados.get(celda);
+    }
+
+    public void cerrar(int celda) {
+        cerrados.set(celda);
+    }
+
+    public boolean esObjetivo(int celda) {
+        return objetivos.get(celda);
+    }
+
+    public void marcarObjetivo(int celda) {
+        objetivos.set(celda);
+    }
+
+    public void desmarcarObjetivo(int celda) {
+        objetivos.clear(celda);
+    }
+
+    /**
+     * Cola FIFO para recorridos en amplitud, con capacidad para todas las celdas
+     */
+    public int[] getCola(int celdas) {
+        if (cola.length < celdas) {
+            cola = new int[celdas];
+        }
+        return cola;
+    }
+
+    public MonticuloEnteros getFrontera() {
+        return frontera;
+    }
+}
@@ -8,8 +8,10 @@ import org.springframework.stereotype.Component;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Gestor para manejo del mapa cartesiano con obstáculos
@@ -19,29 +21,43 @@ import java.util.stream.Collectors;
 public class GestorObstaculos {
     
     private static final Logger logger = LoggerFactory.getLogger(GestorObstaculos.class);
+    private static final int MAXIMO_VERSIONES_HISTORIAL = 32;
     
-    // Configuración del grid
+    // Configuración del grid (estado de edición, protegido por this)
     private int gridMinX = 0;
     private int gridMinY = 0;
     private int gridMaxX = 1000;
     private int gridMaxY = 1000;
     
-    // Almacenamiento de obstáculos
-    private Set<Punto> puntosObstruidos;
+    // Metadatos de obstáculos (protegidos por this)
     private List<LineaObstaculo> lineasHorizontales;
     private List<LineaObstaculo> lineasVerticales;
     private List<PoligonoAbierto> poligonosAbiertos;
     
-    // Cache de validaciones
-    private Map<Punto, Boolean> cacheValidacionPuntos;
-    private boolean mapaInicializado;
+    // Ocupación publicada: lectura sin bloqueo desde los threads de búsqueda
+    private volatile SnapshotObstaculos snapshot;
+    private volatile boolean mapaInicializado;
+    private long ultimaVersion;
+    
+    // Bloqueos con ventana temporal, indexados sobre la geometría del snapshot
+    private volatile BloqueosTemporizados bloqueosTemporizados = BloqueosTemporizados.vacio();
+    
+    // Bits en edición durante un lote; null fuera de ejecutarEnLote
+    private long[] bitsLote;
+    
+    // Celdas cambiadas por las últimas versiones publicadas, para revalidar rutas en cache
+    private volatile HistorialCambios historialCambios = new HistorialCambios(0, List.of());
+    
+    // Se notifican con cada snapshot publicado, con el candado del gestor tomado
+    private final List<Consumer<SnapshotObstaculos>> oyentesPublicacion = new CopyOnWriteArrayList<>();
     
     public GestorObstaculos() {
-        this.puntosObstruidos = new HashSet<>();
         this.lineasHorizontales = new ArrayList<>();
         this.lineasVerticales = new ArrayList<>();
         this.poligonosAbiertos = new ArrayList<>();
-        this.cacheValidacionPuntos = new HashMap<>();
+        this.ultimaVersion = 0;
+        this.snapshot = new SnapshotObstaculos(gridMinX, gridMinY, gridMaxX, gridMaxY,
+            new long[SnapshotObstaculos.palabrasPara(gridMinX, gridMinY, gridMaxX, gridMaxY)], ultimaVersion);
         this.mapaInicializado = false;
     }
     
@@ -52,13 +68,19 @@ public class GestorObstaculos {
         logger.info("Inicializando mapa de obstáculos desde: {}", rutaArchivoConfiguracion);
         
         try {
-            cargarConfiguracionDesdeArchivo(rutaArchivoConfiguracion);
+            ejecutarEnLote(() -> {
+                try {
+                    cargarConfiguracionDesdeArchivo(rutaArchivoConfiguracion);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
             procesarObstaculos();
             generarPuntosObstruidos();
             this.mapaInicializado = true;
             
             logger.info("Mapa inicializado. Puntos obstruidos: {}, Grid: ({},{}) a ({},{})", 
-                puntosObstruidos.size(), gridMinX, gridMinY, gridMaxX, gridMaxY);
+                snapshot.getTotalObstruidos(), gridMinX, gridMinY, gridMaxX, gridMaxY);
                 
         } catch (Exception e) {
             logger.error("Error inicializando mapa de obstáculos: {}", e.getMessage(), e);
@@ -70,40 +92,94 @@ public class GestorObstaculos {
      * Inicialización programática para testing
      */
     public void inicializarMapaProgramatico(int minX, int minY, int maxX, int maxY) {
-        this.gridMinX = minX;
-        this.gridMinY = minY;
-        this.gridMaxX = maxX;
-        this.gridMaxY = maxY;
+        redimensionar(minX, minY, maxX, maxY);
         this.mapaInicializado = true;
         
         logger.debug("Mapa inicializado programáticamente: ({},{}) a ({},{})", minX, minY, maxX, maxY);
     }
     
+    /**
+     * Snapshot inmutable vigente del mapa de ocupación
+     */
+    public SnapshotObstaculos obtenerSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * Publica el índice de bloqueos temporales usado por la búsqueda con horario
+     */
+    public void configurarBloqueosTemporizados(BloqueosTemporizados bloqueos) {
+        this.bloqueosTemporizados = bloqueos != null ? bloqueos : BloqueosTemporizados.vacio();
+        logger.info("Bloqueos temporizados configurados: {} bloqueos, {} intervalos de celda",
+            this.bloqueosTemporizados.getTotalBloqueos(), this.bloqueosTemporizados.getTotalIntervalos());
+    }
+    
+    public BloqueosTemporizados obtenerBloqueosTemporizados() {
+        return bloqueosTemporizados;
+    }
+    
+    /**
+     * Registra un oyente que recibe cada snapshot recién publicado. Se invoca dentro del
+     * candado del gestor, así que debe limitarse a encolar el trabajo
+     */
+    public void agregarOyentePublicacion(Consumer<SnapshotObstaculos> oyente) {
+        oyentesPublicacion.add(oyente);
+    }
+    
+    /**
+     * Cambios de celdas publicados después de la versión dada, del más antiguo al más
+     * reciente (vacío si no hubo). Devuelve null si el historial ya no llega hasta esa
+     * versión, por antigüedad o porque cambió la geometría del grid
+     */
+    public List<CambiosObstaculos> cambiosDesde(long version) {
+        HistorialCambios historial = historialCambios;
+        if (version < historial.versionBase) {
+            return null;
+        }
+        List<CambiosObstaculos> cambios = historial.cambios;
+        int desde = cambios.size();
+        while (desde > 0 && cambios.get(desde - 1).getVersionAnterior() >= version) {
+            desde--;
+        }
+        return cambios.subList(desde, cambios.size());
+    }
+    
+    /**
+     * Ejecuta un conjunto de cambios sobre una sola copia de la ocupación
+     * y publica un único snapshot al terminar (carga masiva de bloqueos)
+     */
+    public synchronized void ejecutarEnLote(Runnable cambios) {
+        if (bitsLote != null) {
+            cambios.run(); // Lote anidado: se publica al cerrar el externo
+            return;
+        }
+        
+        bitsLote = snapshot.copiarBits();
+        try {
+            cambios.run();
+        } finally {
+            long[] bits = bitsLote;
+            bitsLote = null;
+            publicar(bits);
+        }
+    }
+    
     /**
      * Verifica si un punto es válido (no obstruido y dentro de límites)
      */
     public boolean esPuntoValido(Punto punto) {
+        return esPuntoValido(punto.getX(), punto.getY());
+    }
+
+    /**
+     * Verifica una celda por coordenadas: un test de bit sobre el snapshot vigente
+     */
+    public boolean esPuntoValido(int x, int y) {
         if (!mapaInicializado) {
             throw new IllegalStateException("Mapa no inicializado");
         }
         
-        // Verificar cache primero
-        Boolean resultadoCache = cacheValidacionPuntos.get(punto);
-        if (resultadoCache != null) {
-            return resultadoCache;
-        }
-        
-        // Verificar límites del grid
-        if (!punto.estaEnLimites(gridMinX, gridMinY, gridMaxX, gridMaxY)) {
-            cacheValidacionPuntos.put(punto.clonar(), false);
-            return false;
-        }
-        
-        // Verificar si está obstruido
-        boolean esValido = !puntosObstruidos.contains(punto);
-        cacheValidacionPuntos.put(punto.clonar(), esValido);
-        
-        return esValido;
+        return snapshot.esValido(x, y);
     }
     
     /**
@@ -153,48 +229,61 @@ public class GestorObstaculos {
     /**
      * Agrega obstáculo puntual
      */
-    public void agregarObstaculoPuntual(Punto punto) {
-        puntosObstruidos.add(punto.clonar());
-        cacheValidacionPuntos.clear(); // Invalidar cache
+    public synchronized void agregarObstaculoPuntual(Punto punto) {
+        modificar(bits -> marcarObstruido(bits, punto.getX(), punto.getY()));
         logger.debug("Agregado obstáculo puntual en: {}", punto);
     }
     
+    /**
+     * Agrega un conjunto de obstáculos puntuales publicando un solo snapshot
+     */
+    public synchronized void agregarObstaculos(Collection<Punto> puntos) {
+        modificar(bits -> {
+            for (Punto punto : puntos) {
+                marcarObstruido(bits, punto.getX(), punto.getY());
+            }
+        });
+        logger.debug("Agregados {} obstáculos puntuales", puntos.size());
+    }
+    
     /**
      * Agrega línea horizontal como obstáculo
      */
-    public void agregarLineaHorizontal(int y, int xInicio, int xFin) {
+    public synchronized void agregarLineaHorizontal(int y, int xInicio, int xFin) {
         LineaObstaculo linea = new LineaObstaculo(TipoLinea.HORIZONTAL, y, xInicio, xFin);
         lineasHorizontales.add(linea);
         
         // Generar puntos obstruidos para esta línea
-        for (int x = Math.min(xInicio, xFin); x <= Math.max(xInicio, xFin); x++) {
-            puntosObstruidos.add(new Punto(x, y));
-        }
+        modificar(bits -> {
+            for (int x = Math.min(xInicio, xFin); x <= Math.max(xInicio, xFin); x++) {
+                marcarObstruido(bits, x, y);
+            }
+        });
         
-        cacheValidacionPuntos.clear();
         logger.debug("Agregada línea horizontal: y={}, x=[{},{}]", y, xInicio, xFin);
     }
     
     /**
      * Agrega línea vertical como obstáculo
      */
-    public void agregarLineaVertical(int x, int yInicio, int yFin) {
+    public synchronized void agregarLineaVertical(int x, int yInicio, int yFin) {
         LineaObstaculo linea = new LineaObstaculo(TipoLinea.VERTICAL, x, yInicio, yFin);
         lineasVerticales.add(linea);
         
         // Generar puntos obstruidos para esta línea
-        for (int y = Math.min(yInicio, yFin); y <= Math.max(yInicio, yFin); y++) {
-            puntosObstruidos.add(new Punto(x, y));
-        }
+        modificar(bits -> {
+            for (int y = Math.min(yInicio, yFin); y <= Math.max(yInicio, yFin); y++) {
+                marcarObstruido(bits, x, y);
+            }
+        });
         
-        cacheValidacionPuntos.clear();
         logger.debug("Agregada línea vertical: x={}, y=[{},{}]", x, yInicio, yFin);
     }
     
     /**
      * Agrega polígono abierto (secuencia de líneas conectadas)
      */
-    public void agregarPoligonoAbierto(List<Punto> vertices) {
+    public synchronized void agregarPoligonoAbierto(List<Punto> vertices) {
         if (vertices.size() < 2) {
             logger.warn("Polígono abierto requiere al menos 2 vértices");
             return;
@@ -204,34 +293,36 @@ public class GestorObstaculos {
         poligonosAbiertos.add(poligono);
         
         // Generar obstáculos para cada segmento del polígono
-        for (int i = 0; i < vertices.size() - 1; i++) {
-            Punto p1 = vertices.get(i);
-            Punto p2 = vertices.get(i + 1);
-            generarObstaculosSegmento(p1, p2);
-        }
+        modificar(bits -> {
+            for (int i = 0; i < vertices.size() - 1; i++) {
+                Punto p1 = vertices.get(i);
+                Punto p2 = vertices.get(i + 1);
+                generarObstaculosSegmento(bits, p1, p2);
+            }
+        });
         
-        cacheValidacionPuntos.clear();
         logger.debug("Agregado polígono abierto con {} vértices", vertices.size());
     }
     
     /**
      * Obtiene estadísticas del mapa
      */
-    public EstadisticasMapa obtenerEstadisticas() {
+    public synchronized EstadisticasMapa obtenerEstadisticas() {
+        SnapshotObstaculos vigente = snapshot;
         EstadisticasMapa stats = new EstadisticasMapa();
-        stats.setGridMinX(gridMinX);
-        stats.setGridMinY(gridMinY);
-        stats.setGridMaxX(gridMaxX);
-        stats.setGridMaxY(gridMaxY);
-        stats.setPuntosObstruidos(puntosObstruidos.size());
+        stats.setGridMinX(vigente.getMinX());
+        stats.setGridMinY(vigente.getMinY());
+        stats.setGridMaxX(vigente.getMaxX());
+        stats.setGridMaxY(vigente.getMaxY());
+        stats.setPuntosObstruidos(vigente.getTotalObstruidos());
         stats.setLineasHorizontales(lineasHorizontales.size());
         stats.setLineasVerticales(lineasVerticales.size());
         stats.setPoligonosAbiertos(poligonosAbiertos.size());
-        stats.setTamanoCacheValidacion(cacheValidacionPuntos.size());
+        stats.setVersionSnapshot(vigente.getVersion());
         
         // Calcular porcentaje de obstáculos
-        long totalPuntos = (long)(gridMaxX - gridMinX + 1) * (gridMaxY - gridMinY + 1);
-        stats.setPorcentajeObstruccion((double)puntosObstruidos.size() / totalPuntos * 100.0);
+        long totalPuntos = vigente.getCeldas();
+        stats.setPorcentajeObstruccion((double) vigente.getTotalObstruidos() / totalPuntos * 100.0);
         
         return stats;
     }
@@ -239,12 +330,11 @@ public class GestorObstaculos {
     /**
      * Limpia todos los obstáculos
      */
-    public void limpiarObstaculos() {
-        puntosObstruidos.clear();
+    public synchronized void limpiarObstaculos() {
         lineasHorizontales.clear();
         lineasVerticales.clear();
         poligonosAbiertos.clear();
-        cacheValidacionPuntos.clear();
+        modificar(bits -> Arrays.fill(bits, 0L));
         logger.info("Obstáculos limpiados");
     }
     
@@ -285,10 +375,11 @@ public class GestorObstaculos {
     private void procesarConfiguracionGrid(String datos) {
         String[] coords = datos.split(",");
         if (coords.length == 4) {
-            gridMinX = Integer.parseInt(coords[0].trim());
-            gridMinY = Integer.parseInt(coords[1].trim());
-            gridMaxX = Integer.parseInt(coords[2].trim());
-            gridMaxY = Integer.parseInt(coords[3].trim());
+            redimensionar(
+                Integer.parseInt(coords[0].trim()),
+                Integer.parseInt(coords[1].trim()),
+                Integer.parseInt(coords[2].trim()),
+                Integer.parseInt(coords[3].trim()));
         }
     }
     
@@ -346,55 +437,158 @@ public class GestorObstaculos {
     
     private void generarPuntosObstruidos() {
         // Los puntos ya se generan en los métodos agregar
-        logger.debug("Generación de puntos obstruidos completada. Total: {}", puntosObstruidos.size());
+        logger.debug("Generación de puntos obstruidos completada. Total: {}", snapshot.getTotalObstruidos());
     }
     
-    private void generarObstaculosSegmento(Punto p1, Punto p2) {
-        // Generar línea entre dos puntos usando algoritmo de Bresenham simplificado
-        int dx = Math.abs(p2.getX() - p1.getX());
-        int dy = Math.abs(p2.getY() - p1.getY());
-        
-        int x = p1.getX();
-        int y = p1.getY();
+    /**
+     * Aplica un cambio sobre los bits en edición: dentro de un lote escribe sobre
+     * la copia del lote; fuera de él copia, modifica y publica (copy-on-write)
+     */
+    private void modificar(Consumer<long[]> cambio) {
+        if (bitsLote != null) {
+            cambio.accept(bitsLote);
+            return;
+        }
         
-        int stepX = (p1.getX() < p2.getX()) ? 1 : -1;
-        int stepY = (p1.getY() < p2.getY()) ? 1 : -1;
+        long[] bits = snapshot.copiarBits();
+        cambio.accept(bits);
+        publicar(bits);
+    }
+    
+    private void publicar(long[] bits) {
+        SnapshotObstaculos anterior = snapshot;
+        snapshot = new SnapshotObstaculos(gridMinX, gridMinY, gridMaxX, gridMaxY, bits, ++ultimaVersion);
+        registrarCambios(anterior, snapshot);
+        for (Consumer<SnapshotObstaculos> oyente : oyentesPublicacion) {
+            try {
+                oyente.accept(snapshot);
+            } catch (RuntimeException e) {
+                logger.warn("Error notificando snapshot v{}: {}", snapshot.getVersion(), e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Agrega al historial las celdas cambiadas por la versión publicada; un cambio de
+     * geometría lo reinicia porque los índices de celda anteriores dejan de ser válidos
+     */
+    private void registrarCambios(SnapshotObstaculos anterior, SnapshotObstaculos nuevo) {
+        if (!anterior.mismaGeometria(nuevo)) {
+            historialCambios = new HistorialCambios(nuevo.getVersion(), List.of());
+            return;
+        }
+        List<CambiosObstaculos> cambios = new ArrayList<>(historialCambios.cambios);
+        cambios.add(CambiosObstaculos.entre(anterior, nuevo));
+        if (cambios.size() > MAXIMO_VERSIONES_HISTORIAL) {
+            cambios = cambios.subList(cambios.size() - MAXIMO_VERSIONES_HISTORIAL, cambios.size());
+        }
+        historialCambios = new HistorialCambios(cambios.get(0).getVersionAnterior(), List.copyOf(cambios));
+    }
+    
+    /**
+     * Cambia los límites del grid conservando los obstáculos que siguen dentro
+     */
+    private synchronized void redimensionar(int minX, int minY, int maxX, int maxY) {
+        if (minX == gridMinX && minY == gridMinY && maxX == gridMaxX && maxY == gridMaxY) {
+            return;
+        }
         
-        if (dx > dy) {
-            // Línea más horizontal
-            int error = dx / 2;
-            while (x != p2.getX()) {
-                puntosObstruidos.add(new Punto(x, y));
-                error -= dy;
-                if (error < 0) {
-                    y += stepY;
-                    error += dx;
-                }
-                x += stepX;
+        long[] anteriores = bitsLote != null ? bitsLote : snapshot.copiarBits();
+        int anchoAnterior = gridMaxX - gridMinX + 1;
+        int anteriorMinX = gridMinX;
+        int anteriorMinY = gridMinY;
+        
+        gridMinX = minX;
+        gridMinY = minY;
+        gridMaxX = maxX;
+        gridMaxY = maxY;
+        
+        long[] bits = new long[SnapshotObstaculos.palabrasPara(minX, minY, maxX, maxY)];
+        for (int palabra = 0; palabra < anteriores.length; palabra++) {
+            long valor = anteriores[palabra];
+            while (valor != 0) {
+                int celda = (palabra << 6) + Long.numberOfTrailingZeros(valor);
+                valor &= valor - 1;
+                marcarObstruido(bits, celda % anchoAnterior + anteriorMinX, celda / anchoAnterior + anteriorMinY);
             }
+        }
+        
+        if (bitsLote != null) {
+            bitsLote = bits;
         } else {
-            // Línea más vertical
-            int error = dy / 2;
-            while (y != p2.getY()) {
-                puntosObstruidos.add(new Punto(x, y));
-                error -= dx;
-                if (error < 0) {
-                    x += stepX;
-                    error += dy;
-                }
-                y += stepY;
+            publicar(bits);
+        }
+    }
+    
+    /**
+     * Marca una celda como obstruida; las celdas fuera del grid se ignoran
+     */
+    private void marcarObstruido(long[] bits, int x, int y) {
+        if (x < gridMinX || x > gridMaxX || y < gridMinY || y > gridMaxY) {
+            return;
+        }
+        int celda = (y - gridMinY) * (gridMaxX - gridMinX + 1) + (x - gridMinX);
+        bits[celda >>> 6] |= 1L << celda;
+    }
+    
+    private void generarObstaculosSegmento(long[] bits, Punto p1, Punto p2) {
+        recorrerSegmento(p1, p2, (x, y) -> marcarObstruido(bits, x, y));
+    }
+    
+    /**
+     * Celdas que bloquea un polígono abierto con esos vértices, las mismas que marca
+     * {@link #agregarPoligonoAbierto}; sirve para invalidar lo que cruza un bloqueo nuevo
+     */
+    public static List<Punto> celdasDePolilinea(List<Punto> vertices) {
+        Set<Punto> celdas = new LinkedHashSet<>();
+        if (vertices.size() == 1) {
+            celdas.add(vertices.get(0));
+        }
+        for (int i = 0; i < vertices.size() - 1; i++) {
+            recorrerSegmento(vertices.get(i), vertices.get(i + 1), (x, y) -> celdas.add(new Punto(x, y)));
+        }
+        return new ArrayList<>(celdas);
+    }
+    
+    private static void recorrerSegmento(Punto p1, Punto p2, VisitanteCelda visitante) {
+        recorrerSegmento(p1.getX(), p1.getY(), p2.getX(), p2.getY(), visitante);
+    }
+    
+    /**
+     * Tramo 4-conectado entre dos vértices: en cada paso se avanza en el eje cuyo
+     * cruce de celda llega antes, sin saltar esquinas. Es el único rasterizador de
+     * bloqueos: lo usan el grid, la invalidación de caches y los bloqueos temporizados
+     */
+    static void recorrerSegmento(int x1, int y1, int x2, int y2, VisitanteCelda visitante) {
+        int ex = Math.abs(x2 - x1);
+        int ey = Math.abs(y2 - y1);
+        int sx = Integer.signum(x2 - x1);
+        int sy = Integer.signum(y2 - y1);
+        int x = x1;
+        int y = y1;
+        visitante.visitar(x, y);
+        for (int ix = 0, iy = 0; ix < ex || iy < ey; ) {
+            if (iy >= ey || (ix < ex && (long) (1 + 2 * ix) * ey < (long) (1 + 2 * iy) * ex)) {
+                x += sx;
+                ix++;
+            } else {
+                y += sy;
+                iy++;
             }
+            visitante.visitar(x, y);
         }
-        
-        // Agregar punto final
-        puntosObstruidos.add(p2.clonar());
+    }
+    
+    @FunctionalInterface
+    interface VisitanteCelda {
+        void visitar(int x, int y);
     }
     
     // Getters para acceso controlado
-    public int getGridMinX() { return gridMinX; }
-    public int getGridMinY() { return gridMinY; }
-    public int getGridMaxX() { return gridMaxX; }
-    public int getGridMaxY() { return gridMaxY; }
+    public int getGridMinX() { return snapshot.getMinX(); }
+    public int getGridMinY() { return snapshot.getMinY(); }
+    public int getGridMaxX() { return snapshot.getMaxX(); }
+    public int getGridMaxY() { return snapshot.getMaxY(); }
     public boolean isMapaInicializado() { return mapaInicializado; }
     
     // Clases auxiliares
@@ -429,6 +623,19 @@ public class GestorObstaculos {
         public List<Punto> getVertices() { return vertices; }
     }
     
+    /**
+     * Historial inmutable: cubre todos los cambios publicados desde versionBase
+     */
+    private static final class HistorialCambios {
+        private final long versionBase;
+        private final List<CambiosObstaculos> cambios;
+        
+        private HistorialCambios(long versionBase, List<CambiosObstaculos> cambios) {
+            this.versionBase = versionBase;
+            this.cambios = cambios;
+        }
+    }
+    
     private enum TipoLinea {
         HORIZONTAL, VERTICAL
     }
@@ -439,7 +646,7 @@ public class GestorObstaculos {
         private int lineasHorizontales;
         private int lineasVerticales;
         private int poligonosAbiertos;
-        private int tamanoCacheValidacion;
+        private long versionSnapshot;
         private double porcentajeObstruccion;
         
         // Getters y setters
@@ -467,16 +674,16 @@ public class GestorObstaculos {
         public int getPoligonosAbiertos() { return poligonosAbiertos; }
         public void setPoligonosAbiertos(int poligonosAbiertos) { this.poligonosAbiertos = poligonosAbiertos; }
         
-        public int getTamanoCacheValidacion() { return tamanoCacheValidacion; }
-        public void setTamanoCacheValidacion(int tamanoCacheValidacion) { this.tamanoCacheValidacion = tamanoCacheValidacion; }
+        public long getVersionSnapshot() { return versionSnapshot; }
+        public void setVersionSnapshot(long versionSnapshot) { this.versionSnapshot = versionSnapshot; }
         
         public double getPorcentajeObstruccion() { return porcentajeObstruccion; }
         public void setPorcentajeObstruccion(double porcentajeObstruccion) { this.porcentajeObstruccion = porcentajeObstruccion; }
         
         @Override
         public String toString() {
-            return String.format("Grid: (%d,%d) a (%d,%d), Obstáculos: %d (%.2f%%), Cache: %d",
-                gridMinX, gridMinY, gridMaxX, gridMaxY, puntosObstruidos, porcentajeObstruccion, tamanoCacheValidacion);
+            return String.format("Grid: (%d,%d) a (%d,%d), Obstáculos: %d (%.2f%%), Versión: %d",
+                gridMinX, gridMinY, gridMaxX, gridMaxY, puntosObstruidos, porcentajeObstruccion, versionSnapshot);
         }
     }
 }
\ No newline at end of file
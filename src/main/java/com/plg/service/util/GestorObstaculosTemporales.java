@@ -4,6 +4,7 @@ import com.plg.domain.Obstaculo;
 import com.plg.service.ObstaculoService;
 import com.plg.service.SimulationTimeService;
 
+import jakarta.annotation.PostConstruct;
 import lombok.Data;
 
 import org.slf4j.Logger;
@@ -31,6 +32,78 @@ public class GestorObstaculosTemporales {
     @Autowired
     private SimulationTimeService simulationTimeService;
     
+    @Autowired
+    private GestorObstaculos gestorObstaculos;
+    
+    // Próximo instante de simulación (segundos epoch) en que algún bloqueo empieza o termina
+    private volatile long proximoCambioBloqueos = Long.MIN_VALUE;
+    
+    /**
+     * Cuando un bloqueo empieza o termina en el tiempo de simulación, los bloqueos activos
+     * se recargan en el gestor: el snapshot publicado dispara la replanificación
+     * incremental de los camiones en ruta
+     */
+    @PostConstruct
+    public void registrarCambiosDeBloqueos() {
+        simulationTimeService.addTrigger("bloqueos-temporales", new SimulationTimeService.TriggerCondition() {
+            @Override
+            public boolean shouldTrigger(LocalDateTime simulationTime, long tickCount, boolean isRunning) {
+                return isRunning && aSegundos(simulationTime) >= proximoCambioBloqueos;
+            }
+            
+            @Override
+            public void execute() {
+                aplicarBloqueosVigentes(simulationTimeService.getCurrentSimulationTime());
+            }
+            
+            @Override
+            public String getEventType() {
+                return "BLOQUEOS_TEMPORALES";
+            }
+        });
+    }
+    
+    /**
+     * Carga en el gestor los bloqueos activos en el instante dado y calcula el próximo
+     * inicio o fin de bloqueo
+     */
+    public void aplicarBloqueosVigentes(LocalDateTime tiempoSimulacion) {
+        long timestampSimulacion = aSegundos(tiempoSimulacion);
+        obstaculoService.actualizarGestorConBloqueosActivosEn(timestampSimulacion);
+        proximoCambioBloqueos = proximoCambio(obstaculoService.obtenerTodos(), timestampSimulacion);
+    }
+    
+    /**
+     * Fuerza a recalcular los bloqueos activos en el próximo tick (p. ej. tras cargar un archivo)
+     */
+    public void reprogramarCambiosDeBloqueos() {
+        proximoCambioBloqueos = Long.MIN_VALUE;
+    }
+    
+    /**
+     * Primer instante posterior a {@code timestamp} en que un bloqueo empieza o termina
+     * (Long.MAX_VALUE si no queda ninguno)
+     */
+    public static long proximoCambio(List<Obstaculo> bloqueos, long timestamp) {
+        long proximo = Long.MAX_VALUE;
+        for (Obstaculo bloqueo : bloqueos) {
+            if (bloqueo.getTimestampInicio() == null || bloqueo.getTimestampFin() == null) {
+                continue;
+            }
+            if (bloqueo.getTimestampInicio() > timestamp) {
+                proximo = Math.min(proximo, bloqueo.getTimestampInicio());
+            }
+            if (bloqueo.getTimestampFin() > timestamp) {
+                proximo = Math.min(proximo, bloqueo.getTimestampFin());
+            }
+        }
+        return proximo;
+    }
+    
+    private static long aSegundos(LocalDateTime momento) {
+        return momento.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+    
     /**
      * Obtiene obstáculos activos según el tiempo de simulación actual
      */
@@ -46,8 +119,7 @@ public class GestorObstaculosTemporales {
         try {
             long timestampSimulacion = tiempoSimulacion
                 .atZone(ZoneId.systemDefault())
-                .toInstant()
-                .toEpochMilli();
+                .toEpochSecond(); // Los bloqueos guardan timestamps en segundos
             
             logger.debug("🚧 Obteniendo obstáculos vigentes para tiempo: {} (timestamp: {})", 
                 tiempoSimulacion, timestampSimulacion);
@@ -82,6 +154,35 @@ public class GestorObstaculosTemporales {
         }
     }
     
+    /**
+     * Compila en el gestor de obstáculos el índice temporal con los bloqueos vigentes
+     * y futuros (fin posterior al tiempo de simulación), para la búsqueda con horario
+     */
+    public BloqueosTemporizados compilarBloqueosTemporizados(LocalDateTime tiempoSimulacion) {
+        try {
+            long timestampSimulacion = tiempoSimulacion.atZone(ZoneId.systemDefault()).toEpochSecond();
+            
+            List<Obstaculo> pendientes = obstaculoService.obtenerTodos().stream()
+                .filter(obs -> obs.getTimestampInicio() != null && obs.getTimestampFin() != null)
+                .filter(obs -> obs.getTimestampFin() > timestampSimulacion)
+                .collect(Collectors.toList());
+            
+            BloqueosTemporizados bloqueos = BloqueosTemporizados.compilar(
+                gestorObstaculos.obtenerSnapshot(), pendientes, timestampSimulacion);
+            gestorObstaculos.configurarBloqueosTemporizados(bloqueos);
+            
+            logger.info("🚧 Índice temporal compilado: {} bloqueos vigentes o futuros para tiempo {}", 
+                bloqueos.getTotalBloqueos(), tiempoSimulacion);
+            return bloqueos;
+            
+        } catch (Exception e) {
+            logger.error("❌ Error compilando bloqueos temporizados: {}", e.getMessage(), e);
+            // Sin índice la planificación continúa con rutas estáticas
+            gestorObstaculos.configurarBloqueosTemporizados(BloqueosTemporizados.vacio());
+            return BloqueosTemporizados.vacio();
+        }
+    }
+    
     /**
      * Verifica si hay obstáculos temporales que afecten una ruta específica
      */
@@ -0,0 +1,578 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grafo abstracto HPA* de un snapshot de obstáculos
+ * El grid se divide en clusters cuadrados alineados (coordenada / tamaño). En cada borde entre
+ * clusters vecinos se eligen entradas (una por tramo libre corto, dos en los extremos
+ * de tramos largos) y dentro de cada cluster se precalcula el costo BFS entre sus
+ * entradas. Una búsqueda conecta origen y destino a las entradas de su cluster,
+ * resuelve A* sobre el grafo abstracto y refina cada arista con una BFS local, de
+ * modo que su costo depende del número de clusters recorridos y no del tamaño del grid.
+ * La ruta es casi óptima: el desvío queda acotado por el paso obligado por las entradas
+ */
+public final class GrafoAbstractoHpa {
+
+    // Tramos libres de esta longitud o más generan dos entradas, en sus extremos
+    private static final int LONGITUD_ENTRADA_DOBLE = 6;
+    private static final int INTERVALO_VERIFICACION_TIMEOUT = 64;
+
+    private final SnapshotObstaculos mapa;
+    private final int tamanoCluster;
+
+    // Por cluster: pares (celda propia, celda del vecino) del borde este y del borde norte
+    private final int[][] bordesEste;
+    private final int[][] bordesNorte;
+    private final Cluster[] clusters;
+    private final int clustersReconstruidos;
+
+    // Grafo global: nodos numerados por cluster, adyacencia en formato CSR
+    private final int[] inicioNodosCluster;
+    private final int[] celdaNodo;
+    private final int[] inicioAdyacencia;
+    private final int[] destinosAdyacencia;
+    private final int[] costosAdyacencia;
+
+    private GrafoAbstractoHpa(SnapshotObstaculos mapa, int tamanoCluster, int[][] bordesEste, int[][] bordesNorte,
+                              Cluster[] clusters, int clustersReconstruidos) {
+        this.mapa = mapa;
+        this.tamanoCluster = tamanoCluster;
+        this.bordesEste = bordesEste;
+        this.bordesNorte = bordesNorte;
+        this.clusters = clusters;
+        this.clustersReconstruidos = clustersReconstruidos;
+
+        // Numeración de nodos y adyacencia global
+        inicioNodosCluster = new int[clusters.length + 1];
+        for (int c = 0; c < clusters.length; c++) {
+            inicioNodosCluster[c + 1] = inicioNodosCluster[c] + clusters[c].entradas.length;
+        }
+        int nodos = inicioNodosCluster[clusters.length];
+        celdaNodo = new int[nodos];
+        Map<Integer, Integer> nodoPorCelda = new HashMap<>(nodos * 2);
+        int[] grado = new int[nodos];
+        for (int c = 0; c < clusters.length; c++) {
+            Cluster cluster = clusters[c];
+            int k = cluster.entradas.length;
+            for (int i = 0; i < k; i++) {
+                int nodo = inicioNodosCluster[c] + i;
+                celdaNodo[nodo] = cluster.entradas[i];
+                nodoPorCelda.put(cluster.entradas[i], nodo);
+                for (int j = 0; j < k; j++) {
+                    if (i != j && cluster.costos[i * k + j] >= 0) {
+                        grado[nodo]++;
+                    }
+                }
+            }
+        }
+        for (int[][] bordes : new int[][][] {bordesEste, bordesNorte}) {
+            for (int[] pares : bordes) {
+                for (int p = 0; p < pares.length; p += 2) {
+                    grado[nodoPorCelda.get(pares[p])]++;
+                    grado[nodoPorCelda.get(pares[p + 1])]++;
+                }
+            }
+        }
+
+        inicioAdyacencia = new int[nodos + 1];
+        for (int n = 0; n < nodos; n++) {
+            inicioAdyacencia[n + 1] = inicioAdyacencia[n] + grado[n];
+        }
+        destinosAdyacencia = new int[inicioAdyacencia[nodos]];
+        costosAdyacencia = new int[inicioAdyacencia[nodos]];
+        int[] siguiente = Arrays.copyOf(inicioAdyacencia, nodos);
+        for (int c = 0; c < clusters.length; c++) {
+            Cluster cluster = clusters[c];
+            int k = cluster.entradas.length;
+            for (int i = 0; i < k; i++) {
+                int nodo = inicioNodosCluster[c] + i;
+                for (int j = 0; j < k; j++) {
+                    int costo = cluster.costos[i * k + j];
+                    if (i != j && costo >= 0) {
+                        destinosAdyacencia[siguiente[nodo]] = inicioNodosCluster[c] + j;
+                        costosAdyacencia[siguiente[nodo]++] = costo;
+                    }
+                }
+            }
+        }
+        for (int[][] bordes : new int[][][] {bordesEste, bordesNorte}) {
+            for (int[] pares : bordes) {
+                for (int p = 0; p < pares.length; p += 2) {
+                    int a = nodoPorCelda.get(pares[p]);
+                    int b = nodoPorCelda.get(pares[p + 1]);
+                    destinosAdyacencia[siguiente[a]] = b;
+                    costosAdyacencia[siguiente[a]++] = 1;
+                    destinosAdyacencia[siguiente[b]] = a;
+                    costosAdyacencia[siguiente[b]++] = 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Construye el grafo completo para un snapshot
+     */
+    public static GrafoAbstractoHpa construir(SnapshotObstaculos mapa, int tamanoCluster) {
+        int tamano = Math.max(2, tamanoCluster);
+        Geometria geo = new Geometria(mapa, tamano);
+        int total = geo.ancho * geo.alto;
+        int[][] bordesEste = new int[total][];
+        int[][] bordesNorte = new int[total][];
+        for (int c = 0; c < total; c++) {
+            bordesEste[c] = calcularBorde(mapa, geo, c, true);
+            bordesNorte[c] = calcularBorde(mapa, geo, c, false);
+        }
+        Cluster[] clusters = new Cluster[total];
+        for (int c = 0; c < total; c++) {
+            clusters[c] = construirCluster(mapa, geo, c, bordesEste, bordesNorte);
+        }
+        return new GrafoAbstractoHpa(mapa, tamano, bordesEste, bordesNorte, clusters, total);
+    }
+
+    /**
+     * Grafo para un snapshot posterior: solo se recalculan los bordes de los clusters con
+     * celdas distintas, y solo se reconstruyen esos clusters y los vecinos cuyas entradas
+     * compartidas cambiaron. Con otra geometría se construye de cero
+     */
+    public GrafoAbstractoHpa actualizar(SnapshotObstaculos nuevo) {
+        if (nuevo.getVersion() == mapa.getVersion()) {
+            return this;
+        }
+        if (!mapa.mismaGeometria(nuevo)) {
+            return construir(nuevo, tamanoCluster);
+        }
+        Geometria geo = new Geometria(nuevo, tamanoCluster);
+        BitSet cambiados = new BitSet(clusters.length);
+        mapa.paraCadaCeldaDistinta(nuevo, celda -> cambiados.set(geo.clusterDe(nuevo.xDe(celda), nuevo.yDe(celda))));
+        if (cambiados.isEmpty()) {
+            return new GrafoAbstractoHpa(nuevo, tamanoCluster, bordesEste, bordesNorte, clusters, 0);
+        }
+
+        int[][] nuevosEste = bordesEste.clone();
+        int[][] nuevosNorte = bordesNorte.clone();
+        BitSet reconstruir = (BitSet) cambiados.clone();
+        for (int c = cambiados.nextSetBit(0); c >= 0; c = cambiados.nextSetBit(c + 1)) {
+            int cx = c % geo.ancho;
+            int cy = c / geo.ancho;
+            recalcularBorde(nuevo, geo, c, true, nuevosEste, reconstruir);
+            recalcularBorde(nuevo, geo, c, false, nuevosNorte, reconstruir);
+            if (cx > 0) {
+                recalcularBorde(nuevo, geo, c - 1, true, nuevosEste, reconstruir);
+            }
+            if (cy > 0) {
+                recalcularBorde(nuevo, geo, c - geo.ancho, false, nuevosNorte, reconstruir);
+            }
+        }
+
+        Cluster[] nuevosClusters = clusters.clone();
+        for (int c = reconstruir.nextSetBit(0); c >= 0; c = reconstruir.nextSetBit(c + 1)) {
+            nuevosClusters[c] = construirCluster(nuevo, geo, c, nuevosEste, nuevosNorte);
+        }
+        return new GrafoAbstractoHpa(nuevo, tamanoCluster, nuevosEste, nuevosNorte, nuevosClusters,
+            reconstruir.cardinality());
+    }
+
+    private static void recalcularBorde(SnapshotObstaculos mapa, Geometria geo, int c, boolean este,
+                                        int[][] bordes, BitSet reconstruir) {
+        int[] anterior = bordes[c];
+        int[] actual = calcularBorde(mapa, geo, c, este);
+        if (!Arrays.equals(anterior, actual)) {
+            bordes[c] = actual;
+            reconstruir.set(c);
+            reconstruir.set(este ? c + 1 : c + geo.ancho);
+        }
+    }
+
+    /**
+     * Pares de entrada entre el cluster y su vecino este (o norte): por cada tramo
+     * donde ambos lados del borde están libres, el centro si es corto o sus dos extremos
+     */
+    private static int[] calcularBorde(SnapshotObstaculos mapa, Geometria geo, int c, boolean este) {
+        int cx = c % geo.ancho;
+        int cy = c / geo.ancho;
+        if (este ? cx + 1 >= geo.ancho : cy + 1 >= geo.alto) {
+            return new int[0];
+        }
+        int fijo = este ? geo.maxX(cx) : geo.maxY(cy);
+        int desde = este ? geo.minY(cy) : geo.minX(cx);
+        int hasta = este ? geo.maxY(cy) : geo.maxX(cx);
+
+        List<Integer> pares = new ArrayList<>();
+        int inicioTramo = -1;
+        for (int v = desde; v <= hasta + 1; v++) {
+            boolean libre = v <= hasta && (este
+                ? mapa.esValido(fijo, v) && mapa.esValido(fijo + 1, v)
+                : mapa.esValido(v, fijo) && mapa.esValido(v, fijo + 1));
+            if (libre && inicioTramo < 0) {
+                inicioTramo = v;
+            } else if (!libre && inicioTramo >= 0) {
+                int finTramo = v - 1;
+                if (finTramo - inicioTramo + 1 >= LONGITUD_ENTRADA_DOBLE) {
+                    agregarPar(mapa, pares, fijo, inicioTramo, este);
+                    agregarPar(mapa, pares, fijo, finTramo, este);
+                } else {
+                    agregarPar(mapa, pares, fijo, (inicioTramo + finTramo) / 2, este);
+                }
+                inicioTramo = -1;
+            }
+        }
+        return pares.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void agregarPar(SnapshotObstaculos mapa, List<Integer> pares, int fijo, int v, boolean este) {
+        if (este) {
+            pares.add(mapa.indice(fijo, v));
+            pares.add(mapa.indice(fijo + 1, v));
+        } else {
+            pares.add(mapa.indice(v, fijo));
+            pares.add(mapa.indice(v, fijo + 1));
+        }
+    }
+
+    /**
+     * Entradas del cluster (de sus cuatro bordes) y costos BFS internos entre ellas
+     */
+    private static Cluster construirCluster(SnapshotObstaculos mapa, Geometria geo, int c,
+                                            int[][] bordesEste, int[][] bordesNorte) {
+        int cx = c % geo.ancho;
+        int cy = c / geo.ancho;
+        BitSet propias = new BitSet();
+        List<Integer> entradas = new ArrayList<>();
+        agregarEntradas(bordesEste[c], 0, propias, entradas);
+        agregarEntradas(bordesNorte[c], 0, propias, entradas);
+        if (cx > 0) {
+            agregarEntradas(bordesEste[c - 1], 1, propias, entradas);
+        }
+        if (cy > 0) {
+            agregarEntradas(bordesNorte[c - geo.ancho], 1, propias, entradas);
+        }
+        Collections.sort(entradas);
+
+        int k = entradas.size();
+        int[] celdas = entradas.stream().mapToInt(Integer::intValue).toArray();
+        int[] costos = new int[k * k];
+        Rectangulo area = geo.rectangulo(c);
+        int[] distancia = new int[area.celdas()];
+        int[] cola = new int[area.celdas()];
+        for (int i = 0; i < k; i++) {
+            bfsEnCluster(mapa, area, celdas[i], -1, distancia, null, cola);
+            for (int j = 0; j < k; j++) {
+                costos[i * k + j] = distancia[area.local(mapa, celdas[j])];
+            }
+        }
+        return new Cluster(celdas, costos);
+    }
+
+    private static void agregarEntradas(int[] pares, int lado, BitSet propias, List<Integer> entradas) {
+        for (int p = lado; p < pares.length; p += 2) {
+            if (!propias.get(pares[p])) {
+                propias.set(pares[p]);
+                entradas.add(pares[p]);
+            }
+        }
+    }
+
+    /**
+     * BFS 4-conectada restringida al rectángulo del cluster, en índices locales;
+     * con {@code objetivo} distinto de -1 se detiene al alcanzarlo
+     */
+    private static void bfsEnCluster(SnapshotObstaculos mapa, Rectangulo area, int origen, int objetivo,
+                                     int[] distancia, int[] padre, int[] cola) {
+        int celdas = area.celdas();
+        Arrays.fill(distancia, 0, celdas, -1);
+        int ancho = area.ancho;
+        int alto = area.alto;
+        int inicio = area.local(mapa, origen);
+        int objetivoLocal = objetivo >= 0 ? area.local(mapa, objetivo) : -1;
+        distancia[inicio] = 0;
+        int cabeza = 0;
+        int fin = 0;
+        cola[fin++] = inicio;
+        while (cabeza < fin) {
+            int actual = cola[cabeza++];
+            if (actual == objetivoLocal) {
+                return;
+            }
+            int col = actual % ancho;
+            int fila = actual / ancho;
+            int siguiente = distancia[actual] + 1;
+            if (fila + 1 < alto) fin = visitar(mapa, area, actual, actual + ancho, siguiente, distancia, padre, cola, fin);
+            if (fila > 0) fin = visitar(mapa, area, actual, actual - ancho, siguiente, distancia, padre, cola, fin);
+            if (col > 0) fin = visitar(mapa, area, actual, actual - 1, siguiente, distancia, padre, cola, fin);
+            if (col + 1 < ancho) fin = visitar(mapa, area, actual, actual + 1, siguiente, distancia, padre, cola, fin);
+        }
+    }
+
+    private static int visitar(SnapshotObstaculos mapa, Rectangulo area, int actual, int vecino, int valor,
+                               int[] distancia, int[] padre, int[] cola, int fin) {
+        if (distancia[vecino] < 0 && mapa.esCeldaLibre(area.global(mapa, vecino))) {
+            distancia[vecino] = valor;
+            if (padre != null) {
+                padre[vecino] = actual;
+            }
+            cola[fin++] = vecino;
+        }
+        return fin;
+    }
+
+    /**
+     * Busca una ruta entre dos celdas libres del snapshot. {@code maxNodos} limita los
+     * nodos abstractos expandidos; el espacio de trabajo se reutiliza como en el motor de grid
+     */
+    public Busqueda buscar(EspacioBusquedaGrid espacio, int celdaOrigen, int celdaDestino,
+                           int maxNodos, long limiteTiempo, TokenCancelacion cancelacion) {
+        Geometria geo = new Geometria(mapa, tamanoCluster);
+        int nodos = celdaNodo.length;
+        int nodoInicio = nodos;
+        int nodoObjetivo = nodos + 1;
+        int destinoX = mapa.xDe(celdaDestino);
+        int destinoY = mapa.yDe(celdaDestino);
+
+        int clusterOrigen = geo.clusterDe(mapa.xDe(celdaOrigen), mapa.yDe(celdaOrigen));
+        int clusterDestino = geo.clusterDe(destinoX, destinoY);
+        Rectangulo areaOrigen = geo.rectangulo(clusterOrigen);
+        Rectangulo areaDestino = geo.rectangulo(clusterDestino);
+        int[] distanciaOrigen = new int[areaOrigen.celdas()];
+        int[] distanciaDestino = new int[areaDestino.celdas()];
+        int[] cola = new int[Math.max(areaOrigen.celdas(), areaDestino.celdas())];
+        bfsEnCluster(mapa, areaOrigen, celdaOrigen, -1, distanciaOrigen, null, cola);
+        bfsEnCluster(mapa, areaDestino, celdaDestino, -1, distanciaDestino, null, cola);
+
+        espacio.preparar(nodos + 2);
+        MonticuloEnteros frontera = espacio.getFrontera();
+        Busqueda busqueda = new Busqueda();
+
+        // Conectar el origen a las entradas de su cluster (y al destino si comparten cluster)
+        Cluster inicial = clusters[clusterOrigen];
+        for (int i = 0; i < inicial.entradas.length; i++) {
+            int costo = distanciaOrigen[areaOrigen.local(mapa, inicial.entradas[i])];
+            if (costo >= 0) {
+                relajar(espacio, frontera, nodoInicio, inicioNodosCluster[clusterOrigen] + i, costo,
+                    distanciaManhattan(inicial.entradas[i], destinoX, destinoY));
+            }
+        }
+        if (clusterOrigen == clusterDestino) {
+            int directo = distanciaOrigen[areaOrigen.local(mapa, celdaDestino)];
+            if (directo >= 0) {
+                relajar(espacio, frontera, nodoInicio, nodoObjetivo, directo, 0);
+            }
+        }
+
+        Cluster ultimo = clusters[clusterDestino];
+        int primerNodoDestino = inicioNodosCluster[clusterDestino];
+        while (!frontera.estaVacio()) {
+            if ((busqueda.nodosExplorados & (INTERVALO_VERIFICACION_TIMEOUT - 1)) == 0
+                    && cancelacion.debeDetenerse(limiteTiempo)) {
+                busqueda.timeoutAlcanzado = true;
+                break;
+            }
+            if (busqueda.nodosExplorados >= maxNodos) {
+                busqueda.limiteAlcanzado = true;
+                break;
+            }
+
+            int nodo = MonticuloEnteros.nodo(frontera.extraerMinimo());
+            if (espacio.estaCerrado(nodo)) {
+                continue;
+            }
+            espacio.cerrar(nodo);
+            busqueda.nodosExplorados++;
+
+            if (nodo == nodoObjetivo) {
+                busqueda.distancia = espacio.costoG(nodoObjetivo);
+                busqueda.ruta = refinar(espacio, geo, celdaOrigen, celdaDestino, nodoInicio, nodoObjetivo);
+                break;
+            }
+
+            int g = espacio.costoG(nodo);
+            for (int a = inicioAdyacencia[nodo]; a < inicioAdyacencia[nodo + 1]; a++) {
+                int vecino = destinosAdyacencia[a];
+                relajar(espacio, frontera, nodo, vecino, g + costosAdyacencia[a],
+                    distanciaManhattan(celdaNodo[vecino], destinoX, destinoY));
+            }
+            if (nodo >= primerNodoDestino && nodo < primerNodoDestino + ultimo.entradas.length) {
+                int costo = distanciaDestino[areaDestino.local(mapa, celdaNodo[nodo])];
+                if (costo >= 0) {
+                    relajar(espacio, frontera, nodo, nodoObjetivo, g + costo, 0);
+                }
+            }
+        }
+        busqueda.nodosEnCola = frontera.tamano();
+        return busqueda;
+    }
+
+    private static void relajar(EspacioBusquedaGrid espacio, MonticuloEnteros frontera,
+                                int nodo, int vecino, int g, int h) {
+        if (!espacio.estaCerrado(vecino) && g < espacio.costoG(vecino)) {
+            espacio.actualizar(vecino, g, nodo);
+            frontera.insertar(g + h, vecino);
+        }
+    }
+
+    private int distanciaManhattan(int celda, int x, int y) {
+        return Math.abs(mapa.xDe(celda) - x) + Math.abs(mapa.yDe(celda) - y);
+    }
+
+    /**
+     * Expande la secuencia de nodos abstractos en celdas: las aristas entre clusters
+     * son un paso y las internas se recorren con una BFS local al cluster
+     */
+    private List<Punto> refinar(EspacioBusquedaGrid espacio, Geometria geo, int celdaOrigen, int celdaDestino,
+                                int nodoInicio, int nodoObjetivo) {
+        List<Integer> secuencia = new ArrayList<>();
+        for (int nodo = nodoObjetivo; nodo != nodoInicio; nodo = espacio.padre(nodo)) {
+            secuencia.add(nodo == nodoObjetivo ? celdaDestino : celdaNodo[nodo]);
+        }
+        secuencia.add(celdaOrigen);
+        Collections.reverse(secuencia);
+
+        List<Punto> ruta = new ArrayList<>();
+        ruta.add(new Punto(mapa.xDe(celdaOrigen), mapa.yDe(celdaOrigen)));
+        for (int i = 1; i < secuencia.size(); i++) {
+            int desde = secuencia.get(i - 1);
+            int hasta = secuencia.get(i);
+            int clusterDesde = geo.clusterDe(mapa.xDe(desde), mapa.yDe(desde));
+            if (clusterDesde != geo.clusterDe(mapa.xDe(hasta), mapa.yDe(hasta))) {
+                ruta.add(new Punto(mapa.xDe(hasta), mapa.yDe(hasta)));
+                continue;
+            }
+            Rectangulo area = geo.rectangulo(clusterDesde);
+            int[] distancia = new int[area.celdas()];
+            int[] padre = new int[area.celdas()];
+            int[] cola = new int[area.celdas()];
+            bfsEnCluster(mapa, area, desde, hasta, distancia, padre, cola);
+            int inicioLocal = area.local(mapa, desde);
+            List<Punto> tramo = new ArrayList<>();
+            for (int local = area.local(mapa, hasta); local != inicioLocal; local = padre[local]) {
+                int celda = area.global(mapa, local);
+                tramo.add(new Punto(mapa.xDe(celda), mapa.yDe(celda)));
+            }
+            Collections.reverse(tramo);
+            ruta.addAll(tramo);
+        }
+        return ruta;
+    }
+
+    public int getTamanoCluster() {
+        return tamanoCluster;
+    }
+
+    public int getClusters() {
+        return clusters.length;
+    }
+
+    public int getNodos() {
+        return celdaNodo.length;
+    }
+
+    /**
+     * Clusters recalculados al construir esta versión (todos en una construcción completa)
+     */
+    public int getClustersReconstruidos() {
+        return clustersReconstruidos;
+    }
+
+    public long getVersion() {
+        return mapa.getVersion();
+    }
+
+    /**
+     * Resultado de una búsqueda jerárquica; {@code ruta} es null si no se encontró
+     */
+    public static final class Busqueda {
+        private List<Punto> ruta;
+        private int distancia = -1;
+        private int nodosExplorados;
+        private int nodosEnCola;
+        private boolean timeoutAlcanzado;
+        private boolean limiteAlcanzado;
+
+        public List<Punto> getRuta() { return ruta; }
+        public int getDistancia() { return distancia; }
+        public int getNodosExplorados() { return nodosExplorados; }
+        public int getNodosEnCola() { return nodosEnCola; }
+        public boolean isTimeoutAlcanzado() { return timeoutAlcanzado; }
+        public boolean isLimiteAlcanzado() { return limiteAlcanzado; }
+    }
+
+    private static final class Cluster {
+        private final int[] entradas;  // Celdas de entrada, ordenadas
+        private final int[] costos;    // k x k, -1 si no se conectan dentro del cluster
+
+        private Cluster(int[] entradas, int[] costos) {
+            this.entradas = entradas;
+            this.costos = costos;
+        }
+    }
+
+    /**
+     * Partición del snapshot en clusters alineados a múltiplos del tamaño
+     */
+    private static final class Geometria {
+        private final SnapshotObstaculos mapa;
+        private final int tamano;
+        private final int primeroX;
+        private final int primeroY;
+        private final int ancho;
+        private final int alto;
+
+        private Geometria(SnapshotObstaculos mapa, int tamano) {
+            this.mapa = mapa;
+            this.tamano = tamano;
+            this.primeroX = Math.floorDiv(mapa.getMinX(), tamano);
+            this.primeroY = Math.floorDiv(mapa.getMinY(), tamano);
+            this.ancho = Math.floorDiv(mapa.getMaxX(), tamano) - primeroX + 1;
+            this.alto = Math.floorDiv(mapa.getMaxY(), tamano) - primeroY + 1;
+        }
+
+        private int clusterDe(int x, int y) {
+            return (Math.floorDiv(y, tamano) - primeroY) * ancho + (Math.floorDiv(x, tamano) - primeroX);
+        }
+
+        private int minX(int cx) { return Math.max(mapa.getMinX(), (primeroX + cx) * tamano); }
+        private int maxX(int cx) { return Math.min(mapa.getMaxX(), (primeroX + cx + 1) * tamano - 1); }
+        private int minY(int cy) { return Math.max(mapa.getMinY(), (primeroY + cy) * tamano); }
+        private int maxY(int cy) { return Math.min(mapa.getMaxY(), (primeroY + cy + 1) * tamano - 1); }
+
+        private Rectangulo rectangulo(int c) {
+            int cx = c % ancho;
+            int cy = c / ancho;
+            return new Rectangulo(minX(cx), minY(cy), maxX(cx) - minX(cx) + 1, maxY(cy) - minY(cy) + 1);
+        }
+    }
+
+    private static final class Rectangulo {
+        private final int x0;
+        private final int y0;
+        private final int ancho;
+        private final int alto;
+
+        private Rectangulo(int x0, int y0, int ancho, int alto) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.ancho = ancho;
+            this.alto = alto;
+        }
+
+        private int celdas() {
+            return ancho * alto;
+        }
+
+        private int local(SnapshotObstaculos mapa, int celda) {
+            return (mapa.yDe(celda) - y0) * ancho + (mapa.xDe(celda) - x0);
+        }
+
+        private int global(SnapshotObstaculos mapa, int local) {
+            return mapa.indice(x0 + local % ancho, y0 + local / ancho);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice invertido celda → rutas de la cache que pasan por ella. Se mantiene al insertar
+ * y al retirar rutas; cada celda se actualiza de forma atómica, así que admite escritores
+ * concurrentes. Las consultas son pistas: el llamador confirma contra la ruta vigente
+ */
+public class IndiceEspacialRutas<K> {
+
+    private final Map<Long, Set<K>> rutasPorCelda = new ConcurrentHashMap<>();
+
+    public void registrar(K clave, List<Punto> ruta) {
+        for (Punto punto : ruta) {
+            rutasPorCelda.compute(celda(punto.getX(), punto.getY()), (celda, claves) -> {
+                Set<K> resultado = claves != null ? claves : ConcurrentHashMap.newKeySet();
+                resultado.add(clave);
+                return resultado;
+            });
+        }
+    }
+
+    public void retirar(K clave, List<Punto> ruta) {
+        for (Punto punto : ruta) {
+            rutasPorCelda.computeIfPresent(celda(punto.getX(), punto.getY()), (celda, claves) -> {
+                claves.remove(clave);
+                return claves.isEmpty() ? null : claves;
+            });
+        }
+    }
+
+    /**
+     * Claves de las rutas registradas que pasan por la celda (vista de solo lectura)
+     */
+    public Set<K> rutasEnCelda(int x, int y) {
+        Set<K> claves = rutasPorCelda.get(celda(x, y));
+        return claves != null ? Collections.unmodifiableSet(claves) : Collections.emptySet();
+    }
+
+    public void limpiar() {
+        rutasPorCelda.clear();
+    }
+
+    public int getCeldasIndexadas() {
+        return rutasPorCelda.size();
+    }
+
+    private static long celda(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
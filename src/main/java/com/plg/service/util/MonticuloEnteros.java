@@ -0,0 +1,99 @@
+package com.plg.service.util;
+
+import java.util.Arrays;
+
+/**
+ * Montículo binario mínimo sobre claves primitivas {@code long}
+ * Cada clave empaqueta (prioridad, nodo) para evitar objetos por inserción
+ */
+public class MonticuloEnteros {
+
+    private long[] claves;
+    private int tamano;
+
+    public MonticuloEnteros() {
+        this(256);
+    }
+
+    public MonticuloEnteros(int capacidadInicial) {
+        this.claves = new long[Math.max(16, capacidadInicial)];
+        this.tamano = 0;
+    }
+
+    /**
+     * Empaqueta prioridad (no negativa) y nodo en una sola clave ordenable
+     */
+    public static long empaquetar(int prioridad, int nodo) {
+        return ((long) prioridad << 32) | (nodo & 0xFFFFFFFFL);
+    }
+
+    public static int prioridad(long clave) {
+        return (int) (clave >>> 32);
+    }
+
+    public static int nodo(long clave) {
+        return (int) clave;
+    }
+
+    public void insertar(int prioridad, int nodo) {
+        if (tamano == claves.length) {
+            claves = Arrays.copyOf(claves, tamano * 2);
+        }
+        long clave = empaquetar(prioridad, nodo);
+        int i = tamano++;
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            long clavePadre = claves[padre];
+            if (clavePadre <= clave) {
+                break;
+            }
+            claves[i] = clavePadre;
+            i = padre;
+        }
+        claves[i] = clave;
+    }
+
+    /**
+     * Extrae la clave mínima. El llamador debe verificar {@link #estaVacio()}
+     */
+    public long extraerMinimo() {
+        long minimo = claves[0];
+        long ultima = claves[--tamano];
+        if (tamano > 0) {
+            int i = 0;
+            int mitad = tamano >>> 1;
+            while (i < mitad) {
+                int hijo = 2 * i + 1;
+                long claveHijo = claves[hijo];
+                int derecho = hijo + 1;
+                if (derecho < tamano && claves[derecho] < claveHijo) {
+                    hijo = derecho;
+                    claveHijo = claves[derecho];
+                }
+                if (ultima <= claveHijo) {
+                    break;
+                }
+                claves[i] = claveHijo;
+                i = hijo;
+            }
+            claves[i] = ultima;
+        }
+        return minimo;
+    }
+
+    public long verMinimo() {
+        return claves[0];
+    }
+
+    public boolean estaVacio() {
+        return tamano == 0;
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public void limpiar() {
+        tamano = 0;
+    }
+}
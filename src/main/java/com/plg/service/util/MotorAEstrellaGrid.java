@@ -0,0 +1,1018 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.domain.enumeration.TipoError;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.AEstrellaService.MotorBusqueda;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Motor A* sobre el grid indexado: cada celda es un entero (y * ancho + x)
+ * Costos, padres y cerrados viven en arreglos primitivos reutilizados por thread,
+ * sin crear Punto ni nodos por vecino explorado.
+ * Modos: GRID expande los 4 vecinos; JPS salta a lo largo de corredores rectos
+ * (Jump Point Search para 4-conectividad); JPS_PLUS usa saltos precalculados por snapshot.
+ * La heurística es Manhattan, reforzada con cotas ALT (landmarks por snapshot) si se habilita
+ */
+@Component
+public class MotorAEstrellaGrid {
+
+    private static final Logger logger = LoggerFactory.getLogger(MotorAEstrellaGrid.class);
+
+    // Movimientos Manhattan: arriba, abajo, izquierda, derecha
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {1, -1, 0, 0};
+
+    // Cada cuántas expansiones se consulta el reloj
+    private static final int INTERVALO_VERIFICACION_TIMEOUT = 256;
+
+    // Bits reservados para desempatar por h dentro de la prioridad
+    private static final int BITS_DESEMPATE = 11;
+    private static final int MAX_DESEMPATE = (1 << BITS_DESEMPATE) - 1;
+
+    // Escala del grid (igual que CalculadoraCombustible) y velocidad por defecto de SegmentoRuta
+    private static final double KM_POR_CELDA = 0.5;
+    public static final double VELOCIDAD_POR_DEFECTO_KMPH = 50.0;
+
+    private static final int TODAS_DIRECCIONES = 0b1111;
+    private static final int SIN_SALTO = Integer.MIN_VALUE;
+
+    private static final String ALGORITMO_CON_HORARIO = "A* con horario";
+    private static final String ALGORITMO_MULTI_DESTINO = "BFS multi-destino";
+    private static final String ALGORITMO_BIDIRECCIONAL = "A* bidireccional";
+
+    private static final int NUMERO_LANDMARKS = 8;
+    private static final long LIMITE_BYTES_LANDMARKS = 64L * 1024 * 1024;
+
+    private final GestorObstaculos gestorObstaculos;
+
+    private final ThreadLocal<EspacioBusquedaGrid> espacios =
+        ThreadLocal.withInitial(EspacioBusquedaGrid::new);
+
+    // Segundo espacio por thread para la búsqueda inversa del A* bidireccional
+    private final ThreadLocal<EspacioBusquedaGrid> espaciosInversos =
+        ThreadLocal.withInitial(EspacioBusquedaGrid::new);
+
+    // Tabla JPS+ del último snapshot utilizado
+    private volatile TablaSaltosJps tablaSaltos;
+
+    // Heurística ALT: landmarks del último snapshot utilizado
+    private volatile TablaLandmarks tablaLandmarks;
+    private volatile List<Punto> puntosLandmark = List.of();
+
+    // Grafo HPA* del último snapshot utilizado, actualizado por clusters
+    private volatile GrafoAbstractoHpa grafoHpa;
+
+    @Autowired
+    public MotorAEstrellaGrid(GestorObstaculos gestorObstaculos) {
+        this.gestorObstaculos = gestorObstaculos;
+    }
+
+    /**
+     * Ejecuta A* entre dos puntos ya validados, con la misma semántica de errores
+     * que el motor clásico (TIMEOUT, MEMORIA_INSUFICIENTE, RUTA_NO_EXISTE)
+     */
+    public ResultadoAEstrella buscar(Punto origen, Punto destino,
+                                     ConfiguracionAEstrella config, long tiempoInicio) {
+        return buscar(origen, destino, config, tiempoInicio, TokenCancelacion.NINGUNO);
+    }
+
+    /**
+     * Igual que {@link #buscar(Punto, Punto, ConfiguracionAEstrella, long)}, pero se detiene
+     * como TIMEOUT en cuanto el token del ciclo de planificación se cancela o vence
+     */
+    public ResultadoAEstrella buscar(Punto origen, Punto destino, ConfiguracionAEstrella config,
+                                     long tiempoInicio, TokenCancelacion cancelacion) {
+        // Vista coherente del mapa durante toda la búsqueda
+        return buscar(gestorObstaculos.obtenerSnapshot(), origen, destino, config, tiempoInicio, cancelacion);
+    }
+
+    /**
+     * Búsqueda sobre un snapshot dado en lugar del vigente, p. ej. el del momento en que
+     * se planificó un segmento cuyo camino se reconstruye más tarde
+     */
+    public ResultadoAEstrella buscar(SnapshotObstaculos mapa, Punto origen, Punto destino,
+                                     ConfiguracionAEstrella config, long tiempoInicio,
+                                     TokenCancelacion cancelacion) {
+        if (!mapa.esValido(origen.getX(), origen.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.ORIGEN_INVALIDO,
+                "Punto de origen obstruido o fuera de límites");
+        }
+        if (!mapa.esValido(destino.getX(), destino.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.DESTINO_INVALIDO,
+                "Punto de destino obstruido o fuera de límites");
+        }
+
+        // Mismo reparto que AEstrellaService: la bidireccional manda sobre el motor elegido
+        if (config.isUsarBusquedaBidireccional()) {
+            return buscarBidireccional(mapa, origen, destino, config, tiempoInicio, cancelacion);
+        }
+        MotorBusqueda modo = config.getMotorBusqueda();
+        if (modo == MotorBusqueda.CLASICO) {
+            // El bucle clásico sobre objetos solo lee el mapa vivo; sobre un snapshot se
+            // usa su equivalente indexado, con el mismo costo óptimo
+            modo = MotorBusqueda.GRID;
+        }
+        if (modo == MotorBusqueda.HPA) {
+            return buscarJerarquico(mapa, origen, destino, config, tiempoInicio, cancelacion);
+        }
+        TablaSaltosJps tabla = null;
+        if (modo == MotorBusqueda.JPS_PLUS) {
+            tabla = obtenerTablaSaltos(mapa);
+            if (tabla == null) {
+                modo = MotorBusqueda.JPS;
+            }
+        }
+
+        EspacioBusquedaGrid espacio = espacios.get();
+        espacio.preparar(mapa.getCeldas());
+        MonticuloEnteros frontera = espacio.getFrontera();
+
+        int destinoX = destino.getX();
+        int destinoY = destino.getY();
+        int celdaOrigen = mapa.indice(origen.getX(), origen.getY());
+        int celdaDestino = mapa.indice(destinoX, destinoY);
+        double factor = config.getFactorHeuristica();
+        int maxNodos = config.getMaxNodosExplorados();
+        long limiteTiempo = tiempoInicio + config.getTimeoutMs();
+
+        ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
+        resultado.setAlgoritmoUtilizado(nombreAlgoritmo(modo));
+
+        TablaLandmarks landmarks = config.isUsarLandmarks() ? obtenerTablaLandmarks(mapa) : null;
+        int[] distanciasDestino = null;
+        if (landmarks != null) {
+            if (landmarks.enComponentesDistintas(celdaOrigen, celdaDestino)) {
+                return construirFallo(origen, destino, config, nombreAlgoritmo(modo), tiempoInicio, 0, 0, false, false);
+            }
+            distanciasDestino = landmarks.distanciasA(celdaDestino);
+        }
+
+        int hOrigen = heuristica(landmarks, distanciasDestino, celdaOrigen,
+            origen.getX(), origen.getY(), destinoX, destinoY, factor);
+        espacio.actualizar(celdaOrigen, 0, -1);
+        frontera.insertar(prioridad(hOrigen, hOrigen), celdaOrigen);
+
+        int nodosExplorados = 0;
+        boolean timeoutAlcanzado = false;
+        boolean limiteProfundidadAlcanzado = false;
+
+        while (!frontera.estaVacio()) {
+            if ((nodosExplorados & (INTERVALO_VERIFICACION_TIMEOUT - 1)) == 0
+                    && cancelacion.debeDetenerse(limiteTiempo)) {
+                timeoutAlcanzado = true;
+                break;
+            }
+            if (nodosExplorados >= maxNodos) {
+                limiteProfundidadAlcanzado = true;
+                break;
+            }
+
+            int celda = MonticuloEnteros.nodo(frontera.extraerMinimo());
+            if (espacio.estaCerrado(celda)) {
+                continue; // Entrada obsoleta (decrease-key perezoso)
+            }
+            espacio.cerrar(celda);
+            nodosExplorados++;
+
+            int x = mapa.xDe(celda);
+            int y = mapa.yDe(celda);
+
+            if (config.isModoDebug()) {
+                resultado.agregarNodoExplorado(new Punto(x, y));
+            }
+
+            if (celda == celdaDestino) {
+                resultado.establecerRutaEncontrada(reconstruirRuta(espacio, mapa, celdaDestino));
+                resultado.completarCalculo(tiempoInicio, nodosExplorados, frontera.tamano());
+                logger.debug("{}: destino {} alcanzado con {} nodos en {}ms",
+                    resultado.getAlgoritmoUtilizado(), destino, nodosExplorados, resultado.getTiempoCalculoMs());
+                return resultado;
+            }
+
+            int g = espacio.costoG(celda);
+            if (modo == MotorBusqueda.GRID) {
+                for (int d = 0; d < 4; d++) {
+                    int vx = x + DX[d];
+                    int vy = y + DY[d];
+                    if (mapa.esValido(vx, vy)) {
+                        int vecino = mapa.indice(vx, vy);
+                        relajar(espacio, celda, vecino, g + 1,
+                            heuristica(landmarks, distanciasDestino, vecino, vx, vy, destinoX, destinoY, factor));
+                    }
+                }
+                continue;
+            }
+
+            int direcciones = direccionesPodadas(mapa, espacio.padre(celda), x, y);
+            for (int d = 0; d < 4; d++) {
+                if ((direcciones & (1 << d)) == 0) {
+                    continue;
+                }
+                int pasos = modo == MotorBusqueda.JPS_PLUS
+                    ? saltarPrecalculado(tabla, mapa, celda, x, y, d, destinoX, destinoY)
+                    : saltar(mapa, x, y, d, destinoX, destinoY);
+                if (pasos > 0) {
+                    int vx = x + DX[d] * pasos;
+                    int vy = y + DY[d] * pasos;
+                    int vecino = mapa.indice(vx, vy);
+                    relajar(espacio, celda, vecino, g + pasos,
+                        heuristica(landmarks, distanciasDestino, vecino, vx, vy, destinoX, destinoY, factor));
+                }
+            }
+        }
+
+        return construirFallo(origen, destino, config, nombreAlgoritmo(modo), tiempoInicio, nodosExplorados,
+            frontera.tamano(), timeoutAlcanzado, limiteProfundidadAlcanzado);
+    }
+
+    /**
+     * A* bidireccional sobre arreglos planos por thread, con potenciales promediados
+     * (Goldberg-Harrelson): la búsqueda directa ordena por 2g + h_destino - h_origen y la
+     * inversa por 2g + h_origen - h_destino. Ambos potenciales son consistentes y opuestos,
+     * así que las dos búsquedas son Dijkstra sobre el mismo grafo de costos reducidos y
+     * basta detenerse cuando el mejor encuentro no supera la suma de los mínimos de ambas
+     * fronteras. La heurística es Manhattan o la cota ALT, sin factor, para conservar
+     * la consistencia
+     */
+    public ResultadoAEstrella buscarBidireccional(Punto origen, Punto destino,
+                                                  ConfiguracionAEstrella config, long tiempoInicio) {
+        return buscarBidireccional(origen, destino, config, tiempoInicio, TokenCancelacion.NINGUNO);
+    }
+
+    public ResultadoAEstrella buscarBidireccional(Punto origen, Punto destino, ConfiguracionAEstrella config,
+                                                  long tiempoInicio, TokenCancelacion cancelacion) {
+        return buscarBidireccional(gestorObstaculos.obtenerSnapshot(), origen, destino, config, tiempoInicio,
+            cancelacion);
+    }
+
+    /**
+     * Búsqueda bidireccional sobre un snapshot concreto (p. ej. el del plan original)
+     */
+    public ResultadoAEstrella buscarBidireccional(SnapshotObstaculos mapa, Punto origen, Punto destino,
+                                                  ConfiguracionAEstrella config, long tiempoInicio,
+                                                  TokenCancelacion cancelacion) {
+        if (!mapa.esValido(origen.getX(), origen.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.ORIGEN_INVALIDO,
+                "Punto de origen obstruido o fuera de límites");
+        }
+        if (!mapa.esValido(destino.getX(), destino.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.DESTINO_INVALIDO,
+                "Punto de destino obstruido o fuera de límites");
+        }
+
+        EspacioBusquedaGrid directo = espacios.get();
+        EspacioBusquedaGrid inverso = espaciosInversos.get();
+        directo.preparar(mapa.getCeldas());
+        inverso.preparar(mapa.getCeldas());
+        MonticuloEnteros fronteraDirecta = directo.getFrontera();
+        MonticuloEnteros fronteraInversa = inverso.getFrontera();
+
+        int origenX = origen.getX();
+        int origenY = origen.getY();
+        int destinoX = destino.getX();
+        int destinoY = destino.getY();
+        int celdaOrigen = mapa.indice(origenX, origenY);
+        int celdaDestino = mapa.indice(destinoX, destinoY);
+        int maxNodos = config.getMaxNodosExplorados();
+        long limiteTiempo = tiempoInicio + config.getTimeoutMs();
+
+        TablaLandmarks landmarks = config.isUsarLandmarks() ? obtenerTablaLandmarks(mapa) : null;
+        int[] distanciasDestino = null;
+        int[] distanciasOrigen = null;
+        if (landmarks != null) {
+            if (landmarks.enComponentesDistintas(celdaOrigen, celdaDestino)) {
+                return construirFallo(origen, destino, config, ALGORITMO_BIDIRECCIONAL, tiempoInicio, 0, 0, false, false);
+            }
+            distanciasDestino = landmarks.distanciasA(celdaDestino);
+            distanciasOrigen = landmarks.distanciasA(celdaOrigen);
+        }
+
+        // Claves no negativas: h_origen(v) <= g_directo(v) y h_destino(v) <= g_inverso(v)
+        int hInicial = heuristica(landmarks, distanciasDestino, celdaOrigen, origenX, origenY, destinoX, destinoY, 1.0);
+        directo.actualizar(celdaOrigen, 0, -1);
+        fronteraDirecta.insertar(prioridad(hInicial, hInicial), celdaOrigen);
+        inverso.actualizar(celdaDestino, 0, -1);
+        fronteraInversa.insertar(prioridad(hInicial, hInicial), celdaDestino);
+
+        int mejorEncuentro = celdaOrigen == celdaDestino ? 0 : Integer.MAX_VALUE;
+        int celdaEncuentro = celdaOrigen == celdaDestino ? celdaOrigen : -1;
+        int nodosExplorados = 0;
+        boolean timeoutAlcanzado = false;
+        boolean limiteProfundidadAlcanzado = false;
+
+        while (true) {
+            descartarCerrados(directo, fronteraDirecta);
+            descartarCerrados(inverso, fronteraInversa);
+            if (fronteraDirecta.estaVacio() || fronteraInversa.estaVacio()) {
+                break;
+            }
+            // Claves escaladas por 2: en una misma celda suman 2 * (g_directo + g_inverso)
+            long sumaMinimos = (long) claveSinDesempate(fronteraDirecta.verMinimo())
+                + claveSinDesempate(fronteraInversa.verMinimo());
+            if (mejorEncuentro != Integer.MAX_VALUE && sumaMinimos >= 2L * mejorEncuentro) {
+                break;
+            }
+            if ((nodosExplorados & (INTERVALO_VERIFICACION_TIMEOUT - 1)) == 0
+                    && cancelacion.debeDetenerse(limiteTiempo)) {
+                timeoutAlcanzado = true;
+                break;
+            }
+            if (nodosExplorados >= maxNodos) {
+                limiteProfundidadAlcanzado = true;
+                break;
+            }
+
+            // Expandir el lado con la frontera más pequeña
+            boolean haciaAdelante = fronteraDirecta.tamano() <= fronteraInversa.tamano();
+            EspacioBusquedaGrid propio = haciaAdelante ? directo : inverso;
+            EspacioBusquedaGrid opuesto = haciaAdelante ? inverso : directo;
+            MonticuloEnteros frontera = haciaAdelante ? fronteraDirecta : fronteraInversa;
+            int signo = haciaAdelante ? 1 : -1;
+
+            int celda = MonticuloEnteros.nodo(frontera.extraerMinimo());
+            propio.cerrar(celda);
+            nodosExplorados++;
+
+            int x = mapa.xDe(celda);
+            int y = mapa.yDe(celda);
+            int g = propio.costoG(celda) + 1;
+            for (int d = 0; d < 4; d++) {
+                int vx = x + DX[d];
+                int vy = y + DY[d];
+                if (!mapa.esValido(vx, vy)) {
+                    continue;
+                }
+                int vecino = mapa.indice(vx, vy);
+                if (propio.estaCerrado(vecino) || g >= propio.costoG(vecino)) {
+                    continue;
+                }
+                propio.actualizar(vecino, g, celda);
+                int hDestino = heuristica(landmarks, distanciasDestino, vecino, vx, vy, destinoX, destinoY, 1.0);
+                int hOrigen = heuristica(landmarks, distanciasOrigen, vecino, vx, vy, origenX, origenY, 1.0);
+                frontera.insertar(prioridad(2 * g + signo * (hDestino - hOrigen),
+                    haciaAdelante ? hDestino : hOrigen), vecino);
+
+                int gOpuesto = opuesto.costoG(vecino);
+                if (gOpuesto != Integer.MAX_VALUE && g + gOpuesto < mejorEncuentro) {
+                    mejorEncuentro = g + gOpuesto;
+                    celdaEncuentro = vecino;
+                }
+            }
+        }
+
+        if (celdaEncuentro < 0 || timeoutAlcanzado || limiteProfundidadAlcanzado) {
+            return construirFallo(origen, destino, config, ALGORITMO_BIDIRECCIONAL, tiempoInicio, nodosExplorados,
+                fronteraDirecta.tamano() + fronteraInversa.tamano(), timeoutAlcanzado, limiteProfundidadAlcanzado);
+        }
+
+        // Mitad directa (origen -> encuentro) seguida de la inversa (encuentro -> destino)
+        List<Punto> ruta = reconstruirRuta(directo, mapa, celdaEncuentro);
+        for (int celda = inverso.padre(celdaEncuentro); celda != -1; celda = inverso.padre(celda)) {
+            ruta.add(new Punto(mapa.xDe(celda), mapa.yDe(celda)));
+        }
+
+        ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
+        resultado.setAlgoritmoUtilizado(ALGORITMO_BIDIRECCIONAL);
+        resultado.establecerRutaEncontrada(ruta);
+        resultado.completarCalculo(tiempoInicio, nodosExplorados, fronteraDirecta.tamano() + fronteraInversa.tamano());
+        logger.debug("{}: destino {} alcanzado con {} nodos en {}ms",
+            ALGORITMO_BIDIRECCIONAL, destino, nodosExplorados, resultado.getTiempoCalculoMs());
+        return resultado;
+    }
+
+    private static int claveSinDesempate(long entrada) {
+        return MonticuloEnteros.prioridad(entrada) >>> BITS_DESEMPATE;
+    }
+
+    /**
+     * Quita del tope las entradas de celdas ya cerradas (decrease-key perezoso)
+     */
+    private static void descartarCerrados(EspacioBusquedaGrid espacio, MonticuloEnteros frontera) {
+        while (!frontera.estaVacio() && espacio.estaCerrado(MonticuloEnteros.nodo(frontera.verMinimo()))) {
+            frontera.extraerMinimo();
+        }
+    }
+
+    /**
+     * HPA*: A* sobre el grafo abstracto de clusters y refinamiento local de cada tramo.
+     * El límite de nodos se aplica a los nodos abstractos expandidos
+     */
+    private ResultadoAEstrella buscarJerarquico(SnapshotObstaculos mapa, Punto origen, Punto destino,
+                                                ConfiguracionAEstrella config, long tiempoInicio,
+                                                TokenCancelacion cancelacion) {
+        GrafoAbstractoHpa grafo = obtenerGrafoHpa(mapa, config.getTamanoClusterHpa());
+        EspacioBusquedaGrid espacio = espacios.get();
+        GrafoAbstractoHpa.Busqueda busqueda = grafo.buscar(espacio,
+            mapa.indice(origen.getX(), origen.getY()), mapa.indice(destino.getX(), destino.getY()),
+            config.getMaxNodosExplorados(), tiempoInicio + config.getTimeoutMs(), cancelacion);
+
+        String algoritmo = nombreAlgoritmo(MotorBusqueda.HPA);
+        if (busqueda.getRuta() == null) {
+            return construirFallo(origen, destino, config, algoritmo, tiempoInicio, busqueda.getNodosExplorados(),
+                busqueda.getNodosEnCola(), busqueda.isTimeoutAlcanzado(), busqueda.isLimiteAlcanzado());
+        }
+
+        ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
+        resultado.setAlgoritmoUtilizado(algoritmo);
+        resultado.establecerRutaEncontrada(busqueda.getRuta());
+        resultado.completarCalculo(tiempoInicio, busqueda.getNodosExplorados(), busqueda.getNodosEnCola());
+        logger.debug("{}: destino {} alcanzado con {} nodos abstractos en {}ms",
+            algoritmo, destino, busqueda.getNodosExplorados(), resultado.getTiempoCalculoMs());
+        return resultado;
+    }
+
+    /**
+     * A* dependiente del tiempo: g es el tiempo transcurrido desde la salida (segundos) y una
+     * celda solo se ocupa fuera de sus bloqueos temporizados. Si el vecino está bloqueado a la
+     * llegada se espera en la celda actual mientras ésta siga libre; con esa espera la llegada
+     * más temprana por celda es exacta (red FIFO) y basta una sola búsqueda
+     */
+    public ResultadoAEstrella buscarConHorario(Punto origen, Punto destino, long instanteSalida,
+                                               double velocidadKmph, ConfiguracionAEstrella config,
+                                               long tiempoInicio) {
+        return buscarConHorario(origen, destino, instanteSalida, velocidadKmph, config, tiempoInicio,
+            TokenCancelacion.NINGUNO);
+    }
+
+    public ResultadoAEstrella buscarConHorario(Punto origen, Punto destino, long instanteSalida,
+                                               double velocidadKmph, ConfiguracionAEstrella config,
+                                               long tiempoInicio, TokenCancelacion cancelacion) {
+        SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+        BloqueosTemporizados bloqueos = gestorObstaculos.obtenerBloqueosTemporizados();
+        if (!bloqueos.esCompatibleCon(mapa)) {
+            logger.warn("Bloqueos temporizados compilados para otra geometría de mapa; se ignoran");
+            bloqueos = BloqueosTemporizados.vacio();
+        }
+
+        if (!mapa.esValido(origen.getX(), origen.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.ORIGEN_INVALIDO,
+                "Punto de origen obstruido o fuera de límites");
+        }
+        if (!mapa.esValido(destino.getX(), destino.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.DESTINO_INVALIDO,
+                "Punto de destino obstruido o fuera de límites");
+        }
+
+        EspacioBusquedaGrid espacio = espacios.get();
+        espacio.preparar(mapa.getCeldas());
+        MonticuloEnteros frontera = espacio.getFrontera();
+
+        int destinoX = destino.getX();
+        int destinoY = destino.getY();
+        int celdaOrigen = mapa.indice(origen.getX(), origen.getY());
+        int celdaDestino = mapa.indice(destinoX, destinoY);
+        int segundosPorCelda = segundosPorCelda(velocidadKmph);
+        double factor = config.getFactorHeuristica();
+        int maxNodos = config.getMaxNodosExplorados();
+        long limiteTiempo = tiempoInicio + config.getTimeoutMs();
+
+        ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
+        resultado.setAlgoritmoUtilizado(ALGORITMO_CON_HORARIO);
+
+        // Los bloqueos temporizados solo alargan rutas: la cota ALT sigue siendo admisible
+        TablaLandmarks landmarks = config.isUsarLandmarks() ? obtenerTablaLandmarks(mapa) : null;
+        int[] distanciasDestino = landmarks != null ? landmarks.distanciasA(celdaDestino) : null;
+
+        espacio.actualizar(celdaOrigen, 0, -1);
+        frontera.insertar(heuristica(landmarks, distanciasDestino, celdaOrigen,
+            origen.getX(), origen.getY(), destinoX, destinoY, factor) * segundosPorCelda, celdaOrigen);
+
+        int nodosExplorados = 0;
+        boolean timeoutAlcanzado = false;
+        boolean limiteProfundidadAlcanzado = false;
+
+        while (!frontera.estaVacio()) {
+            if ((nodosExplorados & (INTERVALO_VERIFICACION_TIMEOUT - 1)) == 0
+                    && cancelacion.debeDetenerse(limiteTiempo)) {
+                timeoutAlcanzado = true;
+                break;
+            }
+            if (nodosExplorados >= maxNodos) {
+                limiteProfundidadAlcanzado = true;
+                break;
+            }
+
+            int celda = MonticuloEnteros.nodo(frontera.extraerMinimo());
+            if (espacio.estaCerrado(celda)) {
+                continue;
+            }
+            espacio.cerrar(celda);
+            nodosExplorados++;
+
+            int g = espacio.costoG(celda);
+            if (celda == celdaDestino) {
+                List<Punto> ruta = reconstruirRuta(espacio, mapa, celdaDestino);
+                resultado.establecerRutaEncontrada(ruta);
+                resultado.setInstanteLlegada(instanteSalida + g);
+                resultado.setSegundosEspera(g - (long) (ruta.size() - 1) * segundosPorCelda);
+                resultado.completarCalculo(tiempoInicio, nodosExplorados, frontera.tamano());
+                logger.debug("{}: destino {} alcanzado en {}s ({}s de espera) con {} nodos",
+                    ALGORITMO_CON_HORARIO, destino, g, resultado.getSegundosEspera(), nodosExplorados);
+                return resultado;
+            }
+
+            int x = mapa.xDe(celda);
+            int y = mapa.yDe(celda);
+            long ahora = instanteSalida + g;
+            for (int d = 0; d < 4; d++) {
+                int vx = x + DX[d];
+                int vy = y + DY[d];
+                if (!mapa.esValido(vx, vy)) {
+                    continue;
+                }
+                int vecino = mapa.indice(vx, vy);
+                if (espacio.estaCerrado(vecino)) {
+                    continue;
+                }
+                long llegada = llegadaMasTemprana(bloqueos, celda, vecino, ahora, segundosPorCelda);
+                if (llegada < 0) {
+                    continue;
+                }
+                long gVecino = llegada - instanteSalida;
+                long f = gVecino + (long) heuristica(landmarks, distanciasDestino, vecino,
+                    vx, vy, destinoX, destinoY, factor) * segundosPorCelda;
+                if (f >= Integer.MAX_VALUE || gVecino >= espacio.costoG(vecino)) {
+                    continue;
+                }
+                espacio.actualizar(vecino, (int) gVecino, celda);
+                frontera.insertar((int) f, vecino);
+            }
+        }
+
+        return construirFallo(origen, destino, config, ALGORITMO_CON_HORARIO, tiempoInicio, nodosExplorados,
+            frontera.tamano(), timeoutAlcanzado, limiteProfundidadAlcanzado);
+    }
+
+    /**
+     * Instante más temprano de llegada al vecino saliendo de la celda desde {@code ahora},
+     * esperando lo necesario; -1 si la celda actual se bloquea durante la espera
+     */
+    private static long llegadaMasTemprana(BloqueosTemporizados bloqueos, int celda, int vecino,
+                                           long ahora, int segundosPorCelda) {
+        long salida = ahora;
+        while (true) {
+            long llegada = salida + segundosPorCelda;
+            long libre = bloqueos.liberacionDesde(vecino, llegada);
+            if (libre == llegada) {
+                boolean esperaViable = salida == ahora || !bloqueos.hayBloqueoEntre(celda, ahora + 1, salida);
+                return esperaViable ? llegada : -1;
+            }
+            salida = libre - segundosPorCelda;
+        }
+    }
+
+    /**
+     * Segundos para recorrer una celda (0.5 km) a la velocidad dada; mínimo 1
+     */
+    public static int segundosPorCelda(double velocidadKmph) {
+        double velocidad = velocidadKmph > 0 ? velocidadKmph : VELOCIDAD_POR_DEFECTO_KMPH;
+        return (int) Math.max(1, Math.round(KM_POR_CELDA * 3600.0 / velocidad));
+    }
+
+    /**
+     * Distancias desde un origen a varios destinos con una sola BFS multi-objetivo,
+     * que se detiene al alcanzar todos los destinos; no construye rutas.
+     * Destinos inválidos o inalcanzables quedan en -1
+     */
+    public int[] calcularDistanciasDesde(Punto origen, List<Punto> destinos, long limiteTiempo) {
+        return calcularDistanciasDesde(origen, destinos, limiteTiempo, TokenCancelacion.NINGUNO);
+    }
+
+    public int[] calcularDistanciasDesde(Punto origen, List<Punto> destinos, long limiteTiempo,
+                                         TokenCancelacion cancelacion) {
+        int[] distancias = new int[destinos.size()];
+        Arrays.fill(distancias, -1);
+
+        SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+        if (!mapa.esValido(origen.getX(), origen.getY())) {
+            return distancias;
+        }
+
+        EspacioBusquedaGrid espacio = espacios.get();
+        ExpansionMultiObjetivo expansion = expandirMultiObjetivo(mapa, espacio, origen, destinos, limiteTiempo, cancelacion);
+        if (expansion.timeoutAlcanzado) {
+            logger.warn("TIMEOUT distancias múltiples desde {}: {} destinos sin resolver", origen, expansion.pendientes);
+        }
+
+        for (int i = 0; i < distancias.length; i++) {
+            Punto destino = destinos.get(i);
+            if (mapa.esValido(destino.getX(), destino.getY())) {
+                int g = espacio.costoG(mapa.indice(destino.getX(), destino.getY()));
+                distancias[i] = g == Integer.MAX_VALUE ? -1 : g;
+            }
+        }
+        return distancias;
+    }
+
+    /**
+     * Rutas desde un origen a varios destinos con la misma BFS multi-objetivo: cada ruta se
+     * reconstruye del único árbol de padres, así que un lote de pares con origen común cuesta
+     * una búsqueda en lugar de una por par. Las rutas son de longitud mínima, como las de A*.
+     * Devuelve un resultado por destino, con los mismos tipos de error que {@link #buscar}
+     */
+    public List<ResultadoAEstrella> buscarDesdeOrigen(Punto origen, List<Punto> destinos,
+                                                      ConfiguracionAEstrella config, long tiempoInicio,
+                                                      TokenCancelacion cancelacion) {
+        List<ResultadoAEstrella> resultados = new ArrayList<>(destinos.size());
+        SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+        if (!mapa.esValido(origen.getX(), origen.getY())) {
+            for (Punto destino : destinos) {
+                resultados.add(ResultadoAEstrella.fallido(origen, destino, TipoError.ORIGEN_INVALIDO,
+                    "Punto de origen obstruido o fuera de límites"));
+            }
+            return resultados;
+        }
+
+        EspacioBusquedaGrid espacio = espacios.get();
+        ExpansionMultiObjetivo expansion = expandirMultiObjetivo(mapa, espacio, origen, destinos,
+            tiempoInicio + config.getTimeoutMs(), cancelacion);
+
+        for (Punto destino : destinos) {
+            if (!mapa.esValido(destino.getX(), destino.getY())) {
+                resultados.add(ResultadoAEstrella.fallido(origen, destino, TipoError.DESTINO_INVALIDO,
+                    "Punto de destino obstruido o fuera de límites"));
+                continue;
+            }
+            int celdaDestino = mapa.indice(destino.getX(), destino.getY());
+            if (espacio.costoG(celdaDestino) == Integer.MAX_VALUE) {
+                resultados.add(construirFallo(origen, destino, config, ALGORITMO_MULTI_DESTINO, tiempoInicio,
+                    expansion.nodosExplorados, 0, expansion.timeoutAlcanzado, false));
+                continue;
+            }
+            ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
+            resultado.setAlgoritmoUtilizado(ALGORITMO_MULTI_DESTINO);
+            resultado.establecerRutaEncontrada(reconstruirRuta(espacio, mapa, celdaDestino));
+            resultado.completarCalculo(tiempoInicio, expansion.nodosExplorados, 0);
+            resultados.add(resultado);
+        }
+        logger.debug("{}: {} destinos desde {} con {} nodos en {}ms", ALGORITMO_MULTI_DESTINO,
+            destinos.size(), origen, expansion.nodosExplorados, System.currentTimeMillis() - tiempoInicio);
+        return resultados;
+    }
+
+    /**
+     * BFS desde un origen válido hasta alcanzar todos los destinos válidos; deja en el espacio
+     * de trabajo la distancia y el padre de cada celda alcanzada
+     */
+    private ExpansionMultiObjetivo expandirMultiObjetivo(SnapshotObstaculos mapa, EspacioBusquedaGrid espacio,
+                                                         Punto origen, List<Punto> destinos, long limiteTiempo,
+                                                         TokenCancelacion cancelacion) {
+        espacio.preparar(mapa.getCeldas());
+        ExpansionMultiObjetivo expansion = new ExpansionMultiObjetivo();
+
+        int pendientes = 0;
+        for (Punto destino : destinos) {
+            if (mapa.esValido(destino.getX(), destino.getY())) {
+                int celda = mapa.indice(destino.getX(), destino.getY());
+                if (!espacio.esObjetivo(celda)) {
+                    espacio.marcarObjetivo(celda);
+                    pendientes++;
+                }
+            }
+        }
+
+        int[] cola = espacio.getCola(mapa.getCeldas());
+        int cabeza = 0;
+        int fin = 0;
+        int celdaOrigen = mapa.indice(origen.getX(), origen.getY());
+        espacio.actualizar(celdaOrigen, 0, -1);
+        cola[fin++] = celdaOrigen;
+        if (espacio.esObjetivo(celdaOrigen)) {
+            espacio.desmarcarObjetivo(celdaOrigen);
+            pendientes--;
+        }
+
+        while (cabeza < fin && pendientes > 0) {
+            if ((cabeza & (INTERVALO_VERIFICACION_TIMEOUT - 1)) == 0 && cancelacion.debeDetenerse(limiteTiempo)) {
+                expansion.timeoutAlcanzado = true;
+                break;
+            }
+            int celda = cola[cabeza++];
+            int g = espacio.costoG(celda) + 1;
+            int x = mapa.xDe(celda);
+            int y = mapa.yDe(celda);
+            for (int d = 0; d < 4; d++) {
+                int vx = x + DX[d];
+                int vy = y + DY[d];
+                if (!mapa.esValido(vx, vy)) {
+                    continue;
+                }
+                int vecino = mapa.indice(vx, vy);
+                if (espacio.costoG(vecino) != Integer.MAX_VALUE) {
+                    continue;
+                }
+                espacio.actualizar(vecino, g, celda);
+                cola[fin++] = vecino;
+                if (espacio.esObjetivo(vecino)) {
+                    espacio.desmarcarObjetivo(vecino);
+                    pendientes--;
+                }
+            }
+        }
+
+        expansion.nodosExplorados = cabeza;
+        expansion.pendientes = pendientes;
+        return expansion;
+    }
+
+    private static void relajar(EspacioBusquedaGrid espacio, int celda, int vecino, int g, int h) {
+        if (espacio.estaCerrado(vecino) || g >= espacio.costoG(vecino)) {
+            return;
+        }
+        espacio.actualizar(vecino, g, celda);
+        espacio.getFrontera().insertar(prioridad(g + h, h), vecino);
+    }
+
+    /**
+     * Direcciones a explorar según la dirección de llegada (poda JPS 4-conectada):
+     * tras un movimiento horizontal se sigue de frente y se abren ambas verticales;
+     * tras uno vertical se sigue de frente y se abren ambas horizontales
+     */
+    private static int direccionesPodadas(SnapshotObstaculos mapa, int celdaPadre, int x, int y) {
+        if (celdaPadre < 0) {
+            return TODAS_DIRECCIONES;
+        }
+        int px = mapa.xDe(celdaPadre);
+        int py = mapa.yDe(celdaPadre);
+        if (px != x) {
+            int frente = x > px ? TablaSaltosJps.DERECHA : TablaSaltosJps.IZQUIERDA;
+            return (1 << TablaSaltosJps.ARRIBA) | (1 << TablaSaltosJps.ABAJO) | (1 << frente);
+        }
+        int frente = y > py ? TablaSaltosJps.ARRIBA : TablaSaltosJps.ABAJO;
+        return (1 << TablaSaltosJps.IZQUIERDA) | (1 << TablaSaltosJps.DERECHA) | (1 << frente);
+    }
+
+    /**
+     * Salto JPS en línea recta desde (x,y); devuelve los pasos hasta el punto de salto o 0
+     */
+    private static int saltar(SnapshotObstaculos mapa, int x, int y, int direccion, int destinoX, int destinoY) {
+        if (DY[direccion] == 0) {
+            int saltoX = saltarHorizontal(mapa, x, y, DX[direccion], destinoX, destinoY);
+            return saltoX == SIN_SALTO ? 0 : Math.abs(saltoX - x);
+        }
+        int saltoY = saltarVertical(mapa, x, y, DY[direccion], destinoX, destinoY);
+        return saltoY == SIN_SALTO ? 0 : Math.abs(saltoY - y);
+    }
+
+    private static int saltarHorizontal(SnapshotObstaculos mapa, int x, int y, int dx, int destinoX, int destinoY) {
+        while (true) {
+            x += dx;
+            if (!mapa.esValido(x, y)) {
+                return SIN_SALTO;
+            }
+            if ((x == destinoX && y == destinoY) || TablaSaltosJps.esForzadoHorizontal(mapa, x, y, dx)) {
+                return x;
+            }
+        }
+    }
+
+    /**
+     * Un salto vertical también se detiene donde un salto horizontal encuentra
+     * un punto de salto o el destino, para no perder giros hacia los lados
+     */
+    private static int saltarVertical(SnapshotObstaculos mapa, int x, int y, int dy, int destinoX, int destinoY) {
+        while (true) {
+            y += dy;
+            if (!mapa.esValido(x, y)) {
+                return SIN_SALTO;
+            }
+            if ((x == destinoX && y == destinoY) || TablaSaltosJps.esForzadoVertical(mapa, x, y, dy)) {
+                return y;
+            }
+            if (saltarHorizontal(mapa, x, y, 1, destinoX, destinoY) != SIN_SALTO
+                    || saltarHorizontal(mapa, x, y, -1, destinoX, destinoY) != SIN_SALTO) {
+                return y;
+            }
+        }
+    }
+
+    /**
+     * Salto JPS+ con la tabla precalculada; el destino se resuelve comprobando
+     * si cae dentro del tramo libre (o en una fila con tramo horizontal libre hacia él)
+     */
+    private static int saltarPrecalculado(TablaSaltosJps tabla, SnapshotObstaculos mapa, int celda,
+                                          int x, int y, int direccion, int destinoX, int destinoY) {
+        int valor = tabla.valor(direccion, celda);
+        int alcance = Math.abs(valor);
+        int dx = DX[direccion];
+        int dy = DY[direccion];
+
+        if (dy == 0) {
+            int pasosDestino = (destinoX - x) * dx;
+            if (y == destinoY && pasosDestino > 0 && pasosDestino <= alcance) {
+                return pasosDestino;
+            }
+        } else {
+            int pasosFila = (destinoY - y) * dy;
+            if (pasosFila > 0 && pasosFila <= alcance) {
+                boolean tramoLibre = destinoX == x;
+                if (!tramoLibre) {
+                    int haciaDestino = destinoX > x ? TablaSaltosJps.DERECHA : TablaSaltosJps.IZQUIERDA;
+                    int valorFila = tabla.valor(haciaDestino, mapa.indice(x, destinoY));
+                    tramoLibre = valorFila > 0 || Math.abs(destinoX - x) <= -valorFila;
+                }
+                if (tramoLibre) {
+                    return pasosFila;
+                }
+            }
+        }
+
+        return Math.max(valor, 0);
+    }
+
+    /**
+     * Tabla JPS+ del snapshot dado, reconstruida solo cuando cambia la versión
+     */
+    private TablaSaltosJps obtenerTablaSaltos(SnapshotObstaculos mapa) {
+        if (!TablaSaltosJps.esAplicable(mapa)) {
+            return null;
+        }
+        TablaSaltosJps actual = tablaSaltos;
+        if (actual != null && actual.getVersion() == mapa.getVersion()) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = tablaSaltos;
+            if (actual == null || actual.getVersion() != mapa.getVersion()) {
+                long inicio = System.currentTimeMillis();
+                actual = TablaSaltosJps.construir(mapa);
+                tablaSaltos = actual;
+                logger.debug("Tabla JPS+ reconstruida para snapshot v{} en {}ms",
+                    mapa.getVersion(), System.currentTimeMillis() - inicio);
+            }
+            return actual;
+        }
+    }
+
+    /**
+     * Grafo HPA* del snapshot dado; al cambiar la versión solo se reconstruyen
+     * los clusters afectados, y al cambiar el tamaño de cluster se construye de cero
+     */
+    private GrafoAbstractoHpa obtenerGrafoHpa(SnapshotObstaculos mapa, int tamanoSolicitado) {
+        int tamanoCluster = Math.max(2, tamanoSolicitado);
+        GrafoAbstractoHpa actual = grafoHpa;
+        if (actual != null && actual.getVersion() == mapa.getVersion() && actual.getTamanoCluster() == tamanoCluster) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = grafoHpa;
+            if (actual == null || actual.getVersion() != mapa.getVersion() || actual.getTamanoCluster() != tamanoCluster) {
+                long inicio = System.currentTimeMillis();
+                actual = actual != null && actual.getTamanoCluster() == tamanoCluster
+                    ? actual.actualizar(mapa)
+                    : GrafoAbstractoHpa.construir(mapa, tamanoCluster);
+                grafoHpa = actual;
+                logger.debug("Grafo HPA* para snapshot v{}: {} de {} clusters reconstruidos, {} nodos, {}ms",
+                    mapa.getVersion(), actual.getClustersReconstruidos(), actual.getClusters(),
+                    actual.getNodos(), System.currentTimeMillis() - inicio);
+            }
+            return actual;
+        }
+    }
+
+    /**
+     * Grafo HPA* vigente, construyéndolo o actualizándolo si hace falta
+     */
+    public GrafoAbstractoHpa obtenerGrafoHpa(int tamanoCluster) {
+        return obtenerGrafoHpa(gestorObstaculos.obtenerSnapshot(), tamanoCluster);
+    }
+
+    /**
+     * Puntos preferidos como landmarks (almacenes); invalida la tabla vigente
+     */
+    public void configurarLandmarks(List<Punto> puntos) {
+        synchronized (this) {
+            puntosLandmark = List.copyOf(puntos);
+            tablaLandmarks = null;
+        }
+        logger.info("Landmarks preferidos configurados: {} puntos", puntos.size());
+    }
+
+    /**
+     * Tabla ALT del snapshot dado, reconstruida solo cuando cambia la versión;
+     * null si el grid es demasiado grande para guardar siquiera un landmark
+     */
+    private TablaLandmarks obtenerTablaLandmarks(SnapshotObstaculos mapa) {
+        int cantidad = (int) Math.min(NUMERO_LANDMARKS, LIMITE_BYTES_LANDMARKS / (4L * mapa.getCeldas()));
+        if (cantidad <= 0) {
+            return null;
+        }
+        TablaLandmarks actual = tablaLandmarks;
+        if (actual != null && actual.getVersion() == mapa.getVersion()) {
+            return actual;
+        }
+        synchronized (this) {
+            actual = tablaLandmarks;
+            if (actual == null || actual.getVersion() != mapa.getVersion()) {
+                long inicio = System.currentTimeMillis();
+                actual = TablaLandmarks.construir(mapa, puntosLandmark, cantidad);
+                tablaLandmarks = actual;
+                logger.debug("Tabla de {} landmarks reconstruida para snapshot v{} en {}ms",
+                    actual.getCantidad(), mapa.getVersion(), System.currentTimeMillis() - inicio);
+            }
+            return actual;
+        }
+    }
+
+    private static String nombreAlgoritmo(MotorBusqueda modo) {
+        return switch (modo) {
+            case JPS -> "A* JPS";
+            case JPS_PLUS -> "A* JPS+";
+            case HPA -> "HPA*";
+            default -> "A* grid";
+        };
+    }
+
+    private ResultadoAEstrella construirFallo(Punto origen, Punto destino, ConfiguracionAEstrella config,
+                                              String algoritmo, long tiempoInicio, int nodosExplorados, int nodosEnCola,
+                                              boolean timeoutAlcanzado, boolean limiteProfundidadAlcanzado) {
+        TipoError tipoError;
+        String mensaje;
+
+        if (timeoutAlcanzado) {
+            tipoError = TipoError.TIMEOUT;
+            mensaje = String.format("Timeout alcanzado (%dms)", config.getTimeoutMs());
+            logger.warn("TIMEOUT {}: {} nodos explorados en {}ms", algoritmo, nodosExplorados, config.getTimeoutMs());
+        } else if (limiteProfundidadAlcanzado) {
+            tipoError = TipoError.MEMORIA_INSUFICIENTE;
+            mensaje = String.format("Límite de nodos alcanzado (%d)", config.getMaxNodosExplorados());
+            logger.warn("LÍMITE NODOS {}: {} nodos explorados", algoritmo, config.getMaxNodosExplorados());
+        } else {
+            tipoError = TipoError.RUTA_NO_EXISTE;
+            mensaje = "No existe ruta entre los puntos";
+            logger.warn("NO HAY RUTA {} desde {} hacia {} - {} nodos explorados",
+                algoritmo, origen, destino, nodosExplorados);
+        }
+
+        ResultadoAEstrella fallo = ResultadoAEstrella.fallido(origen, destino, tipoError, mensaje);
+        fallo.setAlgoritmoUtilizado(algoritmo);
+        fallo.setTimeoutAlcanzado(timeoutAlcanzado);
+        fallo.setLimiteProfundidadAlcanzado(limiteProfundidadAlcanzado);
+        fallo.setNodosExplorados(nodosExplorados);
+        fallo.setNodosEnCola(nodosEnCola);
+        fallo.setTiempoCalculoMs(System.currentTimeMillis() - tiempoInicio);
+        return fallo;
+    }
+
+    /**
+     * Reconstruye la ruta celda a celda; entre puntos de salto consecutivos
+     * (siempre alineados) se rellenan las celdas intermedias
+     */
+    private List<Punto> reconstruirRuta(EspacioBusquedaGrid espacio, SnapshotObstaculos mapa, int celdaDestino) {
+        List<Punto> ruta = new ArrayList<>(Math.min(espacio.costoG(celdaDestino), mapa.getCeldas()) + 1);
+        int celda = celdaDestino;
+        int x = mapa.xDe(celda);
+        int y = mapa.yDe(celda);
+        ruta.add(new Punto(x, y));
+        for (int padre = espacio.padre(celda); padre != -1; padre = espacio.padre(padre)) {
+            int px = mapa.xDe(padre);
+            int py = mapa.yDe(padre);
+            int pasoX = Integer.signum(px - x);
+            int pasoY = Integer.signum(py - y);
+            while (x != px || y != py) {
+                x += pasoX;
+                y += pasoY;
+                ruta.add(new Punto(x, y));
+            }
+        }
+        Collections.reverse(ruta);
+        return ruta;
+    }
+
+    /**
+     * Manhattan, o la cota ALT de los landmarks cuando es mayor (ambas admisibles)
+     */
+    private static int heuristica(TablaLandmarks landmarks, int[] distanciasDestino, int celda,
+                                  int x, int y, int destinoX, int destinoY, double factor) {
+        int cota = Math.abs(x - destinoX) + Math.abs(y - destinoY);
+        if (landmarks != null) {
+            cota = Math.max(cota, landmarks.cotaInferior(celda, distanciasDestino));
+        }
+        return (int) (cota * factor);
+    }
+
+    /**
+     * Prioridad f con desempate por menor h, favoreciendo nodos más cercanos al destino
+     */
+    private static int prioridad(int f, int h) {
+        long valor = ((long) f << BITS_DESEMPATE) | Math.min(h, MAX_DESEMPATE);
+        return (int) Math.min(valor, Integer.MAX_VALUE);
+    }
+
+    private static final class ExpansionMultiObjetivo {
+        private int nodosExplorados;
+        private int pendientes;
+        private boolean timeoutAlcanzado;
+    }
+}
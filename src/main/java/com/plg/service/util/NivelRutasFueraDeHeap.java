@@ -0,0 +1,270 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+import com.plg.domain.RutaCompacta;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Nivel frío de la cache de rutas fuera del heap. Las rutas se guardan empaquetadas
+ * (fecha, longitud y codificación de {@link RutaCompacta}) en segmentos de
+ * {@link ByteBuffer} directos escritos en forma de registro; en el heap solo queda un
+ * índice de arreglos primitivos con direccionamiento abierto, que el GC recorre sin
+ * objetos por entrada. Cuando se llenan todos los segmentos se recicla el más antiguo
+ * y salen sus rutas (FIFO). Los métodos están sincronizados: se usa solo en fallos
+ * y expulsiones de la cache en heap
+ */
+public final class NivelRutasFueraDeHeap {
+
+    private static final int BYTES_SEGMENTO_DEFAULT = 1 << 20;
+    private static final int CAPACIDAD_INDICE_INICIAL = 1024;
+    private static final double CARGA_MAXIMA_INDICE = 0.6;
+    private static final int BYTES_CABECERA_REGISTRO = Long.BYTES + Integer.BYTES;
+
+    private static final long VACIO = -1L;
+    private static final long BORRADO = -2L;
+
+    private final int bytesSegmento;
+    private final ByteBuffer[] segmentos;
+    private int segmentoActual = -1;
+    private int segmentosCreados;
+    private long segmentosReciclados;
+
+    // Índice: origen y destino empaquetados (x << 32 | y) y ubicación (segmento << 32 | posición)
+    private long[] origenes;
+    private long[] destinos;
+    private long[] ubicaciones;
+    private int tamano;
+    private int ocupadas;
+    private long bytesVigentes;
+
+    public NivelRutasFueraDeHeap(long bytesMaximos) {
+        this(bytesMaximos, BYTES_SEGMENTO_DEFAULT);
+    }
+
+    public NivelRutasFueraDeHeap(long bytesMaximos, int bytesSegmento) {
+        if (bytesSegmento <= BYTES_CABECERA_REGISTRO || bytesMaximos < bytesSegmento) {
+            throw new IllegalArgumentException("Tamaños de nivel fuera de heap inválidos: "
+                + bytesMaximos + " / " + bytesSegmento);
+        }
+        this.bytesSegmento = bytesSegmento;
+        this.segmentos = new ByteBuffer[(int) Math.min(Integer.MAX_VALUE, bytesMaximos / bytesSegmento)];
+        inicializarIndice(CAPACIDAD_INDICE_INICIAL);
+    }
+
+    /**
+     * Guarda (o reemplaza) la ruta del par; devuelve false si no cabe en un segmento
+     */
+    public synchronized boolean guardar(Punto origen, Punto destino, RutaCompacta ruta, long fecha) {
+        int[] codificacion = ruta.getCodificacion();
+        int bytes = BYTES_CABECERA_REGISTRO + codificacion.length * Integer.BYTES;
+        if (bytes > bytesSegmento) {
+            return false;
+        }
+        eliminar(origen, destino);
+
+        ByteBuffer segmento = segmentoConEspacio(bytes);
+        int posicion = segmento.position();
+        segmento.putLong(fecha).putInt(codificacion.length);
+        for (int valor : codificacion) {
+            segmento.putInt(valor);
+        }
+
+        if ((ocupadas + 1) > ubicaciones.length * CARGA_MAXIMA_INDICE) {
+            redimensionarIndice();
+        }
+        int ranura = ranuraLibre(empaquetar(origen), empaquetar(destino));
+        if (ubicaciones[ranura] == VACIO) {
+            ocupadas++;
+        }
+        origenes[ranura] = empaquetar(origen);
+        destinos[ranura] = empaquetar(destino);
+        ubicaciones[ranura] = ((long) segmentoActual << 32) | posicion;
+        tamano++;
+        bytesVigentes += bytes;
+        return true;
+    }
+
+    /**
+     * Retira la ruta del par y la devuelve decodificada, o null si no está
+     */
+    public synchronized Registro tomar(Punto origen, Punto destino) {
+        int ranura = buscarRanura(empaquetar(origen), empaquetar(destino));
+        if (ranura < 0) {
+            return null;
+        }
+        long fecha = segmentos[(int) (ubicaciones[ranura] >>> 32)].getLong((int) ubicaciones[ranura]);
+        int[] codificacion = leerCodificacion(ranura);
+        borrar(ranura);
+        return new Registro(RutaCompacta.desdeCodificacion(codificacion), fecha);
+    }
+
+    public synchronized boolean eliminar(Punto origen, Punto destino) {
+        int ranura = buscarRanura(empaquetar(origen), empaquetar(destino));
+        if (ranura < 0) {
+            return false;
+        }
+        borrar(ranura);
+        return true;
+    }
+
+    /**
+     * Recorre las rutas del nivel decodificándolas una a una, sin retirarlas
+     */
+    public synchronized void paraCada(CacheRutas.VisitanteRuta visitante) {
+        for (int ranura = 0; ranura < ubicaciones.length; ranura++) {
+            if (ubicaciones[ranura] >= 0) {
+                visitante.visitar(desempaquetar(origenes[ranura]), desempaquetar(destinos[ranura]),
+                    RutaCompacta.desdeCodificacion(leerCodificacion(ranura)));
+            }
+        }
+    }
+
+    /**
+     * Vacía el índice; los segmentos ya reservados se reutilizan desde el principio
+     */
+    public synchronized void limpiar() {
+        inicializarIndice(CAPACIDAD_INDICE_INICIAL);
+        for (int i = 0; i < segmentosCreados; i++) {
+            segmentos[i].clear();
+        }
+        segmentoActual = segmentosCreados > 0 ? 0 : -1;
+        bytesVigentes = 0;
+    }
+
+    public synchronized int getTamano() { return tamano; }
+    public synchronized long getBytesVigentes() { return bytesVigentes; }
+    public synchronized long getBytesReservados() { return (long) segmentosCreados * bytesSegmento; }
+    public synchronized long getSegmentosReciclados() { return segmentosReciclados; }
+
+    // Métodos privados
+
+    /**
+     * Segmento actual si le queda espacio; si no, el siguiente del anillo, creándolo o
+     * reciclándolo (sus rutas salen del índice)
+     */
+    private ByteBuffer segmentoConEspacio(int bytes) {
+        if (segmentoActual >= 0 && segmentos[segmentoActual].remaining() >= bytes) {
+            return segmentos[segmentoActual];
+        }
+        segmentoActual = (segmentoActual + 1) % segmentos.length;
+        if (segmentoActual >= segmentosCreados) {
+            segmentos[segmentoActual] = ByteBuffer.allocateDirect(bytesSegmento);
+            segmentosCreados++;
+        } else {
+            expulsarSegmento(segmentoActual);
+            segmentos[segmentoActual].clear();
+            segmentosReciclados++;
+        }
+        return segmentos[segmentoActual];
+    }
+
+    private void expulsarSegmento(int segmento) {
+        for (int ranura = 0; ranura < ubicaciones.length; ranura++) {
+            long ubicacion = ubicaciones[ranura];
+            if (ubicacion >= 0 && (int) (ubicacion >>> 32) == segmento) {
+                borrar(ranura);
+            }
+        }
+    }
+
+    private int[] leerCodificacion(int ranura) {
+        ByteBuffer segmento = segmentos[(int) (ubicaciones[ranura] >>> 32)];
+        int posicion = (int) ubicaciones[ranura];
+        int[] codificacion = new int[segmento.getInt(posicion + Long.BYTES)];
+        for (int i = 0; i < codificacion.length; i++) {
+            codificacion[i] = segmento.getInt(posicion + BYTES_CABECERA_REGISTRO + i * Integer.BYTES);
+        }
+        return codificacion;
+    }
+
+    private void borrar(int ranura) {
+        ByteBuffer segmento = segmentos[(int) (ubicaciones[ranura] >>> 32)];
+        int longitud = segmento.getInt((int) ubicaciones[ranura] + Long.BYTES);
+        bytesVigentes -= BYTES_CABECERA_REGISTRO + (long) longitud * Integer.BYTES;
+        ubicaciones[ranura] = BORRADO;
+        tamano--;
+    }
+
+    private int buscarRanura(long origen, long destino) {
+        int mascara = ubicaciones.length - 1;
+        for (int ranura = dispersar(origen, destino) & mascara; ; ranura = (ranura + 1) & mascara) {
+            long ubicacion = ubicaciones[ranura];
+            if (ubicacion == VACIO) {
+                return -1;
+            }
+            if (ubicacion >= 0 && origenes[ranura] == origen && destinos[ranura] == destino) {
+                return ranura;
+            }
+        }
+    }
+
+    private int ranuraLibre(long origen, long destino) {
+        int mascara = ubicaciones.length - 1;
+        int ranura = dispersar(origen, destino) & mascara;
+        while (ubicaciones[ranura] >= 0) {
+            ranura = (ranura + 1) & mascara;
+        }
+        return ranura;
+    }
+
+    private void redimensionarIndice() {
+        long[] origenesAnteriores = origenes;
+        long[] destinosAnteriores = destinos;
+        long[] ubicacionesAnteriores = ubicaciones;
+        // Se duplica solo si hay muchas vigentes; si no, basta con descartar los borrados
+        int capacidad = tamano + 1 > ubicaciones.length * CARGA_MAXIMA_INDICE / 2
+            ? ubicaciones.length * 2 : ubicaciones.length;
+        inicializarIndice(capacidad);
+        for (int i = 0; i < ubicacionesAnteriores.length; i++) {
+            if (ubicacionesAnteriores[i] >= 0) {
+                int ranura = ranuraLibre(origenesAnteriores[i], destinosAnteriores[i]);
+                origenes[ranura] = origenesAnteriores[i];
+                destinos[ranura] = destinosAnteriores[i];
+                ubicaciones[ranura] = ubicacionesAnteriores[i];
+                tamano++;
+                ocupadas++;
+            }
+        }
+    }
+
+    private void inicializarIndice(int capacidad) {
+        origenes = new long[capacidad];
+        destinos = new long[capacidad];
+        ubicaciones = new long[capacidad];
+        Arrays.fill(ubicaciones, VACIO);
+        tamano = 0;
+        ocupadas = 0;
+    }
+
+    private static long empaquetar(Punto punto) {
+        return ((long) punto.getX() << 32) | (punto.getY() & 0xffffffffL);
+    }
+
+    private static Punto desempaquetar(long punto) {
+        return new Punto((int) (punto >>> 32), (int) punto);
+    }
+
+    private static int dispersar(long origen, long destino) {
+        long h = origen * 0x9E3779B97F4A7C15L + destino;
+        h = (h ^ (h >>> 31)) * 0xbf58476d1ce4e5b9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Ruta leída del nivel junto con la fecha en que se guardó en la cache
+     */
+    public static final class Registro {
+        private final RutaCompacta ruta;
+        private final long fecha;
+
+        private Registro(RutaCompacta ruta, long fecha) {
+            this.ruta = ruta;
+            this.fecha = fecha;
+        }
+
+        public RutaCompacta getRuta() { return ruta; }
+        public long getFecha() { return fecha; }
+    }
+}
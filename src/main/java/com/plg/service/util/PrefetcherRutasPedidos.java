@@ -0,0 +1,267 @@
+package com.plg.service.util;
+
+import com.plg.domain.Pedido;
+import com.plg.domain.Punto;
+import com.plg.service.AEstrellaService;
+import com.plg.service.AlmacenService;
+import com.plg.service.SimulationTimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-cálculo especulativo de rutas a partir de la llegada de pedidos. Cuando un pedido
+ * se carga y su hora de registro ya es visible en la simulación, la próxima planificación
+ * va a pedir rutas entre su ubicación, los almacenes más cercanos y los pedidos vecinos
+ * recién llegados; un thread de baja prioridad las calcula antes (una búsqueda
+ * multi-destino por pedido) para que la planificación las encuentre en {@link CacheRutas}
+ */
+@Component
+public class PrefetcherRutasPedidos {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrefetcherRutasPedidos.class);
+
+    // Configuración
+    private static final int MAX_PENDIENTES = 20000;
+    private static final int MAX_PEDIDOS_POR_CICLO = 32;
+    private static final int ALMACENES_CERCANOS = 2;
+    private static final int VECINOS_CERCANOS = 4;
+    private static final int RADIO_VECINOS = 20;
+    private static final int PEDIDOS_RECIENTES = 128;
+    private static final long INTERVALO_CICLO_MS = 2000;
+    private static final long PAUSA_ENTRE_PEDIDOS_MS = 20;
+
+    @Autowired
+    private AEstrellaService aEstrellaService;
+
+    @Autowired
+    private AlmacenService almacenService;
+
+    @Autowired
+    private SimulationTimeService simulationTimeService;
+
+    @Autowired
+    private GestorObstaculos gestorObstaculos;
+
+    // Pedidos registrados que aún no son visibles, ordenados por hora de registro
+    private final PriorityQueue<PedidoPendiente> pendientes =
+        new PriorityQueue<>(Comparator.comparing(PedidoPendiente::getFechaRegistro));
+
+    // Ubicaciones de los últimos pedidos visibles (anillo), candidatas a vecinas
+    private final Punto[] recientes = new Punto[PEDIDOS_RECIENTES];
+    private int siguienteReciente;
+
+    private volatile boolean habilitado = true;
+    private ScheduledExecutorService executor;
+
+    // Estadísticas
+    private final AtomicLong pedidosRecibidos = new AtomicLong();
+    private final AtomicLong pedidosDescartados = new AtomicLong();
+    private final AtomicLong pedidosProcesados = new AtomicLong();
+    private final AtomicLong rutasSolicitadas = new AtomicLong();
+
+    @PostConstruct
+    public void iniciar() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PrefetcherRutas");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                procesarPedidosVisibles();
+            } catch (Exception e) {
+                logger.warn("Error en pre-cálculo de rutas de pedidos: {}", e.getMessage());
+            }
+        }, INTERVALO_CICLO_MS, INTERVALO_CICLO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Registra pedidos recién cargados; se pre-calculan cuando la simulación alcanza su
+     * hora de registro (de inmediato si ya la pasó). Si la cola está llena se descartan
+     */
+    public void registrarPedidos(Collection<Pedido> pedidos) {
+        synchronized (pendientes) {
+            for (Pedido pedido : pedidos) {
+                if (pedido.getUbicacionX() == null || pedido.getUbicacionY() == null) {
+                    continue;
+                }
+                pedidosRecibidos.incrementAndGet();
+                if (pendientes.size() >= MAX_PENDIENTES) {
+                    pedidosDescartados.incrementAndGet();
+                    continue;
+                }
+                LocalDateTime fecha = pedido.getFechaHoraRegistro() != null
+                    ? pedido.getFechaHoraRegistro() : LocalDateTime.MIN;
+                pendientes.add(new PedidoPendiente(
+                    new Punto(pedido.getUbicacionX(), pedido.getUbicacionY()), fecha));
+            }
+        }
+    }
+
+    public void registrarPedido(Pedido pedido) {
+        registrarPedidos(List.of(pedido));
+    }
+
+    /**
+     * Un ciclo del thread de fondo: toma los pedidos ya visibles en la simulación y
+     * calcula sus rutas probables. Sin mapa de obstáculos no hay nada que calcular y los
+     * pedidos esperan al siguiente ciclo
+     */
+    public void procesarPedidosVisibles() {
+        if (!habilitado || !gestorObstaculos.isMapaInicializado()) {
+            return;
+        }
+        List<Punto> visibles = tomarVisibles(simulationTimeService.getCurrentSimulationTime(), MAX_PEDIDOS_POR_CICLO);
+        if (visibles.isEmpty()) {
+            return;
+        }
+
+        List<Punto> almacenes = almacenService.obtenerTodos().stream()
+            .map(almacen -> new Punto(almacen.getX(), almacen.getY()))
+            .toList();
+        for (Punto ubicacion : visibles) {
+            List<Punto> destinos = destinosProbables(ubicacion, almacenes);
+            if (!destinos.isEmpty()) {
+                aEstrellaService.precalcularRutasDesde(ubicacion, destinos);
+                rutasSolicitadas.addAndGet(destinos.size());
+            }
+            pedidosProcesados.incrementAndGet();
+            try {
+                Thread.sleep(PAUSA_ENTRE_PEDIDOS_MS); // Ceder CPU a la planificación
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        logger.debug("Pre-cálculo de rutas: {} pedidos visibles procesados", visibles.size());
+    }
+
+    /**
+     * Retira de la cola hasta {@code maximo} pedidos registrados hasta {@code hora} y los
+     * anota como recientes, en orden de registro
+     */
+    public List<Punto> tomarVisibles(LocalDateTime hora, int maximo) {
+        List<Punto> visibles = new ArrayList<>();
+        synchronized (pendientes) {
+            while (visibles.size() < maximo && !pendientes.isEmpty()
+                    && !pendientes.peek().getFechaRegistro().isAfter(hora)) {
+                visibles.add(pendientes.poll().getUbicacion());
+            }
+        }
+        synchronized (recientes) {
+            for (Punto ubicacion : visibles) {
+                recientes[siguienteReciente] = ubicacion;
+                siguienteReciente = (siguienteReciente + 1) % recientes.length;
+            }
+        }
+        return visibles;
+    }
+
+    /**
+     * Destinos que la planificación probablemente pida desde la ubicación de un pedido:
+     * los almacenes más cercanos y los pedidos recientes dentro del radio, por distancia
+     * Manhattan. Las rutas en sentido contrario las responde la cache invirtiendo estas
+     */
+    public List<Punto> destinosProbables(Punto ubicacion, List<Punto> almacenes) {
+        Comparator<Punto> porDistancia = Comparator.comparingInt(ubicacion::distanciaManhattanHasta);
+        List<Punto> destinos = new ArrayList<>();
+        almacenes.stream()
+            .filter(almacen -> !almacen.equals(ubicacion))
+            .sorted(porDistancia)
+            .limit(ALMACENES_CERCANOS)
+            .forEach(destinos::add);
+
+        List<Punto> vecinos = new ArrayList<>();
+        synchronized (recientes) {
+            for (Punto reciente : recientes) {
+                if (reciente != null && !reciente.equals(ubicacion) && !vecinos.contains(reciente)
+                        && ubicacion.distanciaManhattanHasta(reciente) <= RADIO_VECINOS) {
+                    vecinos.add(reciente);
+                }
+            }
+        }
+        vecinos.stream()
+            .filter(vecino -> !destinos.contains(vecino))
+            .sorted(porDistancia)
+            .limit(VECINOS_CERCANOS)
+            .forEach(destinos::add);
+        return destinos;
+    }
+
+    public void setHabilitado(boolean habilitado) {
+        this.habilitado = habilitado;
+        logger.info("Pre-cálculo de rutas por llegada de pedidos {}", habilitado ? "habilitado" : "deshabilitado");
+    }
+
+    public EstadisticasPrefetch obtenerEstadisticas() {
+        EstadisticasPrefetch stats = new EstadisticasPrefetch();
+        stats.setPedidosRecibidos(pedidosRecibidos.get());
+        stats.setPedidosDescartados(pedidosDescartados.get());
+        stats.setPedidosProcesados(pedidosProcesados.get());
+        stats.setRutasSolicitadas(rutasSolicitadas.get());
+        synchronized (pendientes) {
+            stats.setPedidosPendientes(pendientes.size());
+        }
+        return stats;
+    }
+
+    private static class PedidoPendiente {
+        private final Punto ubicacion;
+        private final LocalDateTime fechaRegistro;
+
+        PedidoPendiente(Punto ubicacion, LocalDateTime fechaRegistro) {
+            this.ubicacion = ubicacion;
+            this.fechaRegistro = fechaRegistro;
+        }
+
+        Punto getUbicacion() { return ubicacion; }
+        LocalDateTime getFechaRegistro() { return fechaRegistro; }
+    }
+
+    public static class EstadisticasPrefetch {
+        private long pedidosRecibidos;
+        private long pedidosDescartados;
+        private long pedidosProcesados;
+        private long rutasSolicitadas;
+        private int pedidosPendientes;
+
+        public long getPedidosRecibidos() { return pedidosRecibidos; }
+        public void setPedidosRecibidos(long pedidosRecibidos) { this.pedidosRecibidos = pedidosRecibidos; }
+
+        public long getPedidosDescartados() { return pedidosDescartados; }
+        public void setPedidosDescartados(long pedidosDescartados) { this.pedidosDescartados = pedidosDescartados; }
+
+        public long getPedidosProcesados() { return pedidosProcesados; }
+        public void setPedidosProcesados(long pedidosProcesados) { this.pedidosProcesados = pedidosProcesados; }
+
+        public long getRutasSolicitadas() { return rutasSolicitadas; }
+        public void setRutasSolicitadas(long rutasSolicitadas) { this.rutasSolicitadas = rutasSolicitadas; }
+
+        public int getPedidosPendientes() { return pedidosPendientes; }
+        public void setPedidosPendientes(int pedidosPendientes) { this.pedidosPendientes = pedidosPendientes; }
+
+        @Override
+        public String toString() {
+            return String.format("Prefetch: %d pedidos recibidos, %d procesados, %d pendientes, %d descartados, %d rutas",
+                pedidosRecibidos, pedidosProcesados, pedidosPendientes, pedidosDescartados, rutasSolicitadas);
+        }
+    }
+}
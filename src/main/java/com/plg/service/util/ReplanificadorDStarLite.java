@@ -0,0 +1,578 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.domain.enumeration.TipoError;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Replanificación incremental con D* Lite para camiones en ruta
+ * Cada sesión (un camión hacia un destino) conserva g, rhs y la cola de prioridad entre
+ * llamadas; al publicarse un nuevo snapshot solo se reparan las celdas que cambiaron
+ * y sus vecinas, en lugar de repetir la búsqueda completa desde la posición actual
+ */
+@Component
+public class ReplanificadorDStarLite {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplanificadorDStarLite.class);
+
+    private static final int INFINITO = Integer.MAX_VALUE / 4;
+    private static final int MAX_SESIONES_POR_DEFECTO = 64;
+    private static final long PRESUPUESTO_BYTES_POR_DEFECTO = 64L << 20;
+    private static final int BYTES_POR_CELDA = 2 * Integer.BYTES + Long.BYTES; // g, rhs y claveEnCola
+    private static final int INTERVALO_VERIFICACION_TIMEOUT = 256;
+    private static final String ALGORITMO = "D* Lite";
+
+    // Movimientos Manhattan: arriba, abajo, izquierda, derecha
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {1, -1, 0, 0};
+
+    private final GestorObstaculos gestorObstaculos;
+
+    // Sesiones en orden de acceso: al superar el límite se descarta la menos usada
+    private final Map<String, SesionDStarLite> sesiones = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile int maxSesiones = MAX_SESIONES_POR_DEFECTO;
+    private volatile long presupuestoBytes = PRESUPUESTO_BYTES_POR_DEFECTO;
+
+    // Estadísticas
+    private final AtomicLong sesionesIniciadas = new AtomicLong();
+    private final AtomicLong replanificaciones = new AtomicLong();
+    private final AtomicLong sesionesReiniciadas = new AtomicLong();
+    private final AtomicLong celdasReparadas = new AtomicLong();
+
+    @Autowired
+    public ReplanificadorDStarLite(GestorObstaculos gestorObstaculos) {
+        this.gestorObstaculos = gestorObstaculos;
+    }
+
+    /**
+     * Crea (o reemplaza) la sesión de un camión y calcula la ruta inicial
+     */
+    public ResultadoAEstrella iniciar(String idSesion, Punto origen, Punto destino, ConfiguracionAEstrella config) {
+        long tiempoInicio = System.currentTimeMillis();
+        SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+
+        if (!mapa.esValido(origen.getX(), origen.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.ORIGEN_INVALIDO,
+                "Punto de origen obstruido o fuera de límites");
+        }
+        if (!mapa.esValido(destino.getX(), destino.getY())) {
+            return ResultadoAEstrella.fallido(origen, destino, TipoError.DESTINO_INVALIDO,
+                "Punto de destino obstruido o fuera de límites");
+        }
+
+        SesionDStarLite sesion = new SesionDStarLite(mapa,
+            mapa.indice(origen.getX(), origen.getY()), mapa.indice(destino.getX(), destino.getY()));
+        synchronized (sesiones) {
+            sesiones.put(idSesion, sesion);
+            descartarExcedentes(mapa.getCeldas());
+        }
+        sesionesIniciadas.incrementAndGet();
+
+        synchronized (sesion) {
+            return calcular(sesion, origen, destino, config, tiempoInicio);
+        }
+    }
+
+    /**
+     * Ruta desde la posición actual del camión, reparando solo lo afectado por los
+     * cambios publicados desde la última llamada
+     */
+    public ResultadoAEstrella replanificar(String idSesion, Punto posicionActual, ConfiguracionAEstrella config) {
+        long tiempoInicio = System.currentTimeMillis();
+        SesionDStarLite sesion;
+        synchronized (sesiones) {
+            sesion = sesiones.get(idSesion);
+        }
+        if (sesion == null) {
+            return ResultadoAEstrella.fallido(posicionActual, posicionActual, TipoError.CONFIGURACION_INVALIDA,
+                "No existe sesión de replanificación: " + idSesion);
+        }
+
+        replanificaciones.incrementAndGet();
+        synchronized (sesion) {
+            SnapshotObstaculos mapa = gestorObstaculos.obtenerSnapshot();
+            Punto destino = new Punto(sesion.mapa.xDe(sesion.meta), sesion.mapa.yDe(sesion.meta));
+
+            if (!sesion.mapa.mismaGeometria(mapa)) {
+                // Otra geometría invalida los índices de celda: se reinicia la sesión
+                if (!mapa.esValido(destino.getX(), destino.getY())) {
+                    return ResultadoAEstrella.fallido(posicionActual, destino, TipoError.DESTINO_INVALIDO,
+                        "Punto de destino obstruido o fuera de límites");
+                }
+                sesion = new SesionDStarLite(mapa, mapa.indice(posicionActual.getX(), posicionActual.getY()),
+                    mapa.indice(destino.getX(), destino.getY()));
+                synchronized (sesiones) {
+                    sesiones.put(idSesion, sesion);
+                    descartarExcedentes(mapa.getCeldas());
+                }
+                sesionesReiniciadas.incrementAndGet();
+            }
+
+            if (!mapa.estaEnLimites(posicionActual.getX(), posicionActual.getY())) {
+                return ResultadoAEstrella.fallido(posicionActual, destino, TipoError.ORIGEN_INVALIDO,
+                    "Punto de origen obstruido o fuera de límites");
+            }
+            sesion.moverInicio(mapa.indice(posicionActual.getX(), posicionActual.getY()));
+
+            if (sesion.mapa.getVersion() != mapa.getVersion()) {
+                int reparadas = sesion.aplicarCambios(mapa);
+                celdasReparadas.addAndGet(reparadas);
+                logger.debug("Sesión {}: snapshot v{} con {} celdas cambiadas", idSesion, mapa.getVersion(), reparadas);
+            }
+
+            if (!mapa.esValido(posicionActual.getX(), posicionActual.getY())) {
+                return ResultadoAEstrella.fallido(posicionActual, destino, TipoError.ORIGEN_INVALIDO,
+                    "Punto de origen obstruido o fuera de límites");
+            }
+            if (!mapa.esValido(destino.getX(), destino.getY())) {
+                return ResultadoAEstrella.fallido(posicionActual, destino, TipoError.DESTINO_INVALIDO,
+                    "Punto de destino obstruido o fuera de límites");
+            }
+            return calcular(sesion, posicionActual, destino, config, tiempoInicio);
+        }
+    }
+
+    public void finalizar(String idSesion) {
+        synchronized (sesiones) {
+            sesiones.remove(idSesion);
+        }
+    }
+
+    public boolean tieneSesion(String idSesion) {
+        synchronized (sesiones) {
+            return sesiones.containsKey(idSesion);
+        }
+    }
+
+    public int getSesionesActivas() {
+        synchronized (sesiones) {
+            return sesiones.size();
+        }
+    }
+
+    /**
+     * Límite de sesiones simultáneas; el presupuesto de bytes puede reducirlo en grids grandes
+     */
+    public void configurarMaxSesiones(int maxSesiones) {
+        this.maxSesiones = Math.max(1, maxSesiones);
+        synchronized (sesiones) {
+            descartarExcedentes(gestorObstaculos.obtenerSnapshot().getCeldas());
+        }
+    }
+
+    /**
+     * Memoria máxima del estado de todas las sesiones (≈ 16 bytes por celda cada una)
+     */
+    public void configurarPresupuestoBytes(long presupuestoBytes) {
+        this.presupuestoBytes = Math.max(0, presupuestoBytes);
+        synchronized (sesiones) {
+            descartarExcedentes(gestorObstaculos.obtenerSnapshot().getCeldas());
+        }
+    }
+
+    /**
+     * Sesiones simultáneas que entran en el presupuesto con el grid dado, sin pasar de
+     * maxSesiones; al menos una
+     */
+    public int limiteSesiones(int celdas) {
+        long porPresupuesto = presupuestoBytes / ((long) BYTES_POR_CELDA * Math.max(1, celdas));
+        return (int) Math.max(1, Math.min(maxSesiones, porPresupuesto));
+    }
+
+    public EstadisticasReplanificador obtenerEstadisticas() {
+        EstadisticasReplanificador stats = new EstadisticasReplanificador();
+        stats.setSesionesActivas(getSesionesActivas());
+        stats.setSesionesIniciadas(sesionesIniciadas.get());
+        stats.setReplanificaciones(replanificaciones.get());
+        stats.setSesionesReiniciadas(sesionesReiniciadas.get());
+        stats.setCeldasReparadas(celdasReparadas.get());
+        return stats;
+    }
+
+    private void descartarExcedentes(int celdas) {
+        int limite = limiteSesiones(celdas);
+        var iterador = sesiones.keySet().iterator();
+        while (sesiones.size() > limite && iterador.hasNext()) {
+            String descartada = iterador.next();
+            iterador.remove();
+            logger.debug("Sesión de replanificación {} descartada por límite ({})", descartada, limite);
+        }
+    }
+
+    private ResultadoAEstrella calcular(SesionDStarLite sesion, Punto origen, Punto destino,
+                                        ConfiguracionAEstrella config, long tiempoInicio) {
+        long limiteTiempo = tiempoInicio + config.getTimeoutMs();
+        int expandidos = sesion.calcularRutaMasCorta(config.getMaxNodosExplorados(), limiteTiempo);
+
+        if (expandidos < 0) {
+            // Búsqueda interrumpida: el estado sigue siendo válido y se retoma en la próxima llamada
+            boolean timeout = System.currentTimeMillis() > limiteTiempo;
+            ResultadoAEstrella fallo = ResultadoAEstrella.fallido(origen, destino,
+                timeout ? TipoError.TIMEOUT : TipoError.MEMORIA_INSUFICIENTE,
+                timeout ? String.format("Timeout alcanzado (%dms)", config.getTimeoutMs())
+                        : String.format("Límite de nodos alcanzado (%d)", config.getMaxNodosExplorados()));
+            fallo.setAlgoritmoUtilizado(ALGORITMO);
+            fallo.setTimeoutAlcanzado(timeout);
+            fallo.setLimiteProfundidadAlcanzado(!timeout);
+            fallo.setTiempoCalculoMs(System.currentTimeMillis() - tiempoInicio);
+            return fallo;
+        }
+
+        List<Punto> ruta = sesion.extraerRuta();
+        if (ruta == null) {
+            ResultadoAEstrella fallo = ResultadoAEstrella.fallido(origen, destino, TipoError.RUTA_NO_EXISTE,
+                "No existe ruta entre los puntos");
+            fallo.setAlgoritmoUtilizado(ALGORITMO);
+            fallo.setNodosExplorados(expandidos);
+            fallo.setTiempoCalculoMs(System.currentTimeMillis() - tiempoInicio);
+            return fallo;
+        }
+
+        ResultadoAEstrella resultado = new ResultadoAEstrella(origen, destino);
+        resultado.setAlgoritmoUtilizado(ALGORITMO);
+        resultado.establecerRutaEncontrada(ruta);
+        resultado.completarCalculo(tiempoInicio, expandidos, sesion.tamanoCola());
+        return resultado;
+    }
+
+    private static int sumar(int a, int b) {
+        return Math.min(INFINITO, a + b);
+    }
+
+    /**
+     * Estado D* Lite de una sesión: búsqueda hacia atrás desde la meta, de modo que mover
+     * el inicio (el camión avanza) no invalida los valores g ya calculados
+     */
+    private static final class SesionDStarLite {
+        private SnapshotObstaculos mapa;
+        private final int[] g;
+        private final int[] rhs;
+        private final long[] claveEnCola; // -1 = fuera de la cola
+        private final int meta;
+        private int inicio;
+        private int ultimoInicio;
+        private int km;
+
+        // Cola con claves (k1, k2) empaquetadas en un long; entradas obsoletas se descartan al extraer
+        private long[] clavesCola = new long[256];
+        private int[] nodosCola = new int[256];
+        private int tamanoCola;
+
+        private SesionDStarLite(SnapshotObstaculos mapa, int inicio, int meta) {
+            this.mapa = mapa;
+            this.inicio = inicio;
+            this.ultimoInicio = inicio;
+            this.meta = meta;
+            int celdas = mapa.getCeldas();
+            this.g = new int[celdas];
+            this.rhs = new int[celdas];
+            this.claveEnCola = new long[celdas];
+            Arrays.fill(g, INFINITO);
+            Arrays.fill(rhs, INFINITO);
+            Arrays.fill(claveEnCola, -1L);
+            rhs[meta] = 0;
+            insertar(meta, calcularClave(meta));
+        }
+
+        private void moverInicio(int nuevoInicio) {
+            this.inicio = nuevoInicio;
+        }
+
+        /**
+         * Incorpora el nuevo snapshot: ajusta km por el desplazamiento del camión
+         * y recalcula rhs de cada celda cambiada y de sus vecinas
+         */
+        private int aplicarCambios(SnapshotObstaculos nuevo) {
+            SnapshotObstaculos anterior = mapa;
+            km += heuristica(ultimoInicio, inicio);
+            ultimoInicio = inicio;
+            mapa = nuevo;
+            return anterior.paraCadaCeldaDistinta(nuevo, celda -> {
+                actualizarRhs(celda);
+                int x = mapa.xDe(celda);
+                int y = mapa.yDe(celda);
+                for (int d = 0; d < 4; d++) {
+                    int vx = x + DX[d];
+                    int vy = y + DY[d];
+                    if (mapa.estaEnLimites(vx, vy)) {
+                        actualizarRhs(mapa.indice(vx, vy));
+                    }
+                }
+            });
+        }
+
+        private void actualizarRhs(int celda) {
+            if (celda != meta) {
+                rhs[celda] = minimoSucesores(celda);
+            }
+            actualizarVertice(celda);
+        }
+
+        /**
+         * ComputeShortestPath del D* Lite optimizado
+         * @return celdas expandidas, o -1 si se alcanzó el límite de nodos o tiempo
+         */
+        private int calcularRutaMasCorta(int maxNodos, long limiteTiempo) {
+            int expandidos = 0;
+            while (true) {
+                long tope = verTope();
+                if (tope == Long.MAX_VALUE || (tope >= calcularClave(inicio) && rhs[inicio] <= g[inicio])) {
+                    return expandidos;
+                }
+                if (expandidos >= maxNodos) {
+                    return -1;
+                }
+                if ((expandidos & (INTERVALO_VERIFICACION_TIMEOUT - 1)) == 0
+                        && System.currentTimeMillis() > limiteTiempo) {
+                    return -1;
+                }
+                expandidos++;
+
+                int u = nodosCola[0];
+                long claveNueva = calcularClave(u);
+                if (tope < claveNueva) {
+                    extraerTope();
+                    insertar(u, claveNueva);
+                } else if (g[u] > rhs[u]) {
+                    g[u] = rhs[u];
+                    extraerTope();
+                    claveEnCola[u] = -1L;
+                    paraCadaVecino(u, s -> {
+                        if (s != meta) {
+                            rhs[s] = Math.min(rhs[s], sumar(costo(s, u), g[u]));
+                        }
+                        actualizarVertice(s);
+                    });
+                } else {
+                    int gAnterior = g[u];
+                    g[u] = INFINITO;
+                    if (u != meta && rhs[u] == gAnterior) {
+                        rhs[u] = minimoSucesores(u);
+                    }
+                    actualizarVertice(u);
+                    paraCadaVecino(u, s -> {
+                        if (s != meta && rhs[s] == sumar(costo(s, u), gAnterior)) {
+                            rhs[s] = minimoSucesores(s);
+                        }
+                        actualizarVertice(s);
+                    });
+                }
+            }
+        }
+
+        /**
+         * Ruta desde el inicio siguiendo el sucesor de menor c + g; null si no hay ruta
+         */
+        private List<Punto> extraerRuta() {
+            if (Math.min(g[inicio], rhs[inicio]) >= INFINITO && inicio != meta) {
+                return null;
+            }
+            List<Punto> ruta = new ArrayList<>();
+            int actual = inicio;
+            ruta.add(new Punto(mapa.xDe(actual), mapa.yDe(actual)));
+            int pasosMaximos = mapa.getCeldas();
+            while (actual != meta) {
+                int mejor = -1;
+                int mejorCosto = INFINITO;
+                int x = mapa.xDe(actual);
+                int y = mapa.yDe(actual);
+                for (int d = 0; d < 4; d++) {
+                    int vx = x + DX[d];
+                    int vy = y + DY[d];
+                    if (!mapa.estaEnLimites(vx, vy)) {
+                        continue;
+                    }
+                    int vecino = mapa.indice(vx, vy);
+                    int costoTotal = sumar(costo(actual, vecino), g[vecino]);
+                    if (costoTotal < mejorCosto) {
+                        mejorCosto = costoTotal;
+                        mejor = vecino;
+                    }
+                }
+                if (mejor < 0 || --pasosMaximos < 0) {
+                    return null;
+                }
+                actual = mejor;
+                ruta.add(new Punto(mapa.xDe(actual), mapa.yDe(actual)));
+            }
+            return ruta;
+        }
+
+        private void actualizarVertice(int celda) {
+            boolean enCola = claveEnCola[celda] >= 0;
+            if (g[celda] != rhs[celda]) {
+                insertar(celda, calcularClave(celda)); // Actualización perezosa: la entrada previa queda obsoleta
+            } else if (enCola) {
+                claveEnCola[celda] = -1L;
+            }
+        }
+
+        private int minimoSucesores(int celda) {
+            int minimo = INFINITO;
+            int x = mapa.xDe(celda);
+            int y = mapa.yDe(celda);
+            for (int d = 0; d < 4; d++) {
+                int vx = x + DX[d];
+                int vy = y + DY[d];
+                if (mapa.estaEnLimites(vx, vy)) {
+                    int vecino = mapa.indice(vx, vy);
+                    minimo = Math.min(minimo, sumar(costo(celda, vecino), g[vecino]));
+                }
+            }
+            return minimo;
+        }
+
+        private void paraCadaVecino(int celda, IntConsumer accion) {
+            int x = mapa.xDe(celda);
+            int y = mapa.yDe(celda);
+            for (int d = 0; d < 4; d++) {
+                int vx = x + DX[d];
+                int vy = y + DY[d];
+                if (mapa.estaEnLimites(vx, vy)) {
+                    accion.accept(mapa.indice(vx, vy));
+                }
+            }
+        }
+
+        /**
+         * Costo de moverse entre celdas adyacentes: 1, o infinito si alguna está obstruida
+         */
+        private int costo(int desde, int hacia) {
+            return mapa.esCeldaLibre(desde) && mapa.esCeldaLibre(hacia) ? 1 : INFINITO;
+        }
+
+        private int heuristica(int a, int b) {
+            return Math.abs(mapa.xDe(a) - mapa.xDe(b)) + Math.abs(mapa.yDe(a) - mapa.yDe(b));
+        }
+
+        private long calcularClave(int celda) {
+            int minimo = Math.min(g[celda], rhs[celda]);
+            int k1 = sumar(minimo, heuristica(inicio, celda) + km);
+            return ((long) k1 << 32) | minimo;
+        }
+
+        private void insertar(int celda, long clave) {
+            claveEnCola[celda] = clave;
+            if (tamanoCola == clavesCola.length) {
+                if (tamanoCola > 4 * g.length) {
+                    compactarCola();
+                }
+                if (tamanoCola == clavesCola.length) {
+                    clavesCola = Arrays.copyOf(clavesCola, tamanoCola * 2);
+                    nodosCola = Arrays.copyOf(nodosCola, tamanoCola * 2);
+                }
+            }
+            int i = tamanoCola++;
+            while (i > 0) {
+                int padre = (i - 1) >>> 1;
+                if (clavesCola[padre] <= clave) {
+                    break;
+                }
+                clavesCola[i] = clavesCola[padre];
+                nodosCola[i] = nodosCola[padre];
+                i = padre;
+            }
+            clavesCola[i] = clave;
+            nodosCola[i] = celda;
+        }
+
+        /**
+         * Clave mínima vigente (descartando entradas obsoletas) o Long.MAX_VALUE si la cola está vacía
+         */
+        private long verTope() {
+            while (tamanoCola > 0) {
+                int nodo = nodosCola[0];
+                if (claveEnCola[nodo] == clavesCola[0]) {
+                    return clavesCola[0];
+                }
+                extraerTope();
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private void extraerTope() {
+            long ultimaClave = clavesCola[--tamanoCola];
+            int ultimoNodo = nodosCola[tamanoCola];
+            int i = 0;
+            int mitad = tamanoCola >>> 1;
+            while (i < mitad) {
+                int hijo = 2 * i + 1;
+                if (hijo + 1 < tamanoCola && clavesCola[hijo + 1] < clavesCola[hijo]) {
+                    hijo++;
+                }
+                if (ultimaClave <= clavesCola[hijo]) {
+                    break;
+                }
+                clavesCola[i] = clavesCola[hijo];
+                nodosCola[i] = nodosCola[hijo];
+                i = hijo;
+            }
+            if (tamanoCola > 0) {
+                clavesCola[i] = ultimaClave;
+                nodosCola[i] = ultimoNodo;
+            }
+        }
+
+        /**
+         * Reconstruye la cola solo con las entradas vigentes
+         */
+        private void compactarCola() {
+            long[] claves = Arrays.copyOf(clavesCola, tamanoCola);
+            int[] nodos = Arrays.copyOf(nodosCola, tamanoCola);
+            int total = tamanoCola;
+            tamanoCola = 0;
+            for (int i = 0; i < total; i++) {
+                if (claveEnCola[nodos[i]] == claves[i]) {
+                    insertar(nodos[i], claves[i]);
+                }
+            }
+        }
+
+        private int tamanoCola() {
+            return tamanoCola;
+        }
+    }
+
+    public static class EstadisticasReplanificador {
+        private int sesionesActivas;
+        private long sesionesIniciadas;
+        private long replanificaciones;
+        private long sesionesReiniciadas;
+        private long celdasReparadas;
+
+        public int getSesionesActivas() { return sesionesActivas; }
+        public void setSesionesActivas(int sesionesActivas) { this.sesionesActivas = sesionesActivas; }
+
+        public long getSesionesIniciadas() { return sesionesIniciadas; }
+        public void setSesionesIniciadas(long sesionesIniciadas) { this.sesionesIniciadas = sesionesIniciadas; }
+
+        public long getReplanificaciones() { return replanificaciones; }
+        public void setReplanificaciones(long replanificaciones) { this.replanificaciones = replanificaciones; }
+
+        public long getSesionesReiniciadas() { return sesionesReiniciadas; }
+        public void setSesionesReiniciadas(long sesionesReiniciadas) { this.sesionesReiniciadas = sesionesReiniciadas; }
+
+        public long getCeldasReparadas() { return celdasReparadas; }
+        public void setCeldasReparadas(long celdasReparadas) { this.celdasReparadas = celdasReparadas; }
+
+        @Override
+        public String toString() {
+            return String.format("D* Lite: %d sesiones activas, %d iniciadas, %d replanificaciones (%d reinicios), %d celdas reparadas",
+                sesionesActivas, sesionesIniciadas, replanificaciones, sesionesReiniciadas, celdasReparadas);
+        }
+    }
+}
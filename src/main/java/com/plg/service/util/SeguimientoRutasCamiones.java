@@ -0,0 +1,335 @@
+package com.plg.service.util;
+
+import com.plg.domain.Camion;
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.domain.RutaOptimizada;
+import com.plg.domain.SegmentoRuta;
+import com.plg.domain.enumeration.EstadoSegmento;
+import com.plg.domain.enumeration.TipoError;
+import com.plg.service.AEstrellaService;
+import com.plg.service.SimulationTimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Seguimiento de los segmentos en ejecución de cada camión sobre las sesiones de
+ * replanificación incremental (D* Lite). La sesión del camión se abre cuando un segmento
+ * empieza a ejecutarse; cada snapshot que publica {@link GestorObstaculos} (incluidos los
+ * inicios y fines de bloqueos temporales) replanifica todas las sesiones abiertas desde
+ * la posición actual de su camión, reparando solo lo que cambió. Al llegar al destino del
+ * segmento se continúa con el siguiente de la ruta o, si no queda ninguno, se cierra la sesión
+ */
+@Component
+public class SeguimientoRutasCamiones {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeguimientoRutasCamiones.class);
+
+    @Autowired
+    private AEstrellaService aEstrellaService;
+
+    @Autowired
+    private GestorObstaculos gestorObstaculos;
+
+    @Autowired
+    private SimulationTimeService simulationTimeService;
+
+    // Camión en ruta por sesión (una por camión)
+    private final Map<String, CamionEnRuta> enRuta = new ConcurrentHashMap<>();
+
+    // Replanificación por publicación de snapshots: un thread, publicaciones seguidas se agrupan
+    private final AtomicBoolean replanificacionPendiente = new AtomicBoolean();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void iniciar() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "SeguimientoRutas-Replanificador");
+            thread.setDaemon(true);
+            return thread;
+        });
+        gestorObstaculos.agregarOyentePublicacion(snapshot -> programarReplanificacion());
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Despacha las rutas planificadas: cada camión empieza a ejecutar su primer segmento
+     * pendiente en {@code salida}
+     */
+    public void despacharRutas(Map<Camion, RutaOptimizada> rutas, LocalDateTime salida) {
+        rutas.forEach((camion, ruta) -> iniciarRuta(camion, ruta, salida));
+    }
+
+    /**
+     * El camión empieza a ejecutar el primer segmento pendiente de la ruta; al llegar a
+     * su destino continúa con el siguiente. Null si la ruta no tiene segmentos pendientes
+     */
+    public ResultadoAEstrella iniciarRuta(Camion camion, RutaOptimizada ruta, LocalDateTime salida) {
+        SegmentoRuta segmento = ruta.obtenerSiguienteSegmento();
+        if (segmento == null) {
+            return null;
+        }
+        return iniciar(new CamionEnRuta(camion, ruta, segmento, salida));
+    }
+
+    /**
+     * Inicia (o reanuda) la ejecución de un segmento suelto, sin ruta que continuar
+     */
+    public ResultadoAEstrella iniciarSegmento(Camion camion, SegmentoRuta segmento) {
+        return iniciar(new CamionEnRuta(camion, null, segmento, segmento.getFechaHoraInicioPlaneada()));
+    }
+
+    /**
+     * Posición reportada por la simulación; si es el destino del segmento registra la
+     * llegada. Devuelve true si el camión llegó
+     */
+    public boolean actualizarPosicion(Camion camion, Punto posicion, LocalDateTime instante) {
+        CamionEnRuta estado = enRuta.get(idSesion(camion));
+        if (estado == null) {
+            return false;
+        }
+        synchronized (estado) {
+            estado.posicion = posicion;
+            estado.instantePosicion = instante;
+        }
+        if (posicion.equals(estado.segmento.getDestino())) {
+            registrarLlegada(camion);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replanifica el segmento en curso desde la posición actual del camión; la ruta
+     * detallada del segmento pasa a ser el camino restante. Si la posición es el destino
+     * registra la llegada y devuelve null, igual que si el camión no tiene segmento en curso
+     */
+    public ResultadoAEstrella replanificar(Camion camion, Punto posicionActual) {
+        CamionEnRuta estado = enRuta.get(idSesion(camion));
+        if (estado == null) {
+            return null;
+        }
+        return replanificar(estado, posicionActual, null);
+    }
+
+    /**
+     * Replanifica todas las sesiones abiertas desde la posición de cada camión en
+     * {@code ahora} (la última reportada, o la estimada sobre su camino si el segmento tiene
+     * horario planeado). Devuelve la cantidad de camiones replanificados
+     */
+    public int replanificarEnCurso(LocalDateTime ahora) {
+        int replanificados = 0;
+        for (CamionEnRuta estado : new ArrayList<>(enRuta.values())) {
+            Punto posicion;
+            synchronized (estado) {
+                posicion = posicionEstimada(estado, ahora);
+            }
+            if (replanificar(estado, posicion, ahora) != null) {
+                replanificados++;
+            }
+        }
+        return replanificados;
+    }
+
+    /**
+     * El camión llegó al destino del segmento: lo completa y sigue con el próximo
+     * segmento de la ruta, o cierra la sesión si no queda ninguno
+     */
+    public void registrarLlegada(Camion camion) {
+        String idSesion = idSesion(camion);
+        CamionEnRuta estado = enRuta.remove(idSesion);
+        if (estado == null) {
+            cerrarSesion(idSesion);
+            return;
+        }
+        if (estado.ruta != null) {
+            estado.ruta.completarSegmento(estado.segmento);
+            if (estado.instantePosicion != null) {
+                estado.segmento.setFechaHoraFinReal(estado.instantePosicion);
+            }
+            SegmentoRuta siguiente = estado.ruta.obtenerSiguienteSegmento();
+            if (siguiente != null) {
+                iniciar(new CamionEnRuta(estado.camion, estado.ruta, siguiente, estado.instantePosicion));
+                return;
+            }
+        } else {
+            estado.segmento.completarEjecucion();
+        }
+        cerrarSesion(idSesion);
+    }
+
+    /**
+     * El camión deja de ejecutar el segmento sin llegar (avería, accidente): el segmento
+     * queda FALLIDO y la sesión se cierra
+     */
+    public void abandonar(Camion camion, String motivo) {
+        String idSesion = idSesion(camion);
+        CamionEnRuta estado = enRuta.remove(idSesion);
+        cerrarSesion(idSesion);
+        if (estado != null) {
+            estado.segmento.setEstado(EstadoSegmento.FALLIDO);
+            estado.segmento.setObservaciones(motivo);
+        }
+    }
+
+    public boolean tieneSegmentoEnCurso(Camion camion) {
+        return enRuta.containsKey(idSesion(camion));
+    }
+
+    public SegmentoRuta obtenerSegmentoEnCurso(Camion camion) {
+        CamionEnRuta estado = enRuta.get(idSesion(camion));
+        return estado != null ? estado.segmento : null;
+    }
+
+    public int getSegmentosEnCurso() {
+        return enRuta.size();
+    }
+
+    // Métodos privados
+
+    private ResultadoAEstrella iniciar(CamionEnRuta estado) {
+        String idSesion = idSesion(estado.camion);
+        SegmentoRuta segmento = estado.segmento;
+        if (segmento.getEstado() != EstadoSegmento.EN_EJECUCION) {
+            segmento.iniciarEjecucion();
+        }
+        ResultadoAEstrella resultado = aEstrellaService.iniciarRutaIncremental(
+            idSesion, segmento.getOrigen(), segmento.getDestino());
+        if (!resultado.isRutaExiste()) {
+            enRuta.remove(idSesion);
+            cerrarSesion(idSesion);
+            marcarSinRuta(segmento, resultado);
+            return resultado;
+        }
+        segmento.establecerRutaDetallada(resultado.getRutaEncontrada());
+        enRuta.put(idSesion, estado);
+        return resultado;
+    }
+
+    private ResultadoAEstrella replanificar(CamionEnRuta estado, Punto posicionActual, LocalDateTime instante) {
+        String idSesion = idSesion(estado.camion);
+        SegmentoRuta segmento = estado.segmento;
+        synchronized (estado) {
+            if (enRuta.get(idSesion) != estado) {
+                return null; // El segmento terminó mientras tanto: no se reabre su sesión
+            }
+            if (posicionActual.equals(segmento.getDestino())) {
+                estado.posicion = posicionActual;
+                if (instante != null) {
+                    estado.instantePosicion = instante;
+                }
+                registrarLlegada(estado.camion);
+                return null;
+            }
+
+            ResultadoAEstrella resultado = aEstrellaService.replanificarRutaIncremental(idSesion, posicionActual);
+            if (resultado.getTipoError() == TipoError.CONFIGURACION_INVALIDA) {
+                // La sesión se descartó por el límite de sesiones: se reabre desde la posición actual
+                logger.debug("Sesión {} descartada, se reinicia desde {}", idSesion, posicionActual);
+                resultado = aEstrellaService.iniciarRutaIncremental(idSesion, posicionActual, segmento.getDestino());
+            }
+            estado.posicion = posicionActual;
+            if (instante != null) {
+                estado.instantePosicion = instante;
+            }
+            if (resultado.isRutaExiste()) {
+                segmento.establecerRutaDetallada(resultado.getRutaEncontrada());
+            } else {
+                segmento.setRequiereValidacionEspecial(true);
+                segmento.setObservaciones("Sin ruta desde " + posicionActual + ": " + resultado.getMensajeError());
+            }
+            return resultado;
+        }
+    }
+
+    /**
+     * Posición del camión en {@code ahora}: con horario planeado para el segmento se
+     * avanza sobre el camino vigente en proporción al tiempo transcurrido; sin él, la
+     * última posición conocida
+     */
+    private static Punto posicionEstimada(CamionEnRuta estado, LocalDateTime ahora) {
+        LocalDateTime fin = estado.segmento.getFechaHoraFinPlaneada();
+        LocalDateTime desde = estado.instantePosicion;
+        if (ahora == null || desde == null || fin == null || !fin.isAfter(desde) || !ahora.isAfter(desde)) {
+            return estado.posicion;
+        }
+        List<Punto> camino = estado.segmento.getRutaDetallada();
+        if (camino.isEmpty()) {
+            return estado.posicion;
+        }
+        double avance = Math.min(1.0, (double) Duration.between(desde, ahora).toMillis()
+            / Duration.between(desde, fin).toMillis());
+        return camino.get((int) Math.round((camino.size() - 1) * avance));
+    }
+
+    private void programarReplanificacion() {
+        if (executor == null || enRuta.isEmpty() || !replanificacionPendiente.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            replanificacionPendiente.set(false);
+            try {
+                LocalDateTime ahora = simulationTimeService != null
+                    ? simulationTimeService.getCurrentSimulationTime() : null;
+                int replanificados = replanificarEnCurso(ahora);
+                logger.debug("Cambio de obstáculos: {} camiones en ruta replanificados", replanificados);
+            } catch (Exception e) {
+                logger.warn("Error replanificando camiones en ruta: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void cerrarSesion(String idSesion) {
+        aEstrellaService.finalizarRutaIncremental(idSesion);
+    }
+
+    private static void marcarSinRuta(SegmentoRuta segmento, ResultadoAEstrella resultado) {
+        segmento.setEstado(EstadoSegmento.FALLIDO);
+        segmento.setRequiereValidacionEspecial(true);
+        segmento.setObservaciones("Sin ruta al iniciar el segmento: " + resultado.getMensajeError());
+    }
+
+    private static String idSesion(Camion camion) {
+        return "camion-" + (camion.getCodigo() != null ? camion.getCodigo() : camion.getId());
+    }
+
+    /**
+     * Segmento en ejecución de un camión y su última posición conocida
+     */
+    private static class CamionEnRuta {
+        private final Camion camion;
+        private final RutaOptimizada ruta;
+        private final SegmentoRuta segmento;
+        private Punto posicion;
+        private LocalDateTime instantePosicion;
+
+        CamionEnRuta(Camion camion, RutaOptimizada ruta, SegmentoRuta segmento, LocalDateTime salida) {
+            this.camion = camion;
+            this.ruta = ruta;
+            this.segmento = segmento;
+            this.posicion = segmento.getOrigen();
+            this.instantePosicion = salida;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.plg.service.util;
+
+/**
+ * Sketch de frecuencias aproximadas (Count-Min de 4 filas con contadores de 4 bits),
+ * como el de TinyLFU: cada long guarda 16 contadores y un elemento toca un contador por
+ * fila, así que estimar o incrementar es O(1) con memoria fija (8 bytes por entrada de cache).
+ * Al llegar a 10 incrementos por entrada todos los contadores se dividen a la mitad, de modo
+ * que la frecuencia estimada refleja la popularidad reciente. No es thread-safe: el llamador
+ * lo protege con su propio candado
+ */
+public final class SketchFrecuencia {
+
+    private static final long[] SEMILLAS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long MASCARA_MITAD = 0x7777777777777777L;
+    private static final int MAXIMO_CONTADOR = 15;
+    private static final int MUESTRAS_POR_ENTRADA = 10;
+
+    private long[] tabla;
+    private int mascaraTabla;
+    private int tamanoMuestra;
+    private int incrementos;
+
+    public SketchFrecuencia(int capacidad) {
+        redimensionar(capacidad);
+    }
+
+    /**
+     * Ajusta el sketch a una nueva capacidad; las frecuencias acumuladas se pierden
+     */
+    public void redimensionar(int capacidad) {
+        int longitud = Integer.highestOneBit(Math.max(16, capacidad - 1) << 1);
+        this.tabla = new long[longitud];
+        this.mascaraTabla = longitud - 1;
+        this.tamanoMuestra = Math.max(1, capacidad) * MUESTRAS_POR_ENTRADA;
+        this.incrementos = 0;
+    }
+
+    /**
+     * Frecuencia estimada (0-15) del elemento con ese hash; nunca subestima salvo por el envejecimiento
+     */
+    public int frecuencia(int hashElemento) {
+        int hash = dispersar(hashElemento);
+        int inicio = (hash & 3) << 2;
+        int minimo = MAXIMO_CONTADOR;
+        for (int fila = 0; fila < SEMILLAS.length; fila++) {
+            int desplazamiento = (inicio + fila) << 2;
+            int contador = (int) ((tabla[indice(hash, fila)] >>> desplazamiento) & 0xfL);
+            minimo = Math.min(minimo, contador);
+        }
+        return minimo;
+    }
+
+    /**
+     * Registra un acceso al elemento con ese hash
+     */
+    public void incrementar(int hashElemento) {
+        int hash = dispersar(hashElemento);
+        int inicio = (hash & 3) << 2;
+        boolean incrementado = false;
+        for (int fila = 0; fila < SEMILLAS.length; fila++) {
+            int i = indice(hash, fila);
+            int desplazamiento = (inicio + fila) << 2;
+            if (((tabla[i] >>> desplazamiento) & 0xfL) < MAXIMO_CONTADOR) {
+                tabla[i] += 1L << desplazamiento;
+                incrementado = true;
+            }
+        }
+        if (incrementado && ++incrementos >= tamanoMuestra) {
+            envejecer();
+        }
+    }
+
+    /**
+     * Divide todos los contadores a la mitad (olvido exponencial de la historia)
+     */
+    private void envejecer() {
+        for (int i = 0; i < tabla.length; i++) {
+            tabla[i] = (tabla[i] >>> 1) & MASCARA_MITAD;
+        }
+        incrementos >>>= 1;
+    }
+
+    private int indice(int hash, int fila) {
+        long h = (hash + SEMILLAS[fila]) * SEMILLAS[fila];
+        h += h >>> 32;
+        return (int) h & mascaraTabla;
+    }
+
+    private static int dispersar(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
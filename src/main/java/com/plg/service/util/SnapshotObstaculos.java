@@ -0,0 +1,158 @@
+package com.plg.service.util;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Fotografía inmutable del mapa de ocupación publicada por {@link GestorObstaculos}
+ * Un bit por celda (1 = obstruida) indexado como (y - minY) * ancho + (x - minX).
+ * Cada cambio de obstáculos publica una nueva instancia con versión mayor, de modo que
+ * las búsquedas concurrentes leen sin bloqueo una vista coherente del mapa
+ */
+public final class SnapshotObstaculos {
+
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+    private final int ancho;
+    private final int alto;
+    private final long[] obstruidos;
+    private final int totalObstruidos;
+    private final long version;
+    private final long huella;
+
+    SnapshotObstaculos(int minX, int minY, int maxX, int maxY, long[] obstruidos, long version) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.ancho = maxX - minX + 1;
+        this.alto = maxY - minY + 1;
+        this.obstruidos = obstruidos;
+        this.version = version;
+
+        int total = 0;
+        for (long palabra : obstruidos) {
+            total += Long.bitCount(palabra);
+        }
+        this.totalObstruidos = total;
+        this.huella = calcularHuella();
+    }
+
+    /**
+     * Número de palabras {@code long} necesarias para un grid de las dimensiones dadas
+     */
+    static int palabrasPara(int minX, int minY, int maxX, int maxY) {
+        long celdas = (long) (maxX - minX + 1) * (maxY - minY + 1);
+        return (int) ((celdas + 63) >>> 6);
+    }
+
+    /**
+     * Celda dentro de límites y no obstruida: una comparación de límites y un test de bit
+     */
+    public boolean esValido(int x, int y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        int celda = (y - minY) * ancho + (x - minX);
+        return (obstruidos[celda >>> 6] & (1L << celda)) == 0;
+    }
+
+    /**
+     * Test de bit sobre un índice de celda ya validado dentro del grid
+     */
+    public boolean esCeldaLibre(int celda) {
+        return (obstruidos[celda >>> 6] & (1L << celda)) == 0;
+    }
+
+    public boolean estaEnLimites(int x, int y) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+
+    public int indice(int x, int y) {
+        return (y - minY) * ancho + (x - minX);
+    }
+
+    public int xDe(int celda) {
+        return celda % ancho + minX;
+    }
+
+    public int yDe(int celda) {
+        return celda / ancho + minY;
+    }
+
+    /**
+     * Indica si otro snapshot usa los mismos índices de celda
+     */
+    public boolean mismaGeometria(SnapshotObstaculos otro) {
+        return minX == otro.minX && minY == otro.minY && maxX == otro.maxX && maxY == otro.maxY;
+    }
+
+    /**
+     * Recorre las celdas cuyo estado difiere respecto de otro snapshot de la misma geometría,
+     * comparando palabra a palabra (XOR) sin visitar las celdas sin cambios
+     * @return cantidad de celdas distintas, o -1 si las geometrías no coinciden
+     */
+    public int paraCadaCeldaDistinta(SnapshotObstaculos otro, IntConsumer accion) {
+        if (!mismaGeometria(otro)) {
+            return -1;
+        }
+        int distintas = 0;
+        for (int i = 0; i < obstruidos.length; i++) {
+            long diferencia = obstruidos[i] ^ otro.obstruidos[i];
+            while (diferencia != 0) {
+                accion.accept((i << 6) + Long.numberOfTrailingZeros(diferencia));
+                diferencia &= diferencia - 1;
+                distintas++;
+            }
+        }
+        return distintas;
+    }
+
+    /**
+     * Huella de 64 bits de la geometría y las celdas obstruidas: dos snapshots con el mismo
+     * mapa tienen la misma huella aunque sus versiones difieran (p. ej. tras reiniciar)
+     */
+    public long getHuella() {
+        return huella;
+    }
+
+    private long calcularHuella() {
+        long h = 0x9E3779B97F4A7C15L;
+        h = mezclar(h, ((long) minX << 32) | (minY & 0xffffffffL));
+        h = mezclar(h, ((long) maxX << 32) | (maxY & 0xffffffffL));
+        for (long palabra : obstruidos) {
+            h = mezclar(h, palabra);
+        }
+        return h;
+    }
+
+    private static long mezclar(long h, long valor) {
+        h ^= valor;
+        h *= 0xbf58476d1ce4e5b9L;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Copia de los bits de ocupación para construir una nueva versión
+     */
+    long[] copiarBits() {
+        return obstruidos.clone();
+    }
+
+    public int getCeldas() { return ancho * alto; }
+    public int getMinX() { return minX; }
+    public int getMinY() { return minY; }
+    public int getMaxX() { return maxX; }
+    public int getMaxY() { return maxY; }
+    public int getAncho() { return ancho; }
+    public int getAlto() { return alto; }
+    public int getTotalObstruidos() { return totalObstruidos; }
+    public long getVersion() { return version; }
+
+    @Override
+    public String toString() {
+        return String.format("Snapshot v%d: (%d,%d) a (%d,%d), %d obstruidos",
+            version, minX, minY, maxX, maxY, totalObstruidos);
+    }
+}
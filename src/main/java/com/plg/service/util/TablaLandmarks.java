@@ -0,0 +1,195 @@
+package com.plg.service.util;
+
+import com.plg.domain.Punto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distancias BFS desde k landmarks para un snapshot de obstáculos (heurística ALT)
+ * Por desigualdad triangular |d(L,t) - d(L,n)| es cota inferior de d(n,t), admisible
+ * y consistente, y mucho más ajustada que Manhattan cuando un bloqueo obliga a rodear.
+ * Una distancia -1 indica celda inalcanzable desde el landmark
+ */
+public final class TablaLandmarks {
+
+    private final long version;
+    private final int[] celdasLandmark;
+    private final int[][] distancias;
+
+    private TablaLandmarks(long version, int[] celdasLandmark, int[][] distancias) {
+        this.version = version;
+        this.celdasLandmark = celdasLandmark;
+        this.distancias = distancias;
+    }
+
+    /**
+     * Usa primero los puntos preferidos válidos (p. ej. almacenes) y completa hasta
+     * {@code cantidad} por selección del más lejano: cada nuevo landmark es la celda
+     * alcanzable más distante de los ya elegidos (en mapas abiertos, las esquinas)
+     */
+    public static TablaLandmarks construir(SnapshotObstaculos mapa, List<Punto> preferidos, int cantidad) {
+        int celdas = mapa.getCeldas();
+        List<int[]> tablas = new ArrayList<>(cantidad);
+        List<Integer> elegidos = new ArrayList<>(cantidad);
+        int[] distanciaMinima = new int[celdas];
+        Arrays.fill(distanciaMinima, Integer.MAX_VALUE);
+        int[] cola = new int[celdas];
+
+        for (Punto punto : preferidos) {
+            if (elegidos.size() >= cantidad) {
+                break;
+            }
+            if (mapa.esValido(punto.getX(), punto.getY())) {
+                int celda = mapa.indice(punto.getX(), punto.getY());
+                if (!elegidos.contains(celda)) {
+                    agregar(mapa, celda, elegidos, tablas, distanciaMinima, cola);
+                }
+            }
+        }
+
+        if (elegidos.isEmpty()) {
+            int primeraLibre = primeraCeldaLibre(mapa);
+            if (primeraLibre < 0) {
+                return new TablaLandmarks(mapa.getVersion(), new int[0], new int[0][]);
+            }
+            // La semilla solo sirve para encontrar el extremo opuesto; no se conserva
+            int[] semilla = bfs(mapa, primeraLibre, cola);
+            int extremo = masLejana(semilla);
+            agregar(mapa, extremo, elegidos, tablas, distanciaMinima, cola);
+        }
+
+        while (elegidos.size() < cantidad) {
+            int siguiente = masLejana(distanciaMinima);
+            if (siguiente < 0 || distanciaMinima[siguiente] == 0) {
+                break; // Todas las celdas alcanzables ya son landmarks
+            }
+            agregar(mapa, siguiente, elegidos, tablas, distanciaMinima, cola);
+        }
+
+        int[] celdasLandmark = elegidos.stream().mapToInt(Integer::intValue).toArray();
+        return new TablaLandmarks(mapa.getVersion(), celdasLandmark, tablas.toArray(new int[0][]));
+    }
+
+    private static void agregar(SnapshotObstaculos mapa, int celda, List<Integer> elegidos, List<int[]> tablas,
+                                int[] distanciaMinima, int[] cola) {
+        int[] distancia = bfs(mapa, celda, cola);
+        for (int i = 0; i < distancia.length; i++) {
+            if (distancia[i] >= 0 && distancia[i] < distanciaMinima[i]) {
+                distanciaMinima[i] = distancia[i];
+            }
+        }
+        elegidos.add(celda);
+        tablas.add(distancia);
+    }
+
+    private static int[] bfs(SnapshotObstaculos mapa, int origen, int[] cola) {
+        int ancho = mapa.getAncho();
+        int alto = mapa.getAlto();
+        int[] distancia = new int[mapa.getCeldas()];
+        Arrays.fill(distancia, -1);
+        distancia[origen] = 0;
+        int cabeza = 0;
+        int fin = 0;
+        cola[fin++] = origen;
+        while (cabeza < fin) {
+            int celda = cola[cabeza++];
+            int siguiente = distancia[celda] + 1;
+            int col = celda % ancho;
+            int fila = celda / ancho;
+            if (fila + 1 < alto) fin = visitar(mapa, celda + ancho, siguiente, distancia, cola, fin);
+            if (fila > 0) fin = visitar(mapa, celda - ancho, siguiente, distancia, cola, fin);
+            if (col > 0) fin = visitar(mapa, celda - 1, siguiente, distancia, cola, fin);
+            if (col + 1 < ancho) fin = visitar(mapa, celda + 1, siguiente, distancia, cola, fin);
+        }
+        return distancia;
+    }
+
+    private static int visitar(SnapshotObstaculos mapa, int vecino, int valor, int[] distancia, int[] cola, int fin) {
+        if (distancia[vecino] < 0 && mapa.esCeldaLibre(vecino)) {
+            distancia[vecino] = valor;
+            cola[fin++] = vecino;
+        }
+        return fin;
+    }
+
+    /**
+     * Celda con mayor distancia finita (ignora inalcanzables y MAX_VALUE), o -1
+     */
+    private static int masLejana(int[] distancias) {
+        int mejor = -1;
+        int mejorDistancia = -1;
+        for (int i = 0; i < distancias.length; i++) {
+            int d = distancias[i];
+            if (d != Integer.MAX_VALUE && d > mejorDistancia) {
+                mejorDistancia = d;
+                mejor = i;
+            }
+        }
+        return mejor;
+    }
+
+    private static int primeraCeldaLibre(SnapshotObstaculos mapa) {
+        for (int celda = 0; celda < mapa.getCeldas(); celda++) {
+            if (mapa.esCeldaLibre(celda)) {
+                return celda;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Distancias de cada landmark al destino, calculadas una vez por búsqueda
+     */
+    public int[] distanciasA(int celdaDestino) {
+        int[] resultado = new int[distancias.length];
+        for (int i = 0; i < distancias.length; i++) {
+            resultado[i] = distancias[i][celdaDestino];
+        }
+        return resultado;
+    }
+
+    /**
+     * Cota inferior ALT de la distancia entre la celda y el destino
+     */
+    public int cotaInferior(int celda, int[] distanciasDestino) {
+        int mejor = 0;
+        for (int i = 0; i < distanciasDestino.length; i++) {
+            int desdeLandmark = distancias[i][celda];
+            int hastaDestino = distanciasDestino[i];
+            if (desdeLandmark >= 0 && hastaDestino >= 0) {
+                int diferencia = Math.abs(hastaDestino - desdeLandmark);
+                if (diferencia > mejor) {
+                    mejor = diferencia;
+                }
+            }
+        }
+        return mejor;
+    }
+
+    /**
+     * Indica si un landmark alcanza exactamente a una de las dos celdas:
+     * están en componentes conexas distintas y no existe ruta
+     */
+    public boolean enComponentesDistintas(int celdaA, int celdaB) {
+        for (int[] distancia : distancias) {
+            if ((distancia[celdaA] < 0) != (distancia[celdaB] < 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getCantidad() {
+        return celdasLandmark.length;
+    }
+
+    public int getCeldaLandmark(int indice) {
+        return celdasLandmark[indice];
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,117 @@
+package com.plg.service.util;
+
+/**
+ * Distancias de salto precalculadas (JPS+) para un snapshot de obstáculos
+ * Por celda y dirección: valor positivo = pasos hasta el siguiente punto de salto;
+ * cero o negativo = -(pasos transitables antes de una pared o el borde del grid).
+ * Direcciones en el orden del motor: 0 arriba (+y), 1 abajo (-y), 2 izquierda (-x), 3 derecha (+x)
+ */
+public final class TablaSaltosJps {
+
+    public static final int ARRIBA = 0;
+    public static final int ABAJO = 1;
+    public static final int IZQUIERDA = 2;
+    public static final int DERECHA = 3;
+
+    private final long version;
+    private final short[][] saltos;
+
+    private TablaSaltosJps(long version, short[][] saltos) {
+        this.version = version;
+        this.saltos = saltos;
+    }
+
+    /**
+     * Indica si el grid cabe en la codificación de la tabla (distancias en short)
+     */
+    public static boolean esAplicable(SnapshotObstaculos mapa) {
+        return mapa.getAncho() <= Short.MAX_VALUE && mapa.getAlto() <= Short.MAX_VALUE;
+    }
+
+    /**
+     * Construye la tabla con barridos lineales: primero filas (saltos horizontales),
+     * luego columnas, ya que un salto vertical se detiene donde un salto horizontal encuentra algo
+     */
+    public static TablaSaltosJps construir(SnapshotObstaculos mapa) {
+        int ancho = mapa.getAncho();
+        int alto = mapa.getAlto();
+        int minX = mapa.getMinX();
+        int minY = mapa.getMinY();
+        short[][] saltos = new short[4][mapa.getCeldas()];
+
+        for (int fila = 0; fila < alto; fila++) {
+            int y = fila + minY;
+            int base = fila * ancho;
+            for (int col = ancho - 1; col >= 0; col--) {
+                saltos[DERECHA][base + col] = calcularHorizontal(mapa, col + minX, y, 1,
+                    col + 1 < ancho ? saltos[DERECHA][base + col + 1] : 0);
+            }
+            for (int col = 0; col < ancho; col++) {
+                saltos[IZQUIERDA][base + col] = calcularHorizontal(mapa, col + minX, y, -1,
+                    col > 0 ? saltos[IZQUIERDA][base + col - 1] : 0);
+            }
+        }
+
+        for (int col = 0; col < ancho; col++) {
+            int x = col + minX;
+            for (int fila = alto - 1; fila >= 0; fila--) {
+                int siguiente = (fila + 1) * ancho + col;
+                saltos[ARRIBA][fila * ancho + col] = calcularVertical(mapa, saltos, x, fila + minY, 1,
+                    siguiente, fila + 1 < alto ? saltos[ARRIBA][siguiente] : 0);
+            }
+            for (int fila = 0; fila < alto; fila++) {
+                int siguiente = (fila - 1) * ancho + col;
+                saltos[ABAJO][fila * ancho + col] = calcularVertical(mapa, saltos, x, fila + minY, -1,
+                    siguiente, fila > 0 ? saltos[ABAJO][siguiente] : 0);
+            }
+        }
+
+        return new TablaSaltosJps(mapa.getVersion(), saltos);
+    }
+
+    private static short calcularHorizontal(SnapshotObstaculos mapa, int x, int y, int dx, short valorSiguiente) {
+        int nx = x + dx;
+        if (!mapa.esValido(x, y) || !mapa.esValido(nx, y)) {
+            return 0;
+        }
+        if (esForzadoHorizontal(mapa, nx, y, dx)) {
+            return 1;
+        }
+        return (short) (valorSiguiente > 0 ? valorSiguiente + 1 : valorSiguiente - 1);
+    }
+
+    private static short calcularVertical(SnapshotObstaculos mapa, short[][] saltos, int x, int y, int dy,
+                                          int celdaSiguiente, short valorSiguiente) {
+        int ny = y + dy;
+        if (!mapa.esValido(x, y) || !mapa.esValido(x, ny)) {
+            return 0;
+        }
+        if (esForzadoVertical(mapa, x, ny, dy)
+                || saltos[DERECHA][celdaSiguiente] > 0 || saltos[IZQUIERDA][celdaSiguiente] > 0) {
+            return 1;
+        }
+        return (short) (valorSiguiente > 0 ? valorSiguiente + 1 : valorSiguiente - 1);
+    }
+
+    /**
+     * Vecino forzado al avanzar horizontalmente hasta (x,y): celda lateral libre
+     * cuya celda lateral previa está bloqueada
+     */
+    static boolean esForzadoHorizontal(SnapshotObstaculos mapa, int x, int y, int dx) {
+        return (mapa.esValido(x, y - 1) && !mapa.esValido(x - dx, y - 1))
+            || (mapa.esValido(x, y + 1) && !mapa.esValido(x - dx, y + 1));
+    }
+
+    static boolean esForzadoVertical(SnapshotObstaculos mapa, int x, int y, int dy) {
+        return (mapa.esValido(x - 1, y) && !mapa.esValido(x - 1, y - dy))
+            || (mapa.esValido(x + 1, y) && !mapa.esValido(x + 1, y - dy));
+    }
+
+    public int valor(int direccion, int celda) {
+        return saltos[direccion][celda];
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
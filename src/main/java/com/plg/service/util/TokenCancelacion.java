@@ -0,0 +1,76 @@
+package com.plg.service.util;
+
+/**
+ * Token de cancelación cooperativa para los cálculos de rutas.
+ * CompletableFuture.cancel(true) no interrumpe las tareas de supplyAsync, así que las
+ * búsquedas consultan el token en su bucle de expansión (cada pocos cientos de nodos)
+ * y terminan como TIMEOUT en cuanto el ciclo de planificación vence o se cancela.
+ * Un token hijo se cancela con su padre y vence en el menor de ambos plazos
+ */
+public final class TokenCancelacion {
+
+    private static final long SIN_LIMITE = Long.MAX_VALUE;
+
+    /**
+     * Token que nunca se cancela, para las llamadas fuera de un ciclo de planificación
+     */
+    public static final TokenCancelacion NINGUNO = new TokenCancelacion(null, SIN_LIMITE);
+
+    private final TokenCancelacion padre;
+    private final long limiteMs;
+    private volatile boolean cancelado;
+
+    private TokenCancelacion(TokenCancelacion padre, long limiteMs) {
+        this.padre = padre;
+        this.limiteMs = limiteMs;
+    }
+
+    /**
+     * Token que vence a los plazoMs desde ahora
+     */
+    public static TokenCancelacion conPlazo(long plazoMs) {
+        return new TokenCancelacion(null, System.currentTimeMillis() + plazoMs);
+    }
+
+    /**
+     * Token hijo con un plazo propio, acotado por el del padre
+     */
+    public TokenCancelacion hijo(long plazoMs) {
+        long limite = Math.min(limiteMs, System.currentTimeMillis() + plazoMs);
+        return new TokenCancelacion(this == NINGUNO ? null : this, limite);
+    }
+
+    public void cancelar() {
+        if (this != NINGUNO) {
+            cancelado = true;
+        }
+    }
+
+    public boolean estaCancelado() {
+        return debeDetenerse(SIN_LIMITE);
+    }
+
+    /**
+     * Comprobación del bucle de búsqueda: true si se superó el límite local de la búsqueda,
+     * el plazo del token o algún token de la cadena fue cancelado
+     */
+    public boolean debeDetenerse(long limiteLocalMs) {
+        long limite = Math.min(limiteLocalMs, limiteMs);
+        if (limite != SIN_LIMITE && System.currentTimeMillis() > limite) {
+            return true;
+        }
+        for (TokenCancelacion token = this; token != null; token = token.padre) {
+            if (token.cancelado) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Milisegundos hasta el plazo del token (Long.MAX_VALUE si no tiene)
+     */
+    public long tiempoRestanteMs() {
+        return limiteMs == SIN_LIMITE ? SIN_LIMITE : Math.max(0, limiteMs - System.currentTimeMillis());
+    }
+}
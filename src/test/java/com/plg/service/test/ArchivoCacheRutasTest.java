@@ -0,0 +1,127 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.service.util.ArchivoCacheRutas;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.GestorObstaculos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del archivo binario de la cache de rutas: ida y vuelta por disco, consultas
+ * bajo demanda sobre el archivo mapeado y descarte cuando el mapa ya no coincide
+ */
+public class ArchivoCacheRutasTest {
+
+    @TempDir
+    Path directorio;
+
+    private GestorObstaculos gestor;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        gestor.agregarLineaVertical(30, 0, 20);
+    }
+
+    @Test
+    void testIdaYVueltaPorDisco() throws IOException {
+        Path archivo = directorio.resolve("cache.bin");
+        ArchivoCacheRutas.Escritor escritor = new ArchivoCacheRutas.Escritor(gestor.obtenerSnapshot());
+        for (int y = 25; y < 45; y++) {
+            assertTrue(escritor.agregarRuta(new Punto(0, y), new Punto(60, y), rutaHorizontal(y, 0, 60)));
+        }
+        // Cruza la línea x = 30: no se escribe
+        assertFalse(escritor.agregarRuta(new Punto(0, 5), new Punto(60, 5), rutaHorizontal(5, 0, 60)));
+        escritor.agregarFrecuencia(new Punto(0, 25), new Punto(60, 25), 7);
+        escritor.escribir(archivo);
+
+        ArchivoCacheRutas leido = ArchivoCacheRutas.abrir(archivo);
+        assertEquals(20, leido.getCantidadRutas());
+        assertTrue(leido.correspondeA(gestor.obtenerSnapshot()));
+        assertEquals(rutaHorizontal(31, 0, 60), leido.buscar(new Punto(0, 31), new Punto(60, 31)));
+        assertNull(leido.buscar(new Punto(0, 5), new Punto(60, 5)));
+        assertNull(leido.buscar(new Punto(60, 31), new Punto(0, 31)));
+
+        Map<String, Integer> frecuencias = new HashMap<>();
+        leido.paraCadaFrecuencia((origen, destino, frecuencia) -> frecuencias.put(origen + "->" + destino, frecuencia));
+        assertEquals(Map.of(new Punto(0, 25) + "->" + new Punto(60, 25), 7), frecuencias);
+
+        gestor.agregarObstaculoPuntual(new Punto(65, 48));
+        assertFalse(leido.correspondeA(gestor.obtenerSnapshot()));
+    }
+
+    @Test
+    void testCacheNuevaRespondeDesdeElArchivo() throws IOException {
+        CacheRutas anterior = nuevaCache();
+        for (int y = 25; y < 45; y++) {
+            anterior.almacenarRuta(new Punto(0, y), new Punto(60, y), rutaHorizontal(y, 0, 60));
+        }
+        Path archivo = directorio.resolve("cache.bin");
+        ArchivoCacheRutas.Escritor escritor = new ArchivoCacheRutas.Escritor(gestor.obtenerSnapshot());
+        anterior.paraCadaRuta(escritor::agregarRuta);
+        escritor.escribir(archivo);
+
+        // Reinicio: una cache vacía conectada al archivo mapeado
+        CacheRutas reiniciada = nuevaCache();
+        reiniciada.conectarArchivoPersistido(ArchivoCacheRutas.abrir(archivo));
+
+        List<Punto> inversa = new ArrayList<>(rutaHorizontal(40, 0, 60));
+        Collections.reverse(inversa);
+        assertEquals(inversa, reiniciada.obtenerRuta(new Punto(60, 40), new Punto(0, 40)).orElseThrow());
+        assertEquals(1, reiniciada.obtenerEstadisticas().getTotalHitsPersistidos());
+        // La ruta se promovió a memoria
+        assertEquals(1, reiniciada.obtenerEstadisticas().getTamanoActual());
+        assertTrue(reiniciada.obtenerRuta(new Punto(60, 40), new Punto(0, 40)).isPresent());
+        assertEquals(1, reiniciada.obtenerEstadisticas().getTotalHitsPersistidos());
+
+        // Con otro mapa el archivo deja de responder
+        gestor.agregarObstaculoPuntual(new Punto(65, 48));
+        assertTrue(reiniciada.obtenerRuta(new Punto(0, 30), new Punto(60, 30)).isEmpty());
+    }
+
+    @Test
+    void testArchivoAjenoOTruncadoSeRechaza() throws IOException {
+        Path ajeno = directorio.resolve("ajeno.bin");
+        Files.write(ajeno, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> ArchivoCacheRutas.abrir(ajeno));
+
+        Path archivo = directorio.resolve("cache.bin");
+        ArchivoCacheRutas.Escritor escritor = new ArchivoCacheRutas.Escritor(gestor.obtenerSnapshot());
+        escritor.agregarRuta(new Punto(0, 30), new Punto(60, 30), rutaHorizontal(30, 0, 60));
+        escritor.escribir(archivo);
+        byte[] contenido = Files.readAllBytes(archivo);
+        Path truncado = directorio.resolve("truncado.bin");
+        Files.write(truncado, Arrays.copyOf(contenido, contenido.length - 4));
+        assertThrows(IOException.class, () -> ArchivoCacheRutas.abrir(truncado));
+    }
+
+    private CacheRutas nuevaCache() {
+        CacheRutas cache = new CacheRutas();
+        ReflectionTestUtils.setField(cache, "gestorObstaculos", gestor);
+        return cache;
+    }
+
+    private static List<Punto> rutaHorizontal(int y, int desdeX, int hastaX) {
+        List<Punto> ruta = new ArrayList<>();
+        for (int x = desdeX; x <= hastaX; x++) {
+            ruta.add(new Punto(x, y));
+        }
+        return ruta;
+    }
+}
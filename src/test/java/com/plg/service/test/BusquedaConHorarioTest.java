@@ -0,0 +1,101 @@
+package com.plg.service.test;
+
+import com.plg.domain.Obstaculo;
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.util.BloqueosTemporizados;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del A* con horario sobre bloqueos temporizados
+ */
+public class BusquedaConHorarioTest {
+
+    private static final long SALIDA = 1_700_000_000L;
+    private static final int SEGUNDOS_POR_CELDA = 36; // 0.5 km a 50 km/h
+
+    private GestorObstaculos gestor;
+    private MotorAEstrellaGrid motor;
+    private ConfiguracionAEstrella config;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        motor = new MotorAEstrellaGrid(gestor);
+        config = new ConfiguracionAEstrella();
+    }
+
+    @Test
+    void testBloqueoFuturoNoAfectaSiSePasaAntes() {
+        configurarBloqueos(new Obstaculo("BLOQUEO_TEMPORAL", "10,0,10,49", SALIDA + 10_000, SALIDA + 20_000));
+
+        ResultadoAEstrella resultado = buscar(new Punto(5, 5), new Punto(15, 5));
+
+        assertTrue(resultado.isRutaExiste());
+        assertEquals(10, resultado.getDistanciaGrid());
+        assertEquals(SALIDA + 10 * SEGUNDOS_POR_CELDA, resultado.getInstanteLlegada());
+        assertEquals(0, resultado.getSegundosEspera());
+    }
+
+    @Test
+    void testEsperaHastaQueTermineElBloqueo() {
+        configurarBloqueos(new Obstaculo("BLOQUEO_TEMPORAL", "10,0,10,49", SALIDA, SALIDA + 1_000));
+
+        ResultadoAEstrella resultado = buscar(new Punto(5, 5), new Punto(15, 5));
+
+        assertTrue(resultado.isRutaExiste());
+        assertEquals(10, resultado.getDistanciaGrid());
+        assertEquals(SALIDA + 1_000 + 5 * SEGUNDOS_POR_CELDA, resultado.getInstanteLlegada());
+        assertEquals(1_000 - 5 * SEGUNDOS_POR_CELDA, resultado.getSegundosEspera());
+    }
+
+    @Test
+    void testRodeaBloqueoLargoComoObstaculoEstatico() {
+        configurarBloqueos(new Obstaculo("BLOQUEO_TEMPORAL", "10,0,10,40", SALIDA, SALIDA + 86_400));
+
+        ResultadoAEstrella resultado = buscar(new Punto(5, 5), new Punto(15, 5));
+
+        assertTrue(resultado.isRutaExiste());
+        assertEquals(10 + 2 * 36, resultado.getDistanciaGrid(), "Debe rodear por y=41 en lugar de esperar un día");
+        assertEquals(0, resultado.getSegundosEspera());
+        for (Punto paso : resultado.getRutaEncontrada()) {
+            assertFalse(paso.getX() == 10 && paso.getY() <= 40, "Ruta atraviesa el bloqueo en " + paso);
+        }
+    }
+
+    @Test
+    void testIndiceFusionaIntervalosYRasterizaTramos() {
+        BloqueosTemporizados bloqueos = BloqueosTemporizados.compilar(gestor.obtenerSnapshot(), List.of(
+            new Obstaculo("BLOQUEO_TEMPORAL", "2,2,2,5,6,5", 100L, 200L),
+            new Obstaculo("BLOQUEO_TEMPORAL", "2,4,4,4", 150L, 300L),
+            new Obstaculo("PUNTO", 30, 30)), 0L);
+        int celdaCompartida = gestor.obtenerSnapshot().indice(2, 4);
+        int celdaEsquina = gestor.obtenerSnapshot().indice(6, 5);
+
+        assertEquals(2, bloqueos.getTotalBloqueos(), "Obstáculos sin ventana temporal se ignoran");
+        assertTrue(bloqueos.estaBloqueada(celdaCompartida, 250L));
+        assertEquals(300L, bloqueos.liberacionDesde(celdaCompartida, 120L));
+        assertTrue(bloqueos.estaBloqueada(celdaEsquina, 100L));
+        assertFalse(bloqueos.estaBloqueada(celdaEsquina, 200L));
+        assertFalse(bloqueos.hayBloqueoEntre(celdaEsquina, 0L, 99L));
+        assertFalse(bloqueos.tieneBloqueos(gestor.obtenerSnapshot().indice(3, 3)));
+    }
+
+    private void configurarBloqueos(Obstaculo... bloqueos) {
+        gestor.configurarBloqueosTemporizados(
+            BloqueosTemporizados.compilar(gestor.obtenerSnapshot(), List.of(bloqueos), SALIDA));
+    }
+
+    private ResultadoAEstrella buscar(Punto origen, Punto destino) {
+        return motor.buscarConHorario(origen, destino, SALIDA, 50.0, config, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,134 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.domain.enumeration.TipoError;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.AEstrellaService.MotorBusqueda;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.GrafoAbstractoHpa;
+import com.plg.service.util.MotorAEstrellaGrid;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del modo HPA* contra búsquedas completas sobre el grid
+ */
+public class BusquedaJerarquicaHpaTest {
+
+    @Test
+    void testRutasValidasYCasiOptimas() {
+        GestorObstaculos gestor = crearGestor(0, 0, 119, 89);
+        Random random = new Random(21);
+        for (int i = 0; i < 25; i++) {
+            int x = random.nextInt(120);
+            int y = random.nextInt(90);
+            if (random.nextBoolean()) {
+                gestor.agregarLineaHorizontal(y, x, Math.min(119, x + random.nextInt(25)));
+            } else {
+                gestor.agregarLineaVertical(x, y, Math.min(89, y + random.nextInt(25)));
+            }
+        }
+        MotorAEstrellaGrid motor = new MotorAEstrellaGrid(gestor);
+        ConfiguracionAEstrella exacta = new ConfiguracionAEstrella();
+        exacta.setMaxNodosExplorados(120 * 90);
+        ConfiguracionAEstrella hpa = configuracionHpa(20);
+
+        for (int prueba = 0; prueba < 60; prueba++) {
+            Punto origen = puntoLibre(gestor, random, 120, 90);
+            Punto destino = puntoLibre(gestor, random, 120, 90);
+            ResultadoAEstrella optima = motor.buscar(origen, destino, exacta, System.currentTimeMillis());
+            ResultadoAEstrella jerarquica = motor.buscar(origen, destino, hpa, System.currentTimeMillis());
+
+            assertEquals(optima.isRutaExiste(), jerarquica.isRutaExiste(), origen + " -> " + destino);
+            if (!optima.isRutaExiste()) {
+                continue;
+            }
+            assertEquals("HPA*", jerarquica.getAlgoritmoUtilizado());
+            assertRutaValida(gestor, jerarquica.getRutaEncontrada(), origen, destino);
+            assertTrue(jerarquica.getDistanciaGrid() >= optima.getDistanciaGrid());
+            assertTrue(jerarquica.getDistanciaGrid() <= optima.getDistanciaGrid() * 1.5 + 20,
+                "HPA* " + jerarquica.getDistanciaGrid() + " vs óptima " + optima.getDistanciaGrid());
+        }
+    }
+
+    @Test
+    void testGridGrandeDentroDelLimiteDeNodos() {
+        GestorObstaculos gestor = crearGestor(0, 0, 999, 999);
+        gestor.ejecutarEnLote(() -> {
+            for (int x = 100; x < 1000; x += 100) {
+                gestor.agregarLineaVertical(x, 0, 900);
+            }
+        });
+        MotorAEstrellaGrid motor = new MotorAEstrellaGrid(gestor);
+        Punto origen = new Punto(5, 5);
+        Punto destino = new Punto(995, 5);
+
+        ConfiguracionAEstrella grid = new ConfiguracionAEstrella();
+        grid.setUsarLandmarks(false);
+        ResultadoAEstrella plano = motor.buscar(origen, destino, grid, System.currentTimeMillis());
+        assertEquals(TipoError.MEMORIA_INSUFICIENTE, plano.getTipoError());
+
+        ConfiguracionAEstrella hpa = configuracionHpa(50);
+        hpa.setTimeoutMs(60_000);
+        ResultadoAEstrella jerarquica = motor.buscar(origen, destino, hpa, System.currentTimeMillis());
+
+        assertTrue(jerarquica.isRutaExiste());
+        assertTrue(jerarquica.getNodosExplorados() < 10_000);
+        assertRutaValida(gestor, jerarquica.getRutaEncontrada(), origen, destino);
+    }
+
+    @Test
+    void testCambioLocalReconstruyeSoloClustersAfectados() {
+        GestorObstaculos gestor = crearGestor(0, 0, 199, 199);
+        MotorAEstrellaGrid motor = new MotorAEstrellaGrid(gestor);
+        GrafoAbstractoHpa inicial = motor.obtenerGrafoHpa(50);
+        assertEquals(16, inicial.getClustersReconstruidos());
+
+        // Obstáculo en el interior de un cluster: sus bordes no cambian
+        gestor.agregarObstaculoPuntual(new Punto(75, 75));
+        assertEquals(1, motor.obtenerGrafoHpa(50).getClustersReconstruidos());
+
+        // Obstáculo sobre un borde: cambian las entradas compartidas con el vecino
+        gestor.agregarObstaculoPuntual(new Punto(149, 120));
+        assertEquals(2, motor.obtenerGrafoHpa(50).getClustersReconstruidos());
+
+        ResultadoAEstrella resultado = motor.buscar(new Punto(0, 0), new Punto(199, 199),
+            configuracionHpa(50), System.currentTimeMillis());
+        assertEquals(398, resultado.getDistanciaGrid());
+    }
+
+    private GestorObstaculos crearGestor(int minX, int minY, int maxX, int maxY) {
+        GestorObstaculos gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(minX, minY, maxX, maxY);
+        return gestor;
+    }
+
+    private ConfiguracionAEstrella configuracionHpa(int tamanoCluster) {
+        ConfiguracionAEstrella config = new ConfiguracionAEstrella();
+        config.setMotorBusqueda(MotorBusqueda.HPA);
+        config.setTamanoClusterHpa(tamanoCluster);
+        return config;
+    }
+
+    private void assertRutaValida(GestorObstaculos gestor, List<Punto> ruta, Punto origen, Punto destino) {
+        assertEquals(origen, ruta.get(0));
+        assertEquals(destino, ruta.get(ruta.size() - 1));
+        for (int i = 1; i < ruta.size(); i++) {
+            assertTrue(ruta.get(i - 1).esAdyacenteA(ruta.get(i)), "Paso no adyacente en " + ruta.get(i));
+            assertTrue(gestor.esPuntoValido(ruta.get(i)), "Ruta atraviesa obstáculo en " + ruta.get(i));
+        }
+    }
+
+    private Punto puntoLibre(GestorObstaculos gestor, Random random, int ancho, int alto) {
+        Punto punto;
+        do {
+            punto = new Punto(random.nextInt(ancho), random.nextInt(alto));
+        } while (!gestor.esPuntoValido(punto));
+        return punto;
+    }
+}
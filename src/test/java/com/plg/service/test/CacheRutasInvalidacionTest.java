@@ -0,0 +1,127 @@
+package com.plg.service.test;
+
+import com.plg.domain.Obstaculo;
+import com.plg.domain.Punto;
+import com.plg.service.util.BloqueosTemporizados;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.SnapshotObstaculos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la invalidación por celdas: solo se descartan las rutas de la cache que
+ * cruzan el bloqueo, usando el índice celda → rutas mantenido al insertar y expulsar
+ */
+public class CacheRutasInvalidacionTest {
+
+    private CacheRutas cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CacheRutas();
+        // Diez rutas horizontales, una por fila y = 0, 2, ..., 18, de x = 0 a x = 20
+        for (int i = 0; i < 10; i++) {
+            int y = 2 * i;
+            cache.almacenarRuta(new Punto(0, y), new Punto(20, y), rutaHorizontal(y, 0, 20));
+        }
+    }
+
+    @Test
+    void testPolilineaInvalidaSoloRutasQueCruza() {
+        // Bloqueo vertical en x = 5 para y en [3, 7] y luego hacia (8, 7): cruza las filas 4 y 6
+        List<Punto> bloqueo = List.of(new Punto(5, 3), new Punto(5, 7), new Punto(8, 7));
+
+        assertEquals(2, cache.invalidarRutasPorPolilinea(bloqueo));
+
+        assertTrue(cache.obtenerRuta(new Punto(0, 4), new Punto(20, 4)).isEmpty());
+        assertTrue(cache.obtenerRuta(new Punto(0, 6), new Punto(20, 6)).isEmpty());
+        assertTrue(cache.obtenerRuta(new Punto(0, 2), new Punto(20, 2)).isPresent());
+        assertTrue(cache.obtenerRuta(new Punto(0, 8), new Punto(20, 8)).isPresent());
+        assertEquals(8, cache.obtenerEstadisticas().getTamanoActual());
+        // Las celdas de las rutas descartadas dejan de estar indexadas
+        assertEquals(8 * 21, cache.getCeldasIndexadas());
+    }
+
+    @Test
+    void testCeldasDePolilineaIncluyenExtremos() {
+        List<Punto> celdas = GestorObstaculos.celdasDePolilinea(
+            List.of(new Punto(0, 0), new Punto(3, 0), new Punto(3, 2)));
+
+        assertEquals(List.of(new Punto(0, 0), new Punto(1, 0), new Punto(2, 0), new Punto(3, 0),
+            new Punto(3, 1), new Punto(3, 2)), celdas);
+    }
+
+    @Test
+    void testTramoDiagonalSinSaltarEsquinasYCompartido() {
+        List<Punto> vertices = List.of(new Punto(1, 1), new Punto(6, 4));
+        List<Punto> celdas = GestorObstaculos.celdasDePolilinea(vertices);
+
+        // 4-conectado: cada celda es vecina ortogonal de la anterior
+        assertEquals(new Punto(1, 1), celdas.get(0));
+        assertEquals(new Punto(6, 4), celdas.get(celdas.size() - 1));
+        assertEquals(5 + 3 + 1, celdas.size());
+        for (int i = 1; i < celdas.size(); i++) {
+            assertEquals(1, celdas.get(i - 1).distanciaManhattanHasta(celdas.get(i)));
+        }
+
+        // El grid y el índice temporizado bloquean exactamente esas celdas
+        GestorObstaculos gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 9, 9);
+        BloqueosTemporizados temporizados = BloqueosTemporizados.compilar(gestor.obtenerSnapshot(),
+            List.of(new Obstaculo("BLOQUEO_TEMPORAL", "1,1,6,4", 100L, 200L)), 0L);
+        gestor.agregarPoligonoAbierto(vertices);
+        SnapshotObstaculos snapshot = gestor.obtenerSnapshot();
+        for (int x = 0; x <= 9; x++) {
+            for (int y = 0; y <= 9; y++) {
+                boolean enTramo = celdas.contains(new Punto(x, y));
+                assertEquals(enTramo, !snapshot.esValido(x, y), "grid en " + x + "," + y);
+                assertEquals(enTramo, temporizados.estaBloqueada(snapshot.indice(x, y), 150L),
+                    "temporizado en " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void testReemplazoYExpulsionMantienenElIndice() {
+        // La ruta de la fila 0 se reemplaza por una que sube a la fila 1
+        List<Punto> desvio = new ArrayList<>(rutaHorizontal(0, 0, 10));
+        desvio.add(new Punto(10, 1));
+        desvio.addAll(rutaHorizontal(1, 10, 20));
+        desvio.add(new Punto(20, 0));
+        cache.almacenarRuta(new Punto(0, 0), new Punto(20, 0), desvio);
+
+        // La celda (15, 0) ya no pertenece a ninguna ruta almacenada
+        assertEquals(0, cache.invalidarRutasQueCruzan(List.of(new Punto(15, 0))));
+        assertEquals(1, cache.invalidarRutasQueCruzan(List.of(new Punto(15, 1))));
+
+        // Al reducir la capacidad, las rutas expulsadas también salen del índice
+        cache.configurarCapacidad(100);
+        for (int i = 0; i < 150; i++) {
+            int y = 100 + i;
+            cache.almacenarRuta(new Punto(0, y), new Punto(3, y), rutaHorizontal(y, 0, 3));
+        }
+        int almacenadas = cache.obtenerEstadisticas().getTamanoActual();
+        assertTrue(almacenadas <= 100);
+        int celdasEsperadas = 0;
+        for (int y = 0; y < 250; y++) {
+            if (cache.obtenerRuta(new Punto(0, y), new Punto(y < 100 ? 20 : 3, y)).isPresent()) {
+                celdasEsperadas += y < 100 ? 21 : 4;
+            }
+        }
+        assertEquals(celdasEsperadas, cache.getCeldasIndexadas());
+    }
+
+    private static List<Punto> rutaHorizontal(int y, int desdeX, int hastaX) {
+        List<Punto> ruta = new ArrayList<>();
+        for (int x = desdeX; x <= hastaX; x++) {
+            ruta.add(new Punto(x, y));
+        }
+        return ruta;
+    }
+}
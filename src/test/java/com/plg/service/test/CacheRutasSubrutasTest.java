@@ -0,0 +1,76 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.service.util.CacheRutas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de las consultas de la cache resueltas con rutas inversas y tramos de otras rutas
+ */
+public class CacheRutasSubrutasTest {
+
+    private CacheRutas cache;
+    private List<Punto> rutaAlmacen;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CacheRutas();
+        // Almacén (0,0) → cliente (10,6): 10 pasos al este y 6 al norte
+        rutaAlmacen = new ArrayList<>();
+        for (int x = 0; x <= 10; x++) {
+            rutaAlmacen.add(new Punto(x, 0));
+        }
+        for (int y = 1; y <= 6; y++) {
+            rutaAlmacen.add(new Punto(10, y));
+        }
+        cache.almacenarRuta(new Punto(0, 0), new Punto(10, 6), rutaAlmacen);
+    }
+
+    @Test
+    void testRutaInversaDelClienteAlAlmacen() {
+        List<Punto> ruta = cache.obtenerRuta(new Punto(10, 6), new Punto(0, 0)).orElseThrow();
+
+        List<Punto> esperada = new ArrayList<>(rutaAlmacen);
+        Collections.reverse(esperada);
+        assertEquals(esperada, ruta);
+        assertEquals(1, cache.obtenerEstadisticas().getTotalHitsInversos());
+    }
+
+    @Test
+    void testTramoEnAmbosSentidos() {
+        List<Punto> ida = cache.obtenerRuta(new Punto(3, 0), new Punto(10, 4)).orElseThrow();
+        List<Punto> vuelta = cache.obtenerRuta(new Punto(10, 4), new Punto(3, 0)).orElseThrow();
+
+        assertEquals(rutaAlmacen.subList(3, 15), ida);
+        List<Punto> esperada = new ArrayList<>(ida);
+        Collections.reverse(esperada);
+        assertEquals(esperada, vuelta);
+
+        CacheRutas.EstadisticasCache stats = cache.obtenerEstadisticas();
+        assertEquals(2, stats.getTotalHitsSubruta());
+        assertEquals(2, stats.getTotalHits());
+        assertEquals(0, stats.getTotalMisses());
+    }
+
+    @Test
+    void testSinSubrutasODespuesDeInvalidar() {
+        Punto fuera = new Punto(20, 20);
+        assertTrue(cache.obtenerRuta(new Punto(3, 0), fuera).isEmpty());
+
+        cache.habilitarSubrutas(false);
+        assertTrue(cache.obtenerRuta(new Punto(3, 0), new Punto(10, 4)).isEmpty());
+        cache.habilitarSubrutas(true);
+        assertTrue(cache.obtenerRuta(new Punto(3, 0), new Punto(10, 4)).isPresent());
+
+        cache.invalidarRutasPorPunto(new Punto(10, 2));
+        assertTrue(cache.obtenerRuta(new Punto(3, 0), new Punto(10, 4)).isEmpty());
+        assertTrue(cache.obtenerRuta(new Punto(10, 6), new Punto(0, 0)).isEmpty());
+    }
+}
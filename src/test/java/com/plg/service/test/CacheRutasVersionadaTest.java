@@ -0,0 +1,102 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.CambiosObstaculos;
+import com.plg.service.util.GestorObstaculos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la revalidación perezosa: las entradas guardan la versión del mapa de
+ * obstáculos y al consultarlas solo caen las que cruzan celdas cambiadas desde entonces
+ */
+public class CacheRutasVersionadaTest {
+
+    private GestorObstaculos gestor;
+    private CacheRutas cache;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        cache = new CacheRutas();
+        ReflectionTestUtils.setField(cache, "gestorObstaculos", gestor);
+        for (int y = 0; y < 20; y++) {
+            cache.almacenarRuta(new Punto(0, y), new Punto(30, y), rutaHorizontal(y, 0, 30));
+        }
+    }
+
+    @Test
+    void testBloqueoSoloDescartaRutasQueCruza() {
+        gestor.agregarLineaVertical(10, 4, 6);
+        gestor.agregarObstaculoPuntual(new Punto(50, 10));
+
+        for (int y = 0; y < 20; y++) {
+            boolean cruza = y >= 4 && y <= 6;
+            assertEquals(cruza, cache.obtenerRuta(new Punto(0, y), new Punto(30, y)).isEmpty(), "fila " + y);
+        }
+        CacheRutas.EstadisticasCache stats = cache.obtenerEstadisticas();
+        assertEquals(3, stats.getTotalInvalidacionesPerezosas());
+        assertEquals(17, stats.getTamanoActual());
+
+        // Las entradas vigentes quedan validadas hasta la versión actual
+        long revalidaciones = stats.getTotalRevalidaciones();
+        cache.obtenerRuta(new Punto(0, 0), new Punto(30, 0));
+        assertEquals(revalidaciones, cache.obtenerEstadisticas().getTotalRevalidaciones());
+    }
+
+    @Test
+    void testLoteYHistorialAgotado() {
+        // Un lote que despeja y vuelve a bloquear fuera de las rutas no cambia nada relevante
+        gestor.ejecutarEnLote(() -> {
+            gestor.limpiarObstaculos();
+            gestor.agregarObstaculoPuntual(new Punto(60, 30));
+        });
+        assertTrue(cache.obtenerRuta(new Punto(0, 1), new Punto(30, 1)).isPresent());
+
+        // Más versiones de las que guarda el historial: se revisa la ruta completa
+        for (int i = 0; i < 40; i++) {
+            gestor.agregarObstaculoPuntual(new Punto(40 + i % 20, 40 + i / 20));
+        }
+        gestor.agregarObstaculoPuntual(new Punto(25, 2));
+        assertNull(gestor.cambiosDesde(0));
+        assertTrue(cache.obtenerRuta(new Punto(0, 1), new Punto(30, 1)).isPresent());
+        assertTrue(cache.obtenerRuta(new Punto(0, 2), new Punto(30, 2)).isEmpty());
+    }
+
+    @Test
+    void testNoSeAlmacenaRutaQueCruzaObstaculosVigentes() {
+        gestor.agregarObstaculoPuntual(new Punto(5, 30));
+        cache.almacenarRuta(new Punto(0, 30), new Punto(30, 30), rutaHorizontal(30, 0, 30));
+
+        assertTrue(cache.obtenerRuta(new Punto(0, 30), new Punto(30, 30)).isEmpty());
+    }
+
+    @Test
+    void testCambiosPorVersion() {
+        long inicial = gestor.obtenerSnapshot().getVersion();
+        gestor.agregarLineaHorizontal(45, 0, 9);
+        gestor.agregarObstaculoPuntual(new Punto(3, 3));
+
+        List<CambiosObstaculos> cambios = gestor.cambiosDesde(inicial);
+        assertEquals(2, cambios.size());
+        assertFalse(cambios.get(0).afectaA(rutaHorizontal(3, 0, 30)));
+        assertTrue(cambios.get(1).afectaA(rutaHorizontal(3, 0, 30)));
+        assertTrue(gestor.cambiosDesde(gestor.obtenerSnapshot().getVersion()).isEmpty());
+    }
+
+    private static List<Punto> rutaHorizontal(int y, int desdeX, int hastaX) {
+        List<Punto> ruta = new ArrayList<>();
+        for (int x = desdeX; x <= hastaX; x++) {
+            ruta.add(new Punto(x, y));
+        }
+        return ruta;
+    }
+}
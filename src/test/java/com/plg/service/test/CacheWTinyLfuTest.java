@@ -0,0 +1,130 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.CacheWTinyLfu;
+import com.plg.service.util.SketchFrecuencia;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la política W-TinyLFU de la cache de rutas
+ */
+public class CacheWTinyLfuTest {
+
+    @Test
+    void testSketchEstimaFrecuenciasYEnvejece() {
+        SketchFrecuencia sketch = new SketchFrecuencia(64);
+        for (int i = 0; i < 12; i++) {
+            sketch.incrementar(42);
+        }
+        sketch.incrementar(7);
+
+        assertEquals(12, sketch.frecuencia(42));
+        assertTrue(sketch.frecuencia(7) >= 1);
+        assertTrue(sketch.frecuencia(7) < sketch.frecuencia(42));
+
+        // 640 incrementos (10 por entrada) disparan el envejecimiento: los contadores se dividen
+        for (int i = 0; i < 640; i++) {
+            sketch.incrementar(1000 + i);
+        }
+        assertTrue(sketch.frecuencia(42) < 12);
+    }
+
+    @Test
+    void testEntradasFrecuentesSobrevivenAUnBarrido() {
+        AtomicInteger expulsiones = new AtomicInteger();
+        CacheWTinyLfu<Integer, String> cache = new CacheWTinyLfu<>(100, (k, v) -> expulsiones.incrementAndGet());
+
+        // Conjunto caliente: 50 claves leídas muchas veces
+        for (int k = 0; k < 50; k++) {
+            cache.poner(k, "v" + k);
+        }
+        for (int vuelta = 0; vuelta < 10; vuelta++) {
+            for (int k = 0; k < 50; k++) {
+                assertEquals("v" + k, cache.obtener(k));
+            }
+        }
+        // Barrido de 1000 claves de un solo uso
+        for (int k = 1000; k < 2000; k++) {
+            cache.poner(k, "x");
+        }
+
+        assertEquals(100, cache.tamano());
+        int calientesVivas = 0;
+        for (int k = 0; k < 50; k++) {
+            if (cache.obtener(k) != null) {
+                calientesVivas++;
+            }
+        }
+        assertTrue(calientesVivas >= 45, "sobrevivieron " + calientesVivas);
+        assertEquals(50 + 1000 - 100, expulsiones.get());
+    }
+
+    @Test
+    void testEliminarExpulsarYCapacidad() {
+        CacheWTinyLfu<Integer, Integer> cache = new CacheWTinyLfu<>(10, null);
+        for (int k = 0; k < 10; k++) {
+            cache.poner(k, k);
+        }
+        assertEquals(Integer.valueOf(3), cache.eliminar(3));
+        assertNull(cache.obtener(3));
+        assertEquals(9, cache.tamano());
+
+        assertEquals(4, cache.expulsar(4));
+        assertEquals(5, cache.tamano());
+
+        cache.configurarCapacidad(2);
+        assertEquals(2, cache.tamano());
+
+        cache.limpiar();
+        assertEquals(0, cache.tamano());
+        cache.poner(1, 1);
+        assertEquals(Integer.valueOf(1), cache.obtener(1));
+    }
+
+    @Test
+    void testCacheRutasConcurrenteRespetaCapacidad() throws Exception {
+        CacheRutas cacheRutas = new CacheRutas();
+        cacheRutas.configurarCapacidad(200);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int hilo = 0; hilo < 8; hilo++) {
+                int semilla = hilo;
+                tareas.add(executor.submit(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        int k = (i * 31 + semilla * 7) % 400;
+                        Punto origen = new Punto(k % 70, k / 70);
+                        Punto destino = new Punto(k % 70, k / 70 + 1);
+                        if (cacheRutas.obtenerRuta(origen, destino).isEmpty()) {
+                            cacheRutas.almacenarRuta(origen, destino, Arrays.asList(origen, destino));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        CacheRutas.EstadisticasCache stats = cacheRutas.obtenerEstadisticas();
+        assertTrue(stats.getTamanoActual() <= 200);
+        assertEquals(stats.getTotalConsultas(), stats.getTotalHits() + stats.getTotalMisses());
+        // Dos hilos pueden almacenar la misma clave: el segundo reemplaza, no expulsa
+        assertTrue(stats.getTotalEvictions() > 0);
+        assertTrue(stats.getTotalEvictions() <= stats.getTotalInserciones() - stats.getTamanoActual());
+        assertNotEquals("N/A", stats.getRutaMasPopular());
+    }
+}
@@ -0,0 +1,188 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.AEstrellaService.ParOrigenDestino;
+import com.plg.service.impl.AEstrellaServiceImpl;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.CacheRutasWarmup;
+import com.plg.service.util.ContadorRutasFrecuentes;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import com.plg.service.util.TokenCancelacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del single-flight y de los lotes por origen de AEstrellaServiceImpl: llamadas
+ * concurrentes para el mismo par, o pares con origen común, comparten una sola búsqueda
+ */
+public class CalculosCompartidosTest {
+
+    private static final int LLAMADORES = 8;
+
+    private final AtomicInteger busquedas = new AtomicInteger();
+    private final CountDownLatch liberarBusqueda = new CountDownLatch(1);
+    private AEstrellaServiceImpl servicio;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        GestorObstaculos gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+
+        // Motor que retiene la primera búsqueda hasta que todos los llamadores están esperando
+        MotorAEstrellaGrid motor = new MotorAEstrellaGrid(gestor) {
+            @Override
+            public ResultadoAEstrella buscar(Punto origen, Punto destino, ConfiguracionAEstrella config,
+                                             long tiempoInicio, TokenCancelacion cancelacion) {
+                busquedas.incrementAndGet();
+                try {
+                    liberarBusqueda.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.buscar(origen, destino, config, tiempoInicio, cancelacion);
+            }
+        };
+
+        servicio = new AEstrellaServiceImpl();
+        ReflectionTestUtils.setField(servicio, "gestorObstaculos", gestor);
+        ReflectionTestUtils.setField(servicio, "cacheRutas", new CacheRutas());
+        ReflectionTestUtils.setField(servicio, "cacheWarmup", new CacheRutasWarmup());
+        ReflectionTestUtils.setField(servicio, "motorGrid", motor);
+        executor = Executors.newFixedThreadPool(LLAMADORES);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        servicio.shutdown();
+    }
+
+    @Test
+    void testLlamadasConcurrentesCompartenUnaBusqueda() throws Exception {
+        Punto origen = new Punto(2, 3);
+        Punto destino = new Punto(60, 40);
+
+        List<Future<ResultadoAEstrella>> futuros = new ArrayList<>();
+        for (int i = 0; i < LLAMADORES; i++) {
+            futuros.add(executor.submit(() -> servicio.calcularRuta(origen, destino)));
+        }
+        Thread.sleep(200);
+        liberarBusqueda.countDown();
+
+        List<ResultadoAEstrella> resultados = new ArrayList<>();
+        for (Future<ResultadoAEstrella> futuro : futuros) {
+            resultados.add(futuro.get(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, busquedas.get());
+        assertEquals(LLAMADORES - 1, servicio.obtenerEstadisticas().getCalculosCompartidos());
+        for (ResultadoAEstrella resultado : resultados) {
+            assertTrue(resultado.isRutaExiste());
+            assertEquals(58 + 37, resultado.getDistanciaGrid());
+        }
+        // Cada llamador recibe su propio resultado; la ruta inmutable se comparte sin copiar
+        assertNotSame(resultados.get(0), resultados.get(1));
+        assertEquals(resultados.get(0).getRutaEncontrada(), resultados.get(1).getRutaEncontrada());
+        assertThrows(UnsupportedOperationException.class,
+            () -> resultados.get(0).getRutaEncontrada().add(new Punto(0, 0)));
+    }
+
+    @Test
+    void testParesConOrigenComunUsanUnaBusquedaPorGrupo() {
+        liberarBusqueda.countDown();
+        Punto almacen = new Punto(10, 10);
+        List<ParOrigenDestino> pares = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            pares.add(new ParOrigenDestino(almacen, new Punto(20 + 7 * i, 5 + 6 * i)));
+        }
+        pares.add(new ParOrigenDestino(new Punto(60, 40), almacen));
+
+        List<ResultadoAEstrella> resultados = servicio.calcularRutasParalelo(pares);
+
+        // Solo el par con origen propio pasa por el A* punto a punto
+        assertEquals(1, busquedas.get());
+        assertEquals(pares.size(), resultados.size());
+        for (int i = 0; i < pares.size(); i++) {
+            ParOrigenDestino par = pares.get(i);
+            ResultadoAEstrella resultado = resultados.get(i);
+            assertEquals(par.getDestino(), resultado.getDestino());
+            assertEquals(par.getOrigen().distanciaManhattanHasta(par.getDestino()), resultado.getDistanciaGrid());
+        }
+    }
+
+    @Test
+    void testCicloCanceladoNoArrastraAOtrosLlamadores() throws Exception {
+        Punto origen = new Punto(2, 3);
+        Punto destino = new Punto(60, 40);
+        TokenCancelacion ciclo = TokenCancelacion.conPlazo(60_000);
+
+        Future<ResultadoAEstrella> cancelado = executor.submit(() -> servicio.calcularRuta(origen, destino, ciclo));
+        Thread.sleep(100);
+        Future<ResultadoAEstrella> vigente = executor.submit(() -> servicio.calcularRuta(origen, destino));
+        Thread.sleep(100);
+        ciclo.cancelar();
+        liberarBusqueda.countDown();
+
+        assertFalse(cancelado.get(10, TimeUnit.SECONDS).isRutaExiste());
+        assertTrue(vigente.get(10, TimeUnit.SECONDS).isRutaExiste());
+        assertEquals(2, busquedas.get());
+    }
+
+    @Test
+    void testLoteEsperaElCalculoIndividualEnCurso() throws Exception {
+        Punto origen = new Punto(2, 3);
+        Punto destino = new Punto(60, 40);
+
+        Future<ResultadoAEstrella> individual = executor.submit(() -> servicio.calcularRuta(origen, destino));
+        Thread.sleep(100);
+        Future<List<ResultadoAEstrella>> lote = executor.submit(() ->
+            servicio.calcularRutasDesde(origen, List.of(destino, new Punto(30, 30), new Punto(40, 10))));
+        Thread.sleep(100);
+        liberarBusqueda.countDown();
+
+        List<ResultadoAEstrella> resultados = lote.get(10, TimeUnit.SECONDS);
+        assertTrue(individual.get(10, TimeUnit.SECONDS).isRutaExiste());
+        // El par compartido no se busca dos veces; los otros dos van en la búsqueda multi-destino
+        assertEquals(1, busquedas.get());
+        assertEquals(1, servicio.obtenerEstadisticas().getCalculosCompartidos());
+        assertEquals(58 + 37, resultados.get(0).getDistanciaGrid());
+        assertEquals(28 + 27, resultados.get(1).getDistanciaGrid());
+        assertEquals(38 + 7, resultados.get(2).getDistanciaGrid());
+    }
+
+    @Test
+    void testPrecalculoNoCuentaComoDemanda() {
+        liberarBusqueda.countDown();
+        Punto origen = new Punto(2, 3);
+        List<Punto> destinos = List.of(new Punto(30, 30), new Punto(40, 10));
+        CacheRutasWarmup warmup = (CacheRutasWarmup) ReflectionTestUtils.getField(servicio, "cacheWarmup");
+        ContadorRutasFrecuentes historial = (ContadorRutasFrecuentes) ReflectionTestUtils.getField(warmup, "historialRutas");
+
+        List<ResultadoAEstrella> resultados = servicio.precalcularRutasDesde(origen, destinos);
+        assertTrue(resultados.stream().allMatch(ResultadoAEstrella::isRutaExiste));
+        assertEquals(0, historial.getTamano());
+        assertEquals(0, historial.estimar(origen, destinos.get(0)));
+
+        // La misma consulta pedida por la planificación sí se registra (y sale de la cache)
+        servicio.calcularRutasDesde(origen, destinos);
+        assertEquals(2, historial.getTamano());
+        assertEquals(1, historial.estimar(origen, destinos.get(0)));
+    }
+}
@@ -0,0 +1,106 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.util.CamposDistanciaAlmacenes;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de los campos de distancia por almacén contra búsquedas A* completas
+ */
+public class CamposDistanciaAlmacenesTest {
+
+    private static final Punto ALMACEN_CENTRAL = new Punto(12, 8);
+    private static final Punto ALMACEN_NORTE = new Punto(42, 42);
+    private static final Punto ALMACEN_ESTE = new Punto(63, 3);
+
+    private GestorObstaculos gestor;
+    private CamposDistanciaAlmacenes campos;
+    private MotorAEstrellaGrid motor;
+    private ConfiguracionAEstrella config;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        campos = new CamposDistanciaAlmacenes(gestor);
+        campos.registrarAlmacenes(List.of(ALMACEN_CENTRAL, ALMACEN_NORTE, ALMACEN_ESTE));
+        motor = new MotorAEstrellaGrid(gestor);
+        config = new ConfiguracionAEstrella();
+        config.setMaxNodosExplorados(70 * 50);
+    }
+
+    @Test
+    void testDistanciasYRutasIgualesAAEstrella() {
+        Random random = new Random(3);
+        for (int i = 0; i < 400; i++) {
+            Punto punto = new Punto(random.nextInt(70), random.nextInt(50));
+            if (!punto.equals(ALMACEN_CENTRAL) && !punto.equals(ALMACEN_NORTE) && !punto.equals(ALMACEN_ESTE)) {
+                gestor.agregarObstaculoPuntual(punto);
+            }
+        }
+
+        for (int prueba = 0; prueba < 40; prueba++) {
+            Punto origen = new Punto(random.nextInt(70), random.nextInt(50));
+            if (!gestor.esPuntoValido(origen)) {
+                continue;
+            }
+            for (Punto almacen : List.of(ALMACEN_CENTRAL, ALMACEN_NORTE, ALMACEN_ESTE)) {
+                ResultadoAEstrella completa = motor.buscar(origen, almacen, config, System.currentTimeMillis());
+                int distancia = campos.distancia(origen, almacen);
+                List<Punto> ruta = campos.rutaHastaAlmacen(origen, almacen);
+
+                if (!completa.isRutaExiste()) {
+                    assertEquals(CamposDistanciaAlmacenes.INALCANZABLE, distancia);
+                    assertNull(ruta);
+                    continue;
+                }
+                assertEquals(completa.getDistanciaGrid(), distancia, origen + " -> " + almacen);
+                assertEquals(distancia + 1, ruta.size());
+                assertEquals(origen, ruta.get(0));
+                assertEquals(almacen, ruta.get(ruta.size() - 1));
+                for (int i = 1; i < ruta.size(); i++) {
+                    assertTrue(ruta.get(i - 1).esAdyacenteA(ruta.get(i)), "Paso no adyacente en " + ruta.get(i));
+                    assertTrue(gestor.esPuntoValido(ruta.get(i)), "Ruta atraviesa obstáculo en " + ruta.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCamposSeReconstruyenAlCambiarObstaculos() {
+        Punto origen = new Punto(20, 8);
+        assertEquals(8, campos.distancia(origen, ALMACEN_CENTRAL));
+        long versionInicial = campos.getVersionConstruida();
+
+        // Muro entre el origen y el almacén: la distancia real deja de ser la Manhattan
+        gestor.agregarLineaVertical(16, 0, 30);
+
+        assertEquals(8 + 2 * 23, campos.distancia(origen, ALMACEN_CENTRAL));
+        assertTrue(campos.getVersionConstruida() > versionInicial);
+        assertEquals(3, campos.getCamposConstruidos());
+    }
+
+    @Test
+    void testAlmacenEncerradoEsInalcanzable() {
+        gestor.ejecutarEnLote(() -> {
+            gestor.agregarObstaculoPuntual(new Punto(41, 42));
+            gestor.agregarObstaculoPuntual(new Punto(43, 42));
+            gestor.agregarObstaculoPuntual(new Punto(42, 41));
+            gestor.agregarObstaculoPuntual(new Punto(42, 43));
+        });
+
+        assertEquals(CamposDistanciaAlmacenes.INALCANZABLE, campos.distancia(new Punto(0, 0), ALMACEN_NORTE));
+        assertNull(campos.rutaHastaAlmacen(new Punto(0, 0), ALMACEN_NORTE));
+        assertEquals(CamposDistanciaAlmacenes.NO_DISPONIBLE, campos.distancia(new Punto(100, 0), ALMACEN_NORTE));
+    }
+}
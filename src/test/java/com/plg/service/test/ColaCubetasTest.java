@@ -0,0 +1,73 @@
+package com.plg.service.test;
+
+import com.plg.service.util.ColaCubetas;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la cola por cubetas contra una PriorityQueue de referencia
+ */
+public class ColaCubetasTest {
+
+    @Test
+    void testExtraeEnOrdenDeClaveConInsercionesIntercaladas() {
+        Random random = new Random(9);
+        ColaCubetas<int[]> cubetas = new ColaCubetas<>(e -> e[0]);
+        PriorityQueue<Integer> referencia = new PriorityQueue<>();
+
+        for (int paso = 0; paso < 5000; paso++) {
+            if (!referencia.isEmpty() && random.nextInt(3) == 0) {
+                assertEquals(referencia.poll(), cubetas.poll()[0]);
+            } else {
+                // Mayormente monótonas, con retrocesos ocasionales (heurística ponderada)
+                int base = referencia.isEmpty() ? 0 : referencia.peek();
+                int clave = Math.max(0, base + random.nextInt(6) - (random.nextInt(10) == 0 ? 4 : 0));
+                cubetas.offer(new int[] {clave});
+                referencia.offer(clave);
+            }
+            assertEquals(referencia.size(), cubetas.size());
+        }
+        while (!referencia.isEmpty()) {
+            assertEquals(referencia.poll(), cubetas.poll()[0]);
+        }
+        assertNull(cubetas.poll());
+        assertEquals(-1, cubetas.claveMinima());
+    }
+
+    @Test
+    void testMismaClaveExtraeUltimoInsertado() {
+        ColaCubetas<String> cubetas = new ColaCubetas<>(String::length);
+        cubetas.offer("aa");
+        cubetas.offer("bb");
+        cubetas.offer("c");
+
+        assertEquals(1, cubetas.claveMinima());
+        assertEquals("c", cubetas.poll());
+        assertEquals("bb", cubetas.peek());
+        assertEquals("bb", cubetas.poll());
+        assertEquals("aa", cubetas.poll());
+    }
+
+    @Test
+    void testIteradorYLimpieza() {
+        ColaCubetas<String> cubetas = new ColaCubetas<>(String::length);
+        cubetas.addAll(List.of("ccc", "a", "bb", "dd"));
+
+        List<Integer> claves = new ArrayList<>();
+        for (String elemento : cubetas) {
+            claves.add(elemento.length());
+        }
+        assertEquals(List.of(1, 2, 2, 3), claves);
+
+        cubetas.clear();
+        assertTrue(cubetas.isEmpty());
+        cubetas.offer("zz");
+        assertEquals("zz", cubetas.poll());
+    }
+}
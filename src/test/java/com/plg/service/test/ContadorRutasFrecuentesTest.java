@@ -0,0 +1,108 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.service.util.ContadorRutasFrecuentes;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del historial acotado de rutas frecuentes (Count-Min Sketch + top-K)
+ */
+public class ContadorRutasFrecuentesTest {
+
+    @Test
+    void testTopKConservaLasMasSolicitadasEntreMuchasRaras() {
+        ContadorRutasFrecuentes contador = new ContadorRutasFrecuentes(10, 1024);
+        // 10 rutas frecuentes (100 + i solicitudes) mezcladas con 20000 rutas de una sola vez
+        for (int vuelta = 0; vuelta < 110; vuelta++) {
+            for (int i = 0; i < 10; i++) {
+                if (vuelta < 100 + i) {
+                    contador.registrar(new Punto(i, 0), new Punto(i, 40));
+                }
+            }
+            for (int j = 0; j < 200; j++) {
+                int rara = vuelta * 200 + j;
+                contador.registrar(new Punto(rara % 70, 1 + rara / 70 % 49), new Punto(60, 45));
+            }
+        }
+
+        assertEquals(10, contador.getTamano());
+        List<Punto> origenes = new ArrayList<>();
+        List<Integer> frecuencias = new ArrayList<>();
+        contador.paraCadaFrecuente(10, (origen, destino, frecuencia) -> {
+            assertEquals(new Punto(origen.getX(), 40), destino);
+            origenes.add(origen);
+            frecuencias.add(frecuencia);
+        });
+        assertEquals(new Punto(9, 0), origenes.get(0));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(origenes.contains(new Punto(i, 0)));
+            // Count-Min nunca subestima
+            assertTrue(frecuencias.get(i) >= 100);
+        }
+        for (int i = 1; i < frecuencias.size(); i++) {
+            assertTrue(frecuencias.get(i - 1) >= frecuencias.get(i));
+        }
+    }
+
+    @Test
+    void testCoordenadasNegativasYFueraDeRango() {
+        ContadorRutasFrecuentes contador = new ContadorRutasFrecuentes(4, 256);
+        contador.registrar(new Punto(-5, -7), new Punto(32767, -32768), 3);
+        contador.registrar(new Punto(0, 0), new Punto(40000, 0), 50);
+
+        List<String> vistos = new ArrayList<>();
+        contador.paraCadaFrecuente(4, (origen, destino, frecuencia) -> vistos.add(origen + "->" + destino + ":" + frecuencia));
+        assertEquals(List.of(new Punto(-5, -7) + "->" + new Punto(32767, -32768) + ":3"), vistos);
+        assertEquals(0, contador.estimar(new Punto(0, 0), new Punto(40000, 0)));
+    }
+
+    @Test
+    void testEnvejecerYLimpiar() {
+        ContadorRutasFrecuentes contador = new ContadorRutasFrecuentes(2, 256);
+        contador.registrar(new Punto(1, 1), new Punto(2, 2), 8);
+        contador.registrar(new Punto(3, 3), new Punto(4, 4), 6);
+        contador.envejecer();
+        assertEquals(4, contador.estimar(new Punto(1, 1), new Punto(2, 2)));
+
+        // Una ruta nueva entra al top-K al superar a la menos frecuente
+        contador.registrar(new Punto(5, 5), new Punto(6, 6), 5);
+        List<Punto> origenes = new ArrayList<>();
+        contador.paraCadaFrecuente(2, (origen, destino, frecuencia) -> origenes.add(origen));
+        assertEquals(List.of(new Punto(5, 5), new Punto(1, 1)), origenes);
+
+        contador.limpiar();
+        assertEquals(0, contador.getTamano());
+        assertEquals(0, contador.estimar(new Punto(5, 5), new Punto(6, 6)));
+    }
+
+    @Test
+    void testIndiceDelTopKSigueAlHeapConDesplazamientos() {
+        ContadorRutasFrecuentes contador = new ContadorRutasFrecuentes(8, 1 << 16);
+        // La ruta i se pide i veces, en orden aleatorio: el top-K entra y sale muchas veces
+        List<Integer> solicitudes = new ArrayList<>();
+        for (int i = 1; i <= 60; i++) {
+            for (int vez = 0; vez < i; vez++) {
+                solicitudes.add(i);
+            }
+        }
+        Collections.shuffle(solicitudes, new Random(11));
+        for (int i : solicitudes) {
+            contador.registrar(new Punto(i, i % 7), new Punto(-i, 3));
+        }
+
+        List<Integer> frecuencias = new ArrayList<>();
+        contador.paraCadaFrecuente(8, (origen, destino, frecuencia) -> {
+            assertEquals(new Punto(-origen.getX(), 3), destino);
+            assertEquals(origen.getX(), frecuencia);
+            frecuencias.add(frecuencia);
+        });
+        assertEquals(List.of(60, 59, 58, 57, 56, 55, 54, 53), frecuencias);
+    }
+}
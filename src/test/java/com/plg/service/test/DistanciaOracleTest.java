@@ -0,0 +1,96 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.util.DistanciaOracle;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del oráculo de distancias todos-contra-todos
+ */
+public class DistanciaOracleTest {
+
+    private GestorObstaculos gestor;
+    private DistanciaOracle oracle;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        oracle = new DistanciaOracle(gestor);
+    }
+
+    @Test
+    void testCoincideConAEstrella() {
+        Random random = new Random(3);
+        gestor.agregarLineaVertical(20, 0, 45);
+        gestor.agregarLineaHorizontal(30, 25, 69);
+        MotorAEstrellaGrid motor = new MotorAEstrellaGrid(gestor);
+        ConfiguracionAEstrella config = new ConfiguracionAEstrella();
+
+        for (int i = 0; i < 40; i++) {
+            Punto a = new Punto(random.nextInt(70), random.nextInt(50));
+            Punto b = new Punto(random.nextInt(70), random.nextInt(50));
+            if (!gestor.esPuntoValido(a) || !gestor.esPuntoValido(b)) {
+                continue;
+            }
+            ResultadoAEstrella resultado = motor.buscar(a, b, config, System.currentTimeMillis());
+            assertEquals(resultado.getDistanciaGrid(), oracle.distancia(a, b), a + " -> " + b);
+        }
+    }
+
+    @Test
+    void testSeReconstruyeAlCambiarObstaculos() throws InterruptedException {
+        assertEquals(10, oracle.distancia(new Punto(5, 5), new Punto(15, 5)));
+        assertTrue(oracle.esperarTablaVigente(10_000));
+        long versionInicial = oracle.getVersionConstruida();
+
+        gestor.agregarLineaVertical(10, 0, 40);
+
+        // Respuesta inmediata por BFS de fila mientras la tabla nueva se construye en segundo plano
+        assertEquals(10 + 2 * 36, oracle.distancia(new Punto(5, 5), new Punto(15, 5)));
+        assertTrue(oracle.esperarTablaVigente(10_000));
+        assertTrue(oracle.getVersionConstruida() > versionInicial);
+        assertEquals(10 + 2 * 36, oracle.distancia(new Punto(5, 5), new Punto(15, 5)));
+    }
+
+    @Test
+    void testLimiteDeCeldasAcotadoPorPresupuesto() {
+        oracle.configurarLimiteCeldas(Short.MAX_VALUE);
+        // 64 MB por defecto: como mucho sqrt(32M) = 5792 celdas, nunca una tabla de ~2 GB
+        gestor.inicializarMapaProgramatico(0, 0, 74, 74);
+        assertTrue(oracle.estaDisponible());
+        gestor.inicializarMapaProgramatico(0, 0, 79, 79);
+        assertFalse(oracle.estaDisponible());
+
+        oracle.configurarPresupuestoBytes(2L * 3500 * 3500);
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        assertTrue(oracle.estaDisponible());
+        gestor.inicializarMapaProgramatico(0, 0, 99, 99);
+        assertFalse(oracle.estaDisponible());
+    }
+
+    @Test
+    void testCeldasObstruidasYFueraDeLimites() {
+        gestor.agregarObstaculoPuntual(new Punto(3, 3));
+
+        assertEquals(DistanciaOracle.INALCANZABLE, oracle.distancia(new Punto(0, 0), new Punto(3, 3)));
+        assertEquals(DistanciaOracle.NO_DISPONIBLE, oracle.distancia(new Punto(0, 0), new Punto(80, 3)));
+    }
+
+    @Test
+    void testNoDisponibleEnGridGrande() {
+        gestor.inicializarMapaProgramatico(0, 0, 999, 999);
+
+        assertFalse(oracle.estaDisponible());
+        assertEquals(DistanciaOracle.NO_DISPONIBLE, oracle.distancia(new Punto(0, 0), new Punto(1, 1)));
+    }
+}
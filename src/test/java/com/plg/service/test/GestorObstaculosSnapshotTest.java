@@ -0,0 +1,80 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.SnapshotObstaculos;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del mapa de ocupación por bits y sus snapshots inmutables
+ */
+public class GestorObstaculosSnapshotTest {
+
+    private GestorObstaculos gestor;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+    }
+
+    @Test
+    void testSnapshotAnteriorNoCambiaAlAgregarObstaculo() {
+        SnapshotObstaculos antes = gestor.obtenerSnapshot();
+
+        gestor.agregarObstaculoPuntual(new Punto(10, 10));
+        SnapshotObstaculos despues = gestor.obtenerSnapshot();
+
+        assertTrue(antes.esValido(10, 10), "El snapshot publicado es inmutable");
+        assertFalse(despues.esValido(10, 10));
+        assertTrue(despues.getVersion() > antes.getVersion());
+        assertEquals(1, despues.getTotalObstruidos());
+    }
+
+    @Test
+    void testLotePublicaUnSoloSnapshot() {
+        long versionInicial = gestor.obtenerSnapshot().getVersion();
+
+        gestor.ejecutarEnLote(() -> {
+            gestor.agregarLineaHorizontal(5, 0, 9);
+            gestor.agregarLineaVertical(20, 0, 9);
+            gestor.agregarPoligonoAbierto(List.of(new Punto(30, 30), new Punto(30, 35), new Punto(40, 35)));
+        });
+
+        SnapshotObstaculos snapshot = gestor.obtenerSnapshot();
+        assertEquals(versionInicial + 1, snapshot.getVersion());
+        assertEquals(10 + 10 + 6 + 10, snapshot.getTotalObstruidos());
+        assertFalse(gestor.esPuntoValido(35, 35));
+        assertEquals(snapshot.getVersion(), gestor.obtenerEstadisticas().getVersionSnapshot());
+    }
+
+    @Test
+    void testLimitesYLimpieza() {
+        gestor.agregarObstaculos(List.of(new Punto(1, 1), new Punto(100, 100)));
+
+        assertFalse(gestor.esPuntoValido(-1, 0));
+        assertFalse(gestor.esPuntoValido(70, 0));
+        assertFalse(gestor.esPuntoValido(1, 1));
+        assertEquals(1, gestor.obtenerSnapshot().getTotalObstruidos(), "Celdas fuera del grid se ignoran");
+
+        gestor.limpiarObstaculos();
+        assertTrue(gestor.esPuntoValido(1, 1));
+    }
+
+    @Test
+    void testRedimensionarConservaObstaculosInternos() {
+        gestor.agregarObstaculoPuntual(new Punto(5, 5));
+        gestor.agregarObstaculoPuntual(new Punto(60, 40));
+
+        gestor.inicializarMapaProgramatico(0, 0, 29, 29);
+
+        assertFalse(gestor.esPuntoValido(5, 5));
+        assertEquals(1, gestor.obtenerSnapshot().getTotalObstruidos());
+        assertEquals(29, gestor.getGridMaxX());
+    }
+}
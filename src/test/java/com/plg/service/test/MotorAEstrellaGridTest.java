@@ -0,0 +1,388 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.domain.enumeration.TipoError;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.AEstrellaService.MotorBusqueda;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import com.plg.service.util.TokenCancelacion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del motor A* sobre grid indexado contra una BFS de referencia
+ */
+public class MotorAEstrellaGridTest {
+
+    private static final int ANCHO = 70;
+    private static final int ALTO = 50;
+
+    private GestorObstaculos gestor;
+    private MotorAEstrellaGrid motor;
+    private ConfiguracionAEstrella config;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, ANCHO - 1, ALTO - 1);
+        motor = new MotorAEstrellaGrid(gestor);
+        config = new ConfiguracionAEstrella();
+    }
+
+    @Test
+    void testRodeaMuroVertical() {
+        gestor.agregarLineaVertical(10, 0, 40);
+
+        ResultadoAEstrella resultado = motor.buscar(new Punto(5, 5), new Punto(15, 5), config, System.currentTimeMillis());
+
+        assertTrue(resultado.isRutaExiste());
+        assertEquals(10 + 2 * 36, resultado.getDistanciaGrid(), "Debe rodear el muro por y=41");
+        assertRutaValida(resultado.getRutaEncontrada(), new Punto(5, 5), new Punto(15, 5));
+    }
+
+    @Test
+    void testDistanciasIgualesABfsConObstaculosAleatorios() {
+        Random random = new Random(42);
+        for (int i = 0; i < 600; i++) {
+            gestor.agregarObstaculoPuntual(new Punto(random.nextInt(ANCHO), random.nextInt(ALTO)));
+        }
+        config.setMaxNodosExplorados(ANCHO * ALTO);
+
+        for (int prueba = 0; prueba < 50; prueba++) {
+            Punto origen = puntoLibreAleatorio(random);
+            Punto destino = puntoLibreAleatorio(random);
+            int esperado = distanciaBfs(origen, destino);
+
+            ResultadoAEstrella resultado = motor.buscar(origen, destino, config, System.currentTimeMillis());
+
+            if (esperado < 0) {
+                assertFalse(resultado.isRutaExiste());
+                assertEquals(TipoError.RUTA_NO_EXISTE, resultado.getTipoError());
+            } else {
+                assertTrue(resultado.isRutaExiste(), "Ruta esperada " + origen + " -> " + destino);
+                assertEquals(esperado, resultado.getDistanciaGrid());
+                assertRutaValida(resultado.getRutaEncontrada(), origen, destino);
+            }
+        }
+    }
+
+    @Test
+    void testJpsYJpsPlusIgualesABfs() {
+        Random random = new Random(7);
+        for (int i = 0; i < 15; i++) {
+            int x = random.nextInt(ANCHO);
+            int y = random.nextInt(ALTO);
+            if (random.nextBoolean()) {
+                gestor.agregarLineaHorizontal(y, x, Math.min(ANCHO - 1, x + random.nextInt(20)));
+            } else {
+                gestor.agregarLineaVertical(x, y, Math.min(ALTO - 1, y + random.nextInt(20)));
+            }
+        }
+        for (int i = 0; i < 150; i++) {
+            gestor.agregarObstaculoPuntual(new Punto(random.nextInt(ANCHO), random.nextInt(ALTO)));
+        }
+        config.setMaxNodosExplorados(ANCHO * ALTO);
+
+        for (int prueba = 0; prueba < 80; prueba++) {
+            Punto origen = puntoLibreAleatorio(random);
+            Punto destino = puntoLibreAleatorio(random);
+            int esperado = distanciaBfs(origen, destino);
+
+            for (MotorBusqueda modo : new MotorBusqueda[] {MotorBusqueda.JPS, MotorBusqueda.JPS_PLUS}) {
+                config.setMotorBusqueda(modo);
+                ResultadoAEstrella resultado = motor.buscar(origen, destino, config, System.currentTimeMillis());
+
+                if (esperado < 0) {
+                    assertFalse(resultado.isRutaExiste(), modo + " " + origen + " -> " + destino);
+                } else {
+                    assertTrue(resultado.isRutaExiste(), modo + " " + origen + " -> " + destino);
+                    assertEquals(esperado, resultado.getDistanciaGrid(), modo + " " + origen + " -> " + destino);
+                    assertRutaValida(resultado.getRutaEncontrada(), origen, destino);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testJpsExpandeMenosNodosEnMapaAbierto() {
+        gestor.agregarLineaVertical(35, 5, 45);
+        gestor.agregarLineaHorizontal(25, 10, 30);
+
+        config.setMotorBusqueda(MotorBusqueda.GRID);
+        ResultadoAEstrella grid = motor.buscar(new Punto(2, 20), new Punto(66, 30), config, System.currentTimeMillis());
+        config.setMotorBusqueda(MotorBusqueda.JPS_PLUS);
+        ResultadoAEstrella jpsPlus = motor.buscar(new Punto(2, 20), new Punto(66, 30), config, System.currentTimeMillis());
+
+        assertEquals(grid.getDistanciaGrid(), jpsPlus.getDistanciaGrid());
+        assertTrue(jpsPlus.getNodosExplorados() < grid.getNodosExplorados(),
+            "JPS+ " + jpsPlus.getNodosExplorados() + " vs grid " + grid.getNodosExplorados());
+    }
+
+    @Test
+    void testDestinoEncerradoNoTieneRuta() {
+        gestor.agregarLineaHorizontal(20, 29, 31);
+        gestor.agregarLineaHorizontal(22, 29, 31);
+        gestor.agregarObstaculoPuntual(new Punto(29, 21));
+        gestor.agregarObstaculoPuntual(new Punto(31, 21));
+
+        ResultadoAEstrella resultado = motor.buscar(new Punto(0, 0), new Punto(30, 21), config, System.currentTimeMillis());
+
+        assertFalse(resultado.isRutaExiste());
+        assertEquals(TipoError.RUTA_NO_EXISTE, resultado.getTipoError());
+    }
+
+    @Test
+    void testLimiteNodosReportaMemoriaInsuficiente() {
+        gestor.agregarLineaVertical(35, 0, 48);
+        config.setMaxNodosExplorados(50);
+
+        ResultadoAEstrella resultado = motor.buscar(new Punto(0, 0), new Punto(69, 0), config, System.currentTimeMillis());
+
+        assertFalse(resultado.isRutaExiste());
+        assertEquals(TipoError.MEMORIA_INSUFICIENTE, resultado.getTipoError());
+        assertTrue(resultado.isLimiteProfundidadAlcanzado());
+    }
+
+    @Test
+    void testRutasDesdeOrigenComunIgualesABfs() {
+        Random random = new Random(15);
+        for (int i = 0; i < 500; i++) {
+            gestor.agregarObstaculoPuntual(new Punto(random.nextInt(ANCHO), random.nextInt(ALTO)));
+        }
+        Punto origen = puntoLibreAleatorio(random);
+        List<Punto> destinos = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            destinos.add(puntoLibreAleatorio(random));
+        }
+        destinos.add(new Punto(ANCHO + 5, 0));
+
+        List<ResultadoAEstrella> resultados = motor.buscarDesdeOrigen(origen, destinos, config,
+            System.currentTimeMillis(), TokenCancelacion.NINGUNO);
+
+        assertEquals(destinos.size(), resultados.size());
+        assertEquals(TipoError.DESTINO_INVALIDO, resultados.get(destinos.size() - 1).getTipoError());
+        for (int i = 0; i < destinos.size() - 1; i++) {
+            int esperado = distanciaBfs(origen, destinos.get(i));
+            ResultadoAEstrella resultado = resultados.get(i);
+            if (esperado < 0) {
+                assertEquals(TipoError.RUTA_NO_EXISTE, resultado.getTipoError());
+            } else {
+                assertTrue(resultado.isCalculoExitoso());
+                assertEquals(esperado, resultado.getDistanciaGrid(), origen + " -> " + destinos.get(i));
+                assertRutaValida(resultado.getRutaEncontrada(), origen, destinos.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testTokenCanceladoDetieneBusquedaComoTimeout() {
+        TokenCancelacion ciclo = TokenCancelacion.conPlazo(60_000);
+        TokenCancelacion hijo = ciclo.hijo(60_000);
+        ciclo.cancelar();
+        assertTrue(hijo.estaCancelado());
+
+        ResultadoAEstrella resultado = motor.buscar(new Punto(0, 0), new Punto(69, 49), config,
+            System.currentTimeMillis(), hijo);
+
+        assertEquals(TipoError.TIMEOUT, resultado.getTipoError());
+        assertEquals(0, resultado.getNodosExplorados());
+        assertFalse(TokenCancelacion.NINGUNO.estaCancelado());
+    }
+
+    @Test
+    void testPlazoDelCicloCortaBusquedaLarga() {
+        GestorObstaculos grande = new GestorObstaculos();
+        grande.inicializarMapaProgramatico(0, 0, 999, 999);
+        // Destino encerrado: sin cancelación la búsqueda recorrería todo el mapa
+        grande.ejecutarEnLote(() -> {
+            grande.agregarLineaHorizontal(990, 990, 999);
+            grande.agregarLineaVertical(990, 990, 999);
+        });
+        MotorAEstrellaGrid motorGrande = new MotorAEstrellaGrid(grande);
+        ConfiguracionAEstrella sinLimites = new ConfiguracionAEstrella();
+        sinLimites.setUsarLandmarks(false);
+        sinLimites.setMaxNodosExplorados(Integer.MAX_VALUE);
+        sinLimites.setTimeoutMs(60_000);
+
+        long inicio = System.currentTimeMillis();
+        ResultadoAEstrella resultado = motorGrande.buscar(new Punto(0, 0), new Punto(995, 995), sinLimites,
+            inicio, TokenCancelacion.conPlazo(2));
+
+        assertEquals(TipoError.TIMEOUT, resultado.getTipoError());
+        assertTrue(System.currentTimeMillis() - inicio < 1000);
+    }
+
+    @Test
+    void testEspacioReutilizadoEntreBusquedas() {
+        gestor.agregarLineaVertical(10, 0, 40);
+        ResultadoAEstrella primera = motor.buscar(new Punto(5, 5), new Punto(15, 5), config, System.currentTimeMillis());
+        ResultadoAEstrella segunda = motor.buscar(new Punto(15, 5), new Punto(5, 5), config, System.currentTimeMillis());
+
+        assertEquals(primera.getDistanciaGrid(), segunda.getDistanciaGrid());
+    }
+
+    @Test
+    void testLandmarksReducenExpansionesSinPerderOptimalidad() {
+        gestor.agregarLineaVertical(35, 0, 46);
+        gestor.agregarLineaHorizontal(46, 20, 35);
+        motor.configurarLandmarks(List.of(new Punto(0, 0), new Punto(69, 0)));
+
+        config.setUsarLandmarks(false);
+        ResultadoAEstrella manhattan = motor.buscar(new Punto(30, 5), new Punto(40, 5), config, System.currentTimeMillis());
+        config.setUsarLandmarks(true);
+        ResultadoAEstrella alt = motor.buscar(new Punto(30, 5), new Punto(40, 5), config, System.currentTimeMillis());
+
+        assertEquals(distanciaBfs(new Punto(30, 5), new Punto(40, 5)), alt.getDistanciaGrid());
+        assertEquals(manhattan.getDistanciaGrid(), alt.getDistanciaGrid());
+        assertTrue(alt.getNodosExplorados() * 2 < manhattan.getNodosExplorados(),
+            "ALT " + alt.getNodosExplorados() + " vs Manhattan " + manhattan.getNodosExplorados());
+    }
+
+    @Test
+    void testLandmarksDescartanDestinoEnOtraComponente() {
+        gestor.agregarLineaHorizontal(20, 29, 31);
+        gestor.agregarLineaHorizontal(22, 29, 31);
+        gestor.agregarObstaculoPuntual(new Punto(29, 21));
+        gestor.agregarObstaculoPuntual(new Punto(31, 21));
+
+        ResultadoAEstrella resultado = motor.buscar(new Punto(0, 0), new Punto(30, 21), config, System.currentTimeMillis());
+
+        assertEquals(TipoError.RUTA_NO_EXISTE, resultado.getTipoError());
+        assertEquals(0, resultado.getNodosExplorados());
+    }
+
+    @Test
+    void testDistanciasDesdeUnOrigenIgualesABfs() {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            gestor.agregarObstaculoPuntual(new Punto(random.nextInt(ANCHO), random.nextInt(ALTO)));
+        }
+        Punto origen = puntoLibreAleatorio(random);
+        List<Punto> destinos = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            destinos.add(puntoLibreAleatorio(random));
+        }
+        destinos.add(origen);
+        destinos.add(destinos.get(0));
+        destinos.add(new Punto(ANCHO + 5, 0));
+
+        int[] distancias = motor.calcularDistanciasDesde(origen, destinos, System.currentTimeMillis() + 1000);
+
+        assertEquals(destinos.size(), distancias.length);
+        for (int i = 0; i < destinos.size() - 1; i++) {
+            assertEquals(distanciaBfs(origen, destinos.get(i)), distancias[i], origen + " -> " + destinos.get(i));
+        }
+        assertEquals(-1, distancias[destinos.size() - 1], "Destino fuera del mapa");
+    }
+
+    @Test
+    void testBidireccionalIgualABfs() {
+        Random random = new Random(13);
+        for (int i = 0; i < 15; i++) {
+            gestor.agregarLineaVertical(random.nextInt(ANCHO), random.nextInt(ALTO / 2), ALTO / 2 + random.nextInt(ALTO / 2));
+        }
+        for (int i = 0; i < 300; i++) {
+            gestor.agregarObstaculoPuntual(new Punto(random.nextInt(ANCHO), random.nextInt(ALTO)));
+        }
+        config.setMaxNodosExplorados(ANCHO * ALTO);
+
+        for (int prueba = 0; prueba < 60; prueba++) {
+            Punto origen = puntoLibreAleatorio(random);
+            Punto destino = puntoLibreAleatorio(random);
+            int esperado = distanciaBfs(origen, destino);
+            config.setUsarLandmarks(prueba % 2 == 0);
+
+            ResultadoAEstrella resultado = motor.buscarBidireccional(origen, destino, config, System.currentTimeMillis());
+
+            if (esperado < 0) {
+                assertEquals(TipoError.RUTA_NO_EXISTE, resultado.getTipoError(), origen + " -> " + destino);
+            } else {
+                assertTrue(resultado.isRutaExiste(), origen + " -> " + destino);
+                assertEquals(esperado, resultado.getDistanciaGrid(), origen + " -> " + destino);
+                assertRutaValida(resultado.getRutaEncontrada(), origen, destino);
+            }
+        }
+    }
+
+    @Test
+    void testBidireccionalExpandeMenosEnViajesDiagonales() {
+        Random random = new Random(1);
+        for (int i = 0; i < 400; i++) {
+            gestor.agregarObstaculoPuntual(new Punto(random.nextInt(ANCHO), random.nextInt(ALTO)));
+        }
+        config.setMaxNodosExplorados(ANCHO * ALTO);
+        config.setUsarLandmarks(false);
+
+        long unidireccional = 0;
+        long bidireccional = 0;
+        for (int viaje = 0; viaje < 40; viaje++) {
+            // Esquina a esquina opuesta, alternando las dos diagonales del mapa
+            int y1 = random.nextInt(6);
+            int y2 = ALTO - 1 - random.nextInt(6);
+            Punto origen = new Punto(random.nextInt(6), viaje % 2 == 0 ? y1 : ALTO - 1 - y1);
+            Punto destino = new Punto(ANCHO - 1 - random.nextInt(6), viaje % 2 == 0 ? y2 : ALTO - 1 - y2);
+            if (!gestor.esPuntoValido(origen) || !gestor.esPuntoValido(destino)) {
+                continue;
+            }
+            ResultadoAEstrella simple = motor.buscar(origen, destino, config, System.currentTimeMillis());
+            ResultadoAEstrella doble = motor.buscarBidireccional(origen, destino, config, System.currentTimeMillis());
+
+            assertEquals(simple.getDistanciaGrid(), doble.getDistanciaGrid(), origen + " -> " + destino);
+            unidireccional += simple.getNodosExplorados();
+            bidireccional += doble.getNodosExplorados();
+        }
+
+        assertTrue(bidireccional * 10 < unidireccional * 8,
+            "Bidireccional " + bidireccional + " vs unidireccional " + unidireccional);
+    }
+
+    private void assertRutaValida(List<Punto> ruta, Punto origen, Punto destino) {
+        assertEquals(origen, ruta.get(0));
+        assertEquals(destino, ruta.get(ruta.size() - 1));
+        for (int i = 1; i < ruta.size(); i++) {
+            assertTrue(ruta.get(i - 1).esAdyacenteA(ruta.get(i)), "Paso no adyacente en " + ruta.get(i));
+            assertTrue(gestor.esPuntoValido(ruta.get(i)), "Ruta atraviesa obstáculo en " + ruta.get(i));
+        }
+    }
+
+    private Punto puntoLibreAleatorio(Random random) {
+        Punto punto;
+        do {
+            punto = new Punto(random.nextInt(ANCHO), random.nextInt(ALTO));
+        } while (!gestor.esPuntoValido(punto));
+        return punto;
+    }
+
+    private int distanciaBfs(Punto origen, Punto destino) {
+        int[] distancia = new int[ANCHO * ALTO];
+        Arrays.fill(distancia, -1);
+        ArrayDeque<Punto> cola = new ArrayDeque<>();
+        distancia[origen.getY() * ANCHO + origen.getX()] = 0;
+        cola.add(origen);
+        while (!cola.isEmpty()) {
+            Punto actual = cola.poll();
+            int d = distancia[actual.getY() * ANCHO + actual.getX()];
+            if (actual.equals(destino)) {
+                return d;
+            }
+            for (Punto vecino : gestor.obtenerPuntosAdyacentesValidos(actual)) {
+                int indice = vecino.getY() * ANCHO + vecino.getX();
+                if (distancia[indice] < 0) {
+                    distancia[indice] = d + 1;
+                    cola.add(vecino);
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,83 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.RutaCompacta;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.NivelRutasFueraDeHeap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del nivel frío fuera del heap y de la degradación / promoción de entradas
+ * entre él y la cache en heap
+ */
+public class NivelRutasFueraDeHeapTest {
+
+    @Test
+    void testGuardarTomarYReemplazar() {
+        NivelRutasFueraDeHeap nivel = new NivelRutasFueraDeHeap(1 << 16, 1 << 12);
+        for (int y = 0; y < 4000; y++) {
+            assertTrue(nivel.guardar(new Punto(0, y), new Punto(9, y), RutaCompacta.de(rutaEnL(0, y, 9)), y));
+        }
+        // 4000 registros de 28 bytes no caben en 64 KB: los segmentos más antiguos se reciclaron
+        assertTrue(nivel.getSegmentosReciclados() > 0);
+        assertTrue(nivel.getBytesVigentes() <= nivel.getBytesReservados());
+        assertNull(nivel.tomar(new Punto(0, 0), new Punto(9, 0)));
+
+        NivelRutasFueraDeHeap.Registro registro = nivel.tomar(new Punto(0, 3999), new Punto(9, 3999));
+        assertEquals(rutaEnL(0, 3999, 9), registro.getRuta());
+        assertEquals(3999, registro.getFecha());
+        assertNull(nivel.tomar(new Punto(0, 3999), new Punto(9, 3999)));
+
+        int antes = nivel.getTamano();
+        nivel.guardar(new Punto(0, 3998), new Punto(9, 3998), RutaCompacta.de(rutaEnL(0, 3998, 4)), 1);
+        assertEquals(antes, nivel.getTamano());
+        assertEquals(rutaEnL(0, 3998, 4), nivel.tomar(new Punto(0, 3998), new Punto(9, 3998)).getRuta());
+
+        nivel.limpiar();
+        assertEquals(0, nivel.getTamano());
+        assertEquals(0, nivel.getBytesVigentes());
+    }
+
+    @Test
+    void testExpulsadasBajanYVuelvenAlHeap() {
+        CacheRutas cache = new CacheRutas();
+        cache.configurarCapacidad(100);
+        cache.habilitarNivelFueraDeHeap(1 << 20);
+        for (int y = 0; y < 1000; y++) {
+            cache.almacenarRuta(new Punto(0, y), new Punto(20, y + 1), rutaEnL(0, y, 20));
+        }
+
+        CacheRutas.EstadisticasCache stats = cache.obtenerEstadisticas();
+        assertTrue(stats.getTamanoActual() <= 100);
+        assertEquals(stats.getTotalEvictions(), stats.getTotalDegradaciones());
+        assertEquals(1000, stats.getTamanoActual() + stats.getTamanoFueraDeHeap());
+
+        // Todas siguen disponibles, en ambos sentidos, sin recalcular
+        for (int y = 0; y < 1000; y += 7) {
+            assertEquals(rutaEnL(0, y, 20), cache.obtenerRuta(new Punto(0, y), new Punto(20, y + 1)).orElseThrow());
+        }
+        List<Punto> vuelta = cache.obtenerRuta(new Punto(20, 4), new Punto(0, 3)).orElseThrow();
+        assertEquals(new Punto(20, 4), vuelta.get(0));
+        assertEquals(new Punto(0, 3), vuelta.get(vuelta.size() - 1));
+        assertTrue(cache.obtenerEstadisticas().getTotalHitsFueraDeHeap() > 0);
+        assertEquals(0, cache.obtenerEstadisticas().getTotalMisses());
+
+        // Invalidar el par también lo quita del nivel frío
+        assertTrue(cache.invalidarRuta(new Punto(0, 500), new Punto(20, 501)));
+        assertTrue(cache.obtenerRuta(new Punto(0, 500), new Punto(20, 501)).isEmpty());
+    }
+
+    private static List<Punto> rutaEnL(int x0, int y, int x1) {
+        List<Punto> ruta = new ArrayList<>();
+        for (int x = x0; x <= x1; x++) {
+            ruta.add(new Punto(x, y));
+        }
+        ruta.add(new Punto(x1, y + 1));
+        return ruta;
+    }
+}
@@ -0,0 +1,61 @@
+package com.plg.service.test;
+
+import com.plg.domain.Pedido;
+import com.plg.domain.Punto;
+import com.plg.service.util.PrefetcherRutasPedidos;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la selección de pedidos visibles y de destinos probables del pre-cálculo
+ * de rutas por llegada de pedidos
+ */
+public class PrefetcherRutasPedidosTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Test
+    void testPedidosSeLiberanAlLlegarSuHoraDeRegistro() {
+        PrefetcherRutasPedidos prefetcher = new PrefetcherRutasPedidos();
+        prefetcher.registrarPedidos(List.of(
+            pedido(30, 30, INICIO.plusHours(3)),
+            pedido(10, 10, INICIO.plusHours(1)),
+            pedido(20, 20, INICIO.plusHours(2)),
+            new Pedido()));
+
+        assertEquals(3, prefetcher.obtenerEstadisticas().getPedidosRecibidos());
+        assertTrue(prefetcher.tomarVisibles(INICIO, 10).isEmpty());
+        assertEquals(List.of(new Punto(10, 10), new Punto(20, 20)), prefetcher.tomarVisibles(INICIO.plusHours(2), 10));
+        assertEquals(1, prefetcher.obtenerEstadisticas().getPedidosPendientes());
+        assertEquals(List.of(new Punto(30, 30)), prefetcher.tomarVisibles(INICIO.plusDays(1), 10));
+    }
+
+    @Test
+    void testDestinosProbablesAlmacenesYVecinosCercanos() {
+        PrefetcherRutasPedidos prefetcher = new PrefetcherRutasPedidos();
+        prefetcher.registrarPedidos(List.of(
+            pedido(12, 10, INICIO),
+            pedido(15, 15, INICIO),
+            pedido(60, 40, INICIO),
+            pedido(10, 10, INICIO)));
+        prefetcher.tomarVisibles(INICIO, 10);
+
+        List<Punto> almacenes = List.of(new Punto(12, 8), new Punto(42, 30), new Punto(63, 3));
+        List<Punto> destinos = prefetcher.destinosProbables(new Punto(10, 10), almacenes);
+
+        // Dos almacenes más cercanos, luego los vecinos dentro del radio (no el lejano ni él mismo)
+        assertEquals(List.of(new Punto(12, 8), new Punto(42, 30), new Punto(12, 10), new Punto(15, 15)), destinos);
+    }
+
+    private static Pedido pedido(int x, int y, LocalDateTime fecha) {
+        Pedido pedido = new Pedido();
+        pedido.setUbicacionX(x);
+        pedido.setUbicacionY(y);
+        pedido.setFechaHoraRegistro(fecha);
+        return pedido;
+    }
+}
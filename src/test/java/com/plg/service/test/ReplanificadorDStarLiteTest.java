@@ -0,0 +1,145 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.domain.enumeration.TipoError;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import com.plg.service.util.ReplanificadorDStarLite;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la replanificación incremental D* Lite contra búsquedas completas
+ */
+public class ReplanificadorDStarLiteTest {
+
+    private GestorObstaculos gestor;
+    private ReplanificadorDStarLite replanificador;
+    private MotorAEstrellaGrid motor;
+    private ConfiguracionAEstrella config;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        replanificador = new ReplanificadorDStarLite(gestor);
+        motor = new MotorAEstrellaGrid(gestor);
+        config = new ConfiguracionAEstrella();
+        config.setMaxNodosExplorados(70 * 50 * 4);
+    }
+
+    @Test
+    void testRutaInicialIgualABusquedaCompleta() {
+        gestor.agregarLineaVertical(10, 0, 40);
+
+        ResultadoAEstrella resultado = replanificador.iniciar("C1", new Punto(5, 5), new Punto(15, 5), config);
+
+        assertTrue(resultado.isRutaExiste());
+        assertEquals(10 + 2 * 36, resultado.getDistanciaGrid());
+        assertEquals("D* Lite", resultado.getAlgoritmoUtilizado());
+    }
+
+    @Test
+    void testReparaTrasBloqueosQueAbrenYCierran() {
+        Random random = new Random(5);
+        Punto destino = new Punto(65, 45);
+        Punto posicion = new Punto(2, 2);
+        List<int[]> bloqueos = new ArrayList<>();
+
+        ResultadoAEstrella resultado = replanificador.iniciar("C1", posicion, destino, config);
+        assertTrue(resultado.isRutaExiste());
+
+        for (int ronda = 0; ronda < 25; ronda++) {
+            // Avanzar algunos pasos por la ruta vigente
+            List<Punto> ruta = resultado.getRutaEncontrada();
+            posicion = ruta.get(Math.min(3, ruta.size() - 1));
+
+            // Abrir o cerrar bloqueos lineales, publicando un solo snapshot
+            if (!bloqueos.isEmpty() && random.nextBoolean()) {
+                bloqueos.remove(random.nextInt(bloqueos.size()));
+            } else {
+                bloqueos.add(new int[] {random.nextInt(70), random.nextInt(50), random.nextInt(12)});
+            }
+            Punto actual = posicion;
+            gestor.ejecutarEnLote(() -> {
+                gestor.limpiarObstaculos();
+                for (int[] b : bloqueos) {
+                    int x = b[0];
+                    for (int y = b[1]; y <= Math.min(49, b[1] + b[2]); y++) {
+                        if (!(x == actual.getX() && y == actual.getY()) && !(x == destino.getX() && y == destino.getY())) {
+                            gestor.agregarObstaculoPuntual(new Punto(x, y));
+                        }
+                    }
+                }
+            });
+
+            resultado = replanificador.replanificar("C1", posicion, config);
+            ResultadoAEstrella completa = motor.buscar(posicion, destino, config, System.currentTimeMillis());
+
+            assertEquals(completa.isRutaExiste(), resultado.isRutaExiste(), "Ronda " + ronda);
+            if (!completa.isRutaExiste()) {
+                return;
+            }
+            assertEquals(completa.getDistanciaGrid(), resultado.getDistanciaGrid(), "Ronda " + ronda);
+            for (Punto paso : resultado.getRutaEncontrada()) {
+                assertTrue(gestor.esPuntoValido(paso), "Ruta atraviesa obstáculo en " + paso);
+            }
+            if (posicion.equals(destino)) {
+                return;
+            }
+        }
+    }
+
+    @Test
+    void testCambioPequenoExpandeMenosQueLaBusquedaInicial() {
+        ResultadoAEstrella inicial = replanificador.iniciar("C1", new Punto(0, 0), new Punto(69, 49), config);
+        gestor.agregarObstaculoPuntual(new Punto(35, 45));
+
+        ResultadoAEstrella reparada = replanificador.replanificar("C1", new Punto(0, 0), config);
+
+        assertEquals(inicial.getDistanciaGrid(), reparada.getDistanciaGrid());
+        assertTrue(reparada.getNodosExplorados() < inicial.getNodosExplorados(),
+            "Reparación " + reparada.getNodosExplorados() + " vs inicial " + inicial.getNodosExplorados());
+    }
+
+    @Test
+    void testSesionInexistenteYLimiteDeSesiones() {
+        ResultadoAEstrella resultado = replanificador.replanificar("NO", new Punto(0, 0), config);
+        assertEquals(TipoError.CONFIGURACION_INVALIDA, resultado.getTipoError());
+
+        replanificador.configurarMaxSesiones(2);
+        replanificador.iniciar("A", new Punto(0, 0), new Punto(5, 5), config);
+        replanificador.iniciar("B", new Punto(0, 0), new Punto(5, 5), config);
+        replanificador.iniciar("C", new Punto(0, 0), new Punto(5, 5), config);
+
+        assertEquals(2, replanificador.getSesionesActivas());
+        assertFalse(replanificador.tieneSesion("A"));
+    }
+
+    @Test
+    void testLimiteDeSesionesPorPresupuesto() {
+        // 70x50 celdas a 16 bytes: el presupuesto por defecto admite el máximo de 64 sesiones
+        assertEquals(64, replanificador.limiteSesiones(70 * 50));
+        // En el grid de 1001x1001 el mismo presupuesto solo alcanza para 4
+        assertEquals(4, replanificador.limiteSesiones(1001 * 1001));
+
+        replanificador.iniciar("A", new Punto(0, 0), new Punto(5, 5), config);
+        replanificador.iniciar("B", new Punto(0, 0), new Punto(5, 5), config);
+        replanificador.iniciar("C", new Punto(0, 0), new Punto(5, 5), config);
+        replanificador.configurarPresupuestoBytes(2L * 16 * 70 * 50);
+
+        assertEquals(2, replanificador.getSesionesActivas());
+        assertFalse(replanificador.tieneSesion("A"));
+        replanificador.iniciar("D", new Punto(0, 0), new Punto(5, 5), config);
+        assertEquals(2, replanificador.getSesionesActivas());
+        assertTrue(replanificador.tieneSesion("D"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.plg.service.test;
+
+import com.plg.domain.Punto;
+import com.plg.domain.RutaCompacta;
+import com.plg.service.util.CacheRutas;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la codificación por tramos de rutas contra listas de puntos de referencia
+ */
+public class RutaCompactaTest {
+
+    @Test
+    void testRutaManhattanSeCodificaPorTramos() {
+        List<Punto> puntos = new ArrayList<>();
+        for (int x = 0; x <= 10; x++) {
+            puntos.add(new Punto(x, 0));
+        }
+        for (int y = 1; y <= 5; y++) {
+            puntos.add(new Punto(10, y));
+        }
+        for (int x = 9; x >= 4; x--) {
+            puntos.add(new Punto(x, 5));
+        }
+
+        RutaCompacta ruta = RutaCompacta.de(puntos);
+
+        assertEquals(puntos, ruta);
+        assertEquals(puntos.size(), ruta.size());
+        assertEquals(3, ruta.getCantidadTramos());
+        assertEquals(2 + 3, ruta.getCodificacion().length);
+        for (int i = 0; i < puntos.size(); i++) {
+            assertEquals(puntos.get(i), ruta.get(i));
+        }
+        assertSame(ruta, RutaCompacta.de(ruta));
+        assertEquals(ruta, RutaCompacta.desdeCodificacion(ruta.getCodificacion()));
+    }
+
+    @Test
+    void testSaltosEsperasYCaminosAleatorios() {
+        Random random = new Random(5);
+        for (int caso = 0; caso < 200; caso++) {
+            List<Punto> puntos = new ArrayList<>();
+            int x = random.nextInt(70);
+            int y = random.nextInt(50);
+            puntos.add(new Punto(x, y));
+            int pasos = random.nextInt(60);
+            for (int p = 0; p < pasos; p++) {
+                int eleccion = random.nextInt(12);
+                if (eleccion < 8) {
+                    x += eleccion % 4 == 2 ? -1 : eleccion % 4 == 3 ? 1 : 0;
+                    y += eleccion % 4 == 0 ? 1 : eleccion % 4 == 1 ? -1 : 0;
+                } else if (eleccion == 8) {
+                    // Salto de una ruta directa de fallback
+                    x = random.nextInt(70);
+                    y = random.nextInt(50);
+                }
+                puntos.add(new Punto(x, y));
+            }
+
+            RutaCompacta ruta = RutaCompacta.de(puntos);
+
+            assertEquals(puntos, ruta);
+            assertEquals(puntos, new ArrayList<>(RutaCompacta.desdeCodificacion(ruta.getCodificacion())));
+            int i = random.nextInt(puntos.size());
+            assertEquals(puntos.get(i), ruta.get(i));
+        }
+    }
+
+    @Test
+    void testInversionTramosYBusquedaEnTramos() {
+        Random random = new Random(11);
+        for (int caso = 0; caso < 200; caso++) {
+            List<Punto> puntos = new ArrayList<>();
+            int x = random.nextInt(70);
+            int y = random.nextInt(50);
+            puntos.add(new Punto(x, y));
+            int pasos = 1 + random.nextInt(40);
+            for (int p = 0; p < pasos; p++) {
+                int eleccion = random.nextInt(10);
+                if (eleccion < 8) {
+                    x += eleccion % 4 == 2 ? -1 : eleccion % 4 == 3 ? 1 : 0;
+                    y += eleccion % 4 == 0 ? 1 : eleccion % 4 == 1 ? -1 : 0;
+                } else if (eleccion == 8) {
+                    x = random.nextInt(70);
+                    y = random.nextInt(50);
+                }
+                puntos.add(new Punto(x, y));
+            }
+            RutaCompacta ruta = RutaCompacta.de(puntos);
+
+            List<Punto> inversa = new ArrayList<>(puntos);
+            Collections.reverse(inversa);
+            assertEquals(inversa, ruta.invertida());
+
+            int desde = random.nextInt(puntos.size());
+            int hasta = desde + random.nextInt(puntos.size() - desde + 1);
+            assertEquals(puntos.subList(desde, hasta), ruta.subRuta(desde, hasta));
+
+            Punto buscado = puntos.get(random.nextInt(puntos.size()));
+            assertEquals(puntos.indexOf(buscado), ruta.indexOf(buscado));
+            assertEquals(-1, ruta.indiceDe(500, 500));
+        }
+    }
+
+    @Test
+    void testRutaInmutableYVacia() {
+        RutaCompacta ruta = RutaCompacta.de(Arrays.asList(new Punto(1, 1), new Punto(1, 2)));
+
+        assertThrows(UnsupportedOperationException.class, () -> ruta.add(new Punto(1, 3)));
+        assertThrows(IndexOutOfBoundsException.class, () -> ruta.get(2));
+        ruta.get(0).setX(99);
+        assertEquals(new Punto(1, 1), ruta.get(0));
+
+        assertTrue(RutaCompacta.de(new ArrayList<>()).isEmpty());
+        assertSame(RutaCompacta.VACIA, RutaCompacta.desdeCodificacion(new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> RutaCompacta.desdeCodificacion(new int[] {0, 0, 7}));
+    }
+
+    @Test
+    void testCacheEntregaLaRutaSinCopiar() {
+        CacheRutas cache = new CacheRutas();
+        Punto origen = new Punto(0, 0);
+        Punto destino = new Punto(0, 3);
+        List<Punto> puntos = Arrays.asList(origen, new Punto(0, 1), new Punto(0, 2), destino);
+
+        cache.almacenarRuta(origen, destino, puntos);
+        List<Punto> primera = cache.obtenerRuta(origen, destino).orElseThrow();
+        List<Punto> segunda = cache.obtenerRuta(origen, destino).orElseThrow();
+
+        assertEquals(puntos, primera);
+        assertSame(primera, segunda);
+        assertInstanceOf(RutaCompacta.class, primera);
+    }
+}
@@ -0,0 +1,199 @@
+package com.plg.service.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plg.domain.Punto;
+import com.plg.domain.SegmentoRuta;
+import com.plg.domain.enumeration.TipoSegmento;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.AEstrellaService.MotorBusqueda;
+import com.plg.service.PlanificadorRutasService.ConfiguracionPlanificadorRutas;
+import com.plg.service.impl.AEstrellaServiceImpl;
+import com.plg.service.impl.PlanificadorRutasServiceImpl;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.CacheRutasWarmup;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.MotorAEstrellaGrid;
+import com.plg.service.util.SnapshotObstaculos;
+import com.plg.service.util.TokenCancelacion;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de los segmentos con ruta detallada diferida: métricas sin camino y cálculo único al pedirlo
+ */
+public class SegmentoRutaDiferidaTest {
+
+    private final AtomicInteger calculos = new AtomicInteger();
+
+    private SegmentoRuta segmentoDiferido() {
+        Punto origen = new Punto(0, 0);
+        Punto destino = new Punto(3, 2);
+        SegmentoRuta segmento = new SegmentoRuta(origen, destino, TipoSegmento.MOVIMIENTO);
+        segmento.establecerRutaDiferida(5, () -> {
+            calculos.incrementAndGet();
+            List<Punto> ruta = new ArrayList<>();
+            for (int x = 0; x <= 3; x++) {
+                ruta.add(new Punto(x, 0));
+            }
+            ruta.add(new Punto(3, 1));
+            ruta.add(new Punto(3, 2));
+            return ruta;
+        });
+        return segmento;
+    }
+
+    @Test
+    void testMetricasSinCalcularCamino() {
+        SegmentoRuta segmento = segmentoDiferido();
+
+        assertTrue(segmento.isRutaDetalladaPendiente());
+        assertEquals(5, segmento.getDistanciaGrid());
+        assertEquals(2.5, segmento.getDistanciaKm(), 1e-9);
+        assertEquals(0, calculos.get());
+    }
+
+    @Test
+    void testCaminoSeCalculaUnaVezAlPedirlo() {
+        SegmentoRuta segmento = segmentoDiferido();
+        SegmentoRuta copia = segmento.clonar();
+
+        assertEquals(6, segmento.getRutaDetallada().size());
+        assertEquals(new Punto(3, 2), segmento.getRutaDetallada().get(5));
+        assertFalse(segmento.isRutaDetalladaPendiente());
+        assertEquals(1, calculos.get());
+
+        // La copia conserva su propio cálculo pendiente
+        assertTrue(copia.isRutaDetalladaPendiente());
+        assertEquals(segmento.getRutaDetallada(), copia.getRutaDetallada());
+        assertEquals(2, calculos.get());
+    }
+
+    @Test
+    void testSerializacionNoFuerzaElCalculo() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        SegmentoRuta segmento = segmentoDiferido();
+
+        JsonNode pendiente = mapper.readTree(mapper.writeValueAsString(segmento));
+        assertFalse(pendiente.has("rutaDetallada"));
+        assertEquals(5, pendiente.get("distanciaGrid").asInt());
+        assertEquals(0, calculos.get());
+
+        segmento.getRutaDetallada();
+        JsonNode calculado = mapper.readTree(mapper.writeValueAsString(segmento));
+        assertEquals(6, calculado.get("rutaDetallada").size());
+    }
+
+    @Test
+    void testCompararHashearYMostrarNoCalculanElCamino() {
+        SegmentoRuta segmento = segmentoDiferido();
+        SegmentoRuta copia = segmento.clonar();
+
+        assertEquals(segmento, copia);
+        Set<SegmentoRuta> conjunto = new HashSet<>();
+        conjunto.add(segmento);
+        assertTrue(conjunto.contains(copia));
+        assertFalse(segmento.toString().isEmpty());
+        assertEquals(0, calculos.get());
+        assertTrue(segmento.isRutaDetalladaPendiente());
+    }
+
+    @Test
+    void testDistanciaSeActualizaAlMaterializar() {
+        SegmentoRuta segmento = new SegmentoRuta(new Punto(0, 0), new Punto(3, 0), TipoSegmento.MOVIMIENTO);
+        // Distancia planificada 3, pero el camino real rodea un obstáculo (5 pasos)
+        segmento.establecerRutaDiferida(3, () -> List.of(
+            new Punto(0, 0), new Punto(0, 1), new Punto(1, 1), new Punto(2, 1), new Punto(3, 1), new Punto(3, 0)));
+        assertEquals(1.5, segmento.getDistanciaKm(), 1e-9);
+
+        assertEquals(6, segmento.getRutaDetallada().size());
+        assertEquals(5, segmento.getDistanciaGrid());
+        assertEquals(2.5, segmento.getDistanciaKm(), 1e-9);
+    }
+
+    @Test
+    void testSinRutaQuedaVaciaYMarcada() {
+        SegmentoRuta segmento = new SegmentoRuta(new Punto(0, 0), new Punto(3, 0), TipoSegmento.MOVIMIENTO);
+        segmento.establecerRutaDiferida(3, () -> null);
+
+        assertTrue(segmento.getRutaDetallada().isEmpty());
+        assertTrue(segmento.isRequiereValidacionEspecial());
+        assertFalse(segmento.isRutaDetalladaPendiente());
+    }
+
+    @Test
+    void testBusquedaSobreElSnapshotPlanificado() {
+        GestorObstaculos gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 20, 20);
+        MotorAEstrellaGrid motor = new MotorAEstrellaGrid(gestor);
+        SnapshotObstaculos planificado = gestor.obtenerSnapshot();
+
+        // Un bloqueo posterior corta la fila y = 5 entre x = 0 y x = 10
+        gestor.agregarLineaVertical(5, 0, 20);
+        Punto origen = new Punto(0, 5);
+        Punto destino = new Punto(10, 5);
+        assertFalse(motor.buscar(origen, destino, new ConfiguracionAEstrella(),
+            System.currentTimeMillis(), TokenCancelacion.NINGUNO).isRutaExiste());
+
+        var resultado = motor.buscar(planificado, origen, destino, new ConfiguracionAEstrella(),
+            System.currentTimeMillis(), TokenCancelacion.NINGUNO);
+        assertTrue(resultado.isRutaExiste());
+        assertEquals(10, resultado.getRutaEncontrada().size() - 1);
+    }
+
+    @Test
+    void testCaminoDiferidoIgualAlInmediatoConOtrosMotores() {
+        GestorObstaculos gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 30, 30);
+        gestor.agregarLineaVertical(10, 0, 25);
+        gestor.agregarLineaHorizontal(15, 12, 30);
+        MotorAEstrellaGrid motor = new MotorAEstrellaGrid(gestor);
+
+        AEstrellaServiceImpl aEstrella = new AEstrellaServiceImpl();
+        ReflectionTestUtils.setField(aEstrella, "gestorObstaculos", gestor);
+        ReflectionTestUtils.setField(aEstrella, "cacheRutas", new CacheRutas());
+        ReflectionTestUtils.setField(aEstrella, "cacheWarmup", new CacheRutasWarmup());
+        ReflectionTestUtils.setField(aEstrella, "motorGrid", motor);
+
+        ConfiguracionPlanificadorRutas configuracion = new ConfiguracionPlanificadorRutas();
+        PlanificadorRutasServiceImpl planificador = new PlanificadorRutasServiceImpl();
+        ReflectionTestUtils.setField(planificador, "motorGrid", motor);
+        ReflectionTestUtils.setField(planificador, "configuracion", configuracion);
+
+        Punto origen = new Punto(2, 5);
+        Punto destino = new Punto(25, 20);
+        SnapshotObstaculos mapa = gestor.obtenerSnapshot();
+        for (MotorBusqueda modo : MotorBusqueda.values()) {
+            for (boolean bidireccional : new boolean[] {false, true}) {
+                ConfiguracionAEstrella config = configuracion.getConfiguracionAEstrella();
+                config.setMotorBusqueda(modo);
+                config.setUsarBusquedaBidireccional(bidireccional);
+                config.setUsarCache(false);
+                String caso = modo + (bidireccional ? " bidireccional" : "");
+
+                List<Punto> inmediato = aEstrella.calcularRuta(origen, destino, config).getRutaEncontrada();
+                Supplier<List<Punto>> proveedor = ReflectionTestUtils.invokeMethod(planificador,
+                    "proveedorRutaDetallada", mapa, origen, destino, TipoSegmento.ENTREGA);
+                List<Punto> diferido = proveedor.get();
+
+                assertNotNull(diferido, caso);
+                if (modo == MotorBusqueda.CLASICO && !bidireccional) {
+                    // El bucle clásico no lee snapshots: el diferido usa GRID, mismo costo óptimo
+                    assertEquals(inmediato.size(), diferido.size(), caso);
+                    assertEquals(destino, diferido.get(diferido.size() - 1), caso);
+                } else {
+                    assertEquals(inmediato, diferido, caso);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.plg.service.test;
+
+import com.plg.domain.Camion;
+import com.plg.domain.Punto;
+import com.plg.domain.ResultadoAEstrella;
+import com.plg.domain.RutaOptimizada;
+import com.plg.domain.SegmentoRuta;
+import com.plg.domain.Obstaculo;
+import com.plg.domain.enumeration.EstadoRuta;
+import com.plg.domain.enumeration.EstadoSegmento;
+import com.plg.service.AEstrellaService.ConfiguracionAEstrella;
+import com.plg.service.PlanificacionIntegradorService.EventoAveria;
+import com.plg.service.PlanificacionIntegradorService.ResultadoReplanificacion;
+import com.plg.service.PlanificacionIntegradorService.TipoAveria;
+import com.plg.service.impl.AEstrellaServiceImpl;
+import com.plg.service.impl.PlanificacionIntegradorServiceImpl;
+import com.plg.service.util.CacheRutas;
+import com.plg.service.util.CacheRutasWarmup;
+import com.plg.service.util.GestorObstaculos;
+import com.plg.service.util.GestorObstaculosTemporales;
+import com.plg.service.util.MotorAEstrellaGrid;
+import com.plg.service.util.ReplanificadorDStarLite;
+import com.plg.service.util.ReplanificadorDStarLite.EstadisticasReplanificador;
+import com.plg.service.util.SeguimientoRutasCamiones;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del seguimiento de segmentos en ejecución sobre las sesiones D* Lite: la sesión
+ * abierta al iniciar el segmento se reutiliza entre replanificaciones y se cierra al llegar
+ */
+public class SeguimientoRutasCamionesTest {
+
+    private GestorObstaculos gestor;
+    private ReplanificadorDStarLite replanificador;
+    private AEstrellaServiceImpl aEstrella;
+    private SeguimientoRutasCamiones seguimiento;
+    private Camion camion;
+
+    @BeforeEach
+    void setUp() {
+        gestor = new GestorObstaculos();
+        gestor.inicializarMapaProgramatico(0, 0, 69, 49);
+        replanificador = new ReplanificadorDStarLite(gestor);
+
+        aEstrella = new AEstrellaServiceImpl();
+        ReflectionTestUtils.setField(aEstrella, "gestorObstaculos", gestor);
+        ReflectionTestUtils.setField(aEstrella, "cacheRutas", new CacheRutas());
+        ReflectionTestUtils.setField(aEstrella, "cacheWarmup", new CacheRutasWarmup());
+        ReflectionTestUtils.setField(aEstrella, "motorGrid", new MotorAEstrellaGrid(gestor));
+        ReflectionTestUtils.setField(aEstrella, "replanificador", replanificador);
+
+        seguimiento = new SeguimientoRutasCamiones();
+        ReflectionTestUtils.setField(seguimiento, "aEstrellaService", aEstrella);
+        ReflectionTestUtils.setField(seguimiento, "gestorObstaculos", gestor);
+
+        camion = new Camion();
+        camion.setCodigo("TA01");
+    }
+
+    @AfterEach
+    void tearDown() {
+        seguimiento.detener();
+        aEstrella.shutdown();
+    }
+
+    @Test
+    void testBloqueoEntreReplanificacionesReparaSoloLasCeldasCambiadas() {
+        SegmentoRuta segmento = SegmentoRuta.crearSegmentoMovimiento(new Punto(0, 0), new Punto(40, 0), 0);
+        assertTrue(seguimiento.iniciarSegmento(camion, segmento).isRutaExiste());
+        assertEquals(EstadoSegmento.EN_EJECUCION, segmento.getEstado());
+        assertEquals(40, segmento.getDistanciaGrid());
+
+        // Sin cambios en el mapa la sesión se reutiliza sin reparar nada
+        ResultadoAEstrella sinCambios = seguimiento.replanificar(camion, new Punto(2, 0));
+        assertEquals(38, sinCambios.getDistanciaGrid());
+        assertEquals(0, sinCambios.getNodosExplorados());
+        assertEquals(0, replanificador.obtenerEstadisticas().getCeldasReparadas());
+
+        // Un bloqueo de 5 celdas sobre la ruta, publicado en un solo snapshot
+        gestor.agregarLineaVertical(20, 0, 4);
+        ResultadoAEstrella reparada = seguimiento.replanificar(camion, new Punto(3, 0));
+        ResultadoAEstrella completa = replanificador.iniciar("referencia", new Punto(3, 0), new Punto(40, 0),
+            new ConfiguracionAEstrella());
+        replanificador.finalizar("referencia");
+
+        EstadisticasReplanificador stats = replanificador.obtenerEstadisticas();
+        assertEquals(5, stats.getCeldasReparadas());
+        assertEquals(2, stats.getReplanificaciones());
+        assertEquals(0, stats.getSesionesReiniciadas());
+        assertEquals(37 + 2 * 5, reparada.getDistanciaGrid());
+        assertEquals(completa.getDistanciaGrid(), reparada.getDistanciaGrid());
+        assertEquals(new Punto(3, 0), segmento.getRutaDetallada().get(0));
+        assertEquals(reparada.getDistanciaGrid(), segmento.getDistanciaGrid());
+
+        // Al llegar al destino se completa el segmento y se cierra la sesión
+        assertNull(seguimiento.replanificar(camion, new Punto(40, 0)));
+        assertEquals(EstadoSegmento.COMPLETADO, segmento.getEstado());
+        assertFalse(seguimiento.tieneSegmentoEnCurso(camion));
+        assertEquals(0, replanificador.getSesionesActivas());
+    }
+
+    @Test
+    void testEventosDeTraficoReplanificanYAveriasCierranLaSesion() {
+        PlanificacionIntegradorServiceImpl integrador = new PlanificacionIntegradorServiceImpl();
+        ReflectionTestUtils.setField(integrador, "seguimientoRutas", seguimiento);
+        RutaOptimizada ruta = new RutaOptimizada();
+        ruta.setCamion(camion);
+        SegmentoRuta segmento = SegmentoRuta.crearSegmentoMovimiento(new Punto(0, 10), new Punto(30, 10), 0);
+        ruta.agregarSegmento(segmento);
+        Map<Camion, RutaOptimizada> rutas = Map.of(camion, ruta);
+        seguimiento.iniciarRuta(camion, ruta, null);
+
+        gestor.agregarLineaVertical(15, 5, 15);
+        ResultadoReplanificacion trafico = integrador.replanificarPorEventos(rutas,
+            List.of(new EventoAveria(camion, new Punto(5, 10), TipoAveria.TRAFICO)), null);
+
+        assertTrue(trafico.isReplanificacionExitosa());
+        assertSame(ruta, trafico.getRutasReplanificadas().get(camion));
+        assertTrue(seguimiento.tieneSegmentoEnCurso(camion));
+        assertEquals(new Punto(5, 10), segmento.getRutaDetallada().get(0));
+        assertEquals(25 + 2 * 6, segmento.getDistanciaGrid());
+        assertEquals(11, replanificador.obtenerEstadisticas().getCeldasReparadas());
+
+        integrador.replanificarPorEventos(rutas,
+            List.of(new EventoAveria(camion, new Punto(8, 10), TipoAveria.MECANICA)), null);
+        assertEquals(EstadoSegmento.FALLIDO, segmento.getEstado());
+        assertFalse(seguimiento.tieneSegmentoEnCurso(camion));
+        assertEquals(0, replanificador.getSesionesActivas());
+    }
+
+    @Test
+    void testSnapshotPublicadoReplanificaLosCamionesEnRuta() throws Exception {
+        seguimiento.iniciar();
+        RutaOptimizada ruta = new RutaOptimizada();
+        ruta.setCamion(camion);
+        SegmentoRuta ida = SegmentoRuta.crearSegmentoMovimiento(new Punto(0, 0), new Punto(40, 0), 0);
+        SegmentoRuta vuelta = SegmentoRuta.crearSegmentoMovimiento(new Punto(40, 0), new Punto(40, 20), 1);
+        ruta.agregarSegmento(ida);
+        ruta.agregarSegmento(vuelta);
+
+        // La sesión se abre al salir, antes de cualquier cambio en el mapa
+        seguimiento.despacharRutas(Map.of(camion, ruta), null);
+        assertEquals(EstadoSegmento.EN_EJECUCION, ida.getEstado());
+        assertEquals(1, replanificador.getSesionesActivas());
+        assertFalse(seguimiento.actualizarPosicion(camion, new Punto(3, 0), null));
+
+        // El bloqueo publicado replanifica sin llamadas explícitas, desde la posición reportada
+        gestor.agregarLineaVertical(20, 0, 4);
+        long limite = System.currentTimeMillis() + 5000;
+        while (ida.getDistanciaGrid() == 40 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        EstadisticasReplanificador stats = replanificador.obtenerEstadisticas();
+        assertEquals(1, stats.getReplanificaciones());
+        assertEquals(5, stats.getCeldasReparadas());
+        assertEquals(1, stats.getSesionesIniciadas());
+        assertEquals(new Punto(3, 0), ida.getRutaDetallada().get(0));
+        assertEquals(37 + 2 * 5, ida.getDistanciaGrid());
+
+        // Al llegar sigue con el próximo segmento y al terminar la ruta se cierra la sesión
+        assertTrue(seguimiento.actualizarPosicion(camion, new Punto(40, 0), null));
+        assertEquals(EstadoSegmento.COMPLETADO, ida.getEstado());
+        assertSame(vuelta, seguimiento.obtenerSegmentoEnCurso(camion));
+        assertEquals(EstadoSegmento.EN_EJECUCION, vuelta.getEstado());
+        assertTrue(seguimiento.actualizarPosicion(camion, new Punto(40, 20), null));
+        assertEquals(EstadoRuta.COMPLETADA, ruta.getEstado());
+        assertFalse(seguimiento.tieneSegmentoEnCurso(camion));
+        assertEquals(0, replanificador.getSesionesActivas());
+    }
+
+    @Test
+    void testProximoCambioDeBloqueos() {
+        List<Obstaculo> bloqueos = List.of(
+            new Obstaculo("BLOQUEO_TEMPORAL", "1,1,1,5", 100L, 200L),
+            new Obstaculo("BLOQUEO_TEMPORAL", "2,1,2,5", 150L, 400L));
+
+        assertEquals(100, GestorObstaculosTemporales.proximoCambio(bloqueos, 50));
+        assertEquals(150, GestorObstaculosTemporales.proximoCambio(bloqueos, 100));
+        assertEquals(200, GestorObstaculosTemporales.proximoCambio(bloqueos, 150));
+        assertEquals(400, GestorObstaculosTemporales.proximoCambio(bloqueos, 200));
+        assertEquals(Long.MAX_VALUE, GestorObstaculosTemporales.proximoCambio(bloqueos, 400));
+    }
+}